@@ -0,0 +1,125 @@
+package tanvir.project.sudoku.benchmark;
+
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import tanvir.project.sudoku.engine.CellSelection;
+import tanvir.project.sudoku.engine.LockstepSolver;
+import tanvir.project.sudoku.engine.SudokuEngine;
+
+/**
+ * The throughput of solving whole collections the way the batch solver does, with one engine reused for every puzzle.
+ * The scores are in puzzles per second. The parallel benchmark solves the collection on the common fork join pool with
+ * one engine per thread, and shows how the throughput scales with the number of processors. The lockstep benchmark
+ * solves the collection LockstepSolver.LANES puzzles at a time on the scalar LockstepSolver, the vectorLockstep benchmark
+ * on the one of LockstepSolver.create(), which is the Vector API version when the SudokuSolver module was built with the
+ * vector profile and the scalar one otherwise. Its fork is started with the Vector API module for that.
+ *
+ * @author Tanvir Kaykobad
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BatchBenchmark {
+
+	private static final ThreadLocal<SudokuEngine> ENGINES = ThreadLocal.withInitial(BatchBenchmark::createEngine);
+
+	@Param({"EASY", "HARD", "SEVENTEEN", "UNSOLVABLE", "SOLVED"})
+	public Corpus corpus;
+
+	private String[] puzzles;
+	private SudokuEngine engine;
+	private LockstepSolver lockstep;
+	private LockstepSolver vectorLockstep;
+
+	@Setup
+	public void setup() {
+		puzzles = corpus.getPuzzles();
+		engine = createEngine();
+		lockstep = new LockstepSolver();
+		vectorLockstep = LockstepSolver.create();
+	}
+
+	private static SudokuEngine createEngine() {
+		SudokuEngine engine = new SudokuEngine(9, CellSelection.MINIMUM_REMAINING_VALUES);
+		engine.setPropagationEnabled(true);
+		return engine;
+	}
+
+	/**
+	 * @return the number of solved puzzles
+	 */
+	@Benchmark
+	@OperationsPerInvocation(Corpus.SIZE)
+	public int batch() {
+		int solved = 0;
+		for(String puzzle:puzzles) {
+			Corpus.load(engine, puzzle);
+			if(engine.solve()) {
+				solved++;
+			}
+		}
+		return solved;
+	}
+
+	/**
+	 * @return the number of solved puzzles
+	 */
+	@Benchmark
+	@OperationsPerInvocation(Corpus.SIZE)
+	public int lockstep() {
+		return solveInLockstep(lockstep);
+	}
+
+	/**
+	 * @return the number of solved puzzles
+	 */
+	@Benchmark
+	@OperationsPerInvocation(Corpus.SIZE)
+	@Fork(value = 1, jvmArgsAppend = "--add-modules=jdk.incubator.vector")
+	public int vectorLockstep() {
+		return solveInLockstep(vectorLockstep);
+	}
+
+	private int solveInLockstep(LockstepSolver solver) {
+		int solved = 0;
+		for(int first=0;first<puzzles.length;first+=LockstepSolver.LANES) {
+			int lanes = Math.min(LockstepSolver.LANES, puzzles.length-first);
+			for(int lane=0;lane<lanes;lane++) {
+				Corpus.load(solver, lane, puzzles[first+lane]);
+			}
+			solved += solver.solve(lanes);
+		}
+		return solved;
+	}
+
+	/**
+	 * @return the number of solved puzzles
+	 */
+	@Benchmark
+	@OperationsPerInvocation(Corpus.SIZE)
+	public int parallel() {
+		return (int) IntStream.range(0, puzzles.length).parallel().filter(p -> {
+			SudokuEngine engine = ENGINES.get();
+			Corpus.load(engine, puzzles[p]);
+			return engine.solve();
+		}).count();
+	}
+}
@@ -0,0 +1,31 @@
+package tanvir.project.sudoku.benchmark;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * The entry point of benchmarks.jar. It takes the usual JMH command line options and always adds the GC profiler, so
+ * every score comes with the bytes allocated per operation (gc.alloc.rate.norm) and an allocation in the hot path shows
+ * up as a regression in the numbers.
+ *
+ * @author Tanvir Kaykobad
+ *
+ */
+public class BenchmarkMain {
+
+	/**
+	 * @param args JMH options, for example a regular expression selecting the benchmarks or -p corpus=HARD
+	 */
+	public static void main(String args[]) throws RunnerException, CommandLineOptionException {
+		Options options = new OptionsBuilder()
+				.parent(new CommandLineOptions(args))
+				.addProfiler(GCProfiler.class)
+				.build();
+		new Runner(options).run();
+	}
+}
@@ -0,0 +1,77 @@
+package tanvir.project.sudoku.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import tanvir.project.sudoku.cache.SolutionCache;
+import tanvir.project.sudoku.cache.SymmetryTransform;
+import tanvir.project.sudoku.engine.Board;
+import tanvir.project.sudoku.engine.CellSelection;
+import tanvir.project.sudoku.engine.SudokuEngine;
+
+/**
+ * The latency of answering a puzzle from the solution cache, and of canonicalizing a puzzle, which is what a relabelled
+ * or permuted copy of a cached puzzle costs on its first lookup. The cache is filled with the whole collection before
+ * measuring, so every lookup is a hit.
+ *
+ * @author Tanvir Kaykobad
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CacheBenchmark {
+
+	@Param({"EASY", "HARD", "SEVENTEEN"})
+	public Corpus corpus;
+
+	private int[][][] maps;
+	private Board[] boards;
+	private SolutionCache cache;
+	private int next;
+
+	@Setup
+	public void setup() {
+		maps = corpus.getMaps();
+		boards = new Board[maps.length];
+		//each puzzle takes an entry for itself and one for its representative
+		cache = new SolutionCache(2*Corpus.SIZE);
+		for(int i=0;i<maps.length;i++) {
+			boards[i] = Board.of(maps[i]);
+			cache.getSolution(boards[i], true, (puzzle, transform) -> new SudokuEngine(puzzle, CellSelection.MINIMUM_REMAINING_VALUES).getSolutionBoard());
+		}
+		next = 0;
+	}
+
+	private int nextPuzzle() {
+		int puzzle = next;
+		next = next+1==maps.length ? 0 : next+1;
+		return puzzle;
+	}
+
+	@Benchmark
+	public Board hit() {
+		return cache.getSolution(boards[nextPuzzle()], true, (puzzle, transform) -> {
+			throw new IllegalStateException("Puzzle missing from the cache");
+		});
+	}
+
+	@Benchmark
+	public SymmetryTransform canonicalize() {
+		return SymmetryTransform.canonicalize(maps[nextPuzzle()]);
+	}
+}
@@ -0,0 +1,126 @@
+package tanvir.project.sudoku.benchmark;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import tanvir.project.sudoku.engine.LockstepSolver;
+import tanvir.project.sudoku.engine.SudokuEngine;
+
+/**
+ * The puzzle collections the benchmarks run against. Each collection is a resource in the corpora folder with one 9x9
+ * puzzle per line, written as 81 characters with '.' for the empty cells.
+ *
+ * @author Tanvir Kaykobad
+ *
+ */
+public enum Corpus {
+	/**
+	 * Puzzles with 36 clues that are solved by naked singles alone.
+	 */
+	EASY,
+
+	/**
+	 * Minimal puzzles that needed the most guesses among a batch of generated ones, with Arto Inkala's puzzle, AI Escargot
+	 * and relabelled copies of both.
+	 */
+	HARD,
+
+	/**
+	 * Puzzles with 17 clues, the fewest a puzzle with a unique solution can have.
+	 */
+	SEVENTEEN,
+
+	/**
+	 * Puzzles that break none of the rules but have no solution, so the whole search tree is visited.
+	 */
+	UNSOLVABLE,
+
+	/**
+	 * Complete grids.
+	 */
+	SOLVED,
+
+	/**
+	 * Hard and 17-clue puzzles with two clues removed, which leaves them with between 2 and 5000 solutions.
+	 */
+	MULTIPLE,
+
+	/**
+	 * Puzzles breaking one of the row, column or sub-matrix rules, including the "No Solution" sample of SudokuMap.
+	 */
+	INVALID;
+
+	/**
+	 * The number of puzzles in each collection, used by the benchmarks that solve a whole collection per operation.
+	 */
+	public static final int SIZE = 50;
+
+	private static final int CELLS = 81;
+
+	/**
+	 * @return the puzzles of the collection, as lines of 81 characters
+	 */
+	public String[] getPuzzles() {
+		String resource = "/corpora/"+name().toLowerCase()+".txt";
+		List<String> puzzles = new ArrayList<>();
+		try (InputStream stream = Corpus.class.getResourceAsStream(resource)) {
+			if(stream==null) {
+				throw new IllegalStateException("Missing corpus "+resource);
+			}
+			BufferedReader reader = new BufferedReader(new InputStreamReader(stream, StandardCharsets.US_ASCII));
+			for(String line=reader.readLine();line!=null;line=reader.readLine()) {
+				if(!line.isEmpty()) {
+					puzzles.add(line);
+				}
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		if(puzzles.size()!=SIZE) {
+			throw new IllegalStateException("Corpus "+resource+" must have "+SIZE+" puzzles");
+		}
+		return puzzles.toArray(new String[SIZE]);
+	}
+
+	/**
+	 * @return the puzzles of the collection as 2d integer maps, where 0 marks an empty cell
+	 */
+	public int[][][] getMaps() {
+		String[] puzzles = getPuzzles();
+		int[][][] maps = new int[puzzles.length][9][9];
+		for(int p=0;p<puzzles.length;p++) {
+			for(int cell=0;cell<CELLS;cell++) {
+				maps[p][cell/9][cell%9] = toDigit(puzzles[p].charAt(cell));
+			}
+		}
+		return maps;
+	}
+
+	/**
+	 * Loads a puzzle into an engine created for 9x9 boards, without allocating.
+	 */
+	public static void load(SudokuEngine engine, String puzzle) {
+		for(int cell=0;cell<CELLS;cell++) {
+			engine.setCell(cell, toDigit(puzzle.charAt(cell)));
+		}
+	}
+
+	/**
+	 * Loads a puzzle into a lane of a lock-step solver, without allocating.
+	 */
+	public static void load(LockstepSolver solver, int lane, String puzzle) {
+		for(int cell=0;cell<CELLS;cell++) {
+			solver.setCell(lane, cell, toDigit(puzzle.charAt(cell)));
+		}
+	}
+
+	private static int toDigit(char next) {
+		return next>='1' && next<='9' ? next-'0' : 0;
+	}
+}
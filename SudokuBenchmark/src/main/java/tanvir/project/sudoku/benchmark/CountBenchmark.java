@@ -0,0 +1,124 @@
+package tanvir.project.sudoku.benchmark;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import tanvir.project.sudoku.engine.CellSelection;
+import tanvir.project.sudoku.engine.SudokuEngine;
+import tanvir.project.sudoku.thread.ParallelSudokuEngine;
+
+/**
+ * The time taken to check that a puzzle has a unique solution, and to count the solutions of puzzles that have many.
+ * Counting is compared with enumerating the solutions through SudokuEngine.solutions(), sequentially and as a parallel
+ * stream. The attempts and solutions found are reported next to the score as secondary results; the streams report
+ * solutions only.
+ *
+ * @author Tanvir Kaykobad
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CountBenchmark {
+
+	/**
+	 * The attempts and solutions of the measured operations, reported by JMH as totals per iteration.
+	 */
+	@State(Scope.Thread)
+	@AuxCounters(AuxCounters.Type.EVENTS)
+	public static class Counters {
+		public long attempts;
+		public long solutions;
+
+		@Setup(Level.Iteration)
+		public void reset() {
+			attempts = 0;
+			solutions = 0;
+		}
+	}
+
+	@Param({"HARD", "SEVENTEEN", "UNSOLVABLE", "MULTIPLE"})
+	public Corpus corpus;
+
+	private String[] puzzles;
+	private int[][][] maps;
+	private SudokuEngine engine;
+	private int next;
+
+	@Setup
+	public void setup() {
+		puzzles = corpus.getPuzzles();
+		maps = corpus.getMaps();
+		engine = new SudokuEngine(9, CellSelection.MINIMUM_REMAINING_VALUES);
+		engine.setPropagationEnabled(true);
+		next = 0;
+	}
+
+	private int nextPuzzle() {
+		int puzzle = next;
+		next = next+1==puzzles.length ? 0 : next+1;
+		return puzzle;
+	}
+
+	@Benchmark
+	public boolean isUnique(Counters counters) {
+		Corpus.load(engine, puzzles[nextPuzzle()]);
+		long before = engine.getNumberOfAttempts();
+		boolean unique = engine.isUnique();
+		counters.attempts += engine.getNumberOfAttempts() - before;
+		counters.solutions += unique ? 1 : 0;
+		return unique;
+	}
+
+	@Benchmark
+	public long countSolutions(Counters counters) {
+		Corpus.load(engine, puzzles[nextPuzzle()]);
+		long before = engine.getNumberOfAttempts();
+		long count = engine.countSolutions(Long.MAX_VALUE);
+		counters.attempts += engine.getNumberOfAttempts() - before;
+		counters.solutions += count;
+		return count;
+	}
+
+	@Benchmark
+	public long countSolutionsParallel(Counters counters) {
+		ParallelSudokuEngine parallelEngine = new ParallelSudokuEngine(maps[nextPuzzle()], ForkJoinPool.commonPool());
+		long count = parallelEngine.countSolutions(Long.MAX_VALUE);
+		counters.attempts += parallelEngine.getNumberOfAttempts();
+		counters.solutions += count;
+		return count;
+	}
+
+	@Benchmark
+	public long solutionsStream(Counters counters) {
+		Corpus.load(engine, puzzles[nextPuzzle()]);
+		long count = engine.solutions().count();
+		counters.solutions += count;
+		return count;
+	}
+
+	@Benchmark
+	public long solutionsParallelStream(Counters counters) {
+		Corpus.load(engine, puzzles[nextPuzzle()]);
+		long count = engine.solutions().parallel().count();
+		counters.solutions += count;
+		return count;
+	}
+}
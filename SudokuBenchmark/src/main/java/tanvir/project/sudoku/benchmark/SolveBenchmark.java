@@ -0,0 +1,101 @@
+package tanvir.project.sudoku.benchmark;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import tanvir.project.sudoku.engine.CellSelection;
+import tanvir.project.sudoku.engine.DancingLinksEngine;
+import tanvir.project.sudoku.engine.SudokuEngine;
+import tanvir.project.sudoku.thread.ParallelSudokuEngine;
+
+/**
+ * The latency of solving a single puzzle the way the webapplication does: an engine is created for the puzzle and
+ * solveRecursively returns a copy of the solution. Each operation takes the next puzzle of the collection, and the
+ * sampled times give the percentiles over the whole collection. The PARALLEL engine solves each puzzle on all threads
+ * of the common fork join pool.
+ *
+ * @author Tanvir Kaykobad
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SolveBenchmark {
+
+	/**
+	 * The engine configurations compared by the benchmark.
+	 */
+	public enum Engine {
+		ROW_MAJOR {
+			@Override
+			Object solve(int[][] map) {
+				return new SudokuEngine(map, CellSelection.ROW_MAJOR).solveRecursively();
+			}
+		},
+		MINIMUM_REMAINING_VALUES {
+			@Override
+			Object solve(int[][] map) {
+				return new SudokuEngine(map, CellSelection.MINIMUM_REMAINING_VALUES).solveRecursively();
+			}
+		},
+		PROPAGATION {
+			@Override
+			Object solve(int[][] map) {
+				SudokuEngine engine = new SudokuEngine(map, CellSelection.MINIMUM_REMAINING_VALUES);
+				engine.setPropagationEnabled(true);
+				return engine.solveRecursively();
+			}
+		},
+		DANCING_LINKS {
+			@Override
+			Object solve(int[][] map) {
+				return new DancingLinksEngine(map).solve();
+			}
+		},
+		PARALLEL {
+			@Override
+			Object solve(int[][] map) {
+				return new ParallelSudokuEngine(map, ForkJoinPool.commonPool()).solve();
+			}
+		};
+
+		abstract Object solve(int[][] map);
+	}
+
+	@Param({"EASY", "HARD", "SEVENTEEN", "UNSOLVABLE", "SOLVED"})
+	public Corpus corpus;
+
+	@Param({"ROW_MAJOR", "MINIMUM_REMAINING_VALUES", "PROPAGATION", "DANCING_LINKS", "PARALLEL"})
+	public Engine engine;
+
+	private int[][][] maps;
+	private int next;
+
+	@Setup
+	public void setup() {
+		maps = corpus.getMaps();
+		next = 0;
+	}
+
+	@Benchmark
+	public Object solve() {
+		int[][] map = maps[next];
+		next = next+1==maps.length ? 0 : next+1;
+		return engine.solve(map);
+	}
+}
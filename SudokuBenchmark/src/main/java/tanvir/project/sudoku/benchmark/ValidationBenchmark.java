@@ -0,0 +1,94 @@
+package tanvir.project.sudoku.benchmark;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import tanvir.project.sudoku.batch.GridValidator;
+import tanvir.project.sudoku.engine.CellSelection;
+import tanvir.project.sudoku.engine.SudokuEngine;
+
+/**
+ * The time SudokuEngine.isValid takes per puzzle, which the webapplication runs for the validate button and before
+ * every solve. The INVALID collection measures the path that builds the error message, which validate() skips by only
+ * returning the conflicts. The grids benchmark checks the collection as the completed grids of an import with
+ * GridValidator, which only the SOLVED collection passes.
+ *
+ * @author Tanvir Kaykobad
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ValidationBenchmark {
+
+	@Param({"EASY", "HARD", "SEVENTEEN", "UNSOLVABLE", "SOLVED", "INVALID"})
+	public Corpus corpus;
+
+	private SudokuEngine[] engines;
+	private ByteBuffer grids;
+
+	@Setup
+	public void setup() {
+		String[] puzzles = corpus.getPuzzles();
+		engines = new SudokuEngine[puzzles.length];
+		for(int p=0;p<puzzles.length;p++) {
+			//the board constructors reject the INVALID collection, setCell does not check the rules
+			engines[p] = new SudokuEngine(9, CellSelection.ROW_MAJOR);
+			Corpus.load(engines[p], puzzles[p]);
+		}
+		grids = ByteBuffer.wrap(String.join("", puzzles).getBytes(StandardCharsets.US_ASCII));
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(Corpus.SIZE)
+	public void isValid(Blackhole blackhole) {
+		for(SudokuEngine engine:engines) {
+			try {
+				blackhole.consume(engine.isValid());
+			} catch (IllegalArgumentException e) {
+				blackhole.consume(e);
+			}
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(Corpus.SIZE)
+	public void validate(Blackhole blackhole) {
+		for(SudokuEngine engine:engines) {
+			blackhole.consume(engine.validate());
+		}
+	}
+
+	/**
+	 * @return the number of valid grids
+	 */
+	@Benchmark
+	@OperationsPerInvocation(Corpus.SIZE)
+	public int grids() {
+		int valid = 0;
+		for(int p=0;p<Corpus.SIZE;p++) {
+			if(GridValidator.isSolution(grids, p*81)) {
+				valid++;
+			}
+		}
+		return valid;
+	}
+}
@@ -1,23 +1,30 @@
 package tanvir.project.sudoku;
 
 import java.io.Serializable;
+import java.util.AbstractList;
 import java.util.LinkedHashMap;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
 
 import javax.annotation.PostConstruct;
 import javax.faces.application.FacesMessage;
 import javax.faces.context.FacesContext;
 import javax.faces.view.ViewScoped;
+import javax.inject.Inject;
 import javax.inject.Named;
 
 import org.apache.log4j.LogManager;
 import org.apache.log4j.Logger;
+import org.primefaces.PrimeFaces;
 
-import tanvir.project.sudoku.engine.SudokuEngine;
-import tanvir.project.sudoku.thread.SudokuRunner;
+import tanvir.project.sudoku.cache.SolutionCache;
+import tanvir.project.sudoku.engine.Board;
+import tanvir.project.sudoku.rating.Hint;
+import tanvir.project.sudoku.rating.Rating;
+import tanvir.project.sudoku.session.BoardSession;
 
 
 /**
@@ -38,28 +45,37 @@ public class Bean implements Serializable{
 	private static final Logger LOGGER = LogManager.getLogger(Bean.class);
 	
 	/**
-	 * This map is used to fill the sudoku board on index.xhtml file
+	 * The time in milliseconds the request submitting a task waits for it, before leaving it to the poll of the page.
 	 */
-	private Character[][] map;
+	private static final long QUICK_WAIT = 200;
+	
+	/**
+	 * The message shown when the solve scheduler turns a solve away.
+	 */
+	private static final String BUSY_MESSAGE = "The server is busy, try again later";
+	
+	/**
+	 * The sudoku board on index.xhtml file. The page edits it cell by cell through {@link #getMap()}, and the session
+	 * keeps the candidates of the cells up to date with each edit.
+	 */
+	private BoardSession session;
 	/**
 	 * The possible options (1-9 and none) for the dropdown menus on the sudoku board
 	 */
 	private Map<String,Object> possibleValues;
     
 	/**
-	 * The SudokuEngine class is used to validate and solve the sudoku puzzle.
+	 * Solves the puzzles, answering repeated ones from the solution cache and the puzzle store.
 	 */
-    private SudokuEngine engine = null;
-    
-    /**
-     * The number of threads for solving sudoku
-     */
-	private int threadNum;
+	@Inject
+	private SolveService service;
 	
 	/**
-	 * Possible number of threads 
+	 * The task running in the background, or null: a solve, the count of a validation or a new puzzle. The page polls
+	 * {@link #checkProgress()} while there is one, and onDone shows its result once it is over.
 	 */
-	private Map<String,Object> possibleThreadValues;
+	private transient SolveJob<?> job;
+	private transient Runnable onDone;
     
     
     /**
@@ -75,12 +91,6 @@ public class Bean implements Serializable{
 				possibleValues.put(""+i,i);
 			}
 			possibleValues.put(" ",' ');
-			
-			possibleThreadValues = new LinkedHashMap<String,Object>();
-			for(Integer i=1;i<=20;i++) {
-				possibleThreadValues.put(""+i,i);
-			}
-			threadNum=4;
 		}
 	}
 	
@@ -88,10 +98,10 @@ public class Bean implements Serializable{
 	 * Logs the map for debugging purposes
 	 */
 	public void logMap() {
-		for(int i=0;i<map.length;i++) {
+		for(int i=0;i<Board.SIZE;i++) {
 			StringBuilder sb = new StringBuilder();
-			for(int j=0; j<map[0].length;j++) {
-				sb.append(map[i][j]+" ");
+			for(int j=0;j<Board.SIZE;j++) {
+				sb.append(Board.toSymbol(session.get(i*Board.SIZE+j))+" ");
 			}
 			LOGGER.info(sb.toString());
 		}
@@ -99,159 +109,177 @@ public class Bean implements Serializable{
 
 	/**
 	 * Validates the sudoku board. If not valid, a detailed message is given to show any error. 
+	 * A valid board is also checked for having exactly one solution, which is what makes it a well-formed puzzle, and
+	 * such a puzzle is rated. The count and the rating run on the solve scheduler like any solve, in the background.
 	 */
 	public void validateSudoku() {
+		if(isBusy()) {
+			return;
+		}
+		Board board = session.getBoard();
+		SolveJob<Long> counting;
 		try {
-			validateSudoku(map);
-    		addMessage("Board is valid.");
+			counting = service.countSolutions(board, 2);
 		} catch(IllegalArgumentException e) {
 			addErrorMessage(e.getLocalizedMessage());
+			return;
+		} catch(RejectedExecutionException e) {
+			addErrorMessage(BUSY_MESSAGE);
+			return;
 		}
+		start(counting, () -> {
+			long solutions = counting.getResult();
+			if(solutions<0) {
+				addMessage("Board is valid. Could not tell within "+service.getTimeLimit()+"ms whether it has a unique solution.");
+			} else if(solutions==0) {
+				addErrorMessage("Board is valid, but has no solution.");
+			} else if(solutions==1) {
+				rate(board);
+			} else {
+				addMessage("Board is valid, but has more than one solution.");
+			}
+		});
 	}
 	
 	/**
-	 * Validates the sudoku board. Throws IllegalArgumentException if the map is not valid
+	 * Rates a board with a unique solution in the background.
 	 */
-	private void validateSudoku(Character[][] map) throws IllegalArgumentException{
-    	try {
-    		sanatizeBoard(map);
-    		SudokuEngine engine = new SudokuEngine(map);
-    	} catch(IllegalArgumentException e) {
-    		throw e;
-    	}
+	private void rate(Board board) {
+		SolveJob<Rating> rating;
+		try {
+			rating = service.rate(board);
+		} catch(RejectedExecutionException e) {
+			addErrorMessage(BUSY_MESSAGE);
+			return;
+		}
+		start(rating, () -> addMessage("Board is valid and has a unique solution. Hardest technique needed: "+rating.getResult()+"."));
 	}
 	
 	/**
-	 * Solves the sudoku board using the SudokuEngine. Notes the time taken in milliseconds, and notifies if the board is not solvable.
+	 * Solves the sudoku board with {@link SolveService} in the background. Puzzles solved before, or equivalent to one
+	 * solved before, are answered from the solution cache or the puzzle store without solving.
 	 */
     public void solveSudoku() {
-    	if(map!=null) {
-    		sanatizeBoard(map);
-    		logMap();
-    	} else {
-    		LOGGER.error("ButtonAction: map is null");
+    	if(isBusy()) {
+    		return;
     	}
-    	
+    	logMap();
+    	SolveJob<SolveResult> solving;
     	try {
-    		long startTime = System.currentTimeMillis();
-
-    		engine = new SudokuEngine(map);
-
-    		Character[][] solution = engine.getSolution();
-    		Long attempt = engine.getNumberOfAttempts();
-    		if(solution==null) {
-    			addErrorMessage("No solution exists");    			
-    		} else {
-    			map = solution;
+    		solving = service.submit(session.getBoard());
+    	} catch(RejectedExecutionException e) {
+    		addErrorMessage(BUSY_MESSAGE);
+    		return;
+    	}
+    	addMessage("Searching possible solution");
+    	start(solving, () -> finish(solving.getResult()));
+    }
+    
+    /**
+     * @return true, with an error message, if a task is running already
+     */
+    private boolean isBusy() {
+    	if(job!=null) {
+    		addErrorMessage("Wait for the running task to finish, or cancel it");
+    		return true;
+    	}
+    	return false;
+    }
+    
+    /**
+     * Waits shortly for a task, so that easy boards are answered by the request that submitted them. Otherwise the page
+     * polls {@link #checkProgress()} until the task is over.
+     * @param onDone shows the result of the task once it is over
+     */
+    private void start(SolveJob<?> task, Runnable onDone) {
+    	job = task;
+    	this.onDone = onDone;
+    	task.await(QUICK_WAIT, TimeUnit.MILLISECONDS);
+    	checkProgress();
+    	if(job!=null) {
+    		PrimeFaces.current().ajax().addCallbackParam("solving", true);
+    	}
+    }
+    
+    /**
+     * Called by the poll of the page while a task is running. Shows the result once the task is over.
+     */
+    public void checkProgress() {
+    	if(job!=null && job.isDone()) {
+    		Runnable done = onDone;
+    		job = null;
+    		onDone = null;
+    		try {
+    			done.run();
+    		} catch(CancellationException e) {
+    			//cancelled by the scheduler shutting down
+    			addErrorMessage("Solving was cancelled");
+    		} catch(IllegalStateException e) {
+    			addErrorMessage((e.getCause()!=null ? e.getCause() : e).getLocalizedMessage());
     		}
-    		addMessage("Searching possible solution");
-
-    		long endTime = System.currentTimeMillis();
-    		addMessage("Time: " + (endTime-startTime) + "ms, Attempts: "+attempt); 
-    		
-    	} catch(IllegalArgumentException e) {
-    		addErrorMessage(e.getLocalizedMessage());
     	}
     }
     
-	/**
-	 * Solves the sudoku board using threads. If any of the threads finds the solution, all the threads are requested to be terminated. 
-	 * If any solution is found, the board is updated with the solution. Notifies the user the time taken by the process, 
-	 * and if the puzzle has a solution exists.
-	 */
-    public void solveSudokuUsingThreads() {
-    	if(map!=null) {
-    		sanatizeBoard(map);
-    		logMap();
-    	} else {
-    		LOGGER.error("ButtonAction: map is null");
+    /**
+     * Cancels the running task. The engine stops at its next check, and the board is left as it was.
+     */
+    public void cancelSolve() {
+    	if(job!=null) {
+    		job.cancel();
+    		addErrorMessage("Solving was cancelled after "+job.getAttempts()+" attempts");
+    		job = null;
+    		onDone = null;
+    	}
+    }
+    
+    /**
+     * Shows the result of the solve, and updates the board with the solution if there is one.
+     */
+    private void finish(SolveResult result) {
+    	switch(result.getStatus()) {
+    	case SOLVED:
+    		session.load(result.getBoard());
+    		break;
+    	case NO_SOLUTION:
+    		addErrorMessage("No solution exists");
+    		break;
+    	default:
+    		addErrorMessage(result.getMessage());
     		return;
     	}
     	
-    	long startTime = System.currentTimeMillis();
-    	List<Character[][]> solutionList = new LinkedList<Character[][]>();
-    	
-    	//create maps
-    	ConcurrentLinkedQueue<Character[][]> taskList = new ConcurrentLinkedQueue<Character[][]>(); 
-		Character[][] polledMap = getCopy(map);
-		taskList.add(polledMap);
-		
-		polledMap = taskList.poll();
-		for(int i=0;i<9 && taskList.size()<100;i++) {
-			for(int j=0;j<9 && taskList.size()<100;j++){
-				if(polledMap[i][j]==' ') {
-					for(Character insert='1'; insert<='9'; insert++) {
-						Character[][] subTaskMap = getCopy(polledMap);
-						subTaskMap[i][j]=insert;
-						try {
-							validateSudoku(subTaskMap);
-							taskList.add(subTaskMap);
-						} catch(Exception e) {
-							
-						}
-					}
-				}
-			}
-		}
-    	
-    	//create threads
-    	try {
-    		
-    		SudokuRunner[] runnerList = new SudokuRunner[threadNum];
-    		for(int i=0;i<threadNum;i++) {
-    			runnerList[i] = new SudokuRunner(taskList, solutionList, i);
-    		}
-    		for(SudokuRunner runner:runnerList) {
-    			runner.run();
-    		}
-    		
-    		boolean alive = true;
-    		while(solutionList.isEmpty() && alive) {
-    			try {
-    				alive = false;
-    				for(int i=0;i<threadNum;i++) {
-    					if(runnerList[i].isRunning()) {
-    						alive = true;
-    						break;
-    					}
-    				}
-					Thread.sleep(1);
-				} catch (InterruptedException e) {
-					// TODO Auto-generated catch block
-					e.printStackTrace();
-				}
-    		}
-    		for(SudokuRunner runner:runnerList) {
-    			runner.setStopRequested(true);
-    		}    		
-
-    		if(solutionList.isEmpty()) {
-    			addErrorMessage("No solution exists");    			
-    		} else {
-    			map = solutionList.get(0);
-    		}
-//    		addMessage("Searching possible solution");
-
-    		long endTime = System.currentTimeMillis();
-    		addMessage("Time taken: " + (endTime-startTime) + "ms"); 
-    	} catch(IllegalArgumentException e) {
-    		addErrorMessage(e.getLocalizedMessage());
+    	if(result.getSource()==SolveResult.Source.STORE) {
+    		addMessage("Time: " + result.getTime() + "us, answered from the puzzle store (Attempts: "+result.getAttempts()+")");
+    	} else if(result.getSource()==SolveResult.Source.CACHE) {
+    		SolutionCache cache = service.getCache();
+    		addMessage("Time: " + result.getTime() + "us, answered from the solution cache ("+cache.getHits()+" hits, "+cache.getMisses()+" misses)");
+    	} else {
+    		addMessage("Time: " + result.getTime()/1000 + "ms, Attempts: "+result.getAttempts()+", Propagations: "+result.getPropagations());
     	}
     }
     
-    private Character[][] getCopy(Character[][] map){
-    	if(map==null) {
-    		return null;
+    /**
+     * @return true while a task is running
+     */
+    public boolean isSolving() {
+    	return job!=null;
+    }
+    
+    /**
+     * @return the progress of the running task, as shown on the page
+     */
+    public String getProgress() {
+    	SolveJob<?> current = job;
+    	if(current==null) {
+    		return "";
     	}
-    	Character[][] copy = new Character[map.length][map[0].length];
-    	for(int i=0;i<map.length;i++) {
-    		for(int j=0;j<map[0].length;j++) {
-    			copy[i][j]=map[i][j];
-    		}
+    	if(current.getAttempts()==0) {
+    		//counts and new puzzles report no progress
+    		return "Working for "+current.getElapsed()+"ms";
     	}
-    	return copy;
+    	return "Solving for "+current.getElapsed()+"ms, Attempts: "+current.getAttempts()+", Cells filled: "+current.getDepth()+" of 81";
     }
- 
+    
     /**
      * Helper method to push notification to the front end
      * @param summary
@@ -274,14 +302,48 @@ public class Bean implements Serializable{
      * Clears the board.
      */
     public void clearBoard() {
-    	map = new Character[9][9];
-    	for(int i=0;i<9;i++) {
-    		for(int j=0;j<9;j++) {
-    			map[i][j]=' ';
-    		}
+    	session = new BoardSession(Board.EMPTY);
+    }
+    
+    /**
+     * Shows the next digit that can be placed by logic alone, with the technique that finds it.
+     */
+    public void hint() {
+    	if(session.hasConflicts()) {
+    		addErrorMessage("The board breaks a rule, press Validate Board to see which");
+    		return;
+    	}
+    	Hint hint = session.nextHint();
+    	if(hint!=null) {
+    		addMessage(hint.toString());
+    	} else if(session.getBoard().isComplete()) {
+    		addMessage("The board is complete");
+    	} else {
+    		addErrorMessage("No digit can be placed without guessing, or the board has no solution");
     	}
     }
     
+    /**
+     * Replaces the board with a newly generated puzzle, which has a single solution, generated in the background.
+     */
+    public void newBoard() {
+    	if(isBusy()) {
+    		return;
+    	}
+    	SolveJob<Board> generating;
+    	try {
+    		generating = service.generatePuzzle();
+    	} catch(RejectedExecutionException e) {
+    		addErrorMessage(BUSY_MESSAGE);
+    		return;
+    	}
+    	start(generating, () -> {
+    		Board board = generating.getResult();
+    		session = new BoardSession(board);
+    		addMessage("New puzzle with "+board.getGivens()+" clues");
+    	});
+    }
+    
     /**
      * Saves default values to the board.
      */
@@ -297,17 +359,16 @@ public class Bean implements Serializable{
 //			{null,	5,		null,	1,		null,	null,	null,	6,		4},
 //			{null,	null,	1,		null,	5,		null,	null,	null,	null}
 //		};
-		map = new Character[][]{
-			{'1',	' ',	'8',	' ',	' ',	'6',	'9',	'2',	' '},
-			{' ',	'2',	' ',	'4',	'9',	' ',	'1',	' ',	' '},
-			{' ',	'6',	' ',	' ',	' ',	' ',	' ',	'4',	'5'},
-			{' ',	' ',	'3',	' ',	'7',	' ',	' ',	' ',	' '},
-			{' ',	'9',	' ',	' ',	' ',	' ',	'2',	' ',	'3'},
-			{' ',	' ',	' ',	' ',	' ',	'5',	' ',	' ',	'9'},
-			{'9',	' ',	' ',	' ',	' ',	' ',	' ',	'8',	' '},
-			{' ',	'5',	' ',	'1',	' ',	' ',	' ',	'6',	'4'},
-			{' ',	' ',	'1',	' ',	'5',	' ',	' ',	' ',	' '}
-		};
+		session = new BoardSession(Board.parse(
+			"1.8..692."+
+			".2.49.1.."+
+			".6.....45"+
+			"..3.7...."+
+			".9....2.3"+
+			".....5..9"+
+			"9......8."+
+			".5.1...64"+
+			"..1.5...."));
 //		map = new String[][]{
 //			{"1",	"0",	"8",	"0",	"0",	"6",	"9",	"2",	"0"},
 //			{"0",	"2",	"0",	"4",	"9",	"0",	"1",	"0",	"0"},
@@ -333,45 +394,61 @@ public class Bean implements Serializable{
 		this.possibleValues = possibleValues;
 	}
 
-	public Character[][] getMap() {
-		return map;
+	/**
+	 * @return the rows of the board, as shown and edited by the page. Setting a cell updates the session of the bean.
+	 */
+	public List<List<Character>> getMap() {
+		return new Rows();
 	}
 
-	public void setMap(Character[][] mapInput) {
-		this.map = mapInput;
-		sanatizeBoard(map);
+	/**
+	 * @return the board
+	 */
+	public Board getBoard() {
+		return session.getBoard();
 	}
 	
-	public int getThreadNum() {
-		return threadNum;
-	}
-
-	public void setThreadNum(int threadNum) {
-		this.threadNum = threadNum;
-	}
-
-	public synchronized Map<String, Object> getPossibleThreadValues() {
-		return possibleThreadValues;
-	}
+	/**
+	 * The rows of the board, read and written by the data table of the page.
+	 */
+	private class Rows extends AbstractList<List<Character>> {
+		@Override
+		public List<Character> get(int row) {
+			return new Row(row);
+		}
 
-	public synchronized void setPossibleThreadValues(Map<String, Object> possibleThreadValues) {
-		this.possibleThreadValues = possibleThreadValues;
+		@Override
+		public int size() {
+			return Board.SIZE;
+		}
 	}
 
 	/**
-	 * For an unknown reason the empty cells of the boards were becoming null instead of ' ' (a space character). 
-	 * As a workaround this method sanitizes the board whenever it is updated by the front end.
-	 * @param map The sanitized sudoku board.
+	 * The cells of a row of the board as symbols of the page, ' ' for an empty cell. An empty cell used to come back
+	 * from the page as null instead of ' ', so both are read as an empty cell.
 	 */
-	public void sanatizeBoard(Character[][] map) {
-		if(map!=null) {
-			for(int i=0; i<9; i++) {
-				for(int j=0; j<9; j++) {
-					if(map[i][j]==null) {
-						map[i][j]=' ';
-					}
-				}
-			}
+	private class Row extends AbstractList<Character> {
+		private final int row;
+
+		Row(int row) {
+			this.row = row;
+		}
+
+		@Override
+		public Character get(int col) {
+			return Board.toSymbol(session.get(row*Board.SIZE+col));
+		}
+
+		@Override
+		public Character set(int col, Character symbol) {
+			Character previous = get(col);
+			session.set(row*Board.SIZE+col, Board.toDigit(symbol));
+			return previous;
+		}
+
+		@Override
+		public int size() {
+			return Board.SIZE;
 		}
 	}
-}
\ No newline at end of file
+}
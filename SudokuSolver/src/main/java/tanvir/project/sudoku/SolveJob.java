@@ -0,0 +1,132 @@
+package tanvir.project.sudoku;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import tanvir.project.sudoku.engine.CancellationToken;
+import tanvir.project.sudoku.engine.ProgressListener;
+
+/**
+ * A solve running in the background on the solve scheduler, see {@link SolveService#submit}, or any other task of the
+ * scheduler the page waits for, such as counting the solutions of a board or generating a puzzle. The job receives the
+ * progress of the engine, so the page can show it while the solve runs, and can be cancelled.
+ *
+ * @param <T> the type of the result
+ *
+ * @author Tanvir Kaykobad
+ *
+ */
+public class SolveJob<T> implements ProgressListener {
+	private final CancellationToken token = new CancellationToken();
+	private final long startTime = System.nanoTime();
+	private CompletableFuture<T> future;
+
+	private volatile long attempts;
+	private volatile int depth;
+
+	/**
+	 * Sets the running task of the job.
+	 */
+	void start(CompletableFuture<T> future) {
+		this.future = future;
+	}
+
+	@Override
+	public void onProgress(long attempts, int depth, long elapsed) {
+		this.attempts = attempts;
+		this.depth = depth;
+	}
+
+	/**
+	 * Stops the solve. A job still waiting for a worker leaves the queue, and a running engine gives up at its next check.
+	 */
+	public void cancel() {
+		token.cancel();
+		future.cancel(false);
+	}
+
+	/**
+	 * @return the token stopping the engine of the job
+	 */
+	CancellationToken getCancellationToken() {
+		return token;
+	}
+
+	/**
+	 * @return true once the task has finished, failed or been cancelled
+	 */
+	public boolean isDone() {
+		return future.isDone();
+	}
+
+	/**
+	 * Waits for the task to finish, fail or be cancelled, without reading its outcome.
+	 * @param timeout the longest time to wait
+	 * @param unit the unit of the timeout
+	 * @return true if the task is over
+	 */
+	public boolean await(long timeout, TimeUnit unit) {
+		try {
+			future.get(timeout, unit);
+		} catch(TimeoutException | ExecutionException | CancellationException e) {
+			//the outcome is read by getResult
+		} catch(InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		return future.isDone();
+	}
+
+	/**
+	 * Waits for the result of the task. The result of a cancelled job is dropped, even if its engine was about to finish.
+	 * @param timeout the longest time to wait
+	 * @param unit the unit of the timeout
+	 * @return the result, or null if the task has not finished within the timeout
+	 * @throws CancellationException If the job was cancelled
+	 * @throws IllegalStateException If the task failed, with the exception it failed with as the cause
+	 */
+	public T getResult(long timeout, TimeUnit unit) throws CancellationException, IllegalStateException {
+		try {
+			return future.get(timeout, unit);
+		} catch(TimeoutException e) {
+			return null;
+		} catch(InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return null;
+		} catch(ExecutionException e) {
+			throw new IllegalStateException("Solving failed", e.getCause());
+		}
+	}
+
+	/**
+	 * @return the result of the task, or null if it has not finished
+	 * @throws CancellationException If the job was cancelled
+	 * @throws IllegalStateException If the task failed, with the exception it failed with as the cause
+	 */
+	public T getResult() throws CancellationException, IllegalStateException {
+		return isDone() ? getResult(0, TimeUnit.NANOSECONDS) : null;
+	}
+
+	/**
+	 * @return the attempts of the engine so far
+	 */
+	public long getAttempts() {
+		return attempts;
+	}
+
+	/**
+	 * @return the number of cells filled on the board at the node the engine is searching
+	 */
+	public int getDepth() {
+		return depth;
+	}
+
+	/**
+	 * @return the time since the job was submitted, in milliseconds
+	 */
+	public long getElapsed() {
+		return TimeUnit.NANOSECONDS.toMillis(System.nanoTime()-startTime);
+	}
+}
@@ -0,0 +1,141 @@
+package tanvir.project.sudoku;
+
+import javax.json.bind.annotation.JsonbPropertyOrder;
+import javax.json.bind.annotation.JsonbTransient;
+
+import tanvir.project.sudoku.engine.Board;
+import tanvir.project.sudoku.engine.SolveStatus;
+
+/**
+ * The outcome of solving a puzzle with {@link SolveService}, as shown by the backing bean and returned by the REST API.
+ * Boards are written as 81 characters, row by row, with '.' for the empty cells.
+ *
+ * @author Tanvir Kaykobad
+ *
+ */
+@JsonbPropertyOrder({"puzzle", "solution", "status", "message", "source", "attempts", "propagations", "time"})
+public class SolveResult {
+
+	/**
+	 * Where the solution came from.
+	 */
+	public enum Source {
+		/**
+		 * The solution cache in memory.
+		 */
+		CACHE,
+
+		/**
+		 * The puzzle store in the database.
+		 */
+		STORE,
+
+		/**
+		 * An engine solved the puzzle.
+		 */
+		ENGINE
+	}
+
+	private String puzzle;
+	private Board board;
+	private SolveStatus status;
+	private String message;
+	private Source source;
+	private long attempts, propagations, time;
+
+	/**
+	 * @return the puzzle as given
+	 */
+	public String getPuzzle() {
+		return puzzle;
+	}
+
+	public void setPuzzle(String puzzle) {
+		this.puzzle = puzzle;
+	}
+
+	/**
+	 * @return the solution, or null if there is none
+	 */
+	public String getSolution() {
+		return board==null ? null : board.toString();
+	}
+
+	/**
+	 * @return the solution as a board, or null if there is none
+	 */
+	@JsonbTransient
+	public Board getBoard() {
+		return board;
+	}
+
+	public void setBoard(Board board) {
+		this.board = board;
+	}
+
+	/**
+	 * @return SOLVED, NO_SOLUTION, INVALID, TIMED_OUT or CANCELLED
+	 */
+	public SolveStatus getStatus() {
+		return status;
+	}
+
+	public void setStatus(SolveStatus status) {
+		this.status = status;
+	}
+
+	/**
+	 * @return why the puzzle is invalid or was not solved, or null
+	 */
+	public String getMessage() {
+		return message;
+	}
+
+	public void setMessage(String message) {
+		this.message = message;
+	}
+
+	/**
+	 * @return where the solution came from, or null if the puzzle was not solved
+	 */
+	public Source getSource() {
+		return source;
+	}
+
+	public void setSource(Source source) {
+		this.source = source;
+	}
+
+	/**
+	 * @return the attempts of the solve. For a puzzle answered from the store, the attempts of the solve that stored it.
+	 */
+	public long getAttempts() {
+		return attempts;
+	}
+
+	public void setAttempts(long attempts) {
+		this.attempts = attempts;
+	}
+
+	/**
+	 * @return the cells filled by propagation during the solve
+	 */
+	public long getPropagations() {
+		return propagations;
+	}
+
+	public void setPropagations(long propagations) {
+		this.propagations = propagations;
+	}
+
+	/**
+	 * @return the time taken to answer, in microseconds
+	 */
+	public long getTime() {
+		return time;
+	}
+
+	public void setTime(long time) {
+		this.time = time;
+	}
+}
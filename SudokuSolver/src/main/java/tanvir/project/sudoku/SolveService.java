@@ -0,0 +1,532 @@
+package tanvir.project.sudoku;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
+import javax.enterprise.concurrent.ManagedThreadFactory;
+import javax.enterprise.context.ApplicationScoped;
+import javax.enterprise.context.Initialized;
+import javax.enterprise.event.Observes;
+import javax.inject.Inject;
+import javax.servlet.ServletContext;
+
+import org.apache.log4j.LogManager;
+import org.apache.log4j.Logger;
+
+import tanvir.project.sudoku.cache.SolutionCache;
+import tanvir.project.sudoku.engine.Board;
+import tanvir.project.sudoku.engine.CellSelection;
+import tanvir.project.sudoku.engine.SolveStatus;
+import tanvir.project.sudoku.engine.SolveTimeoutException;
+import tanvir.project.sudoku.engine.Solver;
+import tanvir.project.sudoku.engine.SolverType;
+import tanvir.project.sudoku.engine.SudokuEngine;
+import tanvir.project.sudoku.generator.PuzzleGenerator;
+import tanvir.project.sudoku.metrics.SolverMetrics;
+import tanvir.project.sudoku.rating.DifficultyRater;
+import tanvir.project.sudoku.rating.Rating;
+import tanvir.project.sudoku.store.PuzzleStore;
+import tanvir.project.sudoku.store.SolvedPuzzle;
+import tanvir.project.sudoku.thread.SolveScheduler;
+
+/**
+ * Solves puzzles for the backing bean and the REST API. A puzzle is answered from the solution cache if it was solved
+ * before, and otherwise solved with the engine configured in web.xml. A puzzle that outgrows the express lane of the
+ * scheduler is also looked up by the representative of its symmetry class, in the cache and then in the puzzle store,
+ * and is queued to be stored once solved. Puzzles solved within the express lane cost less to solve again than to
+ * canonicalize, so they are neither canonicalized nor stored. The configuration is read from the context parameters
+ * of web.xml once, when the service is created.
+ *
+ * All solves of the server, from the page and from the REST API, run on one {@link SolveScheduler}: a fixed number of
+ * workers with a bounded queue, so a burst of hard puzzles is turned away with "server busy" instead of starving the
+ * server. The time limit of a solve runs from its submission, so it includes the time waiting for a worker.
+ *
+ * @author Tanvir Kaykobad
+ *
+ */
+@ApplicationScoped
+public class SolveService {
+	private static final Logger LOGGER = LogManager.getLogger(SolveService.class);
+
+	/**
+	 * The context parameter in web.xml naming the {@link SolverType} used to solve the board.
+	 */
+	private static final String SOLVER_PARAMETER = "tanvir.project.sudoku.SOLVER";
+
+	/**
+	 * The context parameter in web.xml holding the time in milliseconds after which solving gives up, so that an
+	 * adversarial puzzle cannot hold a thread for an unbounded time.
+	 */
+	private static final String TIME_LIMIT_PARAMETER = "tanvir.project.sudoku.TIME_LIMIT";
+	private static final long DEFAULT_TIME_LIMIT = 10000;
+
+	/**
+	 * The context parameter in web.xml holding the number of puzzles kept by the solution cache. A puzzle that outgrew
+	 * the express lane takes two of them, one for itself and one for the representative of its symmetry class.
+	 */
+	private static final String CACHE_SIZE_PARAMETER = "tanvir.project.sudoku.CACHE_SIZE";
+	private static final int DEFAULT_CACHE_SIZE = 10000;
+
+	/**
+	 * The context parameter in web.xml holding the number of solves waiting for a worker beyond which new solves are
+	 * rejected. A bulk request of the REST API takes at most a tenth of it, and is queued whole or not at all.
+	 */
+	private static final String QUEUE_SIZE_PARAMETER = "tanvir.project.sudoku.QUEUE_SIZE";
+	private static final int DEFAULT_QUEUE_SIZE = 1000;
+
+	/**
+	 * The part of the queue one bulk request may take at most, so that a bulk leaves room for the other requests.
+	 */
+	private static final int BULK_SHARE = 10;
+
+	/**
+	 * The context parameter in web.xml holding the number of workers solving puzzles. Defaults to the number of processors.
+	 */
+	private static final String WORKERS_PARAMETER = "tanvir.project.sudoku.WORKERS";
+
+	/**
+	 * The attempts a solve may take before it is moved to the expensive lane of the scheduler. The engine solves most
+	 * puzzles with far fewer, in a few milliseconds.
+	 */
+	private static final long EXPRESS_ATTEMPTS = 10000;
+
+	/**
+	 * The names under which the solves are recorded by the metrics.
+	 */
+	static final String SOLVE_MODE = "SOLVE", COUNT_MODE = "COUNT";
+
+	@Inject
+	private ServletContext servletContext;
+
+	/**
+	 * The solved puzzles kept in the database, looked up before solving.
+	 */
+	@Inject
+	private PuzzleStore store;
+
+	/**
+	 * Creates the threads of the scheduler, so that they run with the context of the application.
+	 */
+	@Resource
+	private ManagedThreadFactory threadFactory;
+
+	/**
+	 * Runs all solves, so that request threads do not wait for the engines.
+	 */
+	private SolveScheduler scheduler;
+
+	/**
+	 * Generates the new puzzles of the page.
+	 */
+	private final PuzzleGenerator generator = new PuzzleGenerator(System.nanoTime());
+
+	private SolverType solverType;
+	private long timeLimit;
+
+	/**
+	 * The solutions of the puzzles solved so far, shared by all users of the webapplication.
+	 */
+	private SolutionCache cache;
+
+	/**
+	 * The counters and histograms of the solves, registered in the platform MBean server while the application runs.
+	 */
+	private SolverMetrics metrics;
+
+	@PostConstruct
+	void initialize() {
+		solverType = readSolverType();
+		timeLimit = readLong(TIME_LIMIT_PARAMETER, DEFAULT_TIME_LIMIT);
+		cache = new SolutionCache((int)Math.min(Integer.MAX_VALUE, readLong(CACHE_SIZE_PARAMETER, DEFAULT_CACHE_SIZE)));
+		int workers = (int)Math.min(Integer.MAX_VALUE, readLong(WORKERS_PARAMETER, Runtime.getRuntime().availableProcessors()));
+		int queueSize = (int)Math.min(Integer.MAX_VALUE, readLong(QUEUE_SIZE_PARAMETER, DEFAULT_QUEUE_SIZE));
+		scheduler = new SolveScheduler(workers, queueSize, EXPRESS_ATTEMPTS, threadFactory);
+		metrics = new SolverMetrics(cache, scheduler);
+		metrics.register();
+	}
+
+	/**
+	 * Creates the service when the application starts rather than on the first solve, so that the metrics are
+	 * published from the start.
+	 */
+	void startup(@Observes @Initialized(ApplicationScoped.class) Object event) {
+	}
+
+	@PreDestroy
+	void shutdown() {
+		scheduler.shutdown();
+		metrics.unregister();
+	}
+
+	/**
+	 * Solves a puzzle on the scheduler, so that the request submitting it does not wait.
+	 * @param puzzle the puzzle
+	 * @return the running solve
+	 * @throws RejectedExecutionException If the scheduler does not take more solves
+	 */
+	public SolveJob<SolveResult> submit(Board puzzle) throws RejectedExecutionException {
+		SolveJob<SolveResult> job = new SolveJob<>();
+		Demotion demotion = new Demotion();
+		job.start(scheduler.submit((attemptLimit, deadline) -> solve(puzzle, job, demotion, attemptLimit, deadline), getDeadline()));
+		return job;
+	}
+
+	/**
+	 * Solves a puzzle written as 81 characters on the scheduler. Errors are reported in the result rather than thrown.
+	 * @param puzzle the puzzle row by row, with '.' or '0' for the empty cells
+	 * @return the result, once solved
+	 * @throws RejectedExecutionException If the scheduler does not take more solves
+	 */
+	public CompletableFuture<SolveResult> solveAsync(String puzzle) throws RejectedExecutionException {
+		Board board;
+		try {
+			board = Board.parse(puzzle);
+		} catch(IllegalArgumentException e) {
+			return invalid(puzzle, e);
+		}
+		Demotion demotion = new Demotion();
+		return scheduler.submit((attemptLimit, deadline) -> solve(board, null, demotion, attemptLimit, deadline), getDeadline());
+	}
+
+	/**
+	 * Solves several puzzles written as 81 characters on the scheduler, like {@link #solveAsync(String)}. The valid
+	 * puzzles are queued together, so either all of them are queued or none is.
+	 * @param puzzles the puzzles, at most {@link #getMaxBulk()}
+	 * @return the results in the order of the puzzles, once solved
+	 * @throws IllegalArgumentException If there are more puzzles than {@link #getMaxBulk()}
+	 * @throws RejectedExecutionException If the scheduler has no room for all the puzzles
+	 */
+	public List<CompletableFuture<SolveResult>> solveAllAsync(List<String> puzzles) throws IllegalArgumentException, RejectedExecutionException {
+		if(puzzles.size()>getMaxBulk()) {
+			throw new IllegalArgumentException("A bulk request must have between 1 and "+getMaxBulk()+" puzzles");
+		}
+		List<CompletableFuture<SolveResult>> futures = new ArrayList<>(puzzles.size());
+		List<SolveScheduler.Task<SolveResult>> tasks = new ArrayList<>(puzzles.size());
+		List<Integer> queued = new ArrayList<>(puzzles.size());
+		for(String puzzle:puzzles) {
+			Board board;
+			try {
+				board = Board.parse(puzzle);
+			} catch(IllegalArgumentException e) {
+				futures.add(invalid(puzzle, e));
+				continue;
+			}
+			Demotion demotion = new Demotion();
+			tasks.add((attemptLimit, deadline) -> solve(board, null, demotion, attemptLimit, deadline));
+			queued.add(futures.size());
+			futures.add(null);
+		}
+		if(!tasks.isEmpty()) {
+			List<CompletableFuture<SolveResult>> solves = scheduler.submitAll(tasks, getDeadline());
+			for(int i=0;i<solves.size();i++) {
+				futures.set(queued.get(i), solves.get(i));
+			}
+		}
+		return futures;
+	}
+
+	/**
+	 * Counts the solutions of a puzzle on the scheduler, up to a limit. The rules are checked before the count is
+	 * submitted, so that a broken rule is reported right away.
+	 * @param puzzle the puzzle
+	 * @param limit the number of solutions after which counting stops
+	 * @return the running count, whose result is the number of solutions, at most limit, or -1 if counting reached the
+	 * time limit or was cancelled
+	 * @throws IllegalArgumentException If the puzzle breaks one of the row, column or sub-matrix rules
+	 * @throws RejectedExecutionException If the scheduler does not take more solves
+	 */
+	public SolveJob<Long> countSolutions(Board puzzle, long limit) throws IllegalArgumentException, RejectedExecutionException {
+		SudokuEngine engine = new SudokuEngine(puzzle, CellSelection.MINIMUM_REMAINING_VALUES);
+		engine.setPropagationEnabled(true);
+		SolveJob<Long> job = new SolveJob<>();
+		engine.setCancellationToken(job.getCancellationToken());
+		engine.setProgressListener(job);
+		Demotion demotion = new Demotion();
+		job.start(scheduler.submit((attemptLimit, deadline) -> {
+			long startTime = System.nanoTime();
+			try {
+				bound(engine, attemptLimit, deadline);
+			} catch(SolveTimeoutException e) {
+				return -1L;
+			}
+			//a count demoted from the express lane goes on where it stopped
+			long solutions;
+			if(engine.isSuspended()) {
+				engine.resume();
+				solutions = engine.getSolutionCount();
+			} else {
+				solutions = engine.countSolutions(limit);
+			}
+			demotion.micros += (System.nanoTime()-startTime)/1000;
+			if(engine.getStatus()==SolveStatus.TIMED_OUT && isDemoted(attemptLimit, deadline)) {
+				return null;
+			}
+			metrics.recordSolve(SolverType.BACKTRACKING.name(), COUNT_MODE, engine, demotion.micros);
+			return engine.getStatus()==SolveStatus.TIMED_OUT || engine.getStatus()==SolveStatus.CANCELLED ? -1L : solutions;
+		}, getDeadline()));
+		return job;
+	}
+
+	/**
+	 * Rates a puzzle by the techniques it needs on the scheduler. Rating is not bounded by attempts, so it is queued in
+	 * the expensive lane, and the rater is stopped by the deadline and by cancelling the job.
+	 * @param puzzle the puzzle
+	 * @return the running rating. It fails with an IllegalArgumentException if the puzzle breaks one of the row, column
+	 * or sub-matrix rules, or has no solution.
+	 * @throws RejectedExecutionException If the scheduler does not take more solves
+	 */
+	public SolveJob<Rating> rate(Board puzzle) throws RejectedExecutionException {
+		SolveJob<Rating> job = new SolveJob<>();
+		job.start(scheduler.submit((attemptLimit, deadline) -> {
+			DifficultyRater rater = new DifficultyRater();
+			rater.setCancellationToken(job.getCancellationToken());
+			rater.setTimeLimit(remaining(deadline), TimeUnit.NANOSECONDS);
+			return rater.rate(puzzle);
+		}, getDeadline(), true));
+		return job;
+	}
+
+	/**
+	 * Generates a new puzzle with a single solution on the scheduler. Like rating, generating is queued in the expensive
+	 * lane and stopped by the deadline and by cancelling the job.
+	 * @return the running generation
+	 * @throws RejectedExecutionException If the scheduler does not take more solves
+	 */
+	public SolveJob<Board> generatePuzzle() throws RejectedExecutionException {
+		SolveJob<Board> job = new SolveJob<>();
+		job.start(scheduler.submit((attemptLimit, deadline) -> generator.generate(ThreadLocalRandom.current().nextLong(),
+				job.getCancellationToken(), remaining(deadline), TimeUnit.NANOSECONDS), getDeadline(), true));
+		return job;
+	}
+
+	/**
+	 * @return the deadline of a solve submitted now
+	 */
+	private long getDeadline() {
+		return System.nanoTime()+TimeUnit.MILLISECONDS.toNanos(timeLimit);
+	}
+
+	/**
+	 * Bounds an engine by the deadline of its solve, and by the attempt limit of the express lane. An engine resumed in
+	 * the expensive lane loses the attempt limit it had in the express lane.
+	 * @throws SolveTimeoutException If the deadline has passed already
+	 */
+	private static void bound(Solver engine, long attemptLimit, long deadline) throws SolveTimeoutException {
+		engine.setTimeLimit(remaining(deadline), TimeUnit.NANOSECONDS);
+		engine.setAttemptLimit(attemptLimit>0 ? attemptLimit : Long.MAX_VALUE);
+	}
+
+	/**
+	 * @return the nanoseconds left until the deadline of a solve
+	 * @throws SolveTimeoutException If the deadline has passed already
+	 */
+	private static long remaining(long deadline) throws SolveTimeoutException {
+		long remaining = deadline-System.nanoTime();
+		if(remaining<=0) {
+			throw new SolveTimeoutException("Waited for a free solver until the time limit");
+		}
+		return remaining;
+	}
+
+	/**
+	 * @return true if an engine that gave up stopped at the attempt limit of the express lane rather than at the
+	 * deadline, so the solve has to go on in the expensive lane
+	 */
+	private static boolean isDemoted(long attemptLimit, long deadline) {
+		return attemptLimit>0 && System.nanoTime()-deadline<0;
+	}
+
+	/**
+	 * What a solve carries from the express lane to the expensive lane: the backtracking engine that reached the attempt
+	 * limit, so that the expensive lane resumes its search rather than starting over, and the time the engine took so
+	 * far. The other engines cannot be resumed, and start over.
+	 */
+	private static final class Demotion {
+		SudokuEngine engine;
+		long micros;
+
+		/**
+		 * Keeps the engine if it can be resumed.
+		 * @return true if it was kept
+		 */
+		boolean keep(Solver solver) {
+			if(solver instanceof SudokuEngine && ((SudokuEngine) solver).isSuspended()) {
+				engine = (SudokuEngine) solver;
+				return true;
+			}
+			engine = null;
+			return false;
+		}
+	}
+
+	/**
+	 * Solves a puzzle through the cache and the store, see {@link SolveScheduler.Task}.
+	 * @param job the job to report the progress of the engine to and to take its cancellation token from, or null
+	 * @param demotion the engine of the solve kept from the express lane, and the time it took
+	 * @return the result, or null if the engine reached the attempt limit of the express lane
+	 */
+	private SolveResult solve(Board puzzle, SolveJob<SolveResult> job, Demotion demotion, long attemptLimit, long deadline) {
+		long startTime = System.nanoTime();
+		SolveResult result = new SolveResult();
+		result.setPuzzle(puzzle.toString());
+		result.setSource(SolveResult.Source.CACHE);
+		try {
+			//only valid puzzles are cached, and every puzzle missing from the cache meets an engine in the express lane,
+			//which checks the rules when it is created. Only the solves that outgrew the express lane are worth canonicalizing.
+			boolean express = attemptLimit>0;
+			Board solution = cache.getSolution(puzzle, !express, (board, transform) -> {
+				Board representative = transform==null ? null : transform.apply(board);
+				SolvedPuzzle stored = representative==null ? null : store.find(representative);
+				if(stored!=null) {
+					result.setSource(SolveResult.Source.STORE);
+					result.setAttempts(stored.getAttempts());
+					result.setPropagations(stored.getPropagations());
+					return stored.getSolution()==null ? null : transform.revert(stored.getSolution());
+				}
+				long solveStart = System.nanoTime();
+				boolean resumed = demotion.engine!=null;
+				Solver engine = resumed ? demotion.engine : solverType.create(board);
+				bound(engine, attemptLimit, deadline);
+				if(job!=null) {
+					engine.setCancellationToken(job.getCancellationToken());
+					engine.setProgressListener(job);
+				}
+				Board solved;
+				//a demoted solve is recorded once, when the expensive lane is done with it
+				boolean kept = false;
+				try {
+					solved = resumed ? demotion.engine.resumeSolutionBoard() : engine.getSolutionBoard();
+				} catch(SolveTimeoutException e) {
+					kept = isDemoted(attemptLimit, deadline) && demotion.keep(engine);
+					throw e;
+				} finally {
+					demotion.micros += (System.nanoTime()-solveStart)/1000;
+					if(!kept) {
+						metrics.recordSolve(solverType.name(), SOLVE_MODE, engine, demotion.micros);
+					}
+				}
+				result.setSource(SolveResult.Source.ENGINE);
+				result.setAttempts(engine.getNumberOfAttempts());
+				result.setPropagations(engine.getNumberOfPropagations());
+				if(representative!=null) {
+					store.save(new SolvedPuzzle(representative, solved==null ? null : transform.apply(solved),
+							engine.getNumberOfAttempts(), engine.getNumberOfPropagations(), demotion.micros, solverType.name()));
+				}
+				return solved;
+			});
+			result.setBoard(solution);
+			result.setStatus(solution==null ? SolveStatus.NO_SOLUTION : SolveStatus.SOLVED);
+		} catch(IllegalArgumentException e) {
+			fail(result, SolveStatus.INVALID, e.getLocalizedMessage());
+		} catch(SolveTimeoutException e) {
+			if(isDemoted(attemptLimit, deadline)) {
+				return null;
+			}
+			fail(result, SolveStatus.TIMED_OUT, "Gave up after "+timeLimit+"ms without finding a solution. "+e.getLocalizedMessage());
+		} catch(CancellationException e) {
+			fail(result, SolveStatus.CANCELLED, e.getLocalizedMessage());
+		}
+		result.setTime((System.nanoTime()-startTime)/1000);
+		if(result.getSource()!=null) {
+			metrics.recordResponse(result.getSource().name(), result.getTime());
+		}
+		return result;
+	}
+
+	/**
+	 * @return the result of a puzzle that could not be read
+	 */
+	private static CompletableFuture<SolveResult> invalid(String puzzle, IllegalArgumentException e) {
+		SolveResult result = new SolveResult();
+		result.setPuzzle(puzzle);
+		result.setStatus(SolveStatus.INVALID);
+		result.setMessage(e.getLocalizedMessage());
+		return CompletableFuture.completedFuture(result);
+	}
+
+	private static void fail(SolveResult result, SolveStatus status, String message) {
+		result.setSource(null);
+		result.setStatus(status);
+		result.setMessage(message);
+	}
+
+	/**
+	 * @return the metrics of the solves, published through JMX
+	 */
+	public SolverMetrics getMetrics() {
+		return metrics;
+	}
+
+	/**
+	 * @return the time limit of a solve in milliseconds, from the TIME_LIMIT_PARAMETER context parameter
+	 */
+	public long getTimeLimit() {
+		return timeLimit;
+	}
+
+	/**
+	 * @return the engine used to solve, from the SOLVER_PARAMETER context parameter
+	 */
+	public SolverType getSolverType() {
+		return solverType;
+	}
+
+	/**
+	 * @return the most puzzles in one bulk request: a tenth of the queue of the scheduler, from the QUEUE_SIZE_PARAMETER
+	 * context parameter
+	 */
+	public int getMaxBulk() {
+		return Math.max(1, scheduler.getQueueSize()/BULK_SHARE);
+	}
+
+	/**
+	 * @return the solution cache
+	 */
+	public SolutionCache getCache() {
+		return cache;
+	}
+
+	/**
+	 * Reads the engine to use from the SOLVER_PARAMETER context parameter. Defaults to backtracking if it is not set.
+	 */
+	private SolverType readSolverType() {
+		String solver = servletContext.getInitParameter(SOLVER_PARAMETER);
+		if(solver==null || solver.isBlank()) {
+			return SolverType.BACKTRACKING;
+		}
+		try {
+			return SolverType.valueOf(solver.trim());
+		} catch(IllegalArgumentException e) {
+			LOGGER.error("Unknown solver "+solver+", using "+SolverType.BACKTRACKING);
+			return SolverType.BACKTRACKING;
+		}
+	}
+
+	/**
+	 * Reads a positive number from a context parameter, or returns the default if it is not set or invalid.
+	 */
+	private long readLong(String parameter, long defaultValue) {
+		String value = servletContext.getInitParameter(parameter);
+		if(value==null || value.isBlank()) {
+			return defaultValue;
+		}
+		try {
+			long number = Long.parseLong(value.trim());
+			if(number>0) {
+				return number;
+			}
+		} catch(NumberFormatException e) {
+			// falls through to the default
+		}
+		LOGGER.error("Invalid value "+value+" of "+parameter+", using "+defaultValue);
+		return defaultValue;
+	}
+}
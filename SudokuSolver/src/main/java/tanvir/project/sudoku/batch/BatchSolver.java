@@ -0,0 +1,415 @@
+package tanvir.project.sudoku.batch;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+
+import tanvir.project.sudoku.engine.CellSelection;
+import tanvir.project.sudoku.engine.LockstepSolver;
+import tanvir.project.sudoku.engine.SudokuEngine;
+
+/**
+ * This class solves a file of 9x9 puzzles from the command line, for offline jobs with millions of puzzles.
+ *
+ * Every non empty line of the input holds a puzzle in its first 81 characters, left to right and top to bottom, with
+ * '1' to '9' for the given cells and '.' or '0' for the empty ones. The rest of the line is ignored. The output has one
+ * line of 81 digits per puzzle, in input order. A puzzle that is invalid or has no solution gets a line of 81 '.'.
+ *
+ * The input is memory mapped in chunks of whole lines. The lines of each chunk are counted first, which gives the
+ * position of every solution in the output file, so the chunks are then solved in parallel and written to a memory
+ * mapped output without waiting for each other. Each thread reuses one SudokuEngine, and the cells are read from and
+ * written to the mapped buffers directly, so nothing is allocated per puzzle or per cell.
+ *
+ * In lock-step mode each thread solves its puzzles {@link LockstepSolver#LANES} at a time with a LockstepSolver instead,
+ * which fills the singles of all of them in the same loops and leaves only the puzzles needing a search to SudokuEngine.
+ * The latency of a puzzle is then the time of its whole group. The solver comes from {@link LockstepSolver#create()},
+ * which is the Vector API version when built with the vector profile and run with --add-modules jdk.incubator.vector.
+ * Both pay off on large batches of easy puzzles only, the vector version about twice as much as the scalar one, and
+ * both are on par with SudokuEngine alone on hard puzzles, see the README.
+ *
+ * Usage: java tanvir.project.sudoku.batch.BatchSolver input output [threads] [lockstep]
+ *
+ * @author Tanvir Kaykobad
+ *
+ */
+public class BatchSolver {
+
+	private static final int SIZE = 9, CELLS = SIZE*SIZE;
+
+	/**
+	 * The length of an output line, including the line feed.
+	 */
+	private static final int LINE = CELLS + 1;
+
+	/**
+	 * The approximate size of a chunk of input. A chunk ends at the first line feed after this size.
+	 */
+	private static final long CHUNK_SIZE = 1 << 22;
+
+	private final Path input, output;
+	private final int threads;
+	private boolean lockstep = false;
+
+	/**
+	 * The puzzles, solved puzzles, guesses and propagations of all threads, and the puzzles lock-step mode handed to
+	 * SudokuEngine, added up once the threads are done.
+	 */
+	private long puzzles, solved, attempts, propagations, fallbacks;
+	private boolean vectorLanes;
+	private final LatencyHistogram latencies = new LatencyHistogram();
+
+	/**
+	 * Constructor
+	 * @param input the file of puzzles
+	 * @param output the file the solutions are written to. It is replaced if it exists.
+	 * @param threads the number of threads solving puzzles
+	 * @throws IllegalArgumentException If the number of threads is not positive
+	 */
+	public BatchSolver(Path input, Path output, int threads) throws IllegalArgumentException {
+		if(threads<1) {
+			throw new IllegalArgumentException("Number of threads must be positive");
+		}
+		this.input = input;
+		this.output = output;
+		this.threads = threads;
+	}
+
+	/**
+	 * Solves all puzzles of the input file.
+	 * @return the time taken in nanoseconds
+	 * @throws IOException If a file cannot be read or written
+	 * @throws InterruptedException If the thread is interrupted while waiting for the solving threads
+	 */
+	public long run() throws IOException, InterruptedException {
+		long start = System.nanoTime();
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		try (FileChannel in = FileChannel.open(input, StandardOpenOption.READ);
+				FileChannel out = FileChannel.open(output, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+						StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+			List<MappedByteBuffer> chunks = mapChunks(in);
+
+			List<Future<Integer>> counts = new ArrayList<>();
+			for(MappedByteBuffer chunk:chunks) {
+				counts.add(executor.submit(() -> countPuzzles(chunk)));
+			}
+			long[] firstPuzzle = new long[chunks.size()+1];
+			for(int c=0;c<chunks.size();c++) {
+				firstPuzzle[c+1] = firstPuzzle[c] + counts.get(c).get();
+			}
+
+			AtomicInteger nextChunk = new AtomicInteger();
+			List<Worker> workers = new ArrayList<>();
+			List<Future<?>> done = new ArrayList<>();
+			for(int t=0;t<threads;t++) {
+				Worker worker = new Worker(lockstep);
+				workers.add(worker);
+				done.add(executor.submit(() -> {
+					for(int c=nextChunk.getAndIncrement();c<chunks.size();c=nextChunk.getAndIncrement()) {
+						long puzzlesInChunk = firstPuzzle[c+1]-firstPuzzle[c];
+						if(puzzlesInChunk>0) {
+							worker.solveChunk(chunks.get(c), out.map(FileChannel.MapMode.READ_WRITE, firstPuzzle[c]*LINE, puzzlesInChunk*LINE));
+						}
+					}
+					return null;
+				}));
+			}
+			for(Future<?> future:done) {
+				future.get();
+			}
+			for(Worker worker:workers) {
+				puzzles += worker.puzzles;
+				solved += worker.solved;
+				attempts += worker.engine.getNumberOfAttempts();
+				propagations += worker.engine.getNumberOfPropagations();
+				if(worker.lockstep!=null) {
+					attempts += worker.lockstep.getNumberOfAttempts();
+					propagations += worker.lockstep.getNumberOfPropagations();
+					fallbacks += worker.lockstep.getNumberOfFallbacks();
+					vectorLanes = worker.lockstep.getClass()!=LockstepSolver.class;
+				}
+				latencies.add(worker.latencies);
+			}
+		} catch (ExecutionException e) {
+			if(e.getCause() instanceof IOException) {
+				throw (IOException) e.getCause();
+			}
+			throw new IllegalStateException(e.getCause());
+		} finally {
+			executor.shutdownNow();
+		}
+		return System.nanoTime() - start;
+	}
+
+	/**
+	 * @param lockstep true to solve the puzzles in groups with a LockstepSolver, see the class comment
+	 */
+	public void setLockstep(boolean lockstep) {
+		this.lockstep = lockstep;
+	}
+
+	/**
+	 * Maps the file in chunks that end with a line feed, or at the end of the file.
+	 */
+	static List<MappedByteBuffer> mapChunks(FileChannel in) throws IOException {
+		List<MappedByteBuffer> chunks = new ArrayList<>();
+		ByteBuffer window = ByteBuffer.allocate(256);
+		long length = in.size();
+		long start = 0;
+		while(start<length) {
+			long end = Math.min(start+CHUNK_SIZE, length);
+			//extend the chunk to the end of its last line
+			for(long position=end-1;end<length;) {
+				window.clear();
+				int read = in.read(window, position);
+				if(read<=0) {
+					end = length;
+					break;
+				}
+				int i = 0;
+				while(i<read && window.get(i)!='\n') {
+					i++;
+				}
+				if(i<read) {
+					end = position+i+1;
+					break;
+				}
+				position += read;
+			}
+			chunks.add(in.map(FileChannel.MapMode.READ_ONLY, start, end-start));
+			start = end;
+		}
+		return chunks;
+	}
+
+	/**
+	 * @return the number of non empty lines of a chunk
+	 */
+	private static int countPuzzles(ByteBuffer chunk) {
+		int count = 0;
+		int limit = chunk.limit();
+		for(int lineStart=0;lineStart<limit;) {
+			int lineEnd = endOfLine(chunk, lineStart);
+			if(lineEnd>lineStart) {
+				count++;
+			}
+			lineStart = nextLine(chunk, lineEnd);
+		}
+		return count;
+	}
+
+	/**
+	 * @return the position of the line feed or carriage return ending the line starting at lineStart, or the limit of the chunk
+	 */
+	static int endOfLine(ByteBuffer chunk, int lineStart) {
+		int limit = chunk.limit();
+		int i = lineStart;
+		while(i<limit && chunk.get(i)!='\n' && chunk.get(i)!='\r') {
+			i++;
+		}
+		return i;
+	}
+
+	/**
+	 * @return the start of the line following a line ending at lineEnd
+	 */
+	static int nextLine(ByteBuffer chunk, int lineEnd) {
+		int limit = chunk.limit();
+		int i = lineEnd;
+		while(i<limit && chunk.get(i)!='\n') {
+			i++;
+		}
+		return i+1;
+	}
+
+	/**
+	 * The state of one solving thread.
+	 */
+	private static class Worker {
+		private final SudokuEngine engine = new SudokuEngine(SIZE, CellSelection.MINIMUM_REMAINING_VALUES);
+		private final LatencyHistogram latencies = new LatencyHistogram();
+		private long puzzles, solved;
+
+		/**
+		 * The solver of lock-step mode, null otherwise, and the output position of the puzzle in each of its lanes.
+		 */
+		private final LockstepSolver lockstep;
+		private final int[] outPositions = new int[LockstepSolver.LANES];
+
+		Worker(boolean lockstep) {
+			engine.setPropagationEnabled(true);
+			this.lockstep = lockstep ? LockstepSolver.create() : null;
+		}
+
+		/**
+		 * Solves the puzzles of a chunk and writes one line per puzzle to the output buffer.
+		 */
+		void solveChunk(ByteBuffer chunk, ByteBuffer out) {
+			if(lockstep!=null) {
+				solveChunkInLockstep(chunk, out);
+				return;
+			}
+			int limit = chunk.limit();
+			int outPosition = 0;
+			for(int lineStart=0;lineStart<limit;) {
+				int lineEnd = endOfLine(chunk, lineStart);
+				if(lineEnd>lineStart) {
+					long start = System.nanoTime();
+					if(lineEnd-lineStart>=CELLS && readPuzzle(chunk, lineStart) && engine.solve()) {
+						for(int cell=0;cell<CELLS;cell++) {
+							out.put(outPosition+cell, (byte) ('0'+engine.getCell(cell)));
+						}
+						out.put(outPosition+CELLS, (byte) '\n');
+						solved++;
+					} else {
+						writeUnsolved(out, outPosition);
+					}
+					outPosition += LINE;
+					puzzles++;
+					latencies.record(System.nanoTime()-start);
+				}
+				lineStart = nextLine(chunk, lineEnd);
+			}
+		}
+
+		/**
+		 * Solves the puzzles of a chunk in groups of LANES puzzles. A line that is not a puzzle gets its line of '.'
+		 * right away, without taking a lane.
+		 */
+		private void solveChunkInLockstep(ByteBuffer chunk, ByteBuffer out) {
+			int limit = chunk.limit();
+			int outPosition = 0, lanes = 0;
+			for(int lineStart=0;lineStart<limit;) {
+				int lineEnd = endOfLine(chunk, lineStart);
+				if(lineEnd>lineStart) {
+					if(lineEnd-lineStart>=CELLS && readPuzzle(chunk, lineStart, lanes)) {
+						outPositions[lanes++] = outPosition;
+						if(lanes==LockstepSolver.LANES) {
+							solveLanes(out, lanes);
+							lanes = 0;
+						}
+					} else {
+						writeUnsolved(out, outPosition);
+						puzzles++;
+					}
+					outPosition += LINE;
+				}
+				lineStart = nextLine(chunk, lineEnd);
+			}
+			if(lanes>0) {
+				solveLanes(out, lanes);
+			}
+		}
+
+		/**
+		 * Solves the puzzles of the first lanes and writes their lines to the output buffer.
+		 */
+		private void solveLanes(ByteBuffer out, int lanes) {
+			long start = System.nanoTime();
+			lockstep.solve(lanes);
+			long elapsed = System.nanoTime()-start;
+			for(int lane=0;lane<lanes;lane++) {
+				if(lockstep.isSolved(lane)) {
+					for(int cell=0;cell<CELLS;cell++) {
+						out.put(outPositions[lane]+cell, (byte) ('0'+lockstep.getCell(lane, cell)));
+					}
+					out.put(outPositions[lane]+CELLS, (byte) '\n');
+					solved++;
+				} else {
+					writeUnsolved(out, outPositions[lane]);
+				}
+				puzzles++;
+				latencies.record(elapsed);
+			}
+		}
+
+		/**
+		 * Writes the line of a puzzle that is invalid or has no solution.
+		 */
+		private static void writeUnsolved(ByteBuffer out, int outPosition) {
+			for(int cell=0;cell<CELLS;cell++) {
+				out.put(outPosition+cell, (byte) '.');
+			}
+			out.put(outPosition+CELLS, (byte) '\n');
+		}
+
+		/**
+		 * Loads the 81 cells starting at position into a lane of the lock-step solver.
+		 * @return false if one of the cells is not a digit, '.' or '0'
+		 */
+		private boolean readPuzzle(ByteBuffer chunk, int position, int lane) {
+			for(int cell=0;cell<CELLS;cell++) {
+				byte next = chunk.get(position+cell);
+				if(next>='1' && next<='9') {
+					lockstep.setCell(lane, cell, next-'0');
+				} else if(next=='.' || next=='0') {
+					lockstep.setCell(lane, cell, 0);
+				} else {
+					return false;
+				}
+			}
+			return true;
+		}
+
+		/**
+		 * Loads the 81 cells starting at position into the engine.
+		 * @return false if one of the cells is not a digit, '.' or '0'
+		 */
+		private boolean readPuzzle(ByteBuffer chunk, int position) {
+			for(int cell=0;cell<CELLS;cell++) {
+				byte next = chunk.get(position+cell);
+				if(next>='1' && next<='9') {
+					engine.setCell(cell, next-'0');
+				} else if(next=='.' || next=='0') {
+					engine.setCell(cell, 0);
+				} else {
+					return false;
+				}
+			}
+			return true;
+		}
+	}
+
+	/**
+	 * This method solves the puzzle file given on the command line and reports the throughput and latencies.
+	 * @param args the input file, the output file and optionally the number of threads, which defaults to the number of processors
+	 */
+	public static void main(String args[]) throws IOException, InterruptedException {
+		if(args.length<2) {
+			System.out.println("Usage: java "+BatchSolver.class.getName()+" input output [threads] [lockstep]");
+			System.exit(2);
+		}
+		//invalid puzzles are reported by the engine on error level, the summary below counts them instead
+		Logger.getRootLogger().setLevel(Level.OFF);
+
+		int threads = args.length>2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+		BatchSolver batch = new BatchSolver(Paths.get(args[0]), Paths.get(args[1]), threads);
+		batch.setLockstep(args.length>3 && "lockstep".equalsIgnoreCase(args[3]));
+		long elapsed = batch.run();
+
+		LatencyHistogram latencies = batch.latencies;
+		System.out.println("Puzzles: "+batch.puzzles+", Solved: "+batch.solved+", Unsolved: "+(batch.puzzles-batch.solved)+", Threads: "+threads);
+		System.out.println("Time: "+elapsed/1000000+"ms, Puzzles/s: "+(elapsed==0 ? 0 : (long) (batch.puzzles*1e9/elapsed)));
+		System.out.println("Attempts: "+batch.attempts+", Propagations: "+batch.propagations
+				+(batch.lockstep ? ", Handed to SudokuEngine: "+batch.fallbacks+", Lanes: "+(batch.vectorLanes ? "vector" : "scalar") : ""));
+		System.out.println("Latency (us) mean: "+latencies.getMean()/1000.0
+				+", p50: "+latencies.getValueAtPercentile(50)/1000.0
+				+", p90: "+latencies.getValueAtPercentile(90)/1000.0
+				+", p99: "+latencies.getValueAtPercentile(99)/1000.0
+				+", p99.9: "+latencies.getValueAtPercentile(99.9)/1000.0
+				+", max: "+latencies.getMax()/1000.0);
+	}
+}
@@ -0,0 +1,207 @@
+package tanvir.project.sudoku.batch;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * This class checks a file of completed 9x9 grids from the command line, for importing solutions in bulk without
+ * running an engine on them.
+ *
+ * Every non empty line of the input holds a grid in its first 81 characters, row by row, as in the output of
+ * {@link BatchSolver}. A grid is valid if every character is a digit between '1' and '9' and no row, column or box
+ * holds a digit twice. The check is bit-parallel: each digit sets one bit in the mask of its row, in the masks of all 9
+ * columns packed into a long and an int, and in the masks of the 3 boxes of its band packed into an int, so a grid takes
+ * 81 loads and a few compares of whole masks, without a branch on the digits and without touching the heap. Every unit
+ * of a filled grid holding all 9 digits means none is repeated.
+ *
+ * The input is memory mapped in chunks of whole lines, like BatchSolver does, and the chunks are checked in parallel.
+ *
+ * Usage: java tanvir.project.sudoku.batch.GridValidator input [threads]
+ *
+ * @author Tanvir Kaykobad
+ *
+ */
+public class GridValidator {
+
+	private static final int SIZE = 9, BOX_SIZE = 3, CELLS = SIZE*SIZE;
+	private static final int ALL_DIGITS = (1 << SIZE) - 1;
+
+	/**
+	 * The full masks of the 3 boxes of a band, and of the columns 0 to 6 and 7 to 8, 9 bits per unit.
+	 */
+	private static final int ALL_BOXES = (1 << BOX_SIZE*SIZE) - 1, ALL_HIGH_COLUMNS = (1 << 2*SIZE) - 1;
+	private static final long ALL_LOW_COLUMNS = (1L << 7*SIZE) - 1;
+
+	/**
+	 * The number of invalid grids whose positions are reported.
+	 */
+	private static final int MAX_REPORTED = 10;
+
+	private final Path input;
+	private final int threads;
+
+	/**
+	 * The grids and invalid grids of the last run, and the positions of the first invalid grids, from 1.
+	 */
+	private long grids, invalid;
+	private long[] firstInvalid = new long[0];
+
+	/**
+	 * Constructor
+	 * @param input the file of grids
+	 * @param threads the number of threads checking grids
+	 * @throws IllegalArgumentException If the number of threads is not positive
+	 */
+	public GridValidator(Path input, int threads) throws IllegalArgumentException {
+		if(threads<1) {
+			throw new IllegalArgumentException("Number of threads must be positive");
+		}
+		this.input = input;
+		this.threads = threads;
+	}
+
+	/**
+	 * Checks whether 81 characters are a completed grid that breaks no rule.
+	 * @param grid the buffer holding the grid
+	 * @param position the position of the first cell in the buffer
+	 * @return true if the characters are digits between '1' and '9' and no row, column or box repeats one
+	 */
+	public static boolean isSolution(ByteBuffer grid, int position) {
+		//negative once a character is not a digit between '1' and '9'
+		int outOfRange = 0;
+		int rows = ALL_DIGITS, bands = ALL_BOXES;
+		long lowColumns = 0;
+		int highColumns = 0;
+		for(int band=0;band<BOX_SIZE;band++) {
+			int boxes = 0;
+			for(int r=0;r<BOX_SIZE;r++) {
+				int row = 0;
+				int start = position + (band*BOX_SIZE+r)*SIZE;
+				for(int col=0;col<SIZE;col++) {
+					int digit = grid.get(start+col) - '1';
+					outOfRange |= digit | (SIZE-1-digit);
+					int bit = 1 << digit;
+					row |= bit;
+					boxes |= bit << (col/BOX_SIZE)*SIZE;
+					if(col<7) {
+						lowColumns |= (long) bit << col*SIZE;
+					} else {
+						highColumns |= bit << (col-7)*SIZE;
+					}
+				}
+				rows &= row;
+			}
+			bands &= boxes;
+		}
+		return outOfRange>=0 && rows==ALL_DIGITS && bands==ALL_BOXES && lowColumns==ALL_LOW_COLUMNS && highColumns==ALL_HIGH_COLUMNS;
+	}
+
+	/**
+	 * Checks all grids of the input file.
+	 * @return the time taken in nanoseconds
+	 * @throws IOException If the file cannot be read
+	 * @throws InterruptedException If the thread is interrupted while waiting for the checking threads
+	 */
+	public long run() throws IOException, InterruptedException {
+		long start = System.nanoTime();
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		try (FileChannel in = FileChannel.open(input, StandardOpenOption.READ)) {
+			List<Future<long[]>> results = new ArrayList<>();
+			for(MappedByteBuffer chunk:BatchSolver.mapChunks(in)) {
+				results.add(executor.submit(() -> checkChunk(chunk)));
+			}
+			grids = 0;
+			invalid = 0;
+			List<Long> reported = new ArrayList<>();
+			for(Future<long[]> future:results) {
+				long[] result = future.get();
+				for(int i=2;i<result.length && reported.size()<MAX_REPORTED;i++) {
+					reported.add(grids+result[i]);
+				}
+				grids += result[0];
+				invalid += result[1];
+			}
+			firstInvalid = reported.stream().mapToLong(Long::longValue).toArray();
+		} catch (ExecutionException e) {
+			throw new IllegalStateException(e.getCause());
+		} finally {
+			executor.shutdownNow();
+		}
+		return System.nanoTime() - start;
+	}
+
+	/**
+	 * @return the grids of the chunk, its invalid grids and the positions of its first invalid grids within the chunk, from 1
+	 */
+	private static long[] checkChunk(ByteBuffer chunk) {
+		long[] result = new long[2+MAX_REPORTED];
+		int limit = chunk.limit();
+		for(int lineStart=0;lineStart<limit;) {
+			int lineEnd = BatchSolver.endOfLine(chunk, lineStart);
+			if(lineEnd>lineStart) {
+				result[0]++;
+				if(lineEnd-lineStart<CELLS || !isSolution(chunk, lineStart)) {
+					if(result[1]<MAX_REPORTED) {
+						result[2+(int) result[1]] = result[0];
+					}
+					result[1]++;
+				}
+			}
+			lineStart = BatchSolver.nextLine(chunk, lineEnd);
+		}
+		return Arrays.copyOf(result, 2+(int) Math.min(result[1], MAX_REPORTED));
+	}
+
+	/**
+	 * @return the number of grids checked by the last run
+	 */
+	public long getGrids() {
+		return grids;
+	}
+
+	/**
+	 * @return the number of invalid grids found by the last run
+	 */
+	public long getInvalid() {
+		return invalid;
+	}
+
+	/**
+	 * @return the positions of the first invalid grids in the file, from 1, counting non empty lines only
+	 */
+	public long[] getFirstInvalid() {
+		return firstInvalid.clone();
+	}
+
+	/**
+	 * This method checks the grid file given on the command line and reports the invalid grids and the throughput.
+	 * @param args the input file and optionally the number of threads, which defaults to the number of processors
+	 */
+	public static void main(String args[]) throws IOException, InterruptedException {
+		if(args.length<1) {
+			System.out.println("Usage: java "+GridValidator.class.getName()+" input [threads]");
+			System.exit(2);
+		}
+		int threads = args.length>1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+		GridValidator validator = new GridValidator(Paths.get(args[0]), threads);
+		long elapsed = validator.run();
+
+		System.out.println("Grids: "+validator.grids+", Valid: "+(validator.grids-validator.invalid)+", Invalid: "+validator.invalid+", Threads: "+threads);
+		System.out.println("Time: "+elapsed/1000000+"ms, Grids/s: "+(elapsed==0 ? 0 : (long) (validator.grids*1e9/elapsed)));
+		if(validator.invalid>0) {
+			System.out.println("First invalid grids: "+Arrays.toString(validator.firstInvalid));
+		}
+	}
+}
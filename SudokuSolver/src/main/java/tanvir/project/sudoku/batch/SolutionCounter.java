@@ -0,0 +1,134 @@
+package tanvir.project.sudoku.batch;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+
+import tanvir.project.sudoku.engine.Board;
+import tanvir.project.sudoku.engine.CellSelection;
+import tanvir.project.sudoku.engine.SearchCheckpoint;
+import tanvir.project.sudoku.engine.SudokuEngine;
+
+/**
+ * This class counts the solutions of a 9x9 puzzle from the command line, for counts that run for hours.
+ *
+ * The count is saved to a checkpoint file at a fixed interval, see {@link SearchCheckpoint}: the engine gives up on its
+ * time limit, its search is written to the file and resumed. A count started again with the same checkpoint file goes
+ * on from the last checkpoint, on this machine or another one, instead of starting over. The file is deleted once the
+ * count is done.
+ *
+ * A checkpoint file can also be split along the frontier of its search: the file keeps the branch the search was in and
+ * every other branch goes to a file of its own, named after the checkpoint file with a number appended. Each file is
+ * then counted on its own, and the counts add up to the count of the puzzle.
+ *
+ * Usage: java tanvir.project.sudoku.batch.SolutionCounter checkpoint seconds [puzzle]
+ *        java tanvir.project.sudoku.batch.SolutionCounter checkpoint split
+ *
+ * @author Tanvir Kaykobad
+ *
+ */
+public class SolutionCounter {
+
+	private final Path checkpoint;
+	private final SudokuEngine engine = new SudokuEngine(Board.SIZE, CellSelection.MINIMUM_REMAINING_VALUES);
+
+	/**
+	 * The checkpoints written by the last count.
+	 */
+	private long checkpoints;
+
+	/**
+	 * Constructor
+	 * @param checkpoint the file the count is saved to and resumed from
+	 */
+	public SolutionCounter(Path checkpoint) {
+		this.checkpoint = checkpoint;
+		engine.setPropagationEnabled(true);
+	}
+
+	/**
+	 * Counts the solutions of a puzzle, or goes on with the count saved in the checkpoint file if there is one.
+	 * @param puzzle the puzzle, only read if there is no checkpoint file
+	 * @param seconds the time between two checkpoints
+	 * @return the number of solutions
+	 * @throws IOException If the checkpoint file cannot be read or written
+	 * @throws IllegalArgumentException If there is neither a checkpoint file nor a puzzle, or the interval is not positive
+	 */
+	public long count(Board puzzle, long seconds) throws IOException, IllegalArgumentException {
+		engine.setTimeLimit(seconds, TimeUnit.SECONDS);
+		checkpoints = 0;
+		if(Files.exists(checkpoint)) {
+			engine.restore(SearchCheckpoint.fromBytes(Files.readAllBytes(checkpoint)));
+			engine.resume();
+		} else {
+			if(puzzle==null) {
+				throw new IllegalArgumentException("There is no checkpoint to resume and no puzzle to count");
+			}
+			for(int cell=0;cell<Board.CELLS;cell++) {
+				engine.setCell(cell, puzzle.get(cell));
+			}
+			engine.countSolutions(Long.MAX_VALUE);
+		}
+		while(engine.isSuspended()) {
+			write(checkpoint, engine.checkpoint());
+			checkpoints++;
+			engine.resume();
+		}
+		Files.deleteIfExists(checkpoint);
+		return engine.getSolutionCount();
+	}
+
+	/**
+	 * Splits the checkpoint file along the frontier of its search.
+	 * @return the number of files the search is split into, including the checkpoint file
+	 * @throws IOException If the checkpoint file cannot be read or written
+	 */
+	public int split() throws IOException {
+		List<SearchCheckpoint> parts = SearchCheckpoint.fromBytes(Files.readAllBytes(checkpoint)).split();
+		for(int i=1;i<parts.size();i++) {
+			write(checkpoint.resolveSibling(checkpoint.getFileName()+"."+i), parts.get(i));
+		}
+		write(checkpoint, parts.get(0));
+		return parts.size();
+	}
+
+	/**
+	 * Writes a checkpoint next to the file and moves it over the file, so that a crash never leaves half a checkpoint.
+	 */
+	private static void write(Path file, SearchCheckpoint saved) throws IOException {
+		Path next = file.resolveSibling(file.getFileName()+".tmp");
+		Files.write(next, saved.toBytes());
+		Files.move(next, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	/**
+	 * This method counts the solutions of the puzzle given on the command line, or splits a checkpoint file.
+	 * @param args the checkpoint file, and the seconds between two checkpoints with the puzzle as 81 characters, or split
+	 */
+	public static void main(String args[]) throws IOException {
+		if(args.length<2) {
+			System.out.println("Usage: java "+SolutionCounter.class.getName()+" checkpoint seconds [puzzle]");
+			System.out.println("       java "+SolutionCounter.class.getName()+" checkpoint split");
+			System.exit(2);
+		}
+		Logger.getRootLogger().setLevel(Level.OFF);
+
+		SolutionCounter counter = new SolutionCounter(Paths.get(args[0]));
+		if("split".equalsIgnoreCase(args[1])) {
+			System.out.println("Parts: "+counter.split());
+			return;
+		}
+		long start = System.nanoTime();
+		long count = counter.count(args.length>2 ? Board.parse(args[2]) : null, Long.parseLong(args[1]));
+		System.out.println("Solutions: "+count+", Status: "+counter.engine.getStatus());
+		System.out.println("Attempts: "+counter.engine.getNumberOfAttempts()+", Propagations: "+counter.engine.getNumberOfPropagations()
+				+", Checkpoints: "+counter.checkpoints+", Time: "+(System.nanoTime()-start)/1000000+"ms");
+	}
+}
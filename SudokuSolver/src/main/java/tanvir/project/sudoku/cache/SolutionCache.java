@@ -0,0 +1,185 @@
+package tanvir.project.sudoku.cache;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import tanvir.project.sudoku.engine.Board;
+
+/**
+ * A bounded cache of solved 9x9 puzzles, shared by all threads. Each puzzle is stored as it is, with its solution, so a
+ * repeated puzzle is found with one lookup. Puzzles found to have no solution are cached too.
+ *
+ * A lookup may also canonicalize the puzzle, see {@link SymmetryTransform}, and store the solution under the minimal
+ * representative of its symmetry class, so that a relabelled, transposed or permuted copy of a solved puzzle is a hit as
+ * well. The solution of the representative is mapped back through the inverse of the symmetry for each copy asking for
+ * it. Canonicalizing takes from about 30 microseconds for an easy puzzle to over a millisecond for a complete grid, more
+ * than solving most puzzles takes, so callers only ask for it for the puzzles that are expensive to solve, and complete
+ * grids are never canonicalized. A canonicalized puzzle takes two entries of the capacity, one for itself and one for
+ * its representative.
+ *
+ * When the cache is full, the least recently used puzzle is evicted. Lookups hold the lock of the cache, solving does
+ * not, so two threads missing on the same puzzle at once may both solve it.
+ *
+ * @author Tanvir Kaykobad
+ *
+ */
+public class SolutionCache {
+
+	/**
+	 * Stored for the puzzles without a solution. An empty board is never the solution of a puzzle.
+	 */
+	private static final Board NO_SOLUTION = Board.EMPTY;
+
+	private final int capacity;
+
+	/**
+	 * The solutions of the puzzles looked up and of the representatives. A representative is a puzzle like any other, so
+	 * both kinds of entries share the map. The map is kept in access order, so its eldest entry is the least recently
+	 * used one. Boards are immutable, so a cached solution is handed out as it is.
+	 */
+	private final LinkedHashMap<Board, Board> solutions;
+
+	private long hits = 0, misses = 0, evictions = 0;
+
+	/**
+	 * Constructor
+	 * @param capacity the number of puzzles kept
+	 * @throws IllegalArgumentException If the capacity is not positive
+	 */
+	public SolutionCache(int capacity) throws IllegalArgumentException {
+		if(capacity<=0) {
+			throw new IllegalArgumentException("Cache capacity must be positive");
+		}
+		this.capacity = capacity;
+		this.solutions = new LinkedHashMap<Board, Board>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Board, Board> eldest) {
+				if(size()>SolutionCache.this.capacity) {
+					evictions++;
+					return true;
+				}
+				return false;
+			}
+		};
+	}
+
+	/**
+	 * Solves the puzzles missing from the cache.
+	 */
+	@FunctionalInterface
+	public interface PuzzleSolver {
+
+		/**
+		 * @param puzzle the puzzle looked up
+		 * @param transform the symmetry mapping the puzzle to the representative of its class, null if the puzzle was not
+		 * canonicalized
+		 * @return the solution of the puzzle, or null if it has none
+		 */
+		Board solve(Board puzzle, SymmetryTransform transform);
+	}
+
+	/**
+	 * Returns the solution of a puzzle from the cache, or solves and caches it. A lookup is counted as a hit when it is
+	 * answered from the cache and as a miss once the solver has answered it. A lookup whose solver throws counts as
+	 * neither, so a solve that gives up and is looked up again later is counted once.
+	 * @param puzzle a valid board
+	 * @param canonicalize true to look for the representative of the puzzle as well, see {@link SymmetryTransform#canonicalize(int[][])}.
+	 * Complete grids and the puzzles that are not canonicalized are only looked up as they are.
+	 * @param solver returns the solution of the board it is given, or null if it has none. Exceptions are passed on and nothing is cached.
+	 * @return the solution of the puzzle, or null if it has none
+	 */
+	public Board getSolution(Board puzzle, boolean canonicalize, PuzzleSolver solver) {
+		Board cached;
+		synchronized(this) {
+			cached = solutions.get(puzzle);
+			if(cached!=null) {
+				hits++;
+			}
+		}
+		if(cached!=null) {
+			return cached==NO_SOLUTION ? null : cached;
+		}
+
+		SymmetryTransform transform = null;
+		Board representative = null;
+		if(canonicalize && !puzzle.isComplete()) {
+			transform = SymmetryTransform.canonicalize(puzzle.toArray());
+		}
+		if(transform!=null) {
+			representative = transform.apply(puzzle);
+			Board solution;
+			synchronized(this) {
+				solution = solutions.get(representative);
+				if(solution!=null) {
+					hits++;
+				}
+			}
+			if(solution!=null) {
+				Board result = solution==NO_SOLUTION ? NO_SOLUTION : transform.revert(solution);
+				synchronized(this) {
+					solutions.put(puzzle, result);
+				}
+				return result==NO_SOLUTION ? null : result;
+			}
+		}
+
+		Board solved = solver.solve(puzzle, transform);
+		synchronized(this) {
+			misses++;
+			solutions.put(puzzle, solved==null ? NO_SOLUTION : solved);
+			if(representative!=null) {
+				solutions.put(representative, solved==null ? NO_SOLUTION : transform.apply(solved));
+			}
+		}
+		return solved;
+	}
+
+	/**
+	 * @return the number of lookups answered from the cache
+	 */
+	public synchronized long getHits() {
+		return hits;
+	}
+
+	/**
+	 * @return the number of lookups that had to solve the puzzle
+	 */
+	public synchronized long getMisses() {
+		return misses;
+	}
+
+	/**
+	 * @return the number of puzzles evicted to make room for others
+	 */
+	public synchronized long getEvictions() {
+		return evictions;
+	}
+
+	/**
+	 * @return the number of puzzles in the cache
+	 */
+	public synchronized int size() {
+		return solutions.size();
+	}
+
+	/**
+	 * @return the number of puzzles the cache keeps
+	 */
+	public int getCapacity() {
+		return capacity;
+	}
+
+	/**
+	 * Removes all puzzles. The statistics are kept.
+	 */
+	public synchronized void clear() {
+		solutions.clear();
+	}
+
+	@Override
+	public synchronized String toString() {
+		return "SolutionCache [size="+solutions.size()+", capacity="+capacity+", hits="+hits+", misses="+misses+", evictions="+evictions+"]";
+	}
+}
@@ -0,0 +1,345 @@
+package tanvir.project.sudoku.cache;
+
+import java.util.Arrays;
+
+import tanvir.project.sudoku.engine.Board;
+
+/**
+ * A symmetry of the 9x9 sudoku board: an optional transposition, followed by a permutation of the rows and one of the
+ * columns that keep the bands and stacks together, and a relabelling of the digits. A symmetry maps every puzzle to an
+ * equivalent one, with the solutions mapped the same way.
+ *
+ * {@link #canonicalize(int[][])} finds the symmetry mapping a puzzle to the minimal representative of its class: the
+ * equivalent puzzle that comes first when the cells are read row by row, with empty cells (0) before any digit. Every
+ * relabelled, transposed or permuted copy of a puzzle has the same representative, so it can be used as a cache key.
+ *
+ * @author Tanvir Kaykobad
+ *
+ */
+public final class SymmetryTransform {
+
+	private static final int SIZE = 9, BOX_SIZE = 3;
+
+	/**
+	 * Puzzles with fewer clues are not canonicalized. They have more than one solution, and so many symmetries tie
+	 * that searching them would cost more than solving.
+	 */
+	static final int MIN_CLUES = 17;
+
+	/**
+	 * The search gives up on puzzles for which more partial symmetries than this tie. The number of ties is the same for
+	 * all puzzles of a class, so such a puzzle and its copies are never canonicalized.
+	 */
+	static final int MAX_CANDIDATES = 1 << 16;
+
+	private static final int[][] PERMUTATIONS = {{0,1,2}, {0,2,1}, {1,0,2}, {1,2,0}, {2,0,1}, {2,1,0}};
+
+	/**
+	 * The 1296 orders of 9 rows, or columns, that keep the bands together: 6 orders of the bands times 6 orders of the
+	 * rows within each of the 3 bands. LINE_ORDERS[k][i] is the line moved to position i, and k is
+	 * ((bands*6 + first)*6 + second)*6 + third for the indices of the permutations in PERMUTATIONS.
+	 */
+	private static final int[][] LINE_ORDERS;
+
+	/**
+	 * PERMUTED[bits][p] is a 3 bit pattern with its bits reordered by PERMUTATIONS[p]. The highest bit stands for the first line.
+	 */
+	private static final int[][] PERMUTED = new int[8][PERMUTATIONS.length];
+	static {
+		LINE_ORDERS = new int[1296][SIZE];
+		int k = 0;
+		for(int[] bands:PERMUTATIONS) {
+			for(int[] first:PERMUTATIONS) {
+				for(int[] second:PERMUTATIONS) {
+					for(int[] third:PERMUTATIONS) {
+						int[][] within = {first, second, third};
+						for(int i=0;i<SIZE;i++) {
+							LINE_ORDERS[k][i] = bands[i/BOX_SIZE]*BOX_SIZE + within[i/BOX_SIZE][i%BOX_SIZE];
+						}
+						k++;
+					}
+				}
+			}
+		}
+		for(int bits=0;bits<8;bits++) {
+			for(int p=0;p<PERMUTATIONS.length;p++) {
+				for(int i=0;i<BOX_SIZE;i++) {
+					PERMUTED[bits][p] |= ((bits >> (2-PERMUTATIONS[p][i])) & 1) << (2-i);
+				}
+			}
+		}
+	}
+
+	private final boolean transposed;
+
+	/**
+	 * Row i of the transformed board is row rowOrder[i] of the (transposed) original, and column j is column colOrder[j].
+	 */
+	private final int[] rowOrder, colOrder;
+
+	/**
+	 * relabel[d] is the digit that d becomes, and inverse[relabel[d]] is d again. relabel[0] is 0 for the empty cells.
+	 */
+	private final int[] relabel, inverse;
+
+	private SymmetryTransform(boolean transposed, int[] rowOrder, int[] colOrder, int[] relabel) {
+		this.transposed = transposed;
+		this.rowOrder = rowOrder;
+		this.colOrder = colOrder;
+		this.relabel = relabel;
+		this.inverse = new int[SIZE+1];
+		for(int digit=0;digit<=SIZE;digit++) {
+			inverse[relabel[digit]] = digit;
+		}
+	}
+
+	/**
+	 * The partial symmetries of the search, kept in parallel arrays so that the thousands of candidates for the first rows
+	 * cost no objects. For each candidate, orders holds transposed*1296 + the index of the column order, rows the rows
+	 * placed so far with 4 bits per row, used the same rows as a bit set, and labels the label given to each digit met so
+	 * far with 4 bits per digit. The 4 bits of digit 0, which is never relabelled, count the labels given.
+	 */
+	private static final class Candidates {
+		int size = 0;
+		int[] orders = new int[64], used = new int[64];
+		long[] rows = new long[64], labels = new long[64];
+
+		void add(int order, long row, int usedRows, long label) {
+			if(size==orders.length) {
+				orders = Arrays.copyOf(orders, 2*size);
+				used = Arrays.copyOf(used, 2*size);
+				rows = Arrays.copyOf(rows, 2*size);
+				labels = Arrays.copyOf(labels, 2*size);
+			}
+			orders[size] = order;
+			used[size] = usedRows;
+			rows[size] = row;
+			labels[size] = label;
+			size++;
+		}
+	}
+
+	/**
+	 * Finds the symmetry mapping a puzzle to the minimal representative of its class. The rows of the representative are
+	 * fixed one at a time: every partial symmetry is extended with each row that may come next, and only the extensions
+	 * giving the smallest row are kept. The digits are relabelled in the order they are met, which is the relabelling
+	 * giving the smallest board for the chosen rows and columns.
+	 * @param puzzle a 9x9 board where 0 marks an empty cell
+	 * @return the symmetry, or null if the puzzle has fewer than MIN_CLUES clues or too many symmetries tie
+	 * @throws IllegalArgumentException If the board is not 9x9 or has a value that is not a digit
+	 */
+	public static SymmetryTransform canonicalize(int[][] puzzle) throws IllegalArgumentException {
+		int[][][] grids = new int[2][SIZE][SIZE];
+		int clues = 0;
+		if(puzzle.length!=SIZE) {
+			throw new IllegalArgumentException("Sudoku Table must be 9x9");
+		}
+		for(int i=0;i<SIZE;i++) {
+			if(puzzle[i].length!=SIZE) {
+				throw new IllegalArgumentException("Sudoku Table must be 9x9");
+			}
+			for(int j=0;j<SIZE;j++) {
+				int digit = puzzle[i][j];
+				if(digit<0 || digit>SIZE) {
+					throw new IllegalArgumentException("Digit must be between 0 and "+SIZE);
+				}
+				grids[0][i][j] = digit;
+				grids[1][j][i] = digit;
+				clues += digit!=0 ? 1 : 0;
+			}
+		}
+		if(clues<MIN_CLUES) {
+			return null;
+		}
+
+		Candidates candidates = getFirstRows(grids), next = new Candidates();
+		int[] best = new int[SIZE], row = new int[SIZE];
+		for(int depth=1;depth<SIZE;depth++) {
+			next.size = 0;
+			Arrays.fill(best, SIZE+1);
+			for(int c=0;c<candidates.size;c++) {
+				int order = candidates.orders[c], used = candidates.used[c];
+				int[] columns = LINE_ORDERS[order%LINE_ORDERS.length];
+				int[][] grid = grids[order/LINE_ORDERS.length];
+				int band = (int)(candidates.rows[c] >>> 4*(depth-1) & 15)/BOX_SIZE;
+				for(int r=0;r<SIZE;r++) {
+					//a band starts with any row of an unused band, and goes on with the unused rows of the same band
+					if(depth%BOX_SIZE==0 ? (used & 7 << (r/BOX_SIZE)*BOX_SIZE)!=0 : (used & 1 << r)!=0 || r/BOX_SIZE!=band) {
+						continue;
+					}
+					//relabels the row into row[], stopping as soon as it is larger than the best row
+					long labels = candidates.labels[c];
+					int compare = 0;
+					for(int j=0;j<SIZE;j++) {
+						int digit = grid[r][columns[j]];
+						int label = 0;
+						if(digit!=0) {
+							label = (int)(labels >>> 4*digit & 15);
+							if(label==0) {
+								label = (int)(labels & 15) + 1;
+								labels = (labels | (long)label << 4*digit) + 1;
+							}
+						}
+						row[j] = label;
+						if(compare==0 && label!=best[j]) {
+							compare = label<best[j] ? -1 : 1;
+							if(compare>0) {
+								break;
+							}
+						}
+					}
+					if(compare>0) {
+						continue;
+					}
+					if(compare<0) {
+						next.size = 0;
+						System.arraycopy(row, 0, best, 0, SIZE);
+					}
+					if(next.size>=MAX_CANDIDATES) {
+						return null;
+					}
+					next.add(order, candidates.rows[c] | (long)r << 4*depth, used | 1 << r, labels);
+				}
+			}
+			Candidates swap = candidates;
+			candidates = next;
+			next = swap;
+		}
+
+		//any of the remaining candidates gives the representative. The digits missing from the puzzle get the labels left
+		int[] rowOrder = new int[SIZE], relabel = new int[SIZE+1];
+		for(int i=0;i<SIZE;i++) {
+			rowOrder[i] = (int)(candidates.rows[0] >>> 4*i & 15);
+		}
+		int nextLabel = (int)(candidates.labels[0] & 15) + 1;
+		for(int digit=1;digit<=SIZE;digit++) {
+			relabel[digit] = (int)(candidates.labels[0] >>> 4*digit & 15);
+			if(relabel[digit]==0) {
+				relabel[digit] = nextLabel++;
+			}
+		}
+		int order = candidates.orders[0];
+		return new SymmetryTransform(order>=LINE_ORDERS.length, rowOrder, LINE_ORDERS[order%LINE_ORDERS.length].clone(), relabel);
+	}
+
+	/**
+	 * Finds the partial symmetries giving the smallest first row. Relabelled in the order they are met, the digits of any
+	 * row become 1, 2, 3 and so on, so a first row is only told apart by which of its cells are clues, and the smallest
+	 * has its clues last. The clues of a row under a column order are read as a 9 bit number, and the smallest number a
+	 * row can give has its stacks sorted by their number of clues, each with its clues last. Only the rows giving the
+	 * smallest number of all are tried with every column order, one stack at a time so that column orders are skipped as
+	 * soon as their first stacks have a clue too early.
+	 */
+	private static Candidates getFirstRows(int[][][] grids) {
+		int[][] stacks = new int[2*SIZE][BOX_SIZE];
+		int[] smallest = new int[2*SIZE];
+		int min = 1 << SIZE;
+		for(int line=0;line<2*SIZE;line++) {
+			int[] counts = new int[BOX_SIZE];
+			for(int s=0;s<BOX_SIZE;s++) {
+				for(int i=0;i<BOX_SIZE;i++) {
+					int clue = grids[line/SIZE][line%SIZE][s*BOX_SIZE+i]!=0 ? 1 : 0;
+					stacks[line][s] = stacks[line][s]<<1 | clue;
+					counts[s] += clue;
+				}
+			}
+			Arrays.sort(counts);
+			for(int s=0;s<BOX_SIZE;s++) {
+				smallest[line] = smallest[line]<<BOX_SIZE | ((1 << counts[s]) - 1);
+			}
+			min = Math.min(min, smallest[line]);
+		}
+		
+		Candidates candidates = new Candidates();
+		for(int t=0;t<2;t++) {
+			for(int r=0;r<SIZE;r++) {
+				if(smallest[t*SIZE+r]!=min) {
+					continue;
+				}
+				int[] line = grids[t][r];
+				int[] stack = stacks[t*SIZE+r];
+				for(int b=0;b<PERMUTATIONS.length;b++) {
+					int[] bands = PERMUTATIONS[b];
+					for(int w0=0;w0<PERMUTATIONS.length;w0++) {
+						int first = PERMUTED[stack[bands[0]]][w0] << 6;
+						if(first>>6!=min>>6) {
+							continue;
+						}
+						for(int w1=0;w1<PERMUTATIONS.length;w1++) {
+							int second = first | PERMUTED[stack[bands[1]]][w1] << 3;
+							if(second>>3!=min>>3) {
+								continue;
+							}
+							for(int w2=0;w2<PERMUTATIONS.length;w2++) {
+								if((second | PERMUTED[stack[bands[2]]][w2])!=min) {
+									continue;
+								}
+								int colOrder = ((b*6 + w0)*6 + w1)*6 + w2;
+								long labels = 0;
+								for(int j=0;j<SIZE;j++) {
+									int digit = line[LINE_ORDERS[colOrder][j]];
+									if(digit!=0) {
+										labels = (labels | ((labels & 15) + 1) << 4*digit) + 1;
+									}
+								}
+								candidates.add(t*LINE_ORDERS.length + colOrder, r, 1 << r, labels);
+							}
+						}
+					}
+				}
+			}
+		}
+		return candidates;
+	}
+
+	/**
+	 * @param board a 9x9 board where 0 marks an empty cell
+	 * @return a new board with the symmetry applied. Applied to the canonicalized puzzle, this is its representative.
+	 */
+	public int[][] apply(int[][] board) {
+		int[][] result = new int[SIZE][SIZE];
+		for(int i=0;i<SIZE;i++) {
+			for(int j=0;j<SIZE;j++) {
+				int r = rowOrder[i], c = colOrder[j];
+				result[i][j] = relabel[transposed ? board[c][r] : board[r][c]];
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * @param board a board
+	 * @return the board with the symmetry applied
+	 */
+	public Board apply(Board board) {
+		return Board.of(apply(board.toArray()));
+	}
+
+	/**
+	 * @param board a board
+	 * @return the board with the symmetry undone
+	 */
+	public Board revert(Board board) {
+		return Board.of(revert(board.toArray()));
+	}
+
+	/**
+	 * @param board a 9x9 board where 0 marks an empty cell
+	 * @return a new board with the symmetry undone. Reverting the solution of the representative gives the solution of
+	 * the canonicalized puzzle.
+	 */
+	public int[][] revert(int[][] board) {
+		int[][] result = new int[SIZE][SIZE];
+		for(int i=0;i<SIZE;i++) {
+			for(int j=0;j<SIZE;j++) {
+				int r = rowOrder[i], c = colOrder[j];
+				if(transposed) {
+					result[c][r] = inverse[board[i][j]];
+				} else {
+					result[r][c] = inverse[board[i][j]];
+				}
+			}
+		}
+		return result;
+	}
+}
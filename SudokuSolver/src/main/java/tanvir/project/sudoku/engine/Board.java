@@ -0,0 +1,353 @@
+package tanvir.project.sudoku.engine;
+
+import java.io.Serializable;
+
+/**
+ * An immutable 9x9 board, the format in which boards are passed between the page, the solve service, the solution
+ * cache, the puzzle store and the engines. The 81 cells are packed 4 bits each into five longs and an int, so a board
+ * takes 56 bytes where a Character[9][9] takes more than 500, and equals and hashCode compare and mix six words
+ * instead of walking 81 references.
+ *
+ * A board is read from and written to 81 characters row by row, with '.' for the empty cells, and to 41 bytes holding
+ * two cells each, the first cell of each byte in the high bits. The engines copy a board into their own cells directly,
+ * see {@link SudokuEngine#SudokuEngine(Board, CellSelection)} and {@link SudokuEngine#toBoard()}.
+ *
+ * A board only holds digits between 0 and 9. Whether they break a rule is checked by the engines.
+ *
+ * @author Tanvir Kaykobad
+ *
+ */
+public final class Board implements Serializable {
+	private static final long serialVersionUID = 1L;
+
+	public static final int SIZE = 9, CELLS = SIZE*SIZE;
+
+	/**
+	 * The length of a board packed by {@link #toBytes()}: two cells per byte.
+	 */
+	public static final int PACKED_LENGTH = (CELLS+1)/2;
+
+	/**
+	 * The board without any digit.
+	 */
+	public static final Board EMPTY = new Board(new long[CELLS/16], 0);
+
+	/**
+	 * The cells 16 per word, cell c in the bits 4*(c%16) to 4*(c%16)+3 of word c/16, and the last cell on its own.
+	 */
+	private final long w0, w1, w2, w3, w4;
+	private final int last;
+
+	private Board(long[] words, int last) {
+		w0 = words[0];
+		w1 = words[1];
+		w2 = words[2];
+		w3 = words[3];
+		w4 = words[4];
+		this.last = last;
+	}
+
+	/**
+	 * Reads a board written as 81 characters row by row, with '.' or '0' for the empty cells.
+	 * @param puzzle the board
+	 * @return the board
+	 * @throws IllegalArgumentException If the board is not 81 characters long or has a character that is not a digit or '.'
+	 */
+	public static Board parse(CharSequence puzzle) throws IllegalArgumentException {
+		if(puzzle==null || puzzle.length()!=CELLS) {
+			throw new IllegalArgumentException("Puzzle must have "+CELLS+" characters");
+		}
+		long[] words = new long[CELLS/16];
+		int last = 0;
+		for(int cell=0;cell<CELLS;cell++) {
+			char symbol = puzzle.charAt(cell);
+			int digit;
+			if(symbol>='1' && symbol<='9') {
+				digit = symbol-'0';
+			} else if(symbol=='.' || symbol=='0') {
+				digit = 0;
+			} else {
+				throw new IllegalArgumentException("Cell "+(cell+1)+" must be a digit or '.'");
+			}
+			if(cell==CELLS-1) {
+				last = digit;
+			} else {
+				words[cell>>>4] |= (long)digit<<((cell&15)<<2);
+			}
+		}
+		return new Board(words, last);
+	}
+
+	/**
+	 * @param map a 9x9 board where 0 marks an empty cell
+	 * @return the board
+	 * @throws IllegalArgumentException If the board is not 9x9 or has a value that is not a digit
+	 */
+	public static Board of(int[][] map) throws IllegalArgumentException {
+		if(map.length!=SIZE) {
+			throw new IllegalArgumentException("Sudoku Table must be 9x9");
+		}
+		long[] words = new long[CELLS/16];
+		int last = 0;
+		for(int i=0;i<SIZE;i++) {
+			if(map[i].length!=SIZE) {
+				throw new IllegalArgumentException("Sudoku Table must be 9x9");
+			}
+			for(int j=0;j<SIZE;j++) {
+				int digit = map[i][j], cell = i*SIZE+j;
+				if(digit<0 || digit>SIZE) {
+					throw new IllegalArgumentException("Digit must be between 0 and "+SIZE);
+				}
+				if(cell==CELLS-1) {
+					last = digit;
+				} else {
+					words[cell>>>4] |= (long)digit<<((cell&15)<<2);
+				}
+			}
+		}
+		return new Board(words, last);
+	}
+
+	/**
+	 * @param map a 9x9 board of the front end, where ' ' or null marks an empty cell
+	 * @return the board
+	 * @throws IllegalArgumentException If the board is not 9x9 or has a value that is not a digit
+	 */
+	public static Board of(Character[][] map) throws IllegalArgumentException {
+		if(map.length!=SIZE) {
+			throw new IllegalArgumentException("Sudoku Table must be 9x9");
+		}
+		int[][] digits = new int[SIZE][SIZE];
+		for(int i=0;i<SIZE;i++) {
+			if(map[i].length!=SIZE) {
+				throw new IllegalArgumentException("Sudoku Table must be 9x9");
+			}
+			for(int j=0;j<SIZE;j++) {
+				digits[i][j] = toDigit(map[i][j]);
+			}
+		}
+		return of(digits);
+	}
+
+	/**
+	 * Reads a board packed by {@link #toBytes()}.
+	 * @param packed the packed board
+	 * @return the board
+	 * @throws IllegalArgumentException If the packed board is not 41 bytes long or has a value that is not a digit
+	 */
+	public static Board fromBytes(byte[] packed) throws IllegalArgumentException {
+		if(packed.length!=PACKED_LENGTH) {
+			throw new IllegalArgumentException("Packed board must have "+PACKED_LENGTH+" bytes");
+		}
+		long[] words = new long[CELLS/16];
+		int last = 0;
+		for(int cell=0;cell<CELLS;cell++) {
+			int bits = packed[cell>>>1] & 0xFF;
+			int digit = (cell&1)==0 ? bits>>>4 : bits & 0xF;
+			if(digit>SIZE) {
+				throw new IllegalArgumentException("Digit must be between 0 and "+SIZE);
+			}
+			if(cell==CELLS-1) {
+				last = digit;
+			} else {
+				words[cell>>>4] |= (long)digit<<((cell&15)<<2);
+			}
+		}
+		return new Board(words, last);
+	}
+
+	/**
+	 * Packs the cells of an engine, which hold digits between 0 and 9.
+	 */
+	static Board of(int[] cells) throws IllegalArgumentException {
+		if(cells.length!=CELLS) {
+			throw new IllegalArgumentException("Sudoku Table must be 9x9");
+		}
+		long[] words = new long[CELLS/16];
+		for(int cell=0;cell<CELLS-1;cell++) {
+			words[cell>>>4] |= (long)cells[cell]<<((cell&15)<<2);
+		}
+		return new Board(words, cells[CELLS-1]);
+	}
+
+	/**
+	 * Unpacks the board into the cells of an engine.
+	 */
+	void copyTo(int[] cells) {
+		for(int w=0;w<CELLS/16;w++) {
+			long word = word(w);
+			for(int k=0;k<16;k++) {
+				cells[(w<<4)+k] = (int)(word>>>(k<<2)) & 0xF;
+			}
+		}
+		cells[CELLS-1] = last;
+	}
+
+	/**
+	 * @param cell the index of a cell, row * 9 + column
+	 * @return the digit of the cell, 0 if it is empty
+	 */
+	public int get(int cell) {
+		if(cell==CELLS-1) {
+			return last;
+		}
+		return (int)(word(cell>>>4)>>>((cell&15)<<2)) & 0xF;
+	}
+
+	/**
+	 * @return the digit in a row and column, 0 if the cell is empty
+	 */
+	public int get(int row, int col) {
+		return get(row*SIZE+col);
+	}
+
+	/**
+	 * @param cell the index of a cell, row * 9 + column
+	 * @param digit a digit between 1 and 9, or 0 to empty the cell
+	 * @return a board with the digit in the cell and the other cells of this board
+	 * @throws IllegalArgumentException If the digit is out of range
+	 */
+	public Board with(int cell, int digit) throws IllegalArgumentException {
+		if(digit<0 || digit>SIZE) {
+			throw new IllegalArgumentException("Digit must be between 0 and "+SIZE);
+		}
+		long[] words = {w0, w1, w2, w3, w4};
+		int lastDigit = last;
+		if(cell==CELLS-1) {
+			lastDigit = digit;
+		} else {
+			int shift = (cell&15)<<2;
+			words[cell>>>4] = words[cell>>>4] & ~(0xFL<<shift) | (long)digit<<shift;
+		}
+		return new Board(words, lastDigit);
+	}
+
+	/**
+	 * @return the number of cells holding a digit
+	 */
+	public int getGivens() {
+		int givens = last==0 ? 0 : 1;
+		for(int w=0;w<CELLS/16;w++) {
+			long word = word(w);
+			//fold the 4 bits of each cell onto its lowest bit
+			word |= word>>>1;
+			word |= word>>>2;
+			givens += Long.bitCount(word & 0x1111111111111111L);
+		}
+		return givens;
+	}
+
+	/**
+	 * @return true if every cell holds a digit
+	 */
+	public boolean isComplete() {
+		return getGivens()==CELLS;
+	}
+
+	/**
+	 * @return the board packed 4 bits per cell into 41 bytes, the first cell of each byte in the high bits
+	 */
+	public byte[] toBytes() {
+		byte[] packed = new byte[PACKED_LENGTH];
+		for(int cell=0;cell<CELLS;cell++) {
+			packed[cell>>>1] |= (cell&1)==0 ? get(cell)<<4 : get(cell);
+		}
+		return packed;
+	}
+
+	/**
+	 * @return the board as a 9x9 map where 0 marks an empty cell
+	 */
+	public int[][] toArray() {
+		int[][] map = new int[SIZE][SIZE];
+		for(int cell=0;cell<CELLS;cell++) {
+			map[cell/SIZE][cell%SIZE] = get(cell);
+		}
+		return map;
+	}
+
+	/**
+	 * @return the board as a 9x9 map of the front end, where ' ' marks an empty cell
+	 */
+	public Character[][] toSymbols() {
+		Character[][] map = new Character[SIZE][SIZE];
+		for(int cell=0;cell<CELLS;cell++) {
+			map[cell/SIZE][cell%SIZE] = toSymbol(get(cell));
+		}
+		return map;
+	}
+
+	/**
+	 * @param digit a digit between 0 and 9
+	 * @return the symbol of the digit on the front end, ' ' for 0
+	 */
+	public static char toSymbol(int digit) {
+		return digit==0 ? ' ' : (char)('0'+digit);
+	}
+
+	/**
+	 * @param symbol a symbol of the front end: '1' to '9', or ' ' or null for an empty cell
+	 * @return the digit of the symbol, 0 for an empty cell
+	 * @throws IllegalArgumentException If the symbol is not a digit
+	 */
+	public static int toDigit(Character symbol) throws IllegalArgumentException {
+		if(symbol==null || symbol==' ') {
+			return 0;
+		}
+		if(symbol<'1' || symbol>'9') {
+			throw new IllegalArgumentException("Cell must be a digit between 1 and 9");
+		}
+		return symbol-'0';
+	}
+
+	private long word(int w) {
+		switch(w) {
+		case 0:
+			return w0;
+		case 1:
+			return w1;
+		case 2:
+			return w2;
+		case 3:
+			return w3;
+		default:
+			return w4;
+		}
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if(this==obj) {
+			return true;
+		}
+		if(!(obj instanceof Board)) {
+			return false;
+		}
+		Board other = (Board) obj;
+		return w0==other.w0 && w1==other.w1 && w2==other.w2 && w3==other.w3 && w4==other.w4 && last==other.last;
+	}
+
+	@Override
+	public int hashCode() {
+		long hash = w0;
+		hash = hash*0x9E3779B97F4A7C15L + w1;
+		hash = hash*0x9E3779B97F4A7C15L + w2;
+		hash = hash*0x9E3779B97F4A7C15L + w3;
+		hash = hash*0x9E3779B97F4A7C15L + w4;
+		hash = hash*0x9E3779B97F4A7C15L + last;
+		return (int)(hash ^ hash>>>32);
+	}
+
+	/**
+	 * @return the board written as 81 characters row by row, with '.' for the empty cells
+	 */
+	@Override
+	public String toString() {
+		char[] symbols = new char[CELLS];
+		for(int cell=0;cell<CELLS;cell++) {
+			int digit = get(cell);
+			symbols[cell] = digit==0 ? '.' : (char)('0'+digit);
+		}
+		return new String(symbols);
+	}
+}
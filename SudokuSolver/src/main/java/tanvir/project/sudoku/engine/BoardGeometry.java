@@ -0,0 +1,128 @@
+package tanvir.project.sudoku.engine;
+
+/**
+ * The lookup tables of an N^2 x N^2 sudoku board, where N is the size of a sub-matrix: 3 for the classic 9x9 board, 4 for
+ * 16x16 and 5 for 25x25. Cells are numbered row by row, so the cell in row i and column j has the index i*size + j.
+ * Digits are stored as 1 to size, and digit d is bit d-1 of a candidate mask, which fits an int for every supported size.
+ *
+ * The tables of a size are built once and shared by all engines. The row, column and sub-matrix of a cell are kept in
+ * static tables holding all supported sizes back to back, and are looked up at offset + cell. The JIT compiler treats
+ * static final arrays as constants, which keeps the lookups in the search as cheap as with tables dedicated to 9x9.
+ *
+ * @author Tanvir Kaykobad
+ *
+ */
+final class BoardGeometry {
+
+	/**
+	 * The characters used for the digits 1 to 25. Boards larger than 9x9 continue with letters after '9'.
+	 */
+	static final String SYMBOLS = "123456789ABCDEFGHIJKLMNOP";
+
+	static final int MIN_BOX_SIZE = 2, MAX_BOX_SIZE = 5;
+
+	/**
+	 * The row, column and sub-matrix of each cell, for all supported sizes. The cells of a size start at its offset.
+	 */
+	static final int[] ROW_OF, COL_OF, BOX_OF;
+	static {
+		int total = 0;
+		for(int boxSize=MIN_BOX_SIZE;boxSize<=MAX_BOX_SIZE;boxSize++) {
+			total += boxSize*boxSize*boxSize*boxSize;
+		}
+		ROW_OF = new int[total];
+		COL_OF = new int[total];
+		BOX_OF = new int[total];
+	}
+
+	private static final BoardGeometry[] GEOMETRIES = new BoardGeometry[MAX_BOX_SIZE+1];
+	static {
+		int offset = 0;
+		for(int boxSize=MIN_BOX_SIZE;boxSize<=MAX_BOX_SIZE;boxSize++) {
+			GEOMETRIES[boxSize] = new BoardGeometry(boxSize, offset);
+			offset += GEOMETRIES[boxSize].cells;
+		}
+	}
+
+	/**
+	 * The size of a sub-matrix, the number of digits (and of rows, columns and sub-matrices), and the number of cells.
+	 */
+	final int boxSize, size, cells;
+
+	/**
+	 * Mask with the lower size bits set, one bit per digit.
+	 */
+	final int allDigits;
+
+	/**
+	 * The index of the first cell of this size in ROW_OF, COL_OF and BOX_OF.
+	 */
+	final int offset;
+
+	/**
+	 * The cells of the rows, columns and sub-matrices, in that order.
+	 */
+	final int[][] units;
+
+	private BoardGeometry(int boxSize, int offset) {
+		this.boxSize = boxSize;
+		this.size = boxSize*boxSize;
+		this.cells = size*size;
+		this.allDigits = (1 << size) - 1;
+		this.offset = offset;
+
+		units = new int[3*size][size];
+		for(int cell=0;cell<cells;cell++) {
+			int row = cell/size, col = cell%size, box = (row/boxSize)*boxSize + col/boxSize;
+			ROW_OF[offset+cell] = row;
+			COL_OF[offset+cell] = col;
+			BOX_OF[offset+cell] = box;
+			units[row][col] = cell;
+			units[size + col][row] = cell;
+			units[2*size + box][(row%boxSize)*boxSize + col%boxSize] = cell;
+		}
+	}
+
+	/**
+	 * @param boxSize the size of a sub-matrix
+	 * @return the tables of an N^2 x N^2 board with N = boxSize
+	 * @throws IllegalArgumentException If the size is not supported
+	 */
+	static BoardGeometry ofBoxSize(int boxSize) throws IllegalArgumentException {
+		if(boxSize<MIN_BOX_SIZE || boxSize>MAX_BOX_SIZE) {
+			throw new IllegalArgumentException("Sub-matrices must be between "+MIN_BOX_SIZE+"x"+MIN_BOX_SIZE+" and "+MAX_BOX_SIZE+"x"+MAX_BOX_SIZE);
+		}
+		return GEOMETRIES[boxSize];
+	}
+
+	/**
+	 * @param size the number of rows of a board
+	 * @return the tables of the board
+	 * @throws IllegalArgumentException If the board is not 4x4, 9x9, 16x16 or 25x25
+	 */
+	static BoardGeometry ofSize(int size) throws IllegalArgumentException {
+		for(int boxSize=MIN_BOX_SIZE;boxSize<=MAX_BOX_SIZE;boxSize++) {
+			if(boxSize*boxSize==size) {
+				return GEOMETRIES[boxSize];
+			}
+		}
+		throw new IllegalArgumentException("Sudoku Table must be 4x4, 9x9, 16x16 or 25x25");
+	}
+
+	/**
+	 * @param symbol a character of {@link #SYMBOLS}, upper or lower case
+	 * @return the digit of the symbol, or 0 if it is not a digit of this board
+	 */
+	int toDigit(char symbol) {
+		int digit = SYMBOLS.indexOf(Character.toUpperCase(symbol)) + 1;
+		return digit<=size ? digit : 0;
+	}
+
+	/**
+	 * @param digit a digit between 1 and size
+	 * @return the character of the digit
+	 */
+	static char toSymbol(int digit) {
+		return SYMBOLS.charAt(digit-1);
+	}
+}
@@ -0,0 +1,27 @@
+package tanvir.project.sudoku.engine;
+
+/**
+ * A flag for stopping a search from another thread. An engine given a token checks it every few thousand attempts and
+ * gives up once it is cancelled, see {@link Solver#setCancellationToken(CancellationToken)}. One token can be shared by
+ * several engines to stop all of them at once.
+ *
+ * @author Tanvir Kaykobad
+ *
+ */
+public class CancellationToken {
+	private volatile boolean cancelled = false;
+
+	/**
+	 * Requests the searches using this token to stop.
+	 */
+	public void cancel() {
+		cancelled = true;
+	}
+
+	/**
+	 * @return true once {@link #cancel()} has been called
+	 */
+	public boolean isCancelled() {
+		return cancelled;
+	}
+}
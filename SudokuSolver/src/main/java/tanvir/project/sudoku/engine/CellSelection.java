@@ -0,0 +1,20 @@
+package tanvir.project.sudoku.engine;
+
+/**
+ * The heuristics SudokuEngine can use to pick the empty cell it branches on next.
+ *
+ * @author Tanvir Kaykobad
+ *
+ */
+public enum CellSelection {
+	/**
+	 * Branch on the first empty cell, going left to right and top to bottom.
+	 */
+	ROW_MAJOR,
+
+	/**
+	 * Branch on the empty cell with the fewest available digits (minimum remaining values). A cell without any available
+	 * digit is a dead end and a cell with a single one is taken right away.
+	 */
+	MINIMUM_REMAINING_VALUES
+}
@@ -0,0 +1,189 @@
+package tanvir.project.sudoku.engine;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * The rules a board breaks, as found by {@link SudokuEngine#validate()} or {@link #of(Board)}: every row, column and sub-matrix holding a digit
+ * more than once, with the digit and the cells holding it. A report is only built for a board that breaks a rule, a
+ * valid board gets {@link #NONE}, and the message is only written when {@link #getMessage()} is called.
+ *
+ * The units are numbered as in the engine: the rows 0 to size-1, the columns size to 2*size-1 and the sub-matrices
+ * 2*size to 3*size-1, and the cells are indexed row * size + column.
+ *
+ * @author Tanvir Kaykobad
+ *
+ */
+public final class Conflicts implements Serializable {
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * The report of a board that breaks no rule.
+	 */
+	public static final Conflicts NONE = new Conflicts(0, new int[0], new int[0], new int[0][]);
+
+	/**
+	 * The kinds of unit a digit can be repeated in, with the name the message gives them.
+	 */
+	public enum UnitType {
+		ROW("Row"), COLUMN("Col"), BOX("Sub-matrix");
+
+		private final String label;
+
+		private UnitType(String label) {
+			this.label = label;
+		}
+
+		/**
+		 * @return the name of the unit, as shown to users
+		 */
+		public String getLabel() {
+			return label;
+		}
+	}
+
+	private final int size;
+
+	/**
+	 * The unit, the repeated digit and the cells holding it, for each conflict.
+	 */
+	private final int[] units, digits;
+	private final int[][] cells;
+
+	private Conflicts(int size, int[] units, int[] digits, int[][] cells) {
+		this.size = size;
+		this.units = units;
+		this.digits = digits;
+		this.cells = cells;
+	}
+
+	/**
+	 * Checks a board against the row, column and sub-matrix rules without an engine. The digits of each unit are kept as
+	 * the bits of an int, so a board that breaks no rule allocates nothing.
+	 * @param board the board
+	 * @return the rules the board breaks, {@link #NONE} if it is valid
+	 */
+	public static Conflicts of(Board board) {
+		BoardGeometry geometry = BoardGeometry.ofSize(Board.SIZE);
+		int repeated = 0;
+		for(int[] unit:geometry.units) {
+			int seen = 0;
+			for(int cell:unit) {
+				int bit = 1<<board.get(cell) & ~1;
+				if((seen & bit)!=0) {
+					repeated++;
+				}
+				seen |= bit;
+			}
+		}
+		if(repeated==0) {
+			return NONE;
+		}
+		int[] cells = new int[Board.CELLS];
+		board.copyTo(cells);
+		return of(geometry, cells, repeated);
+	}
+
+	/**
+	 * Collects the conflicts of a board, unit by unit.
+	 * @param geometry the tables of the board size
+	 * @param board the cells of the board, row by row, 0 for an empty cell
+	 * @param count at least the number of units repeating a digit, and at least 1
+	 */
+	static Conflicts of(BoardGeometry geometry, int[] board, int count) {
+		int[] units = new int[count], digits = new int[count];
+		int[][] cells = new int[count][];
+		int found = 0;
+		int[] seen = new int[geometry.size+1];
+		for(int unit=0;unit<geometry.units.length;unit++) {
+			for(int cell:geometry.units[unit]) {
+				if(board[cell]>0 && board[cell]<=geometry.size) {
+					seen[board[cell]]++;
+				}
+			}
+			for(int digit=1;digit<=geometry.size;digit++) {
+				if(seen[digit]>1) {
+					int[] repeated = new int[seen[digit]];
+					int k = 0;
+					for(int cell:geometry.units[unit]) {
+						if(board[cell]==digit) {
+							repeated[k++] = cell;
+						}
+					}
+					units[found] = unit;
+					digits[found] = digit;
+					cells[found] = repeated;
+					found++;
+				}
+			}
+			Arrays.fill(seen, 0);
+		}
+		return new Conflicts(geometry.size, Arrays.copyOf(units, found), Arrays.copyOf(digits, found), Arrays.copyOf(cells, found));
+	}
+
+	/**
+	 * @return true if the board breaks no rule
+	 */
+	public boolean isEmpty() {
+		return units.length==0;
+	}
+
+	/**
+	 * @return the number of units repeating a digit
+	 */
+	public int size() {
+		return units.length;
+	}
+
+	/**
+	 * @param i the index of a conflict
+	 * @return whether the conflict is in a row, a column or a sub-matrix
+	 */
+	public UnitType getUnitType(int i) {
+		return UnitType.values()[units[i]/size];
+	}
+
+	/**
+	 * @param i the index of a conflict
+	 * @return the number of the row, column or sub-matrix within its type, from 0
+	 */
+	public int getUnit(int i) {
+		return units[i]%size;
+	}
+
+	/**
+	 * @param i the index of a conflict
+	 * @return the repeated digit
+	 */
+	public int getDigit(int i) {
+		return digits[i];
+	}
+
+	/**
+	 * @param i the index of a conflict
+	 * @return the cells of the unit holding the digit, in the order of the unit
+	 */
+	public int[] getCells(int i) {
+		return cells[i].clone();
+	}
+
+	/**
+	 * @return the conflicts as a sentence such as "Row 1 has multiple 5's, Sub-matrix 3 has multiple 5's", empty if there is none
+	 */
+	public String getMessage() {
+		StringBuilder sb = new StringBuilder();
+		for(int i=0;i<units.length;i++) {
+			if(i>0) {
+				sb.append(", ");
+			}
+			sb.append(getUnitType(i).getLabel()).append(' ').append(getUnit(i)+1).append(" has multiple ")
+				.append(BoardGeometry.toSymbol(digits[i])).append("'s");
+		}
+		return sb.toString();
+	}
+
+	@Override
+	public String toString() {
+		return getMessage();
+	}
+}
@@ -0,0 +1,420 @@
+package tanvir.project.sudoku.engine;
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.log4j.LogManager;
+import org.apache.log4j.Logger;
+
+/**
+ * This class solves sudoku puzzles as an exact cover problem, using Knuth's Algorithm X with dancing links.
+ *
+ * Every way of filling a cell with a digit is a row of the exact cover matrix, and every rule is a column: each cell is
+ * filled, and each digit appears in each row, column and sub-matrix. A solution is a set of rows covering every column
+ * exactly once. The matrix is stored as circular doubly linked lists in int arrays, where a node is an index into the
+ * arrays, so covering and uncovering columns during the search does not allocate.
+ *
+ * @author Tanvir Kaykobad
+ *
+ */
+public class DancingLinksEngine implements Solver {
+	private static final Logger LOGGER = LogManager.getLogger(DancingLinksEngine.class);
+
+	/**
+	 * The root node. The column headers are the nodes 1 to columns, followed by 4 nodes for each matrix row.
+	 */
+	private static final int ROOT = 0;
+
+	private final BoardGeometry geometry;
+	private final int size, cells;
+
+	/**
+	 * One column per cell, followed by one column per digit and row, per digit and column, and per digit and sub-matrix.
+	 */
+	private final int columns;
+
+	/**
+	 * One matrix row for each digit of each cell. The row id of digit d (0 based) in a cell is cell*size + d.
+	 */
+	private final int rows;
+
+	private final int[] left, right, up, down;
+
+	/**
+	 * The column header of each node, and the matrix row id of each non-header node.
+	 */
+	private final int[] column, rowId;
+
+	/**
+	 * The number of nodes left in each column.
+	 */
+	private final int[] columnSize;
+
+	/**
+	 * The board flattened row by row. 0 marks an empty cell.
+	 */
+	private final int[] board;
+
+	/**
+	 * The matrix rows selected by the search, up to depth, and the number of given cells covered before the search.
+	 */
+	private final int[] selected;
+	private int depth, givens;
+
+	private long attempt = 0, backtrack = 0;
+
+	/**
+	 * False if two given cells cover the same column, in which case no solution exists.
+	 */
+	private boolean valid = true;
+
+	/**
+	 * The cancellation token, time limit and attempt limit of the search, checked once attempt reaches nextCheck.
+	 */
+	private final SearchLimits limits = new SearchLimits();
+	private long nextCheck = Long.MAX_VALUE;
+	private boolean aborted = false;
+
+	/**
+	 * The outcome of the last solve.
+	 */
+	private SolveStatus status = SolveStatus.NOT_STARTED;
+
+	/**
+	 * Contructor used by the class SudokuMap for testing
+	 * @param map a 2d integer map where each cell is a digit between 1 and 9, or up to 25 for larger boards. If the cell contains 0, it means the cell has not yet been filled.
+	 * @throws IllegalArgumentException If the map is not 4x4, 9x9, 16x16 or 25x25, or if a cell is not between 0 and the size
+	 */
+	public DancingLinksEngine(int[][] map) throws IllegalArgumentException {
+		this(BoardGeometry.ofSize(map.length));
+		for(int i=0;i<size;i++) {
+			if(map[i].length!=size) {
+				throw new IllegalArgumentException("Sudoku Table must be "+size+"x"+size);
+			}
+			for(int j=0;j<size;j++) {
+				if(map[i][j]<0 || map[i][j]>size) {
+					throw new IllegalArgumentException("Digit must be between 0 and "+size);
+				}
+				board[i*size+j] = map[i][j];
+			}
+		}
+		buildMatrix();
+		coverGivens();
+	}
+
+	/**
+	 * Allocates the matrix of a board size.
+	 */
+	private DancingLinksEngine(BoardGeometry geometry) {
+		this.geometry = geometry;
+		size = geometry.size;
+		cells = geometry.cells;
+		columns = 4*cells;
+		rows = cells*size;
+		columnSize = new int[columns+1];
+		board = new int[cells];
+		selected = new int[cells];
+
+		int nodes = 1 + columns + 4*rows;
+		left = new int[nodes];
+		right = new int[nodes];
+		up = new int[nodes];
+		down = new int[nodes];
+		column = new int[nodes];
+		rowId = new int[nodes];
+	}
+
+	/**
+	 * Constructor
+	 * @param map a 2d Character map where each cell is a digit between '1' and '9', continued by 'A' to 'P' for larger boards. If the cell contains ' ', it means the cell has not yet been filled.
+	 * @throws IllegalArgumentException If the map is not 4x4, 9x9, 16x16 or 25x25, or if it already breaks one of the row, column or sub-matrix rules.
+	 */
+	public DancingLinksEngine(final Character[][] map) throws IllegalArgumentException {
+		this(BoardGeometry.ofSize(map.length));
+		for(int i=0;i<size;i++) {
+			if(map[i].length!=size) {
+				throw new IllegalArgumentException("Sudoku Table must be "+size+"x"+size);
+			}
+			for(int j=0;j<size;j++) {
+				board[i*size+j] = map[i][j]!=null ? geometry.toDigit(map[i][j]) : 0;
+			}
+		}
+		buildMatrix();
+		coverGivens();
+		checkValid();
+	}
+
+	/**
+	 * Constructor
+	 * @param board the board
+	 * @throws IllegalArgumentException If the board already breaks one of the row, column or sub-matrix rules.
+	 */
+	public DancingLinksEngine(Board board) throws IllegalArgumentException {
+		this(BoardGeometry.ofSize(Board.SIZE));
+		board.copyTo(this.board);
+		buildMatrix();
+		coverGivens();
+		checkValid();
+	}
+
+	/**
+	 * Links the column headers and the 4 nodes of each matrix row.
+	 */
+	private void buildMatrix() {
+		for(int c=0;c<=columns;c++) {
+			left[c] = c==0 ? columns : c-1;
+			right[c] = c==columns ? ROOT : c+1;
+			up[c] = c;
+			down[c] = c;
+			column[c] = c;
+		}
+
+		int node = columns+1;
+		for(int id=0;id<rows;id++) {
+			int cell = id/size, digit = id%size;
+			int first = node;
+			appendToColumn(node++, 1 + cell, id);
+			appendToColumn(node++, 1 + cells + BoardGeometry.ROW_OF[geometry.offset+cell]*size + digit, id);
+			appendToColumn(node++, 1 + 2*cells + BoardGeometry.COL_OF[geometry.offset+cell]*size + digit, id);
+			appendToColumn(node++, 1 + 3*cells + BoardGeometry.BOX_OF[geometry.offset+cell]*size + digit, id);
+			for(int k=first;k<node;k++) {
+				left[k] = k==first ? node-1 : k-1;
+				right[k] = k==node-1 ? first : k+1;
+			}
+		}
+	}
+
+	/**
+	 * Appends a node of the matrix row id at the bottom of a column.
+	 */
+	private void appendToColumn(int node, int header, int id) {
+		column[node] = header;
+		rowId[node] = id;
+		up[node] = up[header];
+		down[node] = header;
+		down[up[header]] = node;
+		up[header] = node;
+		columnSize[header]++;
+	}
+
+	/**
+	 * Covers the columns of the given cells, so the search only has to place the remaining ones.
+	 */
+	private void coverGivens() {
+		for(int cell=0;cell<cells;cell++) {
+			if(board[cell]!=0) {
+				int first = columns+1 + 4*(cell*size + board[cell]-1);
+				int node = first;
+				do {
+					//a column unlinked from its neighbours has already been covered by another given
+					if(right[left[column[node]]]!=column[node]) {
+						valid = false;
+						return;
+					}
+					cover(column[node]);
+					node = right[node];
+				} while(node!=first);
+				givens++;
+			}
+		}
+	}
+
+	/**
+	 * Two givens cover the same column only if they repeat a digit in a row, column or sub-matrix, so the board is
+	 * scanned for its conflicts only then.
+	 * @throws InvalidBoardException If the givens break one of the row, column or sub-matrix rules
+	 */
+	private void checkValid() throws InvalidBoardException {
+		if(!valid) {
+			throw new InvalidBoardException(Conflicts.of(geometry, board, geometry.units.length*size));
+		}
+	}
+
+	/**
+	 * Removes a column from the header list and all rows intersecting it from the other columns.
+	 */
+	private void cover(int c) {
+		left[right[c]] = left[c];
+		right[left[c]] = right[c];
+		for(int i=down[c];i!=c;i=down[i]) {
+			for(int j=right[i];j!=i;j=right[j]) {
+				up[down[j]] = up[j];
+				down[up[j]] = down[j];
+				columnSize[column[j]]--;
+			}
+		}
+	}
+
+	/**
+	 * Undoes {@link #cover(int)}, relinking in the reverse order.
+	 */
+	private void uncover(int c) {
+		for(int i=up[c];i!=c;i=up[i]) {
+			for(int j=left[i];j!=i;j=left[j]) {
+				columnSize[column[j]]++;
+				down[up[j]] = j;
+				up[down[j]] = j;
+			}
+		}
+		left[right[c]] = c;
+		right[left[c]] = c;
+	}
+
+	/**
+	 * Solves the board in place.
+	 * @return true if the board was solved, false if it is invalid, has no solution or the search gave up, see {@link #getStatus()}
+	 */
+	public boolean solve() {
+		if(!valid) {
+			status = SolveStatus.INVALID;
+			return false;
+		}
+		aborted = false;
+		nextCheck = limits.start(attempt);
+		if(!search()) {
+			if(!aborted) {
+				status = SolveStatus.NO_SOLUTION;
+			}
+			return false;
+		}
+		for(int k=0;k<depth;k++) {
+			board[selected[k]/size] = selected[k]%size + 1;
+		}
+		status = SolveStatus.SOLVED;
+		return true;
+	}
+
+	/**
+	 * Algorithm X. Branches on the column with the fewest rows left and tries each of its rows.
+	 * @return true if every column has been covered, in which case the selected rows are left covered
+	 */
+	private boolean search() {
+		if(right[ROOT]==ROOT) {
+			return true;
+		}
+
+		int best = right[ROOT];
+		for(int c=right[best];c!=ROOT && columnSize[best]>1;c=right[c]) {
+			if(columnSize[c]<columnSize[best]) {
+				best = c;
+			}
+		}
+		if(columnSize[best]==0) {
+			return false;
+		}
+
+		cover(best);
+		for(int r=down[best];r!=best && !aborted;r=down[r]) {
+			selected[depth++] = rowId[r];
+			attempt += 1;
+			if(attempt>=nextCheck) {
+				checkLimits();
+			}
+			for(int j=right[r];j!=r;j=right[j]) {
+				cover(column[j]);
+			}
+			if(!aborted && search()) {
+				return true;
+			}
+			for(int j=left[r];j!=r;j=left[j]) {
+				uncover(column[j]);
+			}
+			depth--;
+			backtrack++;
+		}
+		uncover(best);
+		return false;
+	}
+
+	/**
+	 * Reports the progress of the search, checks the cancellation token and the limits of the search, and aborts the
+	 * search if it has to give up.
+	 */
+	private void checkLimits() {
+		limits.progress(attempt, givens+depth);
+		SolveStatus reason = limits.check(attempt);
+		if(reason==null) {
+			nextCheck = limits.next(attempt);
+		} else {
+			aborted = true;
+			status = reason;
+		}
+	}
+
+	@Override
+	public Character[][] getSolution() throws SolveTimeoutException {
+		if(!solveOrThrow()) {
+			return null;
+		}
+
+		Character[][] solution = new Character[size][size];
+		for(int cell=0;cell<cells;cell++) {
+			solution[cell/size][cell%size] = BoardGeometry.toSymbol(board[cell]);
+		}
+		return solution;
+	}
+
+	/**
+	 * Like {@link #getSolution()}, but the solution is packed straight from the cells of the engine.
+	 * @throws IllegalArgumentException If the board is not 9x9
+	 */
+	@Override
+	public Board getSolutionBoard() throws SolveTimeoutException, IllegalArgumentException {
+		return solveOrThrow() ? Board.of(board) : null;
+	}
+
+	/**
+	 * Solves the board, turning a search that gave up into an exception.
+	 * @return true if the board was solved, false if it has no solution
+	 */
+	private boolean solveOrThrow() throws SolveTimeoutException {
+		boolean solved = solve();
+		if(LOGGER.isDebugEnabled()) {
+			LOGGER.debug("Number of attempts: "+attempt+", backtracks: "+backtrack);
+		}
+		if(status==SolveStatus.TIMED_OUT || status==SolveStatus.CANCELLED) {
+			throw SearchLimits.toException(status, attempt);
+		}
+		return solved;
+	}
+
+	/**
+	 * @return the number of attempts DancingLinksEngine took for the puzzle, which is the number of times a row of the exact cover matrix was selected.
+	 */
+	@Override
+	public long getNumberOfAttempts() {
+		return attempt;
+	}
+
+	/**
+	 * @return the number of rows DancingLinksEngine deselected because the search below them failed
+	 */
+	@Override
+	public long getNumberOfBacktracks() {
+		return backtrack;
+	}
+
+	@Override
+	public SolveStatus getStatus() {
+		return status;
+	}
+
+	@Override
+	public void setCancellationToken(CancellationToken token) {
+		limits.setCancellationToken(token);
+	}
+
+	@Override
+	public void setProgressListener(ProgressListener listener) {
+		limits.setProgressListener(listener);
+	}
+
+	@Override
+	public void setTimeLimit(long timeout, TimeUnit unit) throws IllegalArgumentException {
+		limits.setTimeLimit(timeout, unit);
+	}
+
+	@Override
+	public void setAttemptLimit(long attempts) throws IllegalArgumentException {
+		limits.setAttemptLimit(attempts);
+	}
+}
@@ -0,0 +1,30 @@
+package tanvir.project.sudoku.engine;
+
+/**
+ * Thrown when a board breaks one of the row, column or sub-matrix rules. The message is written from the
+ * {@link Conflicts} of the board when it is asked for, so callers that only check the outcome never build it.
+ *
+ * @author Tanvir Kaykobad
+ *
+ */
+public class InvalidBoardException extends IllegalArgumentException {
+	private static final long serialVersionUID = 1L;
+
+	private final Conflicts conflicts;
+
+	public InvalidBoardException(Conflicts conflicts) {
+		this.conflicts = conflicts;
+	}
+
+	/**
+	 * @return the rules the board breaks
+	 */
+	public Conflicts getConflicts() {
+		return conflicts;
+	}
+
+	@Override
+	public String getMessage() {
+		return conflicts.getMessage();
+	}
+}
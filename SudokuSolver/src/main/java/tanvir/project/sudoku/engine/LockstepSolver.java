@@ -0,0 +1,307 @@
+package tanvir.project.sudoku.engine;
+
+import java.util.Arrays;
+
+/**
+ * This class solves up to {@link #LANES} 9x9 puzzles at once, for batch workloads where most puzzles fall to singles.
+ *
+ * The state of the puzzles is kept lane by lane: an array per cell holding its digit in every puzzle, and an array per
+ * row, column and sub-matrix holding the digits placed in it in every puzzle, as the same bit masks SudokuEngine keeps
+ * in rulesRow, rulesCol and rulesBox. Propagation walks the cells and units once for all puzzles, with the lanes in the
+ * innermost loop, and fills naked and hidden singles with branch free mask arithmetic. The loops over the lanes index
+ * their arrays by the lane alone, the shape the JIT compiler turns into SIMD instructions; an offset into a shared array
+ * would keep it from doing so. A puzzle running into a contradiction is masked off without stopping the others.
+ *
+ * Once singles make no more progress in any lane, the puzzles still incomplete are finished one by one by SudokuEngine,
+ * with minimum remaining values and propagation, starting from the cells filled in lock-step. Only the search of those
+ * puzzles is scalar; easy puzzles never leave the lanes.
+ *
+ * This class is the scalar version, which relies on the JIT compiler. VectorLockstepSolver runs the same loops
+ * on the Vector API; it is only compiled by the vector profile of the pom, see {@link #create()}.
+ *
+ * A solver is not thread safe, and is reused for every batch without allocating.
+ *
+ * @author Tanvir Kaykobad
+ *
+ */
+public class LockstepSolver {
+
+	/**
+	 * The number of puzzles solved at once.
+	 */
+	public static final int LANES = 16;
+
+	private static final BoardGeometry GEOMETRY = BoardGeometry.ofSize(Board.SIZE);
+	static final int SIZE = GEOMETRY.size, CELLS = GEOMETRY.cells, ALL_DIGITS = GEOMETRY.allDigits;
+	static final int[][] UNITS = GEOMETRY.units;
+	private static final int[] ROW_OF = BoardGeometry.ROW_OF, COL_OF = BoardGeometry.COL_OF, BOX_OF = BoardGeometry.BOX_OF;
+	private static final int OFFSET = GEOMETRY.offset;
+
+	/**
+	 * The bit of the digit of each cell in each lane, 0 for an empty cell.
+	 */
+	final int[][] board = new int[CELLS][LANES];
+
+	/**
+	 * The digits placed in each row, column and sub-matrix of each lane, and the row, column and sub-matrix of each cell.
+	 */
+	final int[][] rulesRow = new int[SIZE][LANES], rulesCol = new int[SIZE][LANES], rulesBox = new int[SIZE][LANES];
+	final int[][] rowOf = new int[CELLS][], colOf = new int[CELLS][], boxOf = new int[CELLS][];
+
+	/**
+	 * -1 for a lane that is unused, breaks a rule or ran into a contradiction, 0 otherwise.
+	 */
+	final int[] dead = new int[LANES];
+
+	/**
+	 * The candidates of the cells of the unit being scanned for hidden singles, and the digits fitting at least one and at
+	 * least two of its cells, per lane.
+	 */
+	final int[][] unitCandidates = new int[SIZE][LANES];
+	final int[] once = new int[LANES], twice = new int[LANES];
+
+	private final boolean[] solved = new boolean[LANES];
+
+	/**
+	 * Non zero if a live lane had an empty cell at the end of the last pass for naked singles.
+	 */
+	int open;
+
+	/**
+	 * Finishes the lanes that singles cannot.
+	 */
+	private final SudokuEngine fallback = new SudokuEngine(SIZE, CellSelection.MINIMUM_REMAINING_VALUES);
+	private long fallbacks = 0;
+
+	/**
+	 * @return a VectorLockstepSolver if the classes were built with the vector profile and the JVM runs with
+	 * --add-modules jdk.incubator.vector, a scalar solver otherwise
+	 */
+	public static LockstepSolver create() {
+		try {
+			return (LockstepSolver) Class.forName(LockstepSolver.class.getPackage().getName()+".VectorLockstepSolver")
+					.getDeclaredConstructor().newInstance();
+		} catch (ReflectiveOperationException | LinkageError e) {
+			return new LockstepSolver();
+		}
+	}
+
+	public LockstepSolver() {
+		fallback.setPropagationEnabled(true);
+		for(int cell=0;cell<CELLS;cell++) {
+			rowOf[cell] = rulesRow[ROW_OF[OFFSET+cell]];
+			colOf[cell] = rulesCol[COL_OF[OFFSET+cell]];
+			boxOf[cell] = rulesBox[BOX_OF[OFFSET+cell]];
+		}
+	}
+
+	/**
+	 * @param lane the puzzle, between 0 and LANES-1
+	 * @param cell the index of a cell, row * 9 + column
+	 * @param digit a digit between 1 and 9, or 0 to empty the cell
+	 * @throws IllegalArgumentException If the digit is out of range
+	 */
+	public void setCell(int lane, int cell, int digit) throws IllegalArgumentException {
+		if(digit<0 || digit>SIZE) {
+			throw new IllegalArgumentException("Digit must be between 0 and "+SIZE);
+		}
+		board[cell][lane] = digit==0 ? 0 : 1<<(digit-1);
+	}
+
+	/**
+	 * @param lane the puzzle, between 0 and LANES-1
+	 * @param cell the index of a cell, row * 9 + column
+	 * @return the digit of the cell, or 0 if it is empty
+	 */
+	public int getCell(int lane, int cell) {
+		int bit = board[cell][lane];
+		return bit==0 ? 0 : Integer.numberOfTrailingZeros(bit)+1;
+	}
+
+	/**
+	 * @param lane the puzzle, between 0 and LANES-1
+	 * @return true if the last {@link #solve(int)} solved the puzzle of the lane
+	 */
+	public boolean isSolved(int lane) {
+		return solved[lane];
+	}
+
+	/**
+	 * @return the number of puzzles singles could not finish, which were handed to SudokuEngine
+	 */
+	public long getNumberOfFallbacks() {
+		return fallbacks;
+	}
+
+	/**
+	 * @return the guesses SudokuEngine made for the puzzles handed to it
+	 */
+	public long getNumberOfAttempts() {
+		return fallback.getNumberOfAttempts();
+	}
+
+	/**
+	 * @return the cells SudokuEngine filled by propagation for the puzzles handed to it
+	 */
+	public long getNumberOfPropagations() {
+		return fallback.getNumberOfPropagations();
+	}
+
+	/**
+	 * Solves the puzzles of the first lanes in place. A puzzle that breaks a rule or has no solution is left partly filled
+	 * and reported by {@link #isSolved(int)}.
+	 * @param lanes the number of lanes holding puzzles
+	 * @return the number of puzzles solved
+	 * @throws IllegalArgumentException If the number of lanes is not between 1 and LANES
+	 */
+	public int solve(int lanes) throws IllegalArgumentException {
+		if(lanes<1 || lanes>LANES) {
+			throw new IllegalArgumentException("Number of lanes must be between 1 and "+LANES);
+		}
+		start(lanes);
+		//the hidden singles, which take a pass per unit, are only looked for once no naked single is left
+		while(fillNakedSingles()!=0 || (open!=0 && fillHiddenSingles()!=0)) {
+			//repeat while any lane made progress
+		}
+
+		int count = 0;
+		for(int lane=0;lane<lanes;lane++) {
+			solved[lane] = dead[lane]==0 && (isComplete(lane) || finish(lane));
+			if(solved[lane]) {
+				count++;
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Records the digits of every unit, and marks the unused lanes and the lanes breaking a rule as dead.
+	 */
+	void start(int lanes) {
+		for(int unit=0;unit<SIZE;unit++) {
+			Arrays.fill(rulesRow[unit], 0);
+			Arrays.fill(rulesCol[unit], 0);
+			Arrays.fill(rulesBox[unit], 0);
+		}
+		for(int lane=0;lane<LANES;lane++) {
+			dead[lane] = lane<lanes ? 0 : -1;
+			solved[lane] = false;
+		}
+		for(int cell=0;cell<CELLS;cell++) {
+			int[] digits = board[cell], row = rowOf[cell], col = colOf[cell], box = boxOf[cell];
+			for(int lane=0;lane<LANES;lane++) {
+				int bit = digits[lane];
+				//-1 if the digit is already placed in one of the units
+				dead[lane] |= -((row[lane] | col[lane] | box[lane]) & bit)>>31;
+				row[lane] |= bit;
+				col[lane] |= bit;
+				box[lane] |= bit;
+			}
+		}
+	}
+
+	/**
+	 * Fills every empty cell that has a single candidate, in all live lanes, and marks the lanes with an empty cell
+	 * without candidates as dead.
+	 * @return the digits placed, or'ed over the lanes: 0 if no lane made progress
+	 */
+	int fillNakedSingles() {
+		int progress = 0, empties = 0;
+		for(int cell=0;cell<CELLS;cell++) {
+			int[] digits = board[cell], row = rowOf[cell], col = colOf[cell], box = boxOf[cell], dead = this.dead;
+			for(int lane=0;lane<LANES;lane++) {
+				int bit = digits[lane];
+				//-1 if the cell is empty, 0 otherwise
+				int empty = (bit-1)>>31;
+				int candidates = ~(row[lane] | col[lane] | box[lane]) & ALL_DIGITS & empty;
+				int stuck = dead[lane] | (empty & ((candidates-1)>>31));
+				dead[lane] = stuck;
+				//the candidate if there is exactly one, 0 otherwise
+				int single = candidates & (((candidates & (candidates-1))-1)>>31) & ~stuck;
+				digits[lane] = bit | single;
+				row[lane] |= single;
+				col[lane] |= single;
+				box[lane] |= single;
+				progress |= single;
+				empties |= (single-1)>>31 & empty & ~stuck;
+			}
+		}
+		open = empties;
+		return progress;
+	}
+
+	/**
+	 * Fills every digit that fits only one cell of a unit, in all live lanes, and marks the lanes with a digit that fits
+	 * no cell of a unit as dead.
+	 * @return the digits placed, or'ed over the lanes: 0 if no lane made progress
+	 */
+	int fillHiddenSingles() {
+		int progress = 0;
+		for(int unit=0;unit<UNITS.length;unit++) {
+			int[] cells = UNITS[unit];
+			int[] rules = (unit<SIZE ? rulesRow : unit<2*SIZE ? rulesCol : rulesBox)[unit%SIZE];
+			int[] once = this.once, twice = this.twice, dead = this.dead;
+			Arrays.fill(once, 0);
+			Arrays.fill(twice, 0);
+			for(int i=0;i<SIZE;i++) {
+				int cell = cells[i];
+				int[] digits = board[cell], row = rowOf[cell], col = colOf[cell], box = boxOf[cell], candidates = unitCandidates[i];
+				for(int lane=0;lane<LANES;lane++) {
+					int fit = ~(row[lane] | col[lane] | box[lane]) & ALL_DIGITS & ((digits[lane]-1)>>31);
+					candidates[lane] = fit;
+					twice[lane] |= once[lane] & fit;
+					once[lane] |= fit;
+				}
+			}
+			for(int lane=0;lane<LANES;lane++) {
+				int missing = ALL_DIGITS & ~rules[lane] & ~once[lane];
+				int stuck = dead[lane] | (-missing)>>31;
+				dead[lane] = stuck;
+				//the hidden singles of the unit, kept in once
+				once[lane] &= ~twice[lane] & ~stuck;
+			}
+			for(int i=0;i<SIZE;i++) {
+				int cell = cells[i];
+				int[] digits = board[cell], row = rowOf[cell], col = colOf[cell], box = boxOf[cell], candidates = unitCandidates[i];
+				for(int lane=0;lane<LANES;lane++) {
+					int hidden = candidates[lane] & once[lane];
+					//a cell holding two hidden singles gets the lower one, the other then fits nowhere
+					int single = hidden & -hidden;
+					digits[lane] |= single;
+					row[lane] |= single;
+					col[lane] |= single;
+					box[lane] |= single;
+					progress |= single;
+				}
+			}
+		}
+		return progress;
+	}
+
+	private boolean isComplete(int lane) {
+		for(int cell=0;cell<CELLS;cell++) {
+			if(board[cell][lane]==0) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Solves the rest of a lane with SudokuEngine, and copies the solution back into the lane.
+	 * @return true if the lane was solved
+	 */
+	private boolean finish(int lane) {
+		fallbacks++;
+		for(int cell=0;cell<CELLS;cell++) {
+			fallback.setCell(cell, getCell(lane, cell));
+		}
+		if(!fallback.solve()) {
+			return false;
+		}
+		for(int cell=0;cell<CELLS;cell++) {
+			setCell(lane, cell, fallback.getCell(cell));
+		}
+		return true;
+	}
+}
@@ -0,0 +1,20 @@
+package tanvir.project.sudoku.engine;
+
+/**
+ * Receives the progress of a running search, see {@link Solver#setProgressListener(ProgressListener)}. The engine calls
+ * it on the searching thread every few thousand attempts, so it has to return quickly; publishing the values to another
+ * thread is the intended use.
+ *
+ * @author Tanvir Kaykobad
+ *
+ */
+@FunctionalInterface
+public interface ProgressListener {
+
+	/**
+	 * @param attempts the attempts of the engine so far
+	 * @param depth the number of cells filled on the board at the current node of the search, the given cells included
+	 * @param elapsed the time since the search started, in nanoseconds
+	 */
+	void onProgress(long attempts, int depth, long elapsed);
+}
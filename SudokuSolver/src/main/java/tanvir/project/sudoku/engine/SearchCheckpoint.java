@@ -0,0 +1,339 @@
+package tanvir.project.sudoku.engine;
+
+import java.io.IOException;
+import java.io.InvalidObjectException;
+import java.io.ObjectInputStream;
+import java.io.Serializable;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The complete state of a search of {@link SudokuEngine} that gave up on its time limit, attempt limit or cancellation
+ * token, taken by {@link SudokuEngine#checkpoint()} and resumed by {@link SudokuEngine#restore(SearchCheckpoint)} and
+ * {@link SudokuEngine#resume()}, possibly in another JVM.
+ *
+ * The search is saved as its board, the guess of each level of its stack with the digits that level has not tried yet,
+ * the order of the empty cells and the counters of the engine. The cells filled by propagation are not saved: resuming
+ * replays the guesses, which fills them again, and puts the empty cells back in their order, so that the resumed search
+ * takes the same steps as a search that never stopped. A checkpoint of a 9x9 puzzle with e empty cells and a stack of
+ * d levels takes 129 + 2e + 7d bytes, see {@link #toBytes()}.
+ *
+ * {@link #split()} cuts the rest of the search along the frontier of the stack, so a long count can be shared between
+ * machines.
+ *
+ * @author Tanvir Kaykobad
+ *
+ */
+public final class SearchCheckpoint implements Serializable {
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * The first byte of a checkpoint packed by {@link #toBytes()}, changed whenever the format changes.
+	 */
+	private static final byte VERSION = 1;
+
+	private static final int PROPAGATION = 1, COUNTING = 2;
+
+	private final int size;
+	private final CellSelection cellSelection;
+	private final boolean propagationEnabled, counting;
+	private final long solutionLimit, solutionCount;
+	private final long attempts, propagations, backtracks;
+
+	/**
+	 * The board before the first guess, row by row, 0 for an empty cell.
+	 */
+	private final int[] board;
+
+	/**
+	 * The cell, the digit being tried and the digits left to try of each level, from the first guess. The digit of the
+	 * last level has not been searched yet.
+	 */
+	private final int[] cells, digits, remaining;
+
+	/**
+	 * The empty cells of the board in the order the engine kept them in when the search stopped, or none if the order is
+	 * not known.
+	 */
+	private final int[] order;
+
+	SearchCheckpoint(int size, CellSelection cellSelection, boolean propagationEnabled, boolean counting, long solutionLimit,
+			long solutionCount, long attempts, long propagations, long backtracks, int[] board, int[] cells, int[] digits,
+			int[] remaining, int[] order) {
+		this.size = size;
+		this.cellSelection = cellSelection;
+		this.propagationEnabled = propagationEnabled;
+		this.counting = counting;
+		this.solutionLimit = solutionLimit;
+		this.solutionCount = solutionCount;
+		this.attempts = attempts;
+		this.propagations = propagations;
+		this.backtracks = backtracks;
+		this.board = board;
+		this.cells = cells;
+		this.digits = digits;
+		this.remaining = remaining;
+		this.order = order;
+	}
+
+	/**
+	 * Reads a checkpoint packed by {@link #toBytes()}.
+	 * @param packed the packed checkpoint
+	 * @return the checkpoint
+	 * @throws IllegalArgumentException If the bytes are not a checkpoint of this format
+	 */
+	public static SearchCheckpoint fromBytes(byte[] packed) throws IllegalArgumentException {
+		ByteBuffer in = ByteBuffer.wrap(packed);
+		try {
+			if(in.get()!=VERSION) {
+				throw new IllegalArgumentException("Checkpoint must start with version "+VERSION);
+			}
+			int size = in.get();
+			BoardGeometry geometry = BoardGeometry.ofSize(size);
+			int selection = in.get();
+			if(selection<0 || selection>=CellSelection.values().length) {
+				throw new IllegalArgumentException("Unknown cell selection "+selection);
+			}
+			int flags = in.get();
+			long solutionLimit = in.getLong(), solutionCount = in.getLong();
+			long attempts = in.getLong(), propagations = in.getLong(), backtracks = in.getLong();
+			int[] board = new int[geometry.cells];
+			for(int cell=0;cell<board.length;cell++) {
+				board[cell] = in.get();
+			}
+			int depth = in.getShort();
+			if(depth<1 || depth>geometry.cells) {
+				throw new IllegalArgumentException("Checkpoint must have between 1 and "+geometry.cells+" levels");
+			}
+			int[] cells = new int[depth], digits = new int[depth], remaining = new int[depth];
+			for(int level=0;level<depth;level++) {
+				cells[level] = in.getShort();
+				digits[level] = in.get();
+				remaining[level] = in.getInt();
+			}
+			int[] order = new int[in.getShort()];
+			for(int k=0;k<order.length;k++) {
+				order[k] = in.getShort();
+			}
+			if(in.hasRemaining()) {
+				throw new IllegalArgumentException("Checkpoint has "+in.remaining()+" trailing bytes");
+			}
+			SearchCheckpoint checkpoint = new SearchCheckpoint(size, CellSelection.values()[selection], (flags & PROPAGATION)!=0,
+					(flags & COUNTING)!=0, solutionLimit, solutionCount, attempts, propagations, backtracks, board, cells, digits, remaining, order);
+			checkpoint.check();
+			return checkpoint;
+		} catch (BufferUnderflowException e) {
+			throw new IllegalArgumentException("Checkpoint is truncated");
+		}
+	}
+
+	/**
+	 * Checks that the levels fit the board, so that a restored engine never indexes out of its arrays.
+	 * @throws IllegalArgumentException If a digit, a cell or a level is out of range
+	 */
+	private void check() throws IllegalArgumentException {
+		BoardGeometry geometry = BoardGeometry.ofSize(size);
+		if(board.length!=geometry.cells || cells.length==0 || cells.length>geometry.cells || digits.length!=cells.length
+				|| remaining.length!=cells.length || solutionLimit<=0) {
+			throw new IllegalArgumentException("Checkpoint does not have the shape of a "+size+"x"+size+" search");
+		}
+		for(int digit:board) {
+			if(digit<0 || digit>size) {
+				throw new IllegalArgumentException("Digit must be between 0 and "+size);
+			}
+		}
+		boolean[] seen = new boolean[geometry.cells];
+		for(int level=0;level<cells.length;level++) {
+			int cell = cells[level];
+			if(cell<0 || cell>=geometry.cells || seen[cell] || board[cell]!=0) {
+				throw new IllegalArgumentException("Level "+level+" does not branch on an empty cell");
+			}
+			seen[cell] = true;
+			if(digits[level]<1 || digits[level]>size || (remaining[level] & ~geometry.allDigits)!=0) {
+				throw new IllegalArgumentException("Digit must be between 1 and "+size);
+			}
+		}
+		if(order.length==0) {
+			return;
+		}
+		Arrays.fill(seen, false);
+		int empty = 0;
+		for(int cell:order) {
+			if(cell<0 || cell>=geometry.cells || seen[cell] || board[cell]!=0) {
+				throw new IllegalArgumentException("Order of the empty cells has a cell that is not empty");
+			}
+			seen[cell] = true;
+			empty++;
+		}
+		for(int digit:board) {
+			empty -= digit==0 ? 1 : 0;
+		}
+		if(empty!=0) {
+			throw new IllegalArgumentException("Order of the empty cells misses an empty cell");
+		}
+	}
+
+	private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+		in.defaultReadObject();
+		try {
+			check();
+		} catch (IllegalArgumentException e) {
+			throw new InvalidObjectException(e.getMessage());
+		}
+	}
+
+	/**
+	 * @return the checkpoint packed into bytes: a header of 44 bytes, a byte per cell of the board, the number of levels
+	 * and 7 bytes per level holding its cell, its digit and the digits it has left to try, and the number of empty cells
+	 * in order and 2 bytes per cell
+	 */
+	public byte[] toBytes() {
+		ByteBuffer out = ByteBuffer.allocate(48 + board.length + 7*cells.length + 2*order.length);
+		out.put(VERSION).put((byte) size).put((byte) cellSelection.ordinal())
+			.put((byte) ((propagationEnabled ? PROPAGATION : 0) | (counting ? COUNTING : 0)));
+		out.putLong(solutionLimit).putLong(solutionCount).putLong(attempts).putLong(propagations).putLong(backtracks);
+		for(int digit:board) {
+			out.put((byte) digit);
+		}
+		out.putShort((short) cells.length);
+		for(int level=0;level<cells.length;level++) {
+			out.putShort((short) cells[level]).put((byte) digits[level]).putInt(remaining[level]);
+		}
+		out.putShort((short) order.length);
+		for(int cell:order) {
+			out.putShort((short) cell);
+		}
+		return out.array();
+	}
+
+	/**
+	 * Splits the rest of the search into parts that share no solution and can be resumed independently, one per branch of
+	 * the frontier of the stack. The first part goes on with the branch the search was in, without the digits left to try
+	 * at any level, and keeps the counters of this checkpoint. Every other part is one digit left to try at one level,
+	 * below the guesses of the levels above it, and starts with its counters at 0. The solutions of the parts together
+	 * are the solutions the search had left to find; a count with a limit applies the limit to each part.
+	 * @return the parts, the branch the search was in first and then the digits left to try from the first level down
+	 */
+	public List<SearchCheckpoint> split() {
+		List<SearchCheckpoint> parts = new ArrayList<>();
+		int depth = cells.length;
+		parts.add(new SearchCheckpoint(size, cellSelection, propagationEnabled, counting, solutionLimit, solutionCount,
+				attempts, propagations, backtracks, board, cells, digits, new int[depth], order));
+		for(int level=0;level<depth;level++) {
+			for(int left=remaining[level];left!=0;left&=left-1) {
+				int[] partDigits = Arrays.copyOf(digits, level+1);
+				partDigits[level] = Integer.numberOfTrailingZeros(left)+1;
+				parts.add(new SearchCheckpoint(size, cellSelection, propagationEnabled, counting, solutionLimit, 0,
+						0, 0, 0, board, Arrays.copyOf(cells, level+1), partDigits, new int[level+1], new int[0]));
+			}
+		}
+		return parts;
+	}
+
+	/**
+	 * @return the number of rows of the board
+	 */
+	public int getSize() {
+		return size;
+	}
+
+	/**
+	 * @return the heuristic of the engine that took the checkpoint, which the engine resuming it must use as well
+	 */
+	public CellSelection getCellSelection() {
+		return cellSelection;
+	}
+
+	/**
+	 * @return true if the search filled in naked and hidden singles after every placement
+	 */
+	public boolean isPropagationEnabled() {
+		return propagationEnabled;
+	}
+
+	/**
+	 * @return true if the search counts solutions, false if it stops at the first one
+	 */
+	public boolean isCounting() {
+		return counting;
+	}
+
+	/**
+	 * @return the number of solutions after which a count stops
+	 */
+	public long getSolutionLimit() {
+		return solutionLimit;
+	}
+
+	/**
+	 * @return the number of solutions counted before the checkpoint
+	 */
+	public long getSolutionCount() {
+		return solutionCount;
+	}
+
+	/**
+	 * @return the attempts, propagations and backtracks of the engine up to the checkpoint
+	 */
+	public long getNumberOfAttempts() {
+		return attempts;
+	}
+
+	public long getNumberOfPropagations() {
+		return propagations;
+	}
+
+	public long getNumberOfBacktracks() {
+		return backtracks;
+	}
+
+	/**
+	 * @return the number of levels of the stack, one per guess
+	 */
+	public int getDepth() {
+		return cells.length;
+	}
+
+	/**
+	 * @param level a level of the stack, from 0 for the first guess
+	 * @return the cell the level branches on, row * size + column
+	 */
+	public int getCell(int level) {
+		return cells[level];
+	}
+
+	/**
+	 * @param level a level of the stack, from 0 for the first guess
+	 * @return the digit the level is trying
+	 */
+	public int getDigit(int level) {
+		return digits[level];
+	}
+
+	/**
+	 * @param level a level of the stack, from 0 for the first guess
+	 * @return the digits the level has left to try, one bit per digit, bit i for digit i+1
+	 */
+	public int getRemaining(int level) {
+		return remaining[level];
+	}
+
+	/**
+	 * Copies the board before the first guess into the cells of an engine.
+	 */
+	void copyBoard(int[] cells) {
+		System.arraycopy(board, 0, cells, 0, board.length);
+	}
+
+	/**
+	 * Copies the order of the empty cells into an engine.
+	 * @return the number of cells copied, 0 if the order is not known
+	 */
+	int copyOrder(int[] cells) {
+		System.arraycopy(order, 0, cells, 0, order.length);
+		return order.length;
+	}
+}
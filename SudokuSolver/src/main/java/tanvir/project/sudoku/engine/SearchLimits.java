@@ -0,0 +1,116 @@
+package tanvir.project.sudoku.engine;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The cancellation token, time limit, attempt limit and progress listener of an engine. The search only compares its
+ * attempt counter with the attempt returned by {@link #start(long)} and {@link #next(long)}, and calls
+ * {@link #progress(long, int)} and {@link #check(long)} once it gets there: every CHECK_INTERVAL attempts, or on the
+ * first attempt past the attempt limit. Without a token, limit or listener the search never checks anything.
+ *
+ * @author Tanvir Kaykobad
+ *
+ */
+final class SearchLimits {
+
+	/**
+	 * The number of attempts between two checks of the token and the clock.
+	 */
+	static final long CHECK_INTERVAL = 1024;
+
+	private CancellationToken token;
+	private ProgressListener listener;
+	private long timeLimit = Long.MAX_VALUE, attemptLimit = Long.MAX_VALUE;
+
+	/**
+	 * The time and attempt count at which the running search has to stop, and the time it started.
+	 */
+	private long deadline, lastAttempt, startTime;
+
+	void setCancellationToken(CancellationToken token) {
+		this.token = token;
+	}
+
+	CancellationToken getCancellationToken() {
+		return token;
+	}
+
+	void setProgressListener(ProgressListener listener) {
+		this.listener = listener;
+	}
+
+	void setTimeLimit(long timeout, TimeUnit unit) throws IllegalArgumentException {
+		if(timeout<=0) {
+			throw new IllegalArgumentException("Time limit must be positive");
+		}
+		timeLimit = unit.toNanos(timeout);
+	}
+
+	void setAttemptLimit(long attempts) throws IllegalArgumentException {
+		if(attempts<=0) {
+			throw new IllegalArgumentException("Attempt limit must be positive");
+		}
+		attemptLimit = attempts;
+	}
+
+	/**
+	 * Starts the clock of a search.
+	 * @param attempt the attempt counter of the engine when the search starts
+	 * @return the attempt at which the search calls {@link #check(long)} first
+	 */
+	long start(long attempt) {
+		startTime = System.nanoTime();
+		deadline = timeLimit==Long.MAX_VALUE ? Long.MAX_VALUE : startTime + timeLimit;
+		lastAttempt = attemptLimit==Long.MAX_VALUE ? Long.MAX_VALUE : attempt + attemptLimit;
+		return next(attempt);
+	}
+
+	/**
+	 * @return the attempt at which the search calls {@link #check(long)} next
+	 */
+	long next(long attempt) {
+		long stop = lastAttempt==Long.MAX_VALUE ? Long.MAX_VALUE : lastAttempt+1;
+		if(token==null && listener==null && deadline==Long.MAX_VALUE) {
+			return stop;
+		}
+		return Math.min(attempt + CHECK_INTERVAL, stop);
+	}
+
+	/**
+	 * Reports the progress of the search to the listener, if there is one.
+	 * @param attempt the attempt counter of the engine
+	 * @param depth the number of cells filled on the board
+	 */
+	void progress(long attempt, int depth) {
+		if(listener!=null) {
+			listener.onProgress(attempt, depth, System.nanoTime()-startTime);
+		}
+	}
+
+	/**
+	 * @param attempt the attempt counter of the engine
+	 * @return null if the search may go on, or the reason it has to stop: TIMED_OUT or CANCELLED
+	 */
+	SolveStatus check(long attempt) {
+		if(token!=null && token.isCancelled()) {
+			return SolveStatus.CANCELLED;
+		}
+		if(attempt>lastAttempt || (deadline!=Long.MAX_VALUE && System.nanoTime()-deadline>=0)) {
+			return SolveStatus.TIMED_OUT;
+		}
+		return null;
+	}
+
+	/**
+	 * Turns a solve that gave up into the exception thrown by getSolution.
+	 * @param status TIMED_OUT or CANCELLED
+	 * @param attempt the attempts taken before giving up
+	 */
+	static RuntimeException toException(SolveStatus status, long attempt) {
+		if(status==SolveStatus.CANCELLED) {
+			return new CancellationException("Solving was cancelled after "+attempt+" attempts");
+		}
+		return new SolveTimeoutException("Solving timed out after "+attempt+" attempts");
+	}
+}
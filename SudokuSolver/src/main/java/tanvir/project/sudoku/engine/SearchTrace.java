@@ -0,0 +1,214 @@
+package tanvir.project.sudoku.engine;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * A recording of the decisions of a search, for finding out offline why a puzzle is slow, see
+ * {@link SudokuEngine#setTrace(SearchTrace)}. The events are packed into the ints of a ring buffer allocated up front, so
+ * recording allocates nothing and a long search keeps its last events. The trace is written to and read from a binary
+ * file, and analyzed by tanvir.project.sudoku.trace.TraceAnalyzer.
+ *
+ * An event holds its type, a cell, a value and the level of the search: the number of cells filled on the board before
+ * the event. Levels grow along a path of the search tree, so the tree can be rebuilt from the order of the events.
+ *
+ * @author Tanvir Kaykobad
+ *
+ */
+public final class SearchTrace {
+
+	/**
+	 * The search picked a cell to branch on. The value is the number of digits it is going to try.
+	 */
+	public static final int BRANCH = 0;
+
+	/**
+	 * The search guessed a digit for a cell. The value is the digit.
+	 */
+	public static final int PLACE = 1;
+
+	/**
+	 * The search took back the guess of a digit for a cell, because the search below it failed. The value is the digit.
+	 */
+	public static final int BACKTRACK = 2;
+
+	/**
+	 * Propagation filled a cell that had a single possible digit. The value is the digit.
+	 */
+	public static final int PROPAGATE = 3;
+
+	private static final int MAGIC = 0x53445452, VERSION = 1;
+
+	/**
+	 * The bits of an event: the cell in bits 0 to 9, the value in bits 10 to 14, the level in bits 15 to 24 and the type
+	 * in bits 25 and 26. Cells and levels go up to 625 and values up to 25, for 25x25 boards.
+	 */
+	private static final int CELL_BITS = 10, VALUE_BITS = 5, LEVEL_BITS = 10;
+	private static final int VALUE_SHIFT = CELL_BITS, LEVEL_SHIFT = VALUE_SHIFT+VALUE_BITS, TYPE_SHIFT = LEVEL_SHIFT+LEVEL_BITS;
+
+	private final int[] events;
+	private final int mask;
+	private long recorded;
+
+	/**
+	 * The board the search started from, flattened row by row.
+	 */
+	private int size;
+	private int[] puzzle = new int[0];
+
+	/**
+	 * Constructor
+	 * @param capacity the number of events kept, rounded up to a power of two
+	 * @throws IllegalArgumentException If the capacity is not positive or above 2^30
+	 */
+	public SearchTrace(int capacity) throws IllegalArgumentException {
+		if(capacity<=0 || capacity>1<<30) {
+			throw new IllegalArgumentException("Trace capacity must be between 1 and 2^30");
+		}
+		events = new int[capacity==1 ? 1 : Integer.highestOneBit(capacity-1)<<1];
+		mask = events.length-1;
+	}
+
+	/**
+	 * Forgets the events recorded so far and notes the board a search starts from.
+	 * @param size the number of rows of the board
+	 * @param board the board flattened row by row
+	 */
+	void start(int size, int[] board) {
+		this.size = size;
+		this.puzzle = board.clone();
+		recorded = 0;
+	}
+
+	/**
+	 * Records an event, overwriting the oldest one once the buffer is full.
+	 */
+	void record(int type, int cell, int value, int level) {
+		events[(int)recorded & mask] = type<<TYPE_SHIFT | level<<LEVEL_SHIFT | value<<VALUE_SHIFT | cell;
+		recorded++;
+	}
+
+	/**
+	 * @return the number of events recorded by the search, including those overwritten
+	 */
+	public long getRecorded() {
+		return recorded;
+	}
+
+	/**
+	 * @return the number of events kept, at most the capacity
+	 */
+	public int getEventCount() {
+		return (int)Math.min(recorded, events.length);
+	}
+
+	/**
+	 * @return the number of events the trace keeps
+	 */
+	public int getCapacity() {
+		return events.length;
+	}
+
+	/**
+	 * @param index the index of an event among those kept, 0 being the oldest
+	 * @return the packed event, to be read with {@link #type(int)}, {@link #cell(int)}, {@link #value(int)} and {@link #level(int)}
+	 */
+	public int getEvent(int index) {
+		long first = recorded-getEventCount();
+		return events[(int)(first+index) & mask];
+	}
+
+	/**
+	 * @return the number of rows of the board the search started from
+	 */
+	public int getSize() {
+		return size;
+	}
+
+	/**
+	 * @return the board the search started from, flattened row by row
+	 */
+	public int[] getPuzzle() {
+		return puzzle.clone();
+	}
+
+	public static int type(int event) {
+		return event>>>TYPE_SHIFT;
+	}
+
+	public static int cell(int event) {
+		return event & (1<<CELL_BITS)-1;
+	}
+
+	public static int value(int event) {
+		return event>>>VALUE_SHIFT & (1<<VALUE_BITS)-1;
+	}
+
+	public static int level(int event) {
+		return event>>>LEVEL_SHIFT & (1<<LEVEL_BITS)-1;
+	}
+
+	/**
+	 * Writes the trace to a file: a header, the board the search started from and the events kept, oldest first.
+	 * @param file the file to write
+	 * @throws IOException If the file cannot be written
+	 */
+	public void write(Path file) throws IOException {
+		try(DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file)))) {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeInt(size);
+			for(int digit:puzzle) {
+				out.writeByte(digit);
+			}
+			out.writeInt(events.length);
+			out.writeLong(recorded);
+			int count = getEventCount();
+			for(int i=0;i<count;i++) {
+				out.writeInt(getEvent(i));
+			}
+		}
+	}
+
+	/**
+	 * Reads a trace written by {@link #write(Path)}.
+	 * @param file the file to read
+	 * @return the trace
+	 * @throws IOException If the file cannot be read or is not a trace
+	 */
+	public static SearchTrace read(Path file) throws IOException {
+		try(DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+			if(in.readInt()!=MAGIC || in.readInt()!=VERSION) {
+				throw new IOException(file+" is not a search trace");
+			}
+			int size = in.readInt();
+			int[] puzzle = new int[size*size];
+			for(int cell=0;cell<puzzle.length;cell++) {
+				puzzle[cell] = in.readUnsignedByte();
+			}
+			SearchTrace trace = new SearchTrace(in.readInt());
+			trace.start(size, puzzle);
+			long recorded = in.readLong();
+			int count = (int)Math.min(recorded, trace.events.length);
+			for(int i=0;i<count;i++) {
+				trace.events[i] = in.readInt();
+			}
+			//the events were written oldest first, so they are laid out as if the buffer had just wrapped around
+			trace.recorded = recorded;
+			if(recorded>count) {
+				int shift = (int)(recorded & trace.mask);
+				int[] rotated = new int[count];
+				for(int i=0;i<count;i++) {
+					rotated[(shift+i) & trace.mask] = trace.events[i];
+				}
+				System.arraycopy(rotated, 0, trace.events, 0, count);
+			}
+			return trace;
+		}
+	}
+}
@@ -0,0 +1,93 @@
+package tanvir.project.sudoku.engine;
+
+import java.util.Spliterator;
+import java.util.function.Consumer;
+
+/**
+ * Enumerates the solutions of a board lazily, with the search of a SudokuEngine. The engine stops at every solution
+ * with the levels of its search on its explicit stack, so {@link #tryAdvance(Consumer)} carries on where the last call
+ * stopped. The search picks its cells and propagates singles as the engine it was created from does. Nothing but the
+ * solution handed out is allocated per call, and a stream that stops asking for solutions, after limit(n) or findAny()
+ * for example, stops the search with it.
+ *
+ * {@link #trySplit()} hands the upper half of the untried digits of the shallowest level of the stack that has any to a
+ * new engine, which resumes the search from the guesses above that level. The two spliterators then search disjoint
+ * subtrees, so a parallel stream fans out over the whole tree.
+ *
+ * @author Tanvir Kaykobad
+ *
+ */
+final class SolutionSpliterator implements Spliterator<int[]> {
+
+	/**
+	 * The engine running the search of this spliterator, and the board the search started from, shared by the
+	 * spliterators split from one another.
+	 */
+	private final SudokuEngine engine;
+	private final int[] puzzle;
+
+	/**
+	 * True once the subtree of this spliterator has been searched.
+	 */
+	private boolean done;
+
+	/**
+	 * The size of the subtree is unknown, so like the spliterators of the JDK with an unknown size, the estimate starts at
+	 * Long.MAX_VALUE and is halved by every split. A parallel stream stops splitting once the estimate is small enough
+	 * for the number of threads, instead of splitting down to single branches.
+	 */
+	private long estimate = Long.MAX_VALUE;
+
+	/**
+	 * @param engine an engine holding a valid board whose search has not started, or was split off another one
+	 * @param puzzle the board the search started from, which is not changed
+	 */
+	SolutionSpliterator(SudokuEngine engine, int[] puzzle) {
+		this.engine = engine;
+		this.puzzle = puzzle;
+	}
+
+	/**
+	 * @throws java.util.concurrent.CancellationException If the cancellation token of the engine was cancelled
+	 */
+	@Override
+	public boolean tryAdvance(Consumer<? super int[]> action) {
+		if(done) {
+			return false;
+		}
+		if(!engine.nextSolution()) {
+			done = true;
+			if(engine.getStatus()==SolveStatus.CANCELLED) {
+				throw SearchLimits.toException(SolveStatus.CANCELLED, engine.getNumberOfAttempts());
+			}
+			return false;
+		}
+		action.accept(engine.copyCells());
+		return true;
+	}
+
+	@Override
+	public Spliterator<int[]> trySplit() {
+		if(done) {
+			return null;
+		}
+		SudokuEngine split = engine.split(puzzle);
+		if(split==null) {
+			return null;
+		}
+		estimate >>>= 1;
+		SolutionSpliterator spliterator = new SolutionSpliterator(split, puzzle);
+		spliterator.estimate = estimate;
+		return spliterator;
+	}
+
+	@Override
+	public long estimateSize() {
+		return done ? 0 : estimate;
+	}
+
+	@Override
+	public int characteristics() {
+		return DISTINCT | NONNULL | IMMUTABLE;
+	}
+}
@@ -0,0 +1,39 @@
+package tanvir.project.sudoku.engine;
+
+/**
+ * The outcome of the last solve of an engine.
+ *
+ * @author Tanvir Kaykobad
+ *
+ */
+public enum SolveStatus {
+	/**
+	 * The engine has not solved the board yet.
+	 */
+	NOT_STARTED,
+
+	/**
+	 * The board was solved.
+	 */
+	SOLVED,
+
+	/**
+	 * The whole search tree was visited without finding a solution.
+	 */
+	NO_SOLUTION,
+
+	/**
+	 * The board breaks one of the row, column or sub-matrix rules.
+	 */
+	INVALID,
+
+	/**
+	 * The search gave up because it reached its time limit or attempt limit.
+	 */
+	TIMED_OUT,
+
+	/**
+	 * The search gave up because its cancellation token was cancelled.
+	 */
+	CANCELLED
+}
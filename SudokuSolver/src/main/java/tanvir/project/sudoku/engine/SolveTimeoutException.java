@@ -0,0 +1,16 @@
+package tanvir.project.sudoku.engine;
+
+/**
+ * Thrown by {@link Solver#getSolution()} when the search reached its time limit or attempt limit before it could tell
+ * whether the puzzle has a solution.
+ *
+ * @author Tanvir Kaykobad
+ *
+ */
+public class SolveTimeoutException extends RuntimeException {
+	private static final long serialVersionUID = 1L;
+
+	public SolveTimeoutException(String message) {
+		super(message);
+	}
+}
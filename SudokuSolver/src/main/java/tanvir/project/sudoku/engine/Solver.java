@@ -0,0 +1,80 @@
+package tanvir.project.sudoku.engine;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The common surface of the sudoku solving engines. An engine is constructed from a board, see {@link SolverType}.
+ *
+ * @author Tanvir Kaykobad
+ *
+ */
+public interface Solver {
+
+	/**
+	 * This method returns the solution of the sudoku problem
+	 * @return The solution of the sudoku puzzle, or null if none exists
+	 * @throws SolveTimeoutException If the search reached its time limit or attempt limit
+	 * @throws java.util.concurrent.CancellationException If the cancellation token of the search was cancelled
+	 */
+	Character[][] getSolution() throws SolveTimeoutException;
+
+	/**
+	 * Like {@link #getSolution()}, for 9x9 boards.
+	 * @return The solution of the sudoku puzzle, or null if none exists
+	 * @throws SolveTimeoutException If the search reached its time limit or attempt limit
+	 * @throws java.util.concurrent.CancellationException If the cancellation token of the search was cancelled
+	 */
+	default Board getSolutionBoard() throws SolveTimeoutException {
+		Character[][] solution = getSolution();
+		return solution==null ? null : Board.of(solution);
+	}
+
+	/**
+	 * @return the outcome of the last solve
+	 */
+	SolveStatus getStatus();
+
+	/**
+	 * @param token a token that stops the search once it is cancelled, or null
+	 */
+	void setCancellationToken(CancellationToken token);
+
+	/**
+	 * @param listener a listener receiving the progress of the search every few thousand attempts, or null
+	 */
+	void setProgressListener(ProgressListener listener);
+
+	/**
+	 * Limits the wall-clock time of each solve. The clock is checked every few thousand attempts.
+	 * @param timeout the time limit
+	 * @param unit the unit of the time limit
+	 * @throws IllegalArgumentException If the time limit is not positive
+	 */
+	void setTimeLimit(long timeout, TimeUnit unit) throws IllegalArgumentException;
+
+	/**
+	 * Limits the number of attempts of each solve, which bounds the work spent on a puzzle independently of the machine.
+	 * @param attempts the attempt limit
+	 * @throws IllegalArgumentException If the attempt limit is not positive
+	 */
+	void setAttemptLimit(long attempts) throws IllegalArgumentException;
+
+	/**
+	 * @return the number of attempts the engine took for the puzzle, which is the number of times a cell in the matrix was filled by guessing.
+	 */
+	long getNumberOfAttempts();
+
+	/**
+	 * @return the number of times a cell in the matrix was filled by propagation instead of guessing, 0 for engines without propagation.
+	 */
+	default long getNumberOfPropagations() {
+		return 0;
+	}
+
+	/**
+	 * @return the number of guesses the engine took back because the search below them failed, 0 for engines not counting them.
+	 */
+	default long getNumberOfBacktracks() {
+		return 0;
+	}
+}
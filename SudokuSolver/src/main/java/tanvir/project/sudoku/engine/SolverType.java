@@ -0,0 +1,59 @@
+package tanvir.project.sudoku.engine;
+
+/**
+ * The available sudoku solving engines. The name of a constant can be used to pick the engine from configuration.
+ *
+ * @author Tanvir Kaykobad
+ *
+ */
+public enum SolverType {
+	/**
+	 * {@link SudokuEngine} with minimum remaining values cell selection and propagation of singles.
+	 */
+	BACKTRACKING {
+		@Override
+		public Solver create(Character[][] map) throws IllegalArgumentException {
+			SudokuEngine engine = new SudokuEngine(map, CellSelection.MINIMUM_REMAINING_VALUES);
+			engine.setPropagationEnabled(true);
+			return engine;
+		}
+
+		@Override
+		public Solver create(Board board) throws IllegalArgumentException {
+			SudokuEngine engine = new SudokuEngine(board, CellSelection.MINIMUM_REMAINING_VALUES);
+			engine.setPropagationEnabled(true);
+			return engine;
+		}
+	},
+
+	/**
+	 * {@link DancingLinksEngine}, the exact cover search of Algorithm X.
+	 */
+	DANCING_LINKS {
+		@Override
+		public Solver create(Character[][] map) throws IllegalArgumentException {
+			return new DancingLinksEngine(map);
+		}
+
+		@Override
+		public Solver create(Board board) throws IllegalArgumentException {
+			return new DancingLinksEngine(board);
+		}
+	};
+
+	/**
+	 * Creates an engine of this type for the board
+	 * @param map a 2d Character map where each cell is a digit between '1' and '9'.If the cell contains ' ', it means the cell has not yet been filled.
+	 * @return the engine
+	 * @throws IllegalArgumentException If the map is not 9X9, or if it already breaks one of the row, column or sub-matrix rules.
+	 */
+	public abstract Solver create(Character[][] map) throws IllegalArgumentException;
+
+	/**
+	 * Creates an engine of this type for the board
+	 * @param board the board
+	 * @return the engine
+	 * @throws IllegalArgumentException If the board already breaks one of the row, column or sub-matrix rules.
+	 */
+	public abstract Solver create(Board board) throws IllegalArgumentException;
+}
@@ -1,45 +1,160 @@
 package tanvir.project.sudoku.engine;
 
-import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.List;
+import java.util.Spliterator;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 import org.apache.log4j.LogManager;
 import org.apache.log4j.Logger;
 
-import tanvir.project.sudoku.Bean;
-
 /**
  * This class solves sudoku puzzles using backtracking. 
+ * Boards of size N^2 x N^2 are supported for sub-matrices of size 2 to 5: 4x4, the classic 9x9, 16x16 and 25x25.
+ * 
+ * A search that gave up on its time limit, attempt limit or cancellation token can be resumed where it stopped, or saved
+ * as a {@link SearchCheckpoint} and resumed by another engine, possibly in another JVM. The recursion keeps its levels on
+ * an explicit stack as it unwinds, and a resumed search runs on that stack in a loop.
  * 
  * @author Tanvir Kaykobad
  *
  */
-public class SudokuEngine {
+public class SudokuEngine implements Solver {
 	private static final Logger LOGGER = LogManager.getLogger(SudokuEngine.class);
+	
+	/**
+	 * Dumping the board is opt-in: with this logger at DEBUG, the search logs its board every SAMPLE_INTERVAL attempts
+	 * to show that it is alive. Otherwise the search does not look at the logger at all.
+	 */
+	private static final Logger SAMPLES = LogManager.getLogger(SudokuEngine.class.getName()+".samples");
+	private static final long SAMPLE_INTERVAL = 1<<20;
 
+	/**
+	 * The row, column and sub-matrix of a cell are ROW_OF[offset+cell], COL_OF[offset+cell] and BOX_OF[offset+cell], see {@link BoardGeometry}.
+	 */
+	private static final int[] ROW_OF = BoardGeometry.ROW_OF, COL_OF = BoardGeometry.COL_OF, BOX_OF = BoardGeometry.BOX_OF;
 	
-	private int[][] map;
+	/**
+	 * The lookup tables of the board size.
+	 */
+	private final BoardGeometry geometry;
+	private final int size, cells, allDigits, offset;
+	private final int[][] units;
+
+	/**
+	 * The board flattened row by row. 0 marks an empty cell. The search fills and clears cells of this array in place.
+	 */
+	private final int[] board;
 	private long attempt = 0;
+	private long propagation = 0;
+	private long backtrack = 0;
+	
+	/**
+	 * Each integer of rulesRow, rulesCol and rulesBox keep track of the numbers occured so far in its respective row, column or sub-matrix.
+	 * The search sets and clears bits of these arrays in place, so no copies are made while backtracking.
+	 */
+	private final int[] rulesRow, rulesCol, rulesBox;
+	
+	/**
+	 * The empty cells of the board are kept in the first emptyCount entries of emptyCells, and emptyIndex holds the position
+	 * of each cell in emptyCells. Filling a cell swaps it behind the last empty cell, so emptying it again on backtrack
+	 * only needs emptyCount to be incremented.
+	 */
+	private final int[] emptyCells, emptyIndex;
+	private int emptyCount;
+	
+	/**
+	 * The heuristic used to pick the next cell to fill.
+	 */
+	private final CellSelection cellSelection;
+	
+	/**
+	 * If true, naked and hidden singles are filled in after every placement until none are left.
+	 */
+	private boolean propagationEnabled = false;
+	
+	/**
+	 * The cells filled by propagation, in the order they were filled. Backtracking empties them again down to the trail
+	 * size saved before the placement that caused them.
+	 */
+	private final int[] trail;
+	private int trailSize;
+	
+	/**
+	 * The explicit stack of a resumed search, one level per cell branched on: the cell, the digits it has not tried yet
+	 * and the trail size before its current digit was placed. The digit being tried is on the board. The arrays are
+	 * allocated for the deepest possible search the first time a search is suspended or restored, see {@link #allocateStack()},
+	 * so an engine that never gives up does not pay for them.
+	 */
+	private int[] stackCell, stackRemaining, stackTrail;
+	private int depth;
+	
+	/**
+	 * The levels of a search that gave up on its limits or its cancellation token, kept to resume it: the stack arrays
+	 * keep their cells and untried digits while the search unwinds, and stackDigit keeps the digit each level was trying.
+	 * A suspendedDepth of 0 means there is nothing to resume. suspendedOrder keeps the order of the empty cells, which
+	 * the search breaks ties of the minimum remaining values heuristic with; a length of 0 means it is not known.
+	 */
+	private int[] stackDigit, suspendedOrder;
+	private int suspendedDepth, suspendedOrderLength;
+	private boolean suspendedCounting;
+	
+	/**
+	 * The cancellation token, time limit and attempt limit of the search. The search checks them once its attempt counter
+	 * reaches nextCheck, and sets aborted when it has to give up so that every level of the stack unwinds.
+	 */
+	private final SearchLimits limits = new SearchLimits();
+	private long nextCheck = Long.MAX_VALUE, nextSample = Long.MAX_VALUE;
+	private boolean aborted = false;
+	
+	/**
+	 * The recording of the search, or null when it is not traced. Every recording site tests this field first, so an
+	 * untraced search only pays for a branch that is never taken.
+	 */
+	private SearchTrace trace;
 	
 	/**
-	 * Each integer of rulesRow, rulesCol and rules3x3 keep track of the numbers occured so far in its respective row, column or sub-matrix.
+	 * The outcome of the last solve.
 	 */
-	private List<Integer> rulesRow, rulesCol, rules3x3;
+	private SolveStatus status = SolveStatus.NOT_STARTED;
+	
+	/**
+	 * True while {@link #countSolutions(long)} runs the search, which then counts solutions up to solutionLimit instead
+	 * of stopping at the first one.
+	 */
+	private boolean counting = false;
+	private long solutionCount, solutionLimit;
 	
 	/**
 	 * Contructor used by the class SudokuMap for testing
-	 * @param map a 2d Character map where each cell is a digit between '1' and '9'.If the cell contains ' ', it means the cell has not yet been filled.
+	 * @param map a 2d integer map where each cell is a digit between 1 and 9. If the cell contains 0, it means the cell has not yet been filled.
+	 * @throws IllegalArgumentException If the map is not 4x4, 9x9, 16x16 or 25x25, or if it already breaks one of the row, column or sub-matrix rules.
 	 */
-	public SudokuEngine(int[][] map) {
-		super();
-		this.map = map.clone();
-		
-		try {
-			isValid();
-		} catch (Exception e) {
-			// TODO: handle exception
+	public SudokuEngine(int[][] map) throws IllegalArgumentException {
+		this(map, CellSelection.ROW_MAJOR);
+	}
+	
+	/**
+	 * Contructor used by the class SudokuMap for testing
+	 * @param map a 2d integer map where each cell is a digit between 1 and 9, or up to 25 for larger boards. If the cell contains 0, it means the cell has not yet been filled.
+	 * @param cellSelection the heuristic used to pick the next cell to fill
+	 * @throws IllegalArgumentException If the map is not 4x4, 9x9, 16x16 or 25x25, if a cell is not between 0 and the size, or if it already breaks one of the row, column or sub-matrix rules.
+	 */
+	public SudokuEngine(int[][] map, CellSelection cellSelection) throws IllegalArgumentException {
+		this(BoardGeometry.ofSize(map.length), cellSelection);
+		for(int i=0;i<size;i++) {
+			if(map[i].length!=size) {
+				throw new IllegalArgumentException("Sudoku Table must be "+size+"x"+size);
+			}
+			for(int j=0;j<size;j++) {
+				if(map[i][j]<0 || map[i][j]>size) {
+					throw new IllegalArgumentException("Digit must be between 0 and "+size);
+				}
+				board[i*size+j] = map[i][j];
+			}
 		}
+		isValid();
 	}
 	
 	/**
@@ -49,17 +164,26 @@ public class SudokuEngine {
 	 * @throws IllegalArgumentException If the map must be of size 9X9, or if it already breaks one of the row, column or sub-matrix rules.
 	 */
 	public SudokuEngine(final Character[][] map) throws IllegalArgumentException {
-		if(map.length!=9 || (map.length==9 && map[0].length!=9)) {
-			throw new IllegalArgumentException("Sudoku Table must be 9x9");
-		}
-		
-		this.map = new int[9][9];
-		for(int i=0;i<9;i++) {
-			for(int j=0;j<9;j++) {
-				if(map[i][j]!=null && (map[i][j]>='1' && map[i][j]<='9')) {
-					this.map[i][j]=map[i][j].charValue()-'0';
+		this(map, CellSelection.ROW_MAJOR);
+	}
+	
+	/**
+	 * Constructor
+	 * @param map a 2d Character map where each cell is a digit between '1' and '9', continued by 'A' to 'P' for larger boards. If the cell contains ' ', it means the cell has not yet been filled.
+	 * @param cellSelection the heuristic used to pick the next cell to fill
+	 * @throws IllegalArgumentException If the map is not 4x4, 9x9, 16x16 or 25x25, or if it already breaks one of the row, column or sub-matrix rules.
+	 */
+	public SudokuEngine(final Character[][] map, CellSelection cellSelection) throws IllegalArgumentException {
+		this(BoardGeometry.ofSize(map.length), cellSelection);
+		for(int i=0;i<size;i++) {
+			if(map[i].length!=size) {
+				throw new IllegalArgumentException("Sudoku Table must be "+size+"x"+size);
+			}
+			for(int j=0;j<size;j++) {
+				if(map[i][j]!=null) {
+					board[i*size+j]=geometry.toDigit(map[i][j]);
 				} else {
-					this.map[i][j]=0;
+					board[i*size+j]=0;
 				}
 			}
 		}
@@ -70,20 +194,78 @@ public class SudokuEngine {
 			throw e;
 		}
 	}
+
+	/**
+	 * Constructor. The cells are unpacked from the board straight into the engine.
+	 * @param board the board
+	 * @param cellSelection the heuristic used to pick the next cell to fill
+	 * @throws IllegalArgumentException If the board already breaks one of the row, column or sub-matrix rules.
+	 */
+	public SudokuEngine(Board board, CellSelection cellSelection) throws IllegalArgumentException {
+		this(BoardGeometry.ofSize(Board.SIZE), cellSelection);
+		board.copyTo(this.board);
+		isValid();
+	}
+	
+	/**
+	 * Constructor for an empty board, to be filled with {@link #setCell(int, int)}. One engine can solve many puzzles in a
+	 * row this way, without allocating anything per puzzle.
+	 * @param size the number of rows of the board: 4, 9, 16 or 25
+	 * @param cellSelection the heuristic used to pick the next cell to fill
+	 * @throws IllegalArgumentException If the size is not supported
+	 */
+	public SudokuEngine(int size, CellSelection cellSelection) throws IllegalArgumentException {
+		this(BoardGeometry.ofSize(size), cellSelection);
+	}
+
+	/**
+	 * Allocates the state of the engine for a board size.
+	 */
+	private SudokuEngine(BoardGeometry geometry, CellSelection cellSelection) {
+		super();
+		this.geometry = geometry;
+		this.size = geometry.size;
+		this.cells = geometry.cells;
+		this.allDigits = geometry.allDigits;
+		this.offset = geometry.offset;
+		this.units = geometry.units;
+		this.cellSelection = cellSelection;
+		
+		board = new int[cells];
+		rulesRow = new int[size];
+		rulesCol = new int[size];
+		rulesBox = new int[size];
+		emptyCells = new int[cells];
+		emptyIndex = new int[cells];
+		trail = new int[cells];
+	}
+	
+	/**
+	 * Allocates the explicit stack, the first time a search is suspended or restored.
+	 */
+	private void allocateStack() {
+		if(stackCell==null) {
+			stackCell = new int[cells];
+			stackRemaining = new int[cells];
+			stackTrail = new int[cells];
+			stackDigit = new int[cells];
+			suspendedOrder = new int[cells];
+		}
+	}
 	
 	/**
-	 * This method returns the primitive integer 2d array sudoku map saved in the solution engine.
-	 * @return an Integer[9][9]
+	 * This method converts the 2d integer map into the wrapped 2d map used by the front end.
+	 * @return a Character[size][size]
 	 */
 	private Character[][] getPrimitiveToWrapped(int[][] map) {
 		if(map==null)
 			return null;
 		
-		Character[][] solution = new Character[9][9];
-		for(int i=0;i<9;i++) {
-			for(int j=0;j<9;j++) {
-				if(map[i][j]>=1 && map[i][j]<=9) {
-					solution[i][j]=(char) (map[i][j]+'0');
+		Character[][] solution = new Character[size][size];
+		for(int i=0;i<size;i++) {
+			for(int j=0;j<size;j++) {
+				if(map[i][j]>=1 && map[i][j]<=size) {
+					solution[i][j]=BoardGeometry.toSymbol(map[i][j]);
 				} else {
 					solution[i][j]=' ';
 				}
@@ -95,115 +277,1062 @@ public class SudokuEngine {
 	/**
 	 * This method returns the solution of the sudoku problem
 	 * @return The solution of the sudoku puzzle, or null if none exists
+	 * @throws SolveTimeoutException If the search reached its time limit or attempt limit
+	 * @throws java.util.concurrent.CancellationException If the cancellation token of the search was cancelled
 	 */
-	public Character[][] getSolution(){
+	@Override
+	public Character[][] getSolution() throws SolveTimeoutException {
 		return getPrimitiveToWrapped(solveRecursively());
 	}
 	
 	/**
-	 * @return the number of attempts SudokuEngine took for the puzzle, which is the number of times a cell in the matrix was filled.
+	 * @return the number of attempts SudokuEngine took for the puzzle, which is the number of times a cell in the matrix was filled
+	 * by guessing. Cells filled by propagation are counted by {@link #getNumberOfPropagations()}.
 	 */
+	@Override
 	public long getNumberOfAttempts() {
 		return this.attempt;
 	}
 	
+	/**
+	 * @return the number of times a cell in the matrix was filled by propagation because it was a naked or hidden single.
+	 */
+	@Override
+	public long getNumberOfPropagations() {
+		return this.propagation;
+	}
+	
+	/**
+	 * @return the number of guesses SudokuEngine took back because the search below them failed
+	 */
+	@Override
+	public long getNumberOfBacktracks() {
+		return this.backtrack;
+	}
+	
+	@Override
+	public SolveStatus getStatus() {
+		return status;
+	}
+	
+	@Override
+	public void setCancellationToken(CancellationToken token) {
+		limits.setCancellationToken(token);
+	}
+	
+	@Override
+	public void setProgressListener(ProgressListener listener) {
+		limits.setProgressListener(listener);
+	}
+	
+	@Override
+	public void setTimeLimit(long timeout, TimeUnit unit) throws IllegalArgumentException {
+		limits.setTimeLimit(timeout, unit);
+	}
+	
+	@Override
+	public void setAttemptLimit(long attempts) throws IllegalArgumentException {
+		limits.setAttemptLimit(attempts);
+	}
+	
+	/**
+	 * @return the number of rows of the board
+	 */
+	public int getSize() {
+		return size;
+	}
+
+	/**
+	 * @param cell the index of a cell, row * size + column
+	 * @return the digit of the cell, or 0 if it is empty
+	 */
+	public int getCell(int cell) {
+		return board[cell];
+	}
+
+	/**
+	 * @param cell the index of a cell, row * size + column
+	 * @param digit a digit between 1 and size, or 0 to empty the cell
+	 * @throws IllegalArgumentException If the digit is out of range
+	 */
+	public void setCell(int cell, int digit) throws IllegalArgumentException {
+		if(digit<0 || digit>size) {
+			throw new IllegalArgumentException("Digit must be between 0 and "+size);
+		}
+		board[cell] = digit;
+		//a suspended search only fits the board it was suspended on
+		suspendedDepth = 0;
+	}
+
+	/**
+	 * Records the decisions of the following searches: every cell branched on, every guess, every guess taken back and
+	 * every cell filled by propagation. The trace is restarted by each search.
+	 * @param trace the trace to record into, or null to stop tracing
+	 */
+	public void setTrace(SearchTrace trace) {
+		this.trace = trace;
+	}
+	
+	/**
+	 * @return true if naked and hidden singles are filled in after every placement
+	 */
+	public boolean isPropagationEnabled() {
+		return propagationEnabled;
+	}
+	
+	/**
+	 * @param propagationEnabled true to fill in naked and hidden singles after every placement, so that fewer cells have to be guessed
+	 */
+	public void setPropagationEnabled(boolean propagationEnabled) {
+		if(this.propagationEnabled!=propagationEnabled) {
+			//the levels of a suspended search can only be replayed with the propagation they were found with
+			suspendedDepth = 0;
+		}
+		this.propagationEnabled = propagationEnabled;
+	}
+	
 	/**
 	 * The engine attemps to solves the puzzle. 
 	 * @return The solution map. If no solution is found then null is returned.
+	 * @throws SolveTimeoutException If the search reached its time limit or attempt limit
+	 * @throws java.util.concurrent.CancellationException If the cancellation token of the search was cancelled
 	 */
-	public int[][] solveRecursively(){
-		try {
-			isValid();
-		} catch (Exception e) {
-			LOGGER.error(e.getMessage());
+	public int[][] solveRecursively() throws SolveTimeoutException {
+		return solveOrThrow() ? getMap() : null;
+	}
+	
+	/**
+	 * Like {@link #solveRecursively()}, but the solution is packed straight from the cells of the engine.
+	 * @throws IllegalArgumentException If the board is not 9x9
+	 */
+	@Override
+	public Board getSolutionBoard() throws SolveTimeoutException, IllegalArgumentException {
+		return solveOrThrow() ? toBoard() : null;
+	}
+	
+	/**
+	 * Like {@link #getSolutionBoard()}, but goes on with the solve that gave up last instead of starting a new one, see
+	 * {@link #resume()}.
+	 * @throws IllegalStateException If there is no search to resume, or the cells were changed since it was suspended
+	 */
+	public Board resumeSolutionBoard() throws SolveTimeoutException, IllegalArgumentException, IllegalStateException {
+		boolean solved = resume();
+		if(status==SolveStatus.TIMED_OUT || status==SolveStatus.CANCELLED) {
+			throw SearchLimits.toException(status, attempt);
+		}
+		return solved ? toBoard() : null;
+	}
+	
+	/**
+	 * Solves the board, turning a search that gave up into an exception.
+	 * @return true if the board was solved, false if it has no solution
+	 */
+	private boolean solveOrThrow() throws SolveTimeoutException {
+		boolean solved = solve();
+		if(LOGGER.isDebugEnabled()) {
+			LOGGER.debug("Number of attempts: "+attempt+", propagations: "+propagation+", backtracks: "+backtrack);
+		}
+		if(status==SolveStatus.TIMED_OUT || status==SolveStatus.CANCELLED) {
+			throw SearchLimits.toException(status, attempt);
+		}
+		return solved;
+	}
+	
+	/**
+	 * @return a copy of the current board as a 2d integer map
+	 */
+	int[][] getMap() {
+		int[][] map = new int[size][size];
+		for(int i=0;i<size;i++) {
+			for(int j=0;j<size;j++) {
+				map[i][j] = board[i*size+j];
+			}
+		}
+		return map;
+	}
+	
+	/**
+	 * Solves the board in place. Unlike {@link #solveRecursively()} this method does not allocate any memory once the
+	 * engine has been constructed, which makes it suitable for measuring and for solving many puzzles in a row.
+	 * @return true if the board was solved, false if it is invalid, has no solution or the search gave up, see {@link #getStatus()}
+	 */
+	public boolean solve() {
+		if(!startSearch()) {
+			return false;
+		}
+		return finishSearch(solveRecursively(0, 0));
+	}
+	
+	/**
+	 * Counts the solutions of the board, stopping once limit solutions have been found. The board is left as it was.
+	 * The guesses made while counting are added to the attempt counter. Like {@link #solve()}, this method does not allocate.
+	 * @param limit the number of solutions after which counting stops
+	 * @return the number of solutions, at most limit. If the search gave up, see {@link #getStatus()}, this is the number found until then.
+	 * @throws IllegalArgumentException If the limit is not positive
+	 */
+	public long countSolutions(long limit) throws IllegalArgumentException {
+		if(limit<=0) {
+			throw new IllegalArgumentException("Solution limit must be positive");
+		}
+		solutionCount = 0;
+		solutionLimit = limit;
+		if(!startSearch()) {
+			return 0;
+		}
+		counting = true;
+		finishSearch(solveRecursively(0, 0));
+		return solutionCount;
+	}
+	
+	/**
+	 * Goes on with the search that gave up last, on its time limit, attempt limit or cancellation token, or with the
+	 * search loaded by {@link #restore(SearchCheckpoint)}. The board is taken back to the guesses the search was trying,
+	 * and the search continues with the guess it stopped at, so no solution is found twice or missed. The limits start
+	 * again, and the search can give up and be resumed any number of times.
+	 * @return true if a solve found a solution, or a count found at least one, see {@link #getStatus()} and {@link #getSolutionCount()}
+	 * @throws IllegalStateException If there is no search to resume, or the cells were changed since it was suspended
+	 */
+	public boolean resume() throws IllegalStateException {
+		if(suspendedDepth==0) {
+			throw new IllegalStateException("There is no suspended search to resume");
+		}
+		int levels = suspendedDepth, ordered = suspendedOrderLength;
+		boolean wasCounting = suspendedCounting;
+		//the guesses are played again without being counted, and the last one is not propagated yet
+		long propagated = propagation;
+		if(!startSearch()) {
+			throw new IllegalStateException("The suspended search does not fit the board");
+		}
+		SearchTrace tracing = trace;
+		trace = null;
+		boolean fits = true;
+		for(int level=0;level<levels && fits;level++) {
+			int cell = stackCell[level], bit = 1 << (stackDigit[level]-1);
+			int row = ROW_OF[offset+cell], col = COL_OF[offset+cell], box = BOX_OF[offset+cell];
+			if(board[cell]!=0 || ((rulesRow[row] | rulesCol[col] | rulesBox[box]) & bit)!=0) {
+				fits = false;
+				break;
+			}
+			removeEmptyCell(cell);
+			board[cell] = stackDigit[level];
+			rulesRow[row] |= bit;
+			rulesCol[col] |= bit;
+			rulesBox[box] |= bit;
+			stackTrail[level] = trailSize;
+			depth = level+1;
+			fits = level==levels-1 || !propagationEnabled || propagate();
+		}
+		trace = tracing;
+		propagation = propagated;
+		if(!fits) {
+			unwind();
+			throw new IllegalStateException("The suspended search does not fit the board");
+		}
+		if(ordered>0) {
+			restoreOrder(ordered);
+		}
+		counting = wasCounting;
+		return finishSearch(search(!propagationEnabled || propagate()));
+	}
+	
+	/**
+	 * Puts the empty cells back in the order they had when the search gave up, so that the resumed search picks the same
+	 * cell among equally constrained ones as a search that never gave up, and rebuilds the trail to match the order.
+	 * Filling a cell moves it just behind the empty cells, so the cells behind them are the cells filled since the
+	 * search started, from the last one.
+	 * @param length the number of cells in suspendedOrder, all cells empty before the search started
+	 */
+	private void restoreOrder(int length) {
+		if(length!=emptyCount+trailSize+depth) {
+			return;
+		}
+		for(int k=emptyCount;k<length;k++) {
+			if(board[suspendedOrder[k]]==0) {
+				return;
+			}
+		}
+		for(int k=0;k<length;k++) {
+			emptyCells[k] = suspendedOrder[k];
+			emptyIndex[suspendedOrder[k]] = k;
+		}
+		trailSize = 0;
+		int level = 0;
+		for(int k=length-1;k>=emptyCount;k--) {
+			int cell = suspendedOrder[k];
+			if(level<depth && cell==stackCell[level]) {
+				stackTrail[level++] = trailSize;
+			} else {
+				trail[trailSize++] = cell;
+			}
+		}
+	}
+	
+	/**
+	 * Saves the search that gave up last, on its time limit, attempt limit or cancellation token, so that it can be
+	 * resumed later or elsewhere by {@link #restore(SearchCheckpoint)}.
+	 * @return the board, the guesses of the stack with the digits left to try at each level, and the counters of the engine
+	 * @throws IllegalStateException If there is no search to save
+	 */
+	public SearchCheckpoint checkpoint() throws IllegalStateException {
+		if(suspendedDepth==0) {
+			throw new IllegalStateException("There is no suspended search to checkpoint");
+		}
+		return new SearchCheckpoint(size, cellSelection, propagationEnabled, suspendedCounting, solutionLimit, solutionCount,
+				attempt, propagation, backtrack, board.clone(), Arrays.copyOf(stackCell, suspendedDepth),
+				Arrays.copyOf(stackDigit, suspendedDepth), Arrays.copyOf(stackRemaining, suspendedDepth),
+				Arrays.copyOf(suspendedOrder, suspendedOrderLength));
+	}
+	
+	/**
+	 * Loads a saved search into the engine, replacing its board, its counters and its propagation setting. The search
+	 * runs on the next call to {@link #resume()}.
+	 * @param checkpoint the saved search
+	 * @throws IllegalArgumentException If the checkpoint was taken by an engine of another size or cell selection
+	 */
+	public void restore(SearchCheckpoint checkpoint) throws IllegalArgumentException {
+		if(checkpoint.getSize()!=size) {
+			throw new IllegalArgumentException("Checkpoint is for a "+checkpoint.getSize()+"x"+checkpoint.getSize()+" board");
+		}
+		if(checkpoint.getCellSelection()!=cellSelection) {
+			throw new IllegalArgumentException("Checkpoint was taken with "+checkpoint.getCellSelection()+" cell selection");
+		}
+		allocateStack();
+		checkpoint.copyBoard(board);
+		int levels = checkpoint.getDepth();
+		for(int level=0;level<levels;level++) {
+			stackCell[level] = checkpoint.getCell(level);
+			stackDigit[level] = checkpoint.getDigit(level);
+			stackRemaining[level] = checkpoint.getRemaining(level);
+		}
+		suspendedOrderLength = checkpoint.copyOrder(suspendedOrder);
+		propagationEnabled = checkpoint.isPropagationEnabled();
+		suspendedCounting = checkpoint.isCounting();
+		solutionLimit = checkpoint.getSolutionLimit();
+		solutionCount = checkpoint.getSolutionCount();
+		attempt = checkpoint.getNumberOfAttempts();
+		propagation = checkpoint.getNumberOfPropagations();
+		backtrack = checkpoint.getNumberOfBacktracks();
+		status = SolveStatus.NOT_STARTED;
+		suspendedDepth = levels;
+	}
+	
+	/**
+	 * @return true if the last search gave up and can be resumed or checkpointed
+	 */
+	public boolean isSuspended() {
+		return suspendedDepth>0;
+	}
+	
+	/**
+	 * @return the number of solutions found by the last count, including those found before it was resumed
+	 */
+	public long getSolutionCount() {
+		return solutionCount;
+	}
+	
+	/**
+	 * Checks that the puzzle is well-formed, which means it has exactly one solution. The search stops as soon as a
+	 * second solution is found.
+	 * @return true if the board has exactly one solution
+	 * @throws SolveTimeoutException If the search reached its time limit or attempt limit
+	 * @throws java.util.concurrent.CancellationException If the cancellation token of the search was cancelled
+	 */
+	public boolean isUnique() throws SolveTimeoutException {
+		long count = countSolutions(2);
+		if(status==SolveStatus.TIMED_OUT || status==SolveStatus.CANCELLED) {
+			throw SearchLimits.toException(status, attempt);
+		}
+		return count==1;
+	}
+	
+	/**
+	 * Enumerates the solutions of the board lazily, see {@link #solutions()}.
+	 * @return a spliterator of the solutions, each flattened row by row
+	 * @throws IllegalArgumentException If the board breaks one of the row, column or sub-matrix rules
+	 */
+	public Spliterator<int[]> spliterator() throws IllegalArgumentException {
+		isValid();
+		int[] puzzle = board.clone();
+		return new SolutionSpliterator(copy(puzzle), puzzle);
+	}
+	
+	/**
+	 * @return a new engine with the board, the cell selection, the propagation setting and the cancellation token of this one
+	 */
+	private SudokuEngine copy(int[] from) {
+		SudokuEngine copy = new SudokuEngine(geometry, cellSelection);
+		System.arraycopy(from, 0, copy.board, 0, cells);
+		copy.propagationEnabled = propagationEnabled;
+		copy.limits.setCancellationToken(limits.getCancellationToken());
+		return copy;
+	}
+	
+	/**
+	 * Finds the next solution of the board for {@link SolutionSpliterator}. The first call starts the search, or resumes
+	 * it if it was split off by {@link #split(int[])}. The search stops at each solution with its levels on the explicit
+	 * stack, and the next call goes on from there with the next digit, so no solution is found twice or missed.
+	 * @return true with the solution on the board, false once there are no more or the search was cancelled, see {@link #getStatus()}
+	 */
+	boolean nextSolution() {
+		if(status==SolveStatus.SOLVED) {
+			return finishSearch(search(false));
+		}
+		if(status!=SolveStatus.NOT_STARTED) {
+			return false;
+		}
+		if(suspendedDepth>0) {
+			return resume();
+		}
+		allocateStack();
+		return startSearch() && finishSearch(search(true));
+	}
+	
+	/**
+	 * Hands the upper half of the digits left to try at the shallowest level of the search that has any to a new engine,
+	 * so that the two engines go on with disjoint parts of the search tree. The search of this engine may be stopped at a
+	 * solution, suspended by an earlier split, or not started yet, in which case it is suspended on its first guess.
+	 * @param puzzle the board the search started from
+	 * @return an engine with the split off part of the search suspended, which {@link #nextSolution()} resumes, or null
+	 * if no level has digits left to try
+	 */
+	SudokuEngine split(int[] puzzle) {
+		boolean suspended = suspendedDepth>0;
+		if(status==SolveStatus.NOT_STARTED && !suspended) {
+			if(!suspendFirstGuess()) {
+				return null;
+			}
+			suspended = true;
+		} else if(status!=SolveStatus.SOLVED && !(status==SolveStatus.NOT_STARTED && suspended)) {
 			return null;
 		}
+		int levels = suspended ? suspendedDepth : depth;
+		for(int level=0;level<levels;level++) {
+			int remaining = stackRemaining[level];
+			if(remaining==0) {
+				continue;
+			}
+			//the lower half of the digits stays here, the upper half goes to the new engine
+			int kept = remaining;
+			for(int i=(Integer.bitCount(remaining)+1)/2;i>0;i--) {
+				kept ^= Integer.highestOneBit(kept);
+			}
+			stackRemaining[level] = kept;
+			int given = remaining ^ kept, bit = given & -given;
+			
+			SudokuEngine split = copy(puzzle);
+			split.allocateStack();
+			for(int k=0;k<level;k++) {
+				split.stackCell[k] = stackCell[k];
+				split.stackDigit[k] = suspended ? stackDigit[k] : board[stackCell[k]];
+			}
+			split.stackCell[level] = stackCell[level];
+			split.stackDigit[level] = Integer.numberOfTrailingZeros(bit)+1;
+			split.stackRemaining[level] = given ^ bit;
+			split.suspendedDepth = level+1;
+			return split;
+		}
+		return null;
+	}
+	
+	/**
+	 * Suspends a search that has not started on its first guess, as if it had given up right after placing it.
+	 * @return false if the board has no cell to guess, being solved by propagation alone or having no solution
+	 */
+	private boolean suspendFirstGuess() {
+		allocateStack();
+		if(!startSearch()) {
+			status = SolveStatus.NOT_STARTED;
+			return false;
+		}
+		int cell = -1;
+		if(emptyCount>0) {
+			if(cellSelection==CellSelection.MINIMUM_REMAINING_VALUES) {
+				cell = getMostConstrainedCell();
+			} else {
+				cell = 0;
+				while(board[cell]!=0) {
+					cell++;
+				}
+			}
+		}
+		int candidates = cell<0 ? 0 : branch(cell, ~(rulesRow[ROW_OF[offset+cell]] | rulesCol[COL_OF[offset+cell]] | rulesBox[BOX_OF[offset+cell]]) & allDigits);
+		undoPropagation(0);
+		if(candidates==0) {
+			return false;
+		}
+		int bit = candidates & -candidates;
+		stackCell[0] = cell;
+		stackDigit[0] = Integer.numberOfTrailingZeros(bit)+1;
+		stackRemaining[0] = candidates ^ bit;
+		suspendedDepth = 1;
+		suspendedOrderLength = 0;
+		return true;
+	}
+	
+	/**
+	 * @return a copy of the board, flattened row by row
+	 */
+	int[] copyCells() {
+		return board.clone();
+	}
+	
+	/**
+	 * Enumerates the solutions of the board lazily. The search only runs while the stream asks for solutions, so
+	 * short-circuiting operations such as limit(n), findAny() or anyMatch() stop it, and memory does not grow with the
+	 * number of solutions unless they are collected. The search picks its cells and propagates singles as this engine
+	 * does, on the explicit stack used to resume a search. A parallel stream splits the search tree between its threads.
+	 * The board of the engine is copied, so it can be changed or solved while the stream is used. The cancellation
+	 * token of the engine stops the stream with a CancellationException; the time and attempt limits do not apply.
+	 * @return a stream of the solutions, each flattened row by row: the digit of row i and column j is at i*size+j
+	 * @throws IllegalArgumentException If the board breaks one of the row, column or sub-matrix rules
+	 */
+	public Stream<int[]> solutions() throws IllegalArgumentException {
+		return StreamSupport.stream(spliterator(), false);
+	}
+	
+	/**
+	 * Validates the board and prepares the search: collects the empty cells, starts the limits and fills in the singles
+	 * of the board if propagation is enabled.
+	 * @return false if the board is invalid or propagation ran into a contradiction, in which case the status is set
+	 */
+	private boolean startSearch() {
+		Conflicts conflicts = validate();
+		if(!conflicts.isEmpty()) {
+			//the message is only written if the logger is enabled
+			LOGGER.error(conflicts);
+			status = SolveStatus.INVALID;
+			return false;
+		}
 		
-		int[][] solution = solveRecursively(map, rulesRow, rulesCol, rules3x3); 
-		LOGGER.info("Number of attempts: "+attempt);
-		return solution;
+		emptyCount = 0;
+		for(int cell=0;cell<cells;cell++) {
+			if(board[cell]==0) {
+				emptyCells[emptyCount] = cell;
+				emptyIndex[cell] = emptyCount;
+				emptyCount++;
+			}
+		}
+		
+		status = SolveStatus.NOT_STARTED;
+		aborted = false;
+		depth = 0;
+		suspendedDepth = 0;
+		nextCheck = limits.start(attempt);
+		nextSample = SAMPLES.isDebugEnabled() ? attempt + SAMPLE_INTERVAL : Long.MAX_VALUE;
+		nextCheck = Math.min(nextCheck, nextSample);
+		if(trace!=null) {
+			trace.start(size, board);
+		}
+		trailSize = 0;
+		if(propagationEnabled && !propagate()) {
+			undoPropagation(0);
+			status = SolveStatus.NO_SOLUTION;
+			return false;
+		}
+		return true;
 	}
 	
 	/**
-	 * Recursively solves the sudoku board
-	 * @param map the sudoku board
-	 * @param rulesRow The list of 9 integers tracking the numbers occurred in its respective row 
-	 * @param rulesCol The list of 9 integers tracking the numbers occurred in its respective column
-	 * @param rules3x3 The list of 9 integers tracking the numbers occurred in its respective 3x3 sub-matrix
-	 * @return The solved board, or null
+	 * Recursively solves the sudoku board. Every placement is applied to board, rulesRow, rulesCol and rulesBox in place
+	 * and undone before trying the next digit, so a search node costs no allocation. When the search gives up on its
+	 * limits, every level keeps its cell, its digit and the digits it has left to try on the explicit stack while the
+	 * recursion unwinds, so that {@link #resume()} can go on with it.
+	 * @param from When cells are picked in row major order, all cells before this index are already filled, so the search for the next empty cell starts here
+	 * @param level the number of cells guessed by the levels above
+	 * @return true if the board has been solved, false otherwise
 	 */
-	private int[][] solveRecursively(final int[][] map, List<Integer> rulesRow, List<Integer> rulesCol, List<Integer> rules3x3){
-		if(isMapComplete(map))
-			return map;
+	private boolean solveRecursively(int from, int level){
+		if(emptyCount==0) {
+			if(!counting) {
+				return true;
+			}
+			//when counting, the search goes on as if this were a dead end, until enough solutions have been found
+			solutionCount++;
+			onSolution();
+			if(solutionCount>=solutionLimit) {
+				aborted = true;
+			}
+			return false;
+		}
 		
-		int[][] solutionMap;
+		int cell;
+		if(cellSelection==CellSelection.MINIMUM_REMAINING_VALUES) {
+			cell = getMostConstrainedCell();
+			if(cell<0) {
+				return false;
+			}
+		} else {
+			cell = from;
+			while(board[cell]!=0) {
+				cell++;
+			}
+		}
 		
-		for(int i=0;i<9;i++) {
-			for(int j=0;j<9;j++) {
-				if(map[i][j]==0) {
-					//combined marks all the values that are unavailable to this cell
-					int combined = rulesRow.get(i) | rulesCol.get(j) | rules3x3.get((i/3)*3 + j/3);
-					//we want the complement of these values marking the values available to this cell
-					//mask is used to avoid overflow
-					int mask = (1 << 9) -1;
-					int available = ~combined & mask;
-					if(available==0) {
-						return null;
+		int row = ROW_OF[offset+cell], col = COL_OF[offset+cell], box = BOX_OF[offset+cell];
+		//the complement of the digits used by the cell's row, column and sub-matrix marks the values available to this cell
+		int available = branch(cell, ~(rulesRow[row] | rulesCol[col] | rulesBox[box]) & allDigits);
+		if(trace!=null) {
+			trace.record(SearchTrace.BRANCH, cell, Integer.bitCount(available), cells-emptyCount);
+		}
+		removeEmptyCell(cell);
+		
+		while(available!=0 && !aborted) {
+			int bit = available & -available;
+			available ^= bit;
+			
+			board[cell] = Integer.numberOfTrailingZeros(bit)+1;
+			rulesRow[row] |= bit;
+			rulesCol[col] |= bit;
+			rulesBox[box] |= bit;
+			
+			attempt += 1;
+			if(attempt>=nextCheck) {
+				checkLimits();
+			}
+			if(trace!=null) {
+				trace.record(SearchTrace.PLACE, cell, board[cell], cells-emptyCount-1);
+			}
+			
+			int trailMark = trailSize;
+			if(!aborted && (!propagationEnabled || propagate()) && solveRecursively(cell+1, level+1)) {
+				return true;
+			}
+			undoPropagation(trailMark);
+			if(aborted && status!=SolveStatus.NOT_STARTED) {
+				//the search gave up on its limits, not on its solution limit: the guess is kept to be resumed
+				keepLevel(level, cell, available);
+			} else {
+				backtrack++;
+				if(trace!=null) {
+					trace.record(SearchTrace.BACKTRACK, cell, board[cell], cells-emptyCount-1);
+				}
+			}
+			
+			rulesRow[row] ^= bit;
+			rulesCol[col] ^= bit;
+			rulesBox[box] ^= bit;
+		}
+		board[cell] = 0;
+		emptyCount++;
+		return false;
+	}
+	
+	/**
+	 * Keeps a level of a search that gave up on the explicit stack. The levels unwind from the deepest one, whose guess
+	 * has just been placed but not searched, which sets the depth of the suspended search.
+	 * @param available the digits the level has left to try
+	 */
+	private void keepLevel(int level, int cell, int available) {
+		allocateStack();
+		stackCell[level] = cell;
+		stackDigit[level] = board[cell];
+		stackRemaining[level] = available;
+		if(suspendedDepth==0) {
+			suspendedDepth = level+1;
+		}
+	}
+	
+	/**
+	 * Goes on with a resumed search by backtracking on the explicit stack, taking the same steps as
+	 * {@link #solveRecursively(int, int)} would have. The depth of the search is not bounded by the Java stack. When the
+	 * search gives up on its limits again, its levels are kept by {@link #suspend()} before the board is unwound.
+	 * @param descend true to branch on a cell below the top level of the stack, false to go on with the next digit of the top level
+	 * @return true if the board has been solved, false otherwise
+	 */
+	private boolean search(boolean descend) {
+		//the top level of the stack is kept in locals, and only read back from the stack once the level above it is done.
+		//depth is level+1, and is only written back when the search returns
+		int level = depth-1, cell = 0, available = 0, trailMark = 0;
+		if(level>=0) {
+			cell = stackCell[level];
+			available = stackRemaining[level];
+			trailMark = stackTrail[level];
+		}
+		while(true) {
+			//true once a level has been pushed for a new cell, which has no digit to take back
+			boolean pushed = false;
+			if(descend) {
+				if(emptyCount==0) {
+					if(!counting) {
+						//the top level is written back, so that the search can go on after this solution, see nextSolution()
+						if(level>=0) {
+							stackRemaining[level] = available;
+							stackTrail[level] = trailMark;
+						}
+						depth = level+1;
+						return true;
 					}
-					
-					
-					for (int bitShift=0; available>0; bitShift++) {
-						if((available & 1) > 0) {
-							map[i][j]=bitShift+1;
-							
-							List<Integer> rulesRowNew = new ArrayList<Integer>(rulesRow);
-							rulesRowNew.set(i, rulesRowNew.get(i) | 1<<bitShift);
-							List<Integer> rulesColNew = new ArrayList<Integer>(rulesCol);
-							rulesColNew.set(j, rulesColNew.get(j) | 1<<bitShift);
-							List<Integer> rules3x3New = new ArrayList<Integer>(rules3x3);
-							rules3x3New.set((i/3)*3 + j/3, rules3x3New.get((i/3)*3 + j/3) | 1<<bitShift);
-
-							attempt += 1;
-							
-							//output the current state to show the engine is active
-							if(attempt%1000==0) {
-								outputMap(map);
-								LOGGER.debug("Attempt: "+attempt+" Adding "+(bitShift+1) + " to ["+i+"]["+j+"]");
+					//when counting, the search goes on as if this were a dead end, until enough solutions have been found
+					solutionCount++;
+					onSolution();
+					if(solutionCount>=solutionLimit) {
+						//enough solutions: every level of the stack is taken back, as it would be after a dead end
+						aborted = true;
+						while(level>=0) {
+							takeBack(cell, trailMark);
+							emptyCount++;
+							if(--level>=0) {
+								cell = stackCell[level];
+								trailMark = stackTrail[level];
 							}
-							solutionMap = solveRecursively(map, rulesRowNew, rulesColNew, rules3x3New);
-							
-							if(solutionMap!=null) {
-								return solutionMap;
+						}
+						depth = 0;
+						return false;
+					}
+				} else {
+					int next;
+					if(cellSelection==CellSelection.MINIMUM_REMAINING_VALUES) {
+						next = getMostConstrainedCell();
+					} else {
+						//all cells up to the cell of the top level are filled
+						next = level<0 ? 0 : cell+1;
+						while(board[next]!=0) {
+							next++;
+						}
+					}
+					if(next>=0) {
+						int nextRow = ROW_OF[offset+next], nextCol = COL_OF[offset+next], nextBox = BOX_OF[offset+next];
+						//the complement of the digits used by the cell's row, column and sub-matrix marks the values available to this cell
+						int candidates = branch(next, ~(rulesRow[nextRow] | rulesCol[nextCol] | rulesBox[nextBox]) & allDigits);
+						if(trace!=null) {
+							trace.record(SearchTrace.BRANCH, next, Integer.bitCount(candidates), cells-emptyCount);
+						}
+						removeEmptyCell(next);
+						if(candidates==0) {
+							//a dead end is taken back at once, without a level of its own
+							emptyCount++;
+						} else {
+							if(level>=0) {
+								stackRemaining[level] = available;
+								stackTrail[level] = trailMark;
 							}
-						} else if(available==0){
-							LOGGER.info("No Solution found");
+							cell = next;
+							available = candidates;
+							stackCell[++level] = cell;
+							pushed = true;
 						}
-						available = available>>1;								
 					}
-					map[i][j]=0;
-					return null;
 				}
 			}
+			if(!pushed) {
+				if(level<0) {
+					depth = 0;
+					return false;
+				}
+				//the digit tried last by the top level led to a dead end
+				takeBack(cell, trailMark);
+				//a level without digits left to try is popped, and the digit of the level below led to a dead end as well
+				while(available==0) {
+					emptyCount++;
+					if(--level<0) {
+						depth = 0;
+						return false;
+					}
+					cell = stackCell[level];
+					available = stackRemaining[level];
+					trailMark = stackTrail[level];
+					takeBack(cell, trailMark);
+				}
+			}
+			int bit = available & -available;
+			available ^= bit;
+			
+			board[cell] = Integer.numberOfTrailingZeros(bit)+1;
+			rulesRow[ROW_OF[offset+cell]] |= bit;
+			rulesCol[COL_OF[offset+cell]] |= bit;
+			rulesBox[BOX_OF[offset+cell]] |= bit;
+			
+			trailMark = trailSize;
+			attempt += 1;
+			if(attempt>=nextCheck) {
+				checkLimits();
+				if(aborted) {
+					stackRemaining[level] = available;
+					stackTrail[level] = trailMark;
+					depth = level+1;
+					if(trace!=null) {
+						trace.record(SearchTrace.PLACE, cell, board[cell], cells-emptyCount-1);
+					}
+					suspend();
+					return false;
+				}
+			}
+			if(trace!=null) {
+				trace.record(SearchTrace.PLACE, cell, board[cell], cells-emptyCount-1);
+			}
+			descend = !propagationEnabled || propagate();
 		}
-		return null;
 	}
 	
 	/**
-	 * Checks if the map has been solved
-	 * @param map The sudoku map
-	 * @return true of the map is complete, false otherwise.
+	 * Takes back the digit of a cell the search guessed, with the cells propagation filled after it.
+	 * @param trailMark the trail size before the digit was placed
 	 */
-	private boolean isMapComplete(int[][] map) {
-		for(int i=0;i<9;i++) {
-			for(int j=0;j<9;j++) {
-				if(map[i][j]<1 || map[i][j]>9) {
+	private void takeBack(int cell, int trailMark) {
+		undoPropagation(trailMark);
+		backtrack++;
+		if(trace!=null) {
+			trace.record(SearchTrace.BACKTRACK, cell, board[cell], cells-emptyCount-1);
+		}
+		int bit = 1 << (board[cell]-1);
+		rulesRow[ROW_OF[offset+cell]] ^= bit;
+		rulesCol[COL_OF[offset+cell]] ^= bit;
+		rulesBox[BOX_OF[offset+cell]] ^= bit;
+		board[cell] = 0;
+	}
+	
+	/**
+	 * Keeps the levels of a search that gave up, whose guess on the top level has just been placed but not searched, and
+	 * unwinds the board. Unwinding leaves the order of the empty cells as it was, which {@link #finishSearch(boolean)} keeps.
+	 */
+	private void suspend() {
+		for(int level=0;level<depth;level++) {
+			stackDigit[level] = board[stackCell[level]];
+		}
+		suspendedDepth = depth;
+		unwind();
+	}
+	
+	/**
+	 * Takes back every level of the stack and the propagation before the first guess.
+	 */
+	private void unwind() {
+		while(depth>0) {
+			int cell = stackCell[--depth];
+			undoPropagation(stackTrail[depth]);
+			if(board[cell]!=0) {
+				int bit = 1 << (board[cell]-1);
+				rulesRow[ROW_OF[offset+cell]] ^= bit;
+				rulesCol[COL_OF[offset+cell]] ^= bit;
+				rulesBox[BOX_OF[offset+cell]] ^= bit;
+				board[cell] = 0;
+			}
+			emptyCount++;
+		}
+		undoPropagation(0);
+	}
+	
+	/**
+	 * Sets the status from the outcome of the search. The board is left as it was unless a solve found a solution.
+	 * @param solved the outcome of the search
+	 * @return true if a solve found a solution, or a count found one
+	 */
+	private boolean finishSearch(boolean solved) {
+		if(suspendedDepth>0) {
+			//the board is unwound, which leaves the empty cells in the order the suspended search needs
+			undoPropagation(0);
+			System.arraycopy(emptyCells, 0, suspendedOrder, 0, emptyCount);
+			suspendedOrderLength = emptyCount;
+			suspendedCounting = counting;
+		}
+		if(counting) {
+			counting = false;
+			undoPropagation(0);
+			if(status!=SolveStatus.TIMED_OUT && status!=SolveStatus.CANCELLED) {
+				status = solutionCount>0 ? SolveStatus.SOLVED : SolveStatus.NO_SOLUTION;
+			}
+			return solutionCount>0;
+		}
+		if(!solved) {
+			undoPropagation(0);
+			if(!aborted) {
+				status = SolveStatus.NO_SOLUTION;
+			}
+			return false;
+		}
+		status = SolveStatus.SOLVED;
+		return true;
+	}
+	
+	/**
+	 * Reports the progress of the search, checks the cancellation token and the limits of the search, and aborts the search if it has to give up.
+	 */
+	private void checkLimits() {
+		if(attempt>=nextSample) {
+			sampleBoard();
+			nextSample = attempt + SAMPLE_INTERVAL;
+		}
+		limits.progress(attempt, cells-emptyCount);
+		SolveStatus reason = limits.check(attempt);
+		if(reason==null) {
+			nextCheck = Math.min(limits.next(attempt), nextSample);
+		} else {
+			aborted = true;
+			status = reason;
+		}
+	}
+	
+	/**
+	 * Called by {@link #countSolutions(long)} for every solution found, while the solution is on the board.
+	 * Subclasses can use it to collect solutions or to share the count with other searches.
+	 */
+	protected void onSolution() {
+	}
+	
+	/**
+	 * Called by the search on every cell it branches on, before any digit is tried. Subclasses can hand some of the
+	 * digits to other searches, for example to other threads, and the search then only tries the digits returned.
+	 * Returning 0 abandons the branch, which stops the whole search as every level above abandons its branch as well.
+	 * @param cell the empty cell the search branches on
+	 * @param candidates the digits available to the cell, one bit per digit
+	 * @return the digits the search tries, a subset of candidates
+	 */
+	protected int branch(int cell, int candidates) {
+		return candidates;
+	}
+
+	/**
+	 * @return the number of cells still empty during the search
+	 */
+	protected int getEmptyCount() {
+		return emptyCount;
+	}
+
+	/**
+	 * @return a copy of the current board as a 2d Character map, as used by the front end
+	 */
+	public Character[][] getBoard() {
+		return getPrimitiveToWrapped(getMap());
+	}
+
+	/**
+	 * @return the current board, packed straight from the cells of the engine
+	 * @throws IllegalArgumentException If the board is not 9x9
+	 */
+	public Board toBoard() throws IllegalArgumentException {
+		return Board.of(board);
+	}
+
+	/**
+	 * Finds the empty cell with the fewest available digits by counting the bits of its candidate mask.
+	 * @return the cell index, or -1 if an empty cell has no available digit left
+	 */
+	private int getMostConstrainedCell() {
+		int best = -1, bestCount = size+1;
+		for(int k=0;k<emptyCount;k++) {
+			int cell = emptyCells[k];
+			int available = ~(rulesRow[ROW_OF[offset+cell]] | rulesCol[COL_OF[offset+cell]] | rulesBox[BOX_OF[offset+cell]]) & allDigits;
+			int count = Integer.bitCount(available);
+			if(count<bestCount) {
+				if(count<=1) {
+					return count==0 ? -1 : cell;
+				}
+				best = cell;
+				bestCount = count;
+			}
+		}
+		return best;
+	}
+	
+	/**
+	 * Fills in naked singles (empty cells with a single available digit) and hidden singles (digits with a single available
+	 * cell in a row, column or sub-matrix) until there are none left. Every filled cell is pushed on the trail.
+	 * @return false if the board reached a contradiction, meaning an empty cell or a digit of a unit has no option left
+	 */
+	private boolean propagate() {
+		boolean changed = true;
+		while(changed) {
+			changed = false;
+			
+			//naked singles. The loop goes backwards because filling a cell swaps it with the last empty cell
+			for(int k=emptyCount-1;k>=0;k--) {
+				int cell = emptyCells[k];
+				int available = ~(rulesRow[ROW_OF[offset+cell]] | rulesCol[COL_OF[offset+cell]] | rulesBox[BOX_OF[offset+cell]]) & allDigits;
+				if(available==0) {
 					return false;
 				}
+				if((available & (available-1))==0) {
+					fill(cell, available);
+					changed = true;
+				}
+			}
+			
+			//hidden singles
+			for(int unit=0;unit<units.length;unit++) {
+				int once = 0, twice = 0;
+				for(int cell:units[unit]) {
+					if(board[cell]==0) {
+						int available = ~(rulesRow[ROW_OF[offset+cell]] | rulesCol[COL_OF[offset+cell]] | rulesBox[BOX_OF[offset+cell]]) & allDigits;
+						twice |= once & available;
+						once |= available;
+					}
+				}
+				int used = unit<size ? rulesRow[unit] : unit<2*size ? rulesCol[unit-size] : rulesBox[unit-2*size];
+				if((once | used)!=allDigits) {
+					return false;
+				}
+				
+				int hidden = once & ~twice;
+				while(hidden!=0) {
+					int bit = hidden & -hidden;
+					hidden ^= bit;
+					int target = -1;
+					for(int cell:units[unit]) {
+						if(board[cell]==0 && (~(rulesRow[ROW_OF[offset+cell]] | rulesCol[COL_OF[offset+cell]] | rulesBox[BOX_OF[offset+cell]]) & bit)!=0) {
+							target = cell;
+							break;
+						}
+					}
+					//the only cell of the digit has been taken by another hidden single of this unit
+					if(target<0) {
+						return false;
+					}
+					fill(target, bit);
+					changed = true;
+				}
 			}
 		}
 		return true;
 	}
 	
+	/**
+	 * Fills a cell during propagation and pushes it on the trail.
+	 * @param cell the cell to fill
+	 * @param bit the bit of the digit to fill the cell with
+	 */
+	private void fill(int cell, int bit) {
+		board[cell] = Integer.numberOfTrailingZeros(bit)+1;
+		if(trace!=null) {
+			trace.record(SearchTrace.PROPAGATE, cell, board[cell], cells-emptyCount);
+		}
+		rulesRow[ROW_OF[offset+cell]] |= bit;
+		rulesCol[COL_OF[offset+cell]] |= bit;
+		rulesBox[BOX_OF[offset+cell]] |= bit;
+		removeEmptyCell(cell);
+		trail[trailSize++] = cell;
+		propagation += 1;
+	}
+	
+	/**
+	 * Empties the cells filled by propagation, in reverse order, until the trail is back to the given size.
+	 * @param trailMark the size of the trail before the propagation that is undone
+	 */
+	private void undoPropagation(int trailMark) {
+		while(trailSize>trailMark) {
+			int cell = trail[--trailSize];
+			int bit = 1 << (board[cell]-1);
+			rulesRow[ROW_OF[offset+cell]] ^= bit;
+			rulesCol[COL_OF[offset+cell]] ^= bit;
+			rulesBox[BOX_OF[offset+cell]] ^= bit;
+			board[cell] = 0;
+			emptyCount++;
+		}
+	}
+	
+	/**
+	 * Removes a cell from the empty cells by swapping it with the last empty cell. Incrementing emptyCount undoes the
+	 * removal, as long as removals are undone in reverse order.
+	 * @param cell the cell that is being filled
+	 */
+	private void removeEmptyCell(int cell) {
+		int last = emptyCells[--emptyCount];
+		int index = emptyIndex[cell];
+		emptyCells[index] = last;
+		emptyIndex[last] = index;
+		emptyCells[emptyCount] = cell;
+		emptyIndex[cell] = emptyCount;
+	}
+	
 	/**
 	 * Outputs the map into LOGGER
 	 * @param map
@@ -214,7 +1343,7 @@ public class SudokuEngine {
 		for(int i=0;i<map.length;i++) {
 			for(int j=0;j<map.length;j++) {
 				if(map[i][j]!=0){
-					sb.append(map[i][j]);
+					sb.append(BoardGeometry.toSymbol(map[i][j]));
 				} else{
 					sb.append('.');
 				}
@@ -223,7 +1352,21 @@ public class SudokuEngine {
 		}
 		LOGGER.info(sb.toString());
 	}
-
+	
+	/**
+	 * Logs the board of the running search to the SAMPLES logger.
+	 */
+	private void sampleBoard() {
+		StringBuilder sb = new StringBuilder();
+		sb.append("Attempt: ").append(attempt).append('\n');
+		for(int cell=0;cell<cells;cell++) {
+			sb.append(board[cell]!=0 ? BoardGeometry.toSymbol(board[cell]) : '.');
+			if(COL_OF[offset+cell]==size-1) {
+				sb.append('\n');
+			}
+		}
+		SAMPLES.debug(sb.toString());
+	}
 	
 	/**
 	 * Brian Kernighan's algorithm for counting the one bits of an integer
@@ -243,70 +1386,43 @@ public class SudokuEngine {
     /**
      * This method checks if any of the row, column or sub-matrix rules have been broken by the map
      * @return true if the current map is valid, false otherwise
-     * @throws IllegalArgumentException If the map breaks any rules. All broken instances of the rules are specified in the exception.
+     * @throws InvalidBoardException If the map breaks any rules. All broken instances of the rules are specified in the exception.
      */
-	public boolean isValid() throws IllegalArgumentException{
-		//initializing rules
-		rulesRow = new ArrayList<Integer>(9);
-		rulesCol = new ArrayList<Integer>(9);
-		rules3x3 = new ArrayList<Integer>(9);
-		for(int i=0;i<9;i++) {
-			rulesRow.add(0);
-			rulesCol.add(0);
-			rules3x3.add(0);
+	public boolean isValid() throws InvalidBoardException {
+		Conflicts conflicts = validate();
+		if(!conflicts.isEmpty()) {
+			throw new InvalidBoardException(conflicts);
 		}
-				
-		boolean valid = true;
-		
-		String error = new String();
+		return true;
+	}
+	
+	/**
+	 * Checks the row, column and sub-matrix rules and records the digits of every unit for the search. A board that breaks
+	 * no rule is checked with one pass over the bit masks of the units and allocates nothing; only a board that breaks a
+	 * rule is scanned again to collect the units and cells of its conflicts.
+	 * @return the rules the board breaks, {@link Conflicts#NONE} if it is valid
+	 */
+	public Conflicts validate() {
+		Arrays.fill(rulesRow, 0);
+		Arrays.fill(rulesCol, 0);
+		Arrays.fill(rulesBox, 0);
 		
-
-		for(int i=0;i<9;i++) {
-			for(int j=0;j<9;j++) {
-				if(map[i][j]!=0) {
-					int shiftBy = map[i][j]-1;
-					//check along horizontal
-					if(((rulesRow.get(i)>>shiftBy) & 1) > 0) {
-//						LOGGER.debug("Row "+i+" has multiple "+ map[i][j]);
-						if(!valid) {
-							error+=", ";
-						}
-						error+="Row "+(i+1)+" has multiple "+ map[i][j]+"'s";
-						valid = false;
-					}
-
-					//check along vertical line
-					if(((rulesCol.get(j)>>shiftBy) & 1) > 0) {
-//						LOGGER.debug("Col "+j+" has multiple "+ map[i][j]);
-						if(!valid) {
-							error+=", ";
-						}
-						error+="Col "+(j+1)+" has multiple "+ map[i][j]+"'s";
-						valid = false;
-					}
-
-					//check along 3x3 squires line
-					if(((rules3x3.get((i/3)*3 + j/3)>>shiftBy) & 1) > 0) {
-//						LOGGER.debug("3x3 "+((i/3)*3 + j/3)+" has multiple "+ map[i][j]);
-						if(!valid) {
-							error+=", ";
-						}
-						error+="Sub-matrix "+((i/3)*3 + j/3 + 1)+" has multiple "+ map[i][j]+"'s";
-						valid = false;
-					}
-
-					//update counter in rules
-					if(map[i][j]>=1 && map[i][j]<=9) {
-						rulesRow.set(i, rulesRow.get(i) | 1<<shiftBy);
-						rulesCol.set(j, rulesCol.get(j) | 1<<shiftBy);
-						rules3x3.set((i/3)*3 + j/3, rules3x3.get((i/3)*3 + j/3) | 1<<shiftBy);
-					}
-				}
+		//the number of digits placed again in a unit, which bounds the number of units repeating a digit
+		int repeated = 0;
+		for(int cell=0;cell<cells;cell++) {
+			int digit = board[cell];
+			if(digit>0 && digit<=size) {
+				int i = ROW_OF[offset+cell], j = COL_OF[offset+cell], box = BOX_OF[offset+cell];
+				int shiftBy = digit-1, bit = 1<<shiftBy;
+				repeated += (rulesRow[i]>>shiftBy & 1) + (rulesCol[j]>>shiftBy & 1) + (rulesBox[box]>>shiftBy & 1);
+				rulesRow[i] |= bit;
+				rulesCol[j] |= bit;
+				rulesBox[box] |= bit;
 			}
 		}
-		if(!valid) {
-			throw new IllegalArgumentException(error);
+		if(repeated==0) {
+			return Conflicts.NONE;
 		}
-		return valid;
+		return Conflicts.of(geometry, board, repeated);
 	}
 }
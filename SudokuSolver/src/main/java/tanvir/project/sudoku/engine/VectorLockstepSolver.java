@@ -0,0 +1,105 @@
+package tanvir.project.sudoku.engine;
+
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * This class runs the passes for naked and hidden singles of {@link LockstepSolver} on the Vector API, so that each step
+ * works on a whole vector of lanes whether or not the JIT compiler would have vectorized the scalar loop. The arithmetic
+ * is the same as in LockstepSolver, lane for lane, and so are the puzzles handed to SudokuEngine.
+ *
+ * The Vector API is an incubator module, so this class is only compiled by the vector profile of the pom, which
+ * compiles for Java 17 with --add-modules jdk.incubator.vector, and it only loads in a JVM started with the same
+ * option. {@link LockstepSolver#create()} falls back to the scalar class otherwise.
+ *
+ * @author Tanvir Kaykobad
+ *
+ */
+public class VectorLockstepSolver extends LockstepSolver {
+
+	/**
+	 * The widest vector the processor supports, at most LANES ints, which LANES is a multiple of.
+	 */
+	private static final VectorSpecies<Integer> SPECIES = IntVector.SPECIES_PREFERRED.length()<=LANES
+			? IntVector.SPECIES_PREFERRED : IntVector.SPECIES_512;
+	private static final int STEP = SPECIES.length();
+
+	/**
+	 * @return the number of lanes of each vector
+	 */
+	public static int getVectorLength() {
+		return STEP;
+	}
+
+	@Override
+	int fillNakedSingles() {
+		IntVector progress = IntVector.zero(SPECIES), empties = IntVector.zero(SPECIES);
+		for(int cell=0;cell<CELLS;cell++) {
+			int[] digits = board[cell], row = rowOf[cell], col = colOf[cell], box = boxOf[cell];
+			for(int lane=0;lane<LANES;lane+=STEP) {
+				IntVector bit = IntVector.fromArray(SPECIES, digits, lane);
+				IntVector r = IntVector.fromArray(SPECIES, row, lane);
+				IntVector c = IntVector.fromArray(SPECIES, col, lane);
+				IntVector b = IntVector.fromArray(SPECIES, box, lane);
+				//-1 if the cell is empty, 0 otherwise
+				IntVector empty = bit.sub(1).lanewise(VectorOperators.ASHR, 31);
+				IntVector candidates = r.or(c).or(b).not().and(ALL_DIGITS).and(empty);
+				IntVector stuck = IntVector.fromArray(SPECIES, dead, lane)
+						.or(empty.and(candidates.sub(1).lanewise(VectorOperators.ASHR, 31)));
+				stuck.intoArray(dead, lane);
+				//the candidate if there is exactly one, 0 otherwise
+				IntVector single = candidates.and(candidates.and(candidates.sub(1)).sub(1).lanewise(VectorOperators.ASHR, 31))
+						.and(stuck.not());
+				bit.or(single).intoArray(digits, lane);
+				r.or(single).intoArray(row, lane);
+				c.or(single).intoArray(col, lane);
+				b.or(single).intoArray(box, lane);
+				progress = progress.or(single);
+				empties = empties.or(single.sub(1).lanewise(VectorOperators.ASHR, 31).and(empty).and(stuck.not()));
+			}
+		}
+		open = empties.reduceLanes(VectorOperators.OR);
+		return progress.reduceLanes(VectorOperators.OR);
+	}
+
+	@Override
+	int fillHiddenSingles() {
+		IntVector progress = IntVector.zero(SPECIES);
+		for(int unit=0;unit<UNITS.length;unit++) {
+			int[] cells = UNITS[unit];
+			int[] rules = (unit<SIZE ? rulesRow : unit<2*SIZE ? rulesCol : rulesBox)[unit%SIZE];
+			for(int lane=0;lane<LANES;lane+=STEP) {
+				IntVector once = IntVector.zero(SPECIES), twice = IntVector.zero(SPECIES);
+				for(int i=0;i<SIZE;i++) {
+					int cell = cells[i];
+					IntVector fit = IntVector.fromArray(SPECIES, rowOf[cell], lane)
+							.or(IntVector.fromArray(SPECIES, colOf[cell], lane))
+							.or(IntVector.fromArray(SPECIES, boxOf[cell], lane))
+							.not().and(ALL_DIGITS)
+							.and(IntVector.fromArray(SPECIES, board[cell], lane).sub(1).lanewise(VectorOperators.ASHR, 31));
+					fit.intoArray(unitCandidates[i], lane);
+					twice = twice.or(once.and(fit));
+					once = once.or(fit);
+				}
+				IntVector missing = IntVector.fromArray(SPECIES, rules, lane).not().and(ALL_DIGITS).and(once.not());
+				IntVector stuck = IntVector.fromArray(SPECIES, dead, lane).or(missing.neg().lanewise(VectorOperators.ASHR, 31));
+				stuck.intoArray(dead, lane);
+				//the hidden singles of the unit
+				IntVector hiddenSingles = once.and(twice.not()).and(stuck.not());
+				for(int i=0;i<SIZE;i++) {
+					int cell = cells[i];
+					IntVector hidden = IntVector.fromArray(SPECIES, unitCandidates[i], lane).and(hiddenSingles);
+					//a cell holding two hidden singles gets the lower one, the other then fits nowhere
+					IntVector single = hidden.and(hidden.neg());
+					IntVector.fromArray(SPECIES, board[cell], lane).or(single).intoArray(board[cell], lane);
+					IntVector.fromArray(SPECIES, rowOf[cell], lane).or(single).intoArray(rowOf[cell], lane);
+					IntVector.fromArray(SPECIES, colOf[cell], lane).or(single).intoArray(colOf[cell], lane);
+					IntVector.fromArray(SPECIES, boxOf[cell], lane).or(single).intoArray(boxOf[cell], lane);
+					progress = progress.or(single);
+				}
+			}
+		}
+		return progress.reduceLanes(VectorOperators.OR);
+	}
+}
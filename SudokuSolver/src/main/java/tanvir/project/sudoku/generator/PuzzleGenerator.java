@@ -0,0 +1,391 @@
+package tanvir.project.sudoku.generator;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+
+import tanvir.project.sudoku.engine.Board;
+import tanvir.project.sudoku.engine.CancellationToken;
+import tanvir.project.sudoku.engine.CellSelection;
+import tanvir.project.sudoku.engine.SolveTimeoutException;
+import tanvir.project.sudoku.engine.SudokuEngine;
+import tanvir.project.sudoku.rating.DifficultyRater;
+import tanvir.project.sudoku.rating.Technique;
+
+/**
+ * This class generates 9x9 puzzles with exactly one solution. A puzzle starts from a random complete grid: the three
+ * boxes on the diagonal, which share no row or column, are filled with random permutations of the digits, SudokuEngine
+ * completes the grid, and the rows and columns are shuffled within their bands and stacks. The clues are then removed
+ * in random order, and a removal is kept only if SudokuEngine.countSolutions(2) still finds a single solution.
+ *
+ * The removal stops at a target number of clues, or once no clue can be removed. Puzzles left with more clues than the
+ * target, or whose hardest technique falls outside the difficulty band, are dropped and the next grid is tried. The
+ * hardest technique is rated by {@link DifficultyRater}.
+ *
+ * Puzzle number i of a generator only depends on the seed and on i, so a run is reproduced by its seed whatever the
+ * number of threads. Each thread reuses one engine.
+ *
+ * Usage: java tanvir.project.sudoku.generator.PuzzleGenerator output count [seed] [clues] [difficulty] [threads]
+ *
+ * @author Tanvir Kaykobad
+ *
+ */
+public class PuzzleGenerator {
+
+	private static final int SIZE = 9, BOX_SIZE = 3, CELLS = SIZE*SIZE;
+
+	/**
+	 * No 9x9 puzzle with fewer clues has a single solution.
+	 */
+	public static final int MIN_CLUES = 17;
+
+	/**
+	 * The grids tried for one puzzle before giving up on a target or band that is out of reach.
+	 */
+	private static final int MAX_GRIDS = 10000;
+
+	/**
+	 * The length of an output line, including the line feed.
+	 */
+	private static final int LINE = CELLS + 1;
+
+	/**
+	 * The puzzles a thread takes at once from a parallel run.
+	 */
+	private static final int BLOCK = 256;
+
+	private final long seed;
+	private int clues;
+	private Technique easiest = Technique.HIDDEN_SINGLE, hardest = Technique.GUESSING;
+
+	/**
+	 * Constructor
+	 * @param seed the seed of the puzzles
+	 */
+	public PuzzleGenerator(long seed) {
+		this.seed = seed;
+	}
+
+	/**
+	 * @param clues the number of clues the puzzles keep, between 17 and 81, or 0 to remove as many as possible
+	 * @throws IllegalArgumentException If the number is out of range
+	 */
+	public void setClues(int clues) throws IllegalArgumentException {
+		if(clues!=0 && (clues<MIN_CLUES || clues>CELLS)) {
+			throw new IllegalArgumentException("Clues must be between "+MIN_CLUES+" and "+CELLS+", or 0");
+		}
+		this.clues = clues;
+	}
+
+	/**
+	 * @param easiest the easiest technique the hardest step of a puzzle may need
+	 * @param hardest the hardest technique a puzzle may need
+	 * @throws IllegalArgumentException If the band is empty
+	 */
+	public void setDifficulty(Technique easiest, Technique hardest) throws IllegalArgumentException {
+		if(hardest.compareTo(easiest)<0) {
+			throw new IllegalArgumentException("Difficulty band must not be empty");
+		}
+		this.easiest = easiest;
+		this.hardest = hardest;
+	}
+
+	/**
+	 * Generates one puzzle on its own engine, for occasional use. Runs of many puzzles use {@link #run(Path, long, int)}.
+	 * @param index the number of the puzzle
+	 * @return the puzzle
+	 * @throws IllegalStateException If no puzzle with the target clues and difficulty was found
+	 */
+	public Board generate(long index) throws IllegalStateException {
+		return new Worker().generate(index);
+	}
+
+	/**
+	 * Like {@link #generate(long)}, but gives up once the token is cancelled or the time limit has passed. The engine and
+	 * the rater of the generation are stopped by the token and the time limit as well.
+	 * @param index the number of the puzzle
+	 * @param token stops the generation once cancelled, or null
+	 * @param timeout the longest time the generation may take
+	 * @param unit the unit of the timeout
+	 * @return the puzzle
+	 * @throws IllegalArgumentException If the timeout is not positive
+	 * @throws IllegalStateException If no puzzle with the target clues and difficulty was found
+	 * @throws SolveTimeoutException If the time limit has passed
+	 * @throws CancellationException If the token was cancelled
+	 */
+	public Board generate(long index, CancellationToken token, long timeout, TimeUnit unit)
+			throws IllegalArgumentException, IllegalStateException, SolveTimeoutException {
+		Worker worker = new Worker();
+		worker.bound(token, timeout, unit);
+		return worker.generate(index);
+	}
+
+	/**
+	 * Generates puzzles 0 to count-1 in parallel and writes them to a file, one line of 81 characters per puzzle with
+	 * '.' for the empty cells, in order.
+	 * @param output the file the puzzles are written to. It is replaced if it exists.
+	 * @param count the number of puzzles
+	 * @param threads the number of threads generating puzzles
+	 * @return the time taken in nanoseconds
+	 * @throws IOException If the file cannot be written
+	 * @throws InterruptedException If the thread is interrupted while waiting for the generating threads
+	 * @throws IllegalArgumentException If the number of threads is not positive
+	 * @throws IllegalStateException If no puzzle with the target clues and difficulty was found
+	 */
+	public long run(Path output, long count, int threads) throws IOException, InterruptedException, IllegalArgumentException, IllegalStateException {
+		if(threads<1) {
+			throw new IllegalArgumentException("Number of threads must be positive");
+		}
+		long start = System.nanoTime();
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		try (FileChannel out = FileChannel.open(output, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+				StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+			AtomicLong next = new AtomicLong();
+			List<Future<?>> done = new ArrayList<>();
+			for(int t=0;t<threads;t++) {
+				done.add(executor.submit(() -> {
+					Worker worker = new Worker();
+					for(long first=next.getAndAdd(BLOCK);first<count;first=next.getAndAdd(BLOCK)) {
+						int puzzles = (int)Math.min(BLOCK, count-first);
+						MappedByteBuffer buffer = out.map(FileChannel.MapMode.READ_WRITE, first*LINE, (long)puzzles*LINE);
+						for(int p=0;p<puzzles;p++) {
+							worker.generate(first+p);
+							for(int cell=0;cell<CELLS;cell++) {
+								int digit = worker.engine.getCell(cell);
+								buffer.put(p*LINE+cell, (byte)(digit==0 ? '.' : '0'+digit));
+							}
+							buffer.put(p*LINE+CELLS, (byte)'\n');
+						}
+					}
+					return null;
+				}));
+			}
+			for(Future<?> future:done) {
+				future.get();
+			}
+		} catch (ExecutionException e) {
+			if(e.getCause() instanceof IOException) {
+				throw (IOException) e.getCause();
+			}
+			if(e.getCause() instanceof IllegalStateException) {
+				throw (IllegalStateException) e.getCause();
+			}
+			throw new IllegalStateException(e.getCause());
+		} finally {
+			executor.shutdownNow();
+		}
+		return System.nanoTime() - start;
+	}
+
+	/**
+	 * The random generator of puzzle number index: the seed and the index mixed by the finalizer of SplitMix64, so
+	 * neighbouring indices get unrelated streams.
+	 */
+	private SplittableRandom getRandom(long index) {
+		long z = seed + (index+1)*0x9E3779B97F4A7C15L;
+		z = (z ^ (z>>>30)) * 0xBF58476D1CE4E5B9L;
+		z = (z ^ (z>>>27)) * 0x94D049BB133111EBL;
+		return new SplittableRandom(z ^ (z>>>31));
+	}
+
+	/**
+	 * The state of one generating thread.
+	 */
+	private class Worker {
+		private final SudokuEngine engine = new SudokuEngine(SIZE, CellSelection.MINIMUM_REMAINING_VALUES);
+		private final int[] grid = new int[CELLS], order = new int[CELLS], rows = new int[SIZE], cols = new int[SIZE];
+		private final DifficultyRater rater = new DifficultyRater();
+
+		/**
+		 * The token and the {@link System#nanoTime()} stopping the generation, if bounded.
+		 */
+		private CancellationToken token;
+		private long deadline;
+		private boolean bounded;
+
+		Worker() {
+			engine.setPropagationEnabled(true);
+		}
+
+		void bound(CancellationToken token, long timeout, TimeUnit unit) throws IllegalArgumentException {
+			engine.setCancellationToken(token);
+			engine.setTimeLimit(timeout, unit);
+			rater.setCancellationToken(token);
+			rater.setTimeLimit(timeout, unit);
+			this.token = token;
+			this.deadline = System.nanoTime()+unit.toNanos(timeout);
+			this.bounded = true;
+		}
+
+		/**
+		 * Called after each search of the engine, whose outcome is not to be trusted once the generation is stopped.
+		 * @throws SolveTimeoutException If the deadline of a bounded generation has passed
+		 * @throws CancellationException If the token was cancelled
+		 */
+		private void checkStopped() throws SolveTimeoutException {
+			if(!bounded) {
+				return;
+			}
+			if(token!=null && token.isCancelled()) {
+				throw new CancellationException("Generating was cancelled");
+			}
+			if(System.nanoTime()-deadline>0) {
+				throw new SolveTimeoutException("Generating timed out");
+			}
+		}
+
+		/**
+		 * Generates a puzzle, which is left on the engine.
+		 * @return the puzzle
+		 */
+		Board generate(long index) throws IllegalStateException {
+			SplittableRandom random = getRandom(index);
+			for(int grids=0;grids<MAX_GRIDS;grids++) {
+				fillGrid(random);
+				if(removeClues(random) && isInBand()) {
+					return engine.toBoard();
+				}
+			}
+			throw new IllegalStateException("No puzzle with the target clues and difficulty within "+MAX_GRIDS+" grids");
+		}
+
+		/**
+		 * Fills the engine with a random complete grid.
+		 */
+		private void fillGrid(SplittableRandom random) {
+			do {
+				checkStopped();
+				for(int cell=0;cell<CELLS;cell++) {
+					engine.setCell(cell, 0);
+				}
+				for(int box=0;box<BOX_SIZE;box++) {
+					shuffle(order, SIZE, random);
+					for(int k=0;k<SIZE;k++) {
+						int row = box*BOX_SIZE + k/BOX_SIZE, col = box*BOX_SIZE + k%BOX_SIZE;
+						engine.setCell(row*SIZE+col, order[k]+1);
+					}
+				}
+			} while(!engine.solve());
+
+			//the engine tries the digits in order, so the rest of the grid is shuffled by moving rows and columns within
+			//their bands and stacks, and the bands and stacks themselves, which keeps the grid valid
+			shuffleLines(rows, random);
+			shuffleLines(cols, random);
+			boolean transpose = random.nextBoolean();
+			for(int cell=0;cell<CELLS;cell++) {
+				grid[cell] = engine.getCell(cell);
+			}
+			for(int row=0;row<SIZE;row++) {
+				for(int col=0;col<SIZE;col++) {
+					int from = transpose ? cols[col]*SIZE+rows[row] : rows[row]*SIZE+cols[col];
+					engine.setCell(row*SIZE+col, grid[from]);
+				}
+			}
+		}
+
+		/**
+		 * Removes clues in random order while the puzzle keeps a single solution.
+		 * @return false if the puzzle was left with more clues than the target
+		 */
+		private boolean removeClues(SplittableRandom random) {
+			shuffle(order, CELLS, random);
+			int left = CELLS;
+			for(int k=0;k<CELLS && left>clues;k++) {
+				int cell = order[k], digit = engine.getCell(cell);
+				engine.setCell(cell, 0);
+				long solutions = engine.countSolutions(2);
+				checkStopped();
+				if(solutions==1) {
+					left--;
+				} else {
+					engine.setCell(cell, digit);
+				}
+			}
+			return clues==0 || left==clues;
+		}
+
+		/**
+		 * @return true if the hardest technique the puzzle on the engine needs is within the band
+		 */
+		private boolean isInBand() {
+			if(easiest==Technique.HIDDEN_SINGLE && hardest==Technique.GUESSING) {
+				return true;
+			}
+			Technique needed = rater.rate(engine.toBoard()).getHardest();
+			return needed.compareTo(easiest)>=0 && needed.compareTo(hardest)<=0;
+		}
+	}
+
+	/**
+	 * Puts the numbers 0 to length-1 in random order, by Fisher-Yates.
+	 */
+	private static void shuffle(int[] values, int length, SplittableRandom random) {
+		for(int i=0;i<length;i++) {
+			values[i] = i;
+		}
+		for(int i=length-1;i>0;i--) {
+			int j = random.nextInt(i+1), value = values[i];
+			values[i] = values[j];
+			values[j] = value;
+		}
+	}
+
+	/**
+	 * Puts the 9 lines in a random order that keeps the lines of each band together: lines[i] is the line moved to i.
+	 */
+	private static void shuffleLines(int[] lines, SplittableRandom random) {
+		int[] bands = new int[BOX_SIZE], within = new int[BOX_SIZE];
+		shuffle(bands, BOX_SIZE, random);
+		for(int band=0;band<BOX_SIZE;band++) {
+			shuffle(within, BOX_SIZE, random);
+			for(int k=0;k<BOX_SIZE;k++) {
+				lines[band*BOX_SIZE+k] = bands[band]*BOX_SIZE+within[k];
+			}
+		}
+	}
+
+	/**
+	 * This method generates puzzles to a file and reports the throughput.
+	 * @param args the output file, the number of puzzles, and optionally the seed, the number of clues (0 for as few as
+	 * possible), the difficulty band as two techniques easiest-hardest, for example NAKED_PAIR-SWORDFISH, and the number of threads, which defaults to the number of processors
+	 */
+	public static void main(String args[]) throws IOException, InterruptedException {
+		if(args.length<2) {
+			System.out.println("Usage: java "+PuzzleGenerator.class.getName()+" output count [seed] [clues] [difficulty] [threads]");
+			System.exit(2);
+		}
+		Logger.getRootLogger().setLevel(Level.OFF);
+
+		long count = Long.parseLong(args[1]);
+		long seed = args.length>2 ? Long.parseLong(args[2]) : System.nanoTime();
+		PuzzleGenerator generator = new PuzzleGenerator(seed);
+		if(args.length>3) {
+			generator.setClues(Integer.parseInt(args[3]));
+		}
+		if(args.length>4) {
+			String[] band = args[4].split("-");
+			generator.setDifficulty(Technique.valueOf(band[0]), Technique.valueOf(band[band.length-1]));
+		}
+		int threads = args.length>5 ? Integer.parseInt(args[5]) : Runtime.getRuntime().availableProcessors();
+		long elapsed = generator.run(Paths.get(args[0]), count, threads);
+
+		System.out.println("Puzzles: "+count+", Seed: "+seed+", Threads: "+threads);
+		System.out.println("Time: "+elapsed/1000000+"ms, Puzzles/s: "+(elapsed==0 ? 0 : (long) (count*1e9/elapsed)));
+	}
+}
@@ -0,0 +1,78 @@
+package tanvir.project.sudoku.metrics;
+
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A histogram of non-negative values with one bucket per power of two: bucket b counts the values between 2^(b-1) and
+ * 2^b-1, and bucket 0 counts the zeros. Recording only increments striped counters, so threads recording at the same
+ * time do not contend, and percentiles are read with the precision of a factor of two.
+ *
+ * @author Tanvir Kaykobad
+ *
+ */
+public final class Histogram {
+	private static final int BUCKETS = Long.SIZE;
+
+	private final LongAdder[] buckets = new LongAdder[BUCKETS];
+	private final LongAdder sum = new LongAdder();
+	private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+	public Histogram() {
+		for(int b=0;b<BUCKETS;b++) {
+			buckets[b] = new LongAdder();
+		}
+	}
+
+	/**
+	 * @param value the value to record. Negative values are recorded as 0.
+	 */
+	public void record(long value) {
+		if(value<0) {
+			value = 0;
+		}
+		buckets[BUCKETS-Long.numberOfLeadingZeros(value)].increment();
+		sum.add(value);
+		max.accumulate(value);
+	}
+
+	/**
+	 * @return the count, mean, maximum and the 50th, 90th and 99th percentiles of the values recorded so far. The
+	 * percentiles are the upper bounds of their buckets, but never more than the maximum.
+	 */
+	public HistogramSnapshot getSnapshot() {
+		long[] counts = new long[BUCKETS];
+		long total = 0;
+		for(int b=0;b<BUCKETS;b++) {
+			counts[b] = buckets[b].sum();
+			total += counts[b];
+		}
+		long maximum = max.get();
+		return new HistogramSnapshot(total, total==0 ? 0 : (double)sum.sum()/total, percentile(counts, total, 0.5, maximum),
+				percentile(counts, total, 0.9, maximum), percentile(counts, total, 0.99, maximum), maximum);
+	}
+
+	/**
+	 * Forgets the values recorded so far. Values recorded while resetting may be partly kept.
+	 */
+	public void reset() {
+		for(LongAdder bucket:buckets) {
+			bucket.reset();
+		}
+		sum.reset();
+		max.reset();
+	}
+
+	private static long percentile(long[] counts, long total, double quantile, long maximum) {
+		long rank = (long)Math.ceil(quantile*total);
+		long seen = 0;
+		for(int b=0;b<BUCKETS;b++) {
+			seen += counts[b];
+			if(seen>=rank && seen>0) {
+				long upper = b==0 ? 0 : b==BUCKETS-1 ? Long.MAX_VALUE : (1L<<b)-1;
+				return Math.min(upper, maximum);
+			}
+		}
+		return 0;
+	}
+}
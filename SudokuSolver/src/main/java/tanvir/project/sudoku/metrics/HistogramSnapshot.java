@@ -0,0 +1,54 @@
+package tanvir.project.sudoku.metrics;
+
+import java.beans.ConstructorProperties;
+
+/**
+ * The summary of a {@link Histogram} at one point in time, shown by JMX clients as a composite attribute.
+ *
+ * @author Tanvir Kaykobad
+ *
+ */
+public class HistogramSnapshot {
+	private final long count;
+	private final double mean;
+	private final long p50, p90, p99, max;
+
+	@ConstructorProperties({"count", "mean", "p50", "p90", "p99", "max"})
+	public HistogramSnapshot(long count, double mean, long p50, long p90, long p99, long max) {
+		this.count = count;
+		this.mean = mean;
+		this.p50 = p50;
+		this.p90 = p90;
+		this.p99 = p99;
+		this.max = max;
+	}
+
+	public long getCount() {
+		return count;
+	}
+
+	public double getMean() {
+		return mean;
+	}
+
+	public long getP50() {
+		return p50;
+	}
+
+	public long getP90() {
+		return p90;
+	}
+
+	public long getP99() {
+		return p99;
+	}
+
+	public long getMax() {
+		return max;
+	}
+
+	@Override
+	public String toString() {
+		return "count="+count+", mean="+Math.round(mean)+", p50="+p50+", p90="+p90+", p99="+p99+", max="+max;
+	}
+}
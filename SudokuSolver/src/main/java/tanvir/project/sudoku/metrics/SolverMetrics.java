@@ -0,0 +1,218 @@
+package tanvir.project.sudoku.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.apache.log4j.LogManager;
+import org.apache.log4j.Logger;
+
+import tanvir.project.sudoku.cache.SolutionCache;
+import tanvir.project.sudoku.engine.Solver;
+import tanvir.project.sudoku.thread.SolveScheduler;
+
+/**
+ * The counters and histograms of the solves of the webapplication, published through JMX by {@link #register()}.
+ * Recording only adds to striped counters, so it costs a few nanoseconds per solve and threads recording at the same
+ * time do not contend. Reading the metrics sums the stripes.
+ *
+ * @author Tanvir Kaykobad
+ *
+ */
+public class SolverMetrics implements SolverMetricsMXBean {
+	private static final Logger LOGGER = LogManager.getLogger(SolverMetrics.class);
+
+	/**
+	 * The name the metrics are registered under in the platform MBean server.
+	 */
+	public static final String NAME = "tanvir.project.sudoku:type=SolverMetrics";
+
+	private final SolutionCache cache;
+	private final SolveScheduler scheduler;
+
+	private final LongAdder solves = new LongAdder(), nodes = new LongAdder(), backtracks = new LongAdder(), propagations = new LongAdder();
+	private final Histogram nodesPerSolve = new Histogram(), backtracksPerSolve = new Histogram(), propagationsPerSolve = new Histogram();
+	private final Map<String, Histogram> solveLatencies = new ConcurrentHashMap<>(), responseLatencies = new ConcurrentHashMap<>();
+
+	/**
+	 * Constructor
+	 * @param cache the cache whose hits and misses are published, or null
+	 * @param scheduler the scheduler whose queue and workers are published, or null
+	 */
+	public SolverMetrics(SolutionCache cache, SolveScheduler scheduler) {
+		this.cache = cache;
+		this.scheduler = scheduler;
+	}
+
+	/**
+	 * Records a solve run by an engine.
+	 * @param engine the name of the engine, for example a {@link tanvir.project.sudoku.engine.SolverType}
+	 * @param mode what the engine was asked for, for example SOLVE or COUNT
+	 * @param solver the engine, after the solve
+	 * @param micros the time taken by the engine, in microseconds
+	 */
+	public void recordSolve(String engine, String mode, Solver solver, long micros) {
+		long attempts = solver.getNumberOfAttempts(), undone = solver.getNumberOfBacktracks(), filled = solver.getNumberOfPropagations();
+		solves.increment();
+		nodes.add(attempts);
+		backtracks.add(undone);
+		propagations.add(filled);
+		nodesPerSolve.record(attempts);
+		backtracksPerSolve.record(undone);
+		propagationsPerSolve.record(filled);
+		solveLatencies.computeIfAbsent(engine+"/"+mode, key -> new Histogram()).record(micros);
+	}
+
+	/**
+	 * Records the time taken to answer a puzzle.
+	 * @param source where the answer came from, for example CACHE, STORE or ENGINE
+	 * @param micros the time taken, in microseconds
+	 */
+	public void recordResponse(String source, long micros) {
+		responseLatencies.computeIfAbsent(source, key -> new Histogram()).record(micros);
+	}
+
+	/**
+	 * Registers the metrics in the platform MBean server, replacing metrics left registered by an earlier deployment.
+	 * Failures are logged, as the webapplication works without its metrics.
+	 */
+	public void register() {
+		try {
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			ObjectName name = new ObjectName(NAME);
+			if(server.isRegistered(name)) {
+				server.unregisterMBean(name);
+			}
+			server.registerMBean(this, name);
+		} catch(JMException e) {
+			LOGGER.error("Registering the solver metrics failed: "+e.getMessage());
+		}
+	}
+
+	/**
+	 * Removes the metrics from the platform MBean server.
+	 */
+	public void unregister() {
+		try {
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			ObjectName name = new ObjectName(NAME);
+			if(server.isRegistered(name)) {
+				server.unregisterMBean(name);
+			}
+		} catch(JMException e) {
+			LOGGER.error("Unregistering the solver metrics failed: "+e.getMessage());
+		}
+	}
+
+	@Override
+	public long getSolves() {
+		return solves.sum();
+	}
+
+	@Override
+	public long getNodes() {
+		return nodes.sum();
+	}
+
+	@Override
+	public long getBacktracks() {
+		return backtracks.sum();
+	}
+
+	@Override
+	public long getPropagations() {
+		return propagations.sum();
+	}
+
+	@Override
+	public HistogramSnapshot getNodesPerSolve() {
+		return nodesPerSolve.getSnapshot();
+	}
+
+	@Override
+	public HistogramSnapshot getBacktracksPerSolve() {
+		return backtracksPerSolve.getSnapshot();
+	}
+
+	@Override
+	public HistogramSnapshot getPropagationsPerSolve() {
+		return propagationsPerSolve.getSnapshot();
+	}
+
+	@Override
+	public Map<String, HistogramSnapshot> getSolveLatencies() {
+		return getSnapshots(solveLatencies);
+	}
+
+	@Override
+	public Map<String, HistogramSnapshot> getResponseLatencies() {
+		return getSnapshots(responseLatencies);
+	}
+
+	@Override
+	public long getCacheHits() {
+		return cache==null ? 0 : cache.getHits();
+	}
+
+	@Override
+	public long getCacheMisses() {
+		return cache==null ? 0 : cache.getMisses();
+	}
+
+	@Override
+	public double getCacheHitRate() {
+		long hits = getCacheHits(), lookups = hits+getCacheMisses();
+		return lookups==0 ? 0 : (double)hits/lookups;
+	}
+
+	@Override
+	public long getActiveSolves() {
+		return scheduler==null ? 0 : scheduler.getActive();
+	}
+
+	@Override
+	public long getQueueDepth() {
+		return scheduler==null ? 0 : scheduler.getQueued();
+	}
+
+	@Override
+	public long getRejectedSolves() {
+		return scheduler==null ? 0 : scheduler.getRejected();
+	}
+
+	@Override
+	public long getDemotedSolves() {
+		return scheduler==null ? 0 : scheduler.getDemoted();
+	}
+
+	@Override
+	public void reset() {
+		solves.reset();
+		nodes.reset();
+		backtracks.reset();
+		propagations.reset();
+		nodesPerSolve.reset();
+		backtracksPerSolve.reset();
+		propagationsPerSolve.reset();
+		solveLatencies.values().forEach(Histogram::reset);
+		responseLatencies.values().forEach(Histogram::reset);
+	}
+
+	@Override
+	public String toString() {
+		return "SolverMetrics[solves="+getSolves()+", nodes="+getNodes()+", backtracks="+getBacktracks()+", propagations="+getPropagations()
+				+", cacheHitRate="+getCacheHitRate()+", active="+getActiveSolves()+", queued="+getQueueDepth()+", rejected="+getRejectedSolves()+"]";
+	}
+
+	private static Map<String, HistogramSnapshot> getSnapshots(Map<String, Histogram> histograms) {
+		Map<String, HistogramSnapshot> snapshots = new TreeMap<>();
+		histograms.forEach((key, histogram) -> snapshots.put(key, histogram.getSnapshot()));
+		return snapshots;
+	}
+}
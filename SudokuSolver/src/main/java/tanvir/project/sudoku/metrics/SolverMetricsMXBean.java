@@ -0,0 +1,92 @@
+package tanvir.project.sudoku.metrics;
+
+import java.util.Map;
+
+/**
+ * The management interface of {@link SolverMetrics}, registered as tanvir.project.sudoku:type=SolverMetrics. Times are
+ * in microseconds.
+ *
+ * @author Tanvir Kaykobad
+ *
+ */
+public interface SolverMetricsMXBean {
+
+	/**
+	 * @return the number of solves run by an engine
+	 */
+	long getSolves();
+
+	/**
+	 * @return the search nodes visited by all solves, which are the attempts of the engines
+	 */
+	long getNodes();
+
+	/**
+	 * @return the guesses taken back by all solves
+	 */
+	long getBacktracks();
+
+	/**
+	 * @return the cells filled by propagation in all solves
+	 */
+	long getPropagations();
+
+	/**
+	 * @return the distribution of the search nodes visited per solve
+	 */
+	HistogramSnapshot getNodesPerSolve();
+
+	/**
+	 * @return the distribution of the guesses taken back per solve
+	 */
+	HistogramSnapshot getBacktracksPerSolve();
+
+	/**
+	 * @return the distribution of the cells filled by propagation per solve
+	 */
+	HistogramSnapshot getPropagationsPerSolve();
+
+	/**
+	 * @return the time taken by the engines, per engine and mode, for example BACKTRACKING/SOLVE or BACKTRACKING/COUNT
+	 */
+	Map<String, HistogramSnapshot> getSolveLatencies();
+
+	/**
+	 * @return the time taken to answer a puzzle, per source of the answer: CACHE, STORE or ENGINE
+	 */
+	Map<String, HistogramSnapshot> getResponseLatencies();
+
+	long getCacheHits();
+
+	long getCacheMisses();
+
+	/**
+	 * @return the share of the lookups answered by the solution cache, between 0 and 1
+	 */
+	double getCacheHitRate();
+
+	/**
+	 * @return the number of solves running on the workers of the solve scheduler
+	 */
+	long getActiveSolves();
+
+	/**
+	 * @return the number of solves waiting for a worker of the solve scheduler, in both lanes
+	 */
+	long getQueueDepth();
+
+	/**
+	 * @return the number of solves turned away with "server busy" because the queue was full
+	 */
+	long getRejectedSolves();
+
+	/**
+	 * @return the number of solves moved from the express lane to the expensive lane
+	 */
+	long getDemotedSolves();
+
+	/**
+	 * Resets the counters and histograms. The cache counters and the counters of the solve scheduler are not reset.
+	 */
+	void reset();
+}
@@ -0,0 +1,788 @@
+package tanvir.project.sudoku.rating;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+
+import tanvir.project.sudoku.engine.Board;
+import tanvir.project.sudoku.engine.CancellationToken;
+import tanvir.project.sudoku.engine.CellSelection;
+import tanvir.project.sudoku.engine.SolveStatus;
+import tanvir.project.sudoku.engine.SolveTimeoutException;
+import tanvir.project.sudoku.engine.SudokuEngine;
+
+/**
+ * Rates 9x9 puzzles by the human techniques they need, which unlike the attempts of SudokuEngine do not depend on the
+ * order the engine picks its cells in. The rater solves the puzzle step by step, always with the easiest
+ * {@link Technique} that places a digit or removes a candidate, and the rating is the hardest technique it needed with
+ * a score, see {@link Rating}. Once no technique makes progress the rest of the puzzle is left to SudokuEngine, and the
+ * rating is {@link Technique#GUESSING}. A puzzle with several solutions always needs guessing.
+ *
+ * The candidates are kept twice: a 9 bit mask of the digits each cell can take, and a bitboard per digit of the cells
+ * that can take it, in two longs for the cells 0-63 and 64-80. The units and the peers of each cell are bitboards as
+ * well, so looking for singles, intersections and fish only takes ands and bit counts. A rater reuses its arrays and
+ * allocates nothing per puzzle but the rating. It is not thread safe: each thread rates with its own.
+ *
+ * Usage: java tanvir.project.sudoku.rating.DifficultyRater input output [threads]
+ *
+ * @author Tanvir Kaykobad
+ *
+ */
+public class DifficultyRater {
+
+	private static final int SIZE = 9, BOX_SIZE = 3, CELLS = SIZE*SIZE, UNITS = 3*SIZE;
+	private static final int ALL_DIGITS = (1 << SIZE) - 1;
+
+	/**
+	 * The cells of the 27 units: the rows 0-8, the columns 9-17 and the boxes 18-26.
+	 */
+	private static final int[][] UNIT_CELLS = new int[UNITS][SIZE];
+
+	/**
+	 * The cells of each unit and the peers of each cell as bitboards, cells 0-63 in LO and 64-80 in HI.
+	 */
+	private static final long[] UNIT_LO = new long[UNITS], UNIT_HI = new long[UNITS];
+	private static final long[] PEER_LO = new long[CELLS], PEER_HI = new long[CELLS];
+
+	/**
+	 * The row, column and box of each cell, as units.
+	 */
+	private static final int[][] CELL_UNITS = new int[CELLS][3];
+
+	static {
+		for(int cell=0;cell<CELLS;cell++) {
+			int row = cell/SIZE, col = cell%SIZE, box = (row/BOX_SIZE)*BOX_SIZE + col/BOX_SIZE;
+			int[] units = {row, SIZE+col, 2*SIZE+box};
+			int[] index = {col, row, (row%BOX_SIZE)*BOX_SIZE + col%BOX_SIZE};
+			for(int k=0;k<3;k++) {
+				CELL_UNITS[cell][k] = units[k];
+				UNIT_CELLS[units[k]][index[k]] = cell;
+				UNIT_LO[units[k]] |= lowBit(cell);
+				UNIT_HI[units[k]] |= highBit(cell);
+			}
+		}
+		for(int cell=0;cell<CELLS;cell++) {
+			for(int unit:CELL_UNITS[cell]) {
+				PEER_LO[cell] |= UNIT_LO[unit];
+				PEER_HI[cell] |= UNIT_HI[unit];
+			}
+			PEER_LO[cell] &= ~lowBit(cell);
+			PEER_HI[cell] &= ~highBit(cell);
+		}
+	}
+
+	private final int[] values = new int[CELLS], candidates = new int[CELLS];
+
+	/**
+	 * The cells that can take digit i+1.
+	 */
+	private final long[] lo = new long[SIZE], hi = new long[SIZE];
+
+	/**
+	 * The digits placed in each unit.
+	 */
+	private final int[] placed = new int[UNITS];
+	private int empty;
+	private boolean contradiction;
+
+	/**
+	 * The first cell filled after the clues, or -1.
+	 */
+	private int firstPlaced;
+
+	private final int[] steps = new int[Technique.values().length];
+
+	/**
+	 * The scratch space of the subsets, fish and chains.
+	 */
+	private final int[] subset = new int[SIZE], lines = new int[SIZE], colours = new int[CELLS], queue = new int[CELLS];
+
+	/**
+	 * Finishes the puzzles the techniques cannot.
+	 */
+	private final SudokuEngine engine = new SudokuEngine(SIZE, CellSelection.MINIMUM_REMAINING_VALUES);
+
+	/**
+	 * Stops a rating once cancelled, or null.
+	 */
+	private CancellationToken token;
+
+	/**
+	 * Constructor
+	 */
+	public DifficultyRater() {
+		engine.setPropagationEnabled(true);
+	}
+
+	/**
+	 * @param token stops the ratings once cancelled, between two steps or during the guessing, or null to never stop them
+	 */
+	public void setCancellationToken(CancellationToken token) {
+		this.token = token;
+		engine.setCancellationToken(token);
+	}
+
+	/**
+	 * Bounds the guessing of each rating, which is left to SudokuEngine. The techniques take microseconds and are not bounded.
+	 * @param timeout the longest time the guessing may take
+	 * @param unit the unit of the timeout
+	 * @throws IllegalArgumentException If the timeout is not positive
+	 */
+	public void setTimeLimit(long timeout, TimeUnit unit) throws IllegalArgumentException {
+		engine.setTimeLimit(timeout, unit);
+	}
+
+	/**
+	 * Rates a puzzle.
+	 * @param puzzle the puzzle
+	 * @return the rating
+	 * @throws IllegalArgumentException If the puzzle breaks one of the row, column or sub-matrix rules, or has no solution
+	 * @throws SolveTimeoutException If the guessing reached its time limit
+	 * @throws CancellationException If the cancellation token was cancelled
+	 */
+	public Rating rate(Board puzzle) throws IllegalArgumentException, SolveTimeoutException {
+		for(int cell=0;cell<CELLS;cell++) {
+			engine.setCell(cell, puzzle.get(cell));
+		}
+		engine.isValid();
+
+		start(puzzle);
+		while(empty>0 && !contradiction) {
+			if(token!=null && token.isCancelled()) {
+				throw new CancellationException("Rating was cancelled");
+			}
+			if(!step() && !contradiction) {
+				guess();
+			}
+		}
+		if(contradiction) {
+			throw new IllegalArgumentException("Puzzle has no solution");
+		}
+		return new Rating(steps);
+	}
+
+	/**
+	 * Finds the next digit that can be placed by the techniques, without solving the rest of the puzzle.
+	 * @param puzzle the puzzle
+	 * @return the cell and digit with the hardest technique needed to find them, or null if the puzzle needs guessing
+	 * next or has no solution
+	 * @throws IllegalArgumentException If the puzzle breaks one of the row, column or sub-matrix rules
+	 */
+	public Hint hint(Board puzzle) throws IllegalArgumentException {
+		for(int cell=0;cell<CELLS;cell++) {
+			engine.setCell(cell, puzzle.get(cell));
+		}
+		engine.isValid();
+
+		start(puzzle);
+		while(firstPlaced<0 && empty>0 && !contradiction) {
+			if(!step()) {
+				return null;
+			}
+		}
+		if(firstPlaced<0 || contradiction) {
+			return null;
+		}
+		return new Hint(firstPlaced, values[firstPlaced], new Rating(steps).getHardest());
+	}
+
+	/**
+	 * Applies the easiest technique that makes progress.
+	 * @return false if no technique made progress, or the puzzle turned out to have no solution
+	 */
+	private boolean step() {
+		return hiddenSingles()>0 || nakedSingles()>0 || !contradiction
+				&& (nakedSubset(2, Technique.NAKED_PAIR) || hiddenSubset(2, Technique.HIDDEN_PAIR)
+				|| nakedSubset(3, Technique.NAKED_TRIPLE) || hiddenSubset(3, Technique.HIDDEN_TRIPLE)
+				|| pointing() || boxLineReduction()
+				|| fish(2, Technique.X_WING) || fish(3, Technique.SWORDFISH)
+				|| chain());
+	}
+
+	/**
+	 * @return the solution found by the last rating
+	 */
+	public Board getSolution() {
+		int[][] map = new int[SIZE][SIZE];
+		for(int cell=0;cell<CELLS;cell++) {
+			map[cell/SIZE][cell%SIZE] = values[cell];
+		}
+		return Board.of(map);
+	}
+
+	/**
+	 * Resets the candidates and places the clues.
+	 */
+	private void start(Board puzzle) {
+		for(int i=0;i<SIZE;i++) {
+			lo[i] = -1L;
+			hi[i] = (1L << (CELLS-64)) - 1;
+		}
+		for(int cell=0;cell<CELLS;cell++) {
+			values[cell] = 0;
+			candidates[cell] = ALL_DIGITS;
+		}
+		for(int unit=0;unit<UNITS;unit++) {
+			placed[unit] = 0;
+		}
+		for(int t=0;t<steps.length;t++) {
+			steps[t] = 0;
+		}
+		empty = CELLS;
+		contradiction = false;
+		for(int cell=0;cell<CELLS;cell++) {
+			if(puzzle.get(cell)!=0) {
+				place(cell, puzzle.get(cell)-1);
+			}
+		}
+		firstPlaced = -1;
+	}
+
+	/**
+	 * Places digit i+1 in a cell and removes it from the candidates of the peers.
+	 */
+	private void place(int cell, int i) {
+		int bit = 1 << i;
+		values[cell] = i+1;
+		empty--;
+		if(firstPlaced<0) {
+			firstPlaced = cell;
+		}
+		for(int rest=candidates[cell];rest!=0;rest&=rest-1) {
+			int j = Integer.numberOfTrailingZeros(rest);
+			lo[j] &= ~lowBit(cell);
+			hi[j] &= ~highBit(cell);
+		}
+		candidates[cell] = 0;
+		for(int unit:CELL_UNITS[cell]) {
+			placed[unit] |= bit;
+		}
+		eliminate(i, PEER_LO[cell], PEER_HI[cell]);
+	}
+
+	/**
+	 * Removes digit i+1 from the candidates of the cells of a bitboard.
+	 * @return true if one of the cells could take the digit
+	 */
+	private boolean eliminate(int i, long cellsLo, long cellsHi) {
+		long l = lo[i] & cellsLo, h = hi[i] & cellsHi;
+		if((l|h)==0) {
+			return false;
+		}
+		lo[i] &= ~l;
+		hi[i] &= ~h;
+		int mask = ~(1 << i);
+		for(;l!=0;l&=l-1) {
+			int cell = Long.numberOfTrailingZeros(l);
+			if((candidates[cell] &= mask)==0) {
+				contradiction = true;
+			}
+		}
+		for(;h!=0;h&=h-1) {
+			int cell = 64+Long.numberOfTrailingZeros(h);
+			if((candidates[cell] &= mask)==0) {
+				contradiction = true;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Removes some digits from the candidates of a cell.
+	 * @param digits the digits to remove, one bit per digit
+	 * @return true if the cell could take one of them
+	 */
+	private boolean eliminate(int cell, int digits) {
+		int removed = candidates[cell] & digits;
+		if(removed==0) {
+			return false;
+		}
+		for(int rest=removed;rest!=0;rest&=rest-1) {
+			int i = Integer.numberOfTrailingZeros(rest);
+			lo[i] &= ~lowBit(cell);
+			hi[i] &= ~highBit(cell);
+		}
+		if((candidates[cell] &= ~removed)==0) {
+			contradiction = true;
+		}
+		return true;
+	}
+
+	/**
+	 * Places every digit that fits only one cell of a unit.
+	 * @return the number of digits placed
+	 */
+	private int hiddenSingles() {
+		int found = 0;
+		for(int unit=0;unit<UNITS && !contradiction;unit++) {
+			for(int i=0;i<SIZE;i++) {
+				if((placed[unit] & 1 << i)!=0) {
+					continue;
+				}
+				long l = lo[i] & UNIT_LO[unit], h = hi[i] & UNIT_HI[unit];
+				int count = Long.bitCount(l)+Long.bitCount(h);
+				if(count==0) {
+					contradiction = true;
+					break;
+				}
+				if(count==1) {
+					place(l!=0 ? Long.numberOfTrailingZeros(l) : 64+Long.numberOfTrailingZeros(h), i);
+					found++;
+				}
+			}
+		}
+		steps[Technique.HIDDEN_SINGLE.ordinal()] += found;
+		return found;
+	}
+
+	/**
+	 * Places every cell that only one digit fits.
+	 * @return the number of cells filled
+	 */
+	private int nakedSingles() {
+		int found = 0;
+		for(int cell=0;cell<CELLS && !contradiction;cell++) {
+			if(values[cell]==0 && Integer.bitCount(candidates[cell])==1) {
+				place(cell, Integer.numberOfTrailingZeros(candidates[cell]));
+				found++;
+			}
+		}
+		steps[Technique.NAKED_SINGLE.ordinal()] += found;
+		return found;
+	}
+
+	/**
+	 * Finds n cells of a unit that together fit only n digits, and removes those digits from the other cells of the unit.
+	 * @return true if a candidate was removed
+	 */
+	private boolean nakedSubset(int n, Technique technique) {
+		for(int unit=0;unit<UNITS;unit++) {
+			int count = 0;
+			for(int cell:UNIT_CELLS[unit]) {
+				int size = Integer.bitCount(candidates[cell]);
+				if(size>=2 && size<=n) {
+					subset[count++] = cell;
+				}
+			}
+			for(int a=0;a<count;a++) {
+				for(int b=a+1;b<count;b++) {
+					int pair = candidates[subset[a]] | candidates[subset[b]];
+					if(n==2) {
+						if(Integer.bitCount(pair)==2 && removeFromUnit(unit, pair, subset[a], subset[b], -1)) {
+							steps[technique.ordinal()]++;
+							return true;
+						}
+						continue;
+					}
+					for(int c=b+1;c<count;c++) {
+						int triple = pair | candidates[subset[c]];
+						if(Integer.bitCount(triple)==3 && removeFromUnit(unit, triple, subset[a], subset[b], subset[c])) {
+							steps[technique.ordinal()]++;
+							return true;
+						}
+					}
+				}
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Removes some digits from the empty cells of a unit, except from the cells of a subset.
+	 * @return true if a candidate was removed
+	 */
+	private boolean removeFromUnit(int unit, int digits, int a, int b, int c) {
+		boolean removed = false;
+		for(int cell:UNIT_CELLS[unit]) {
+			if(cell!=a && cell!=b && cell!=c) {
+				removed |= eliminate(cell, digits);
+			}
+		}
+		return removed;
+	}
+
+	/**
+	 * Finds n digits that together fit only n cells of a unit, and removes the other digits from those cells.
+	 * @return true if a candidate was removed
+	 */
+	private boolean hiddenSubset(int n, Technique technique) {
+		for(int unit=0;unit<UNITS;unit++) {
+			//the cells of the unit each digit fits, as a 9 bit mask of their positions in the unit
+			int count = 0;
+			for(int i=0;i<SIZE;i++) {
+				int positions = 0;
+				for(int k=0;k<SIZE;k++) {
+					if((candidates[UNIT_CELLS[unit][k]] & 1 << i)!=0) {
+						positions |= 1 << k;
+					}
+				}
+				int size = Integer.bitCount(positions);
+				if(size>=2 && size<=n) {
+					subset[count] = i;
+					lines[count++] = positions;
+				}
+			}
+			for(int a=0;a<count;a++) {
+				for(int b=a+1;b<count;b++) {
+					int pair = lines[a] | lines[b];
+					if(n==2) {
+						if(Integer.bitCount(pair)==2 && keepInCells(unit, pair, 1 << subset[a] | 1 << subset[b])) {
+							steps[technique.ordinal()]++;
+							return true;
+						}
+						continue;
+					}
+					for(int c=b+1;c<count;c++) {
+						int triple = pair | lines[c];
+						if(Integer.bitCount(triple)==3 && keepInCells(unit, triple, 1 << subset[a] | 1 << subset[b] | 1 << subset[c])) {
+							steps[technique.ordinal()]++;
+							return true;
+						}
+					}
+				}
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Removes all but some digits from some cells of a unit.
+	 * @param positions the cells, as a 9 bit mask of their positions in the unit
+	 * @return true if a candidate was removed
+	 */
+	private boolean keepInCells(int unit, int positions, int digits) {
+		boolean removed = false;
+		for(int k=0;k<SIZE;k++) {
+			if((positions & 1 << k)!=0) {
+				removed |= eliminate(UNIT_CELLS[unit][k], ~digits & ALL_DIGITS);
+			}
+		}
+		return removed;
+	}
+
+	/**
+	 * Finds a digit that fits only one row or column of a box, and removes it from the rest of the line.
+	 * @return true if a candidate was removed
+	 */
+	private boolean pointing() {
+		for(int box=2*SIZE;box<UNITS;box++) {
+			for(int i=0;i<SIZE;i++) {
+				long l = lo[i] & UNIT_LO[box], h = hi[i] & UNIT_HI[box];
+				if((l|h)==0) {
+					continue;
+				}
+				for(int line=0;line<2*SIZE;line++) {
+					if((l & ~UNIT_LO[line])==0 && (h & ~UNIT_HI[line])==0
+							&& eliminate(i, UNIT_LO[line] & ~UNIT_LO[box], UNIT_HI[line] & ~UNIT_HI[box])) {
+						steps[Technique.POINTING.ordinal()]++;
+						return true;
+					}
+				}
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Finds a digit that fits only one box in a row or column, and removes it from the rest of the box.
+	 * @return true if a candidate was removed
+	 */
+	private boolean boxLineReduction() {
+		for(int line=0;line<2*SIZE;line++) {
+			for(int i=0;i<SIZE;i++) {
+				long l = lo[i] & UNIT_LO[line], h = hi[i] & UNIT_HI[line];
+				if((l|h)==0) {
+					continue;
+				}
+				for(int box=2*SIZE;box<UNITS;box++) {
+					if((l & ~UNIT_LO[box])==0 && (h & ~UNIT_HI[box])==0
+							&& eliminate(i, UNIT_LO[box] & ~UNIT_LO[line], UNIT_HI[box] & ~UNIT_HI[line])) {
+						steps[Technique.BOX_LINE_REDUCTION.ordinal()]++;
+						return true;
+					}
+				}
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Finds n rows in which a digit fits the same n columns, and removes the digit from the rest of those columns, or the
+	 * same with rows and columns swapped.
+	 * @return true if a candidate was removed
+	 */
+	private boolean fish(int n, Technique technique) {
+		for(int i=0;i<SIZE;i++) {
+			for(int base=0;base<2*SIZE;base+=SIZE) {
+				int cover = SIZE-base;
+				//the lines of the base with 2 to n cells for the digit, and the positions of those cells
+				int count = 0;
+				for(int line=base;line<base+SIZE;line++) {
+					int positions = 0;
+					for(int k=0;k<SIZE;k++) {
+						if((candidates[UNIT_CELLS[line][k]] & 1 << i)!=0) {
+							positions |= 1 << k;
+						}
+					}
+					int size = Integer.bitCount(positions);
+					if(size>=2 && size<=n) {
+						subset[count] = line;
+						lines[count++] = positions;
+					}
+				}
+				for(int a=0;a<count;a++) {
+					for(int b=a+1;b<count;b++) {
+						int pair = lines[a] | lines[b];
+						if(n==2) {
+							if(Integer.bitCount(pair)==2 && removeFish(i, cover, pair, subset[a], subset[b], subset[b])) {
+								steps[technique.ordinal()]++;
+								return true;
+							}
+							continue;
+						}
+						for(int c=b+1;c<count;c++) {
+							int triple = pair | lines[c];
+							if(Integer.bitCount(triple)==3 && removeFish(i, cover, triple, subset[a], subset[b], subset[c])) {
+								steps[technique.ordinal()]++;
+								return true;
+							}
+						}
+					}
+				}
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Removes digit i+1 from the cover lines of a fish, except from its base lines.
+	 * @param positions the cover lines, as their positions in a base line
+	 */
+	private boolean removeFish(int i, int cover, int positions, int a, int b, int c) {
+		long l = 0, h = 0;
+		for(int k=0;k<SIZE;k++) {
+			if((positions & 1 << k)!=0) {
+				l |= UNIT_LO[cover+k];
+				h |= UNIT_HI[cover+k];
+			}
+		}
+		l &= ~(UNIT_LO[a] | UNIT_LO[b] | UNIT_LO[c]);
+		h &= ~(UNIT_HI[a] | UNIT_HI[b] | UNIT_HI[c]);
+		return eliminate(i, l, h);
+	}
+
+	/**
+	 * Colours the chains of cells linked by a digit that fits exactly two cells of a unit. The cells of a chain alternate
+	 * between two colours, one of which holds the digit. If two cells of the same colour share a unit, that colour is
+	 * false; otherwise a cell outside the chain that sees both colours cannot take the digit.
+	 * @return true if a candidate was removed
+	 */
+	private boolean chain() {
+		for(int i=0;i<SIZE;i++) {
+			for(int cell=0;cell<CELLS;cell++) {
+				colours[cell] = 0;
+			}
+			for(int start=0;start<CELLS;start++) {
+				if(colours[start]!=0 || (candidates[start] & 1 << i)==0) {
+					continue;
+				}
+				//the two colours of the chain through start, as bitboards
+				long aLo = 0, aHi = 0, bLo = 0, bHi = 0;
+				int head = 0, tail = 0;
+				colours[start] = 1;
+				queue[tail++] = start;
+				while(head<tail) {
+					int cell = queue[head++];
+					if(colours[cell]==1) {
+						aLo |= lowBit(cell);
+						aHi |= highBit(cell);
+					} else {
+						bLo |= lowBit(cell);
+						bHi |= highBit(cell);
+					}
+					for(int unit:CELL_UNITS[cell]) {
+						long l = lo[i] & UNIT_LO[unit], h = hi[i] & UNIT_HI[unit];
+						if(Long.bitCount(l)+Long.bitCount(h)!=2) {
+							continue;
+						}
+						l &= ~lowBit(cell);
+						h &= ~highBit(cell);
+						int other = l!=0 ? Long.numberOfTrailingZeros(l) : 64+Long.numberOfTrailingZeros(h);
+						if(colours[other]==0) {
+							colours[other] = 3-colours[cell];
+							queue[tail++] = other;
+						}
+					}
+				}
+				if(tail<2) {
+					continue;
+				}
+				if(seesItself(aLo, aHi) ? eliminate(i, aLo, aHi) : seesItself(bLo, bHi) ? eliminate(i, bLo, bHi) : trap(i, aLo, aHi, bLo, bHi)) {
+					steps[Technique.CHAIN.ordinal()]++;
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * @return true if two cells of a bitboard share a unit
+	 */
+	private static boolean seesItself(long cellsLo, long cellsHi) {
+		for(long l=cellsLo;l!=0;l&=l-1) {
+			int cell = Long.numberOfTrailingZeros(l);
+			if((PEER_LO[cell] & cellsLo)!=0 || (PEER_HI[cell] & cellsHi)!=0) {
+				return true;
+			}
+		}
+		for(long h=cellsHi;h!=0;h&=h-1) {
+			int cell = 64+Long.numberOfTrailingZeros(h);
+			if((PEER_LO[cell] & cellsLo)!=0 || (PEER_HI[cell] & cellsHi)!=0) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Removes digit i+1 from the cells outside a chain that see both of its colours.
+	 */
+	private boolean trap(int i, long aLo, long aHi, long bLo, long bHi) {
+		long l = lo[i] & ~(aLo|bLo), h = hi[i] & ~(aHi|bHi), trappedLo = 0, trappedHi = 0;
+		for(;l!=0;l&=l-1) {
+			int cell = Long.numberOfTrailingZeros(l);
+			if(((PEER_LO[cell] & aLo)!=0 || (PEER_HI[cell] & aHi)!=0) && ((PEER_LO[cell] & bLo)!=0 || (PEER_HI[cell] & bHi)!=0)) {
+				trappedLo |= lowBit(cell);
+			}
+		}
+		for(;h!=0;h&=h-1) {
+			int cell = 64+Long.numberOfTrailingZeros(h);
+			if(((PEER_LO[cell] & aLo)!=0 || (PEER_HI[cell] & aHi)!=0) && ((PEER_LO[cell] & bLo)!=0 || (PEER_HI[cell] & bHi)!=0)) {
+				trappedHi |= highBit(cell);
+			}
+		}
+		return eliminate(i, trappedLo, trappedHi);
+	}
+
+	/**
+	 * @return the bit of a cell in the bitboard of the cells 0-63, or 0
+	 */
+	private static long lowBit(int cell) {
+		return cell<64 ? 1L << cell : 0;
+	}
+
+	/**
+	 * @return the bit of a cell in the bitboard of the cells 64-80, or 0
+	 */
+	private static long highBit(int cell) {
+		return cell<64 ? 0 : 1L << (cell-64);
+	}
+
+	/**
+	 * Leaves the rest of the puzzle to SudokuEngine.
+	 */
+	private void guess() {
+		steps[Technique.GUESSING.ordinal()]++;
+		for(int cell=0;cell<CELLS;cell++) {
+			engine.setCell(cell, values[cell]);
+		}
+		if(!engine.solve()) {
+			if(engine.getStatus()==SolveStatus.TIMED_OUT) {
+				throw new SolveTimeoutException("Rating timed out while guessing");
+			}
+			if(engine.getStatus()==SolveStatus.CANCELLED) {
+				throw new CancellationException("Rating was cancelled");
+			}
+			contradiction = true;
+			return;
+		}
+		for(int cell=0;cell<CELLS;cell++) {
+			values[cell] = engine.getCell(cell);
+			candidates[cell] = 0;
+		}
+		empty = 0;
+	}
+
+	/**
+	 * This method rates the puzzle file given on the command line, one puzzle of 81 characters per line with '.' or '0'
+	 * for the empty cells. Each output line holds the puzzle, its score and its hardest technique, or ERROR for a puzzle
+	 * that cannot be rated. The number of puzzles per technique and the throughput are printed at the end.
+	 * @param args the input file, the output file and optionally the number of threads, which defaults to the number of processors
+	 */
+	public static void main(String args[]) throws IOException, InterruptedException, ExecutionException {
+		if(args.length<2) {
+			System.out.println("Usage: java "+DifficultyRater.class.getName()+" input output [threads]");
+			System.exit(2);
+		}
+		Logger.getRootLogger().setLevel(Level.OFF);
+
+		List<String> puzzles = new ArrayList<>();
+		for(String line:Files.readAllLines(Paths.get(args[0]), StandardCharsets.US_ASCII)) {
+			if(!line.isBlank()) {
+				puzzles.add(line.length()>CELLS ? line.substring(0, CELLS) : line);
+			}
+		}
+		int threads = args.length>2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+		long start = System.nanoTime();
+		Rating[] ratings = new Rating[puzzles.size()];
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		try {
+			List<Future<?>> done = new ArrayList<>();
+			for(int t=0;t<threads;t++) {
+				int first = t;
+				done.add(executor.submit(() -> {
+					DifficultyRater rater = new DifficultyRater();
+					for(int p=first;p<ratings.length;p+=threads) {
+						try {
+							ratings[p] = rater.rate(Board.parse(puzzles.get(p)));
+						} catch(IllegalArgumentException e) {
+							// left null, written as ERROR
+						}
+					}
+					return null;
+				}));
+			}
+			for(Future<?> future:done) {
+				future.get();
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+		long elapsed = System.nanoTime()-start;
+
+		int[] counts = new int[Technique.values().length];
+		int errors = 0;
+		List<String> lines = new ArrayList<>(ratings.length);
+		for(int p=0;p<ratings.length;p++) {
+			Rating rating = ratings[p];
+			if(rating==null) {
+				errors++;
+				lines.add(puzzles.get(p)+" ERROR");
+			} else {
+				counts[rating.getHardest().ordinal()]++;
+				lines.add(puzzles.get(p)+" "+String.format(Locale.ROOT, "%.2f", rating.getScore())+" "+rating.getHardest().name());
+			}
+		}
+		Files.write(Paths.get(args[1]), lines, StandardCharsets.US_ASCII);
+
+		System.out.println("Puzzles: "+ratings.length+", Errors: "+errors+", Threads: "+threads);
+		System.out.println("Time: "+elapsed/1000000+"ms, Puzzles/s: "+(elapsed==0 ? 0 : (long) (ratings.length*1e9/elapsed)));
+		for(Technique technique:Technique.values()) {
+			System.out.println(String.format("%-20s %8d", technique.getLabel(), counts[technique.ordinal()]));
+		}
+	}
+}
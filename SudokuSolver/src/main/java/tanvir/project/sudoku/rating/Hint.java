@@ -0,0 +1,50 @@
+package tanvir.project.sudoku.rating;
+
+import java.io.Serializable;
+
+import tanvir.project.sudoku.engine.Board;
+
+/**
+ * The next digit that can be placed in a puzzle, with the hardest technique needed to find it.
+ *
+ * @author Tanvir Kaykobad
+ *
+ */
+public final class Hint implements Serializable {
+	private static final long serialVersionUID = 1L;
+
+	private final int cell, digit;
+	private final Technique technique;
+
+	/**
+	 * Constructor
+	 * @param cell the index of the cell, row * 9 + column
+	 * @param digit the digit of the cell
+	 * @param technique the hardest technique needed to find the digit
+	 */
+	public Hint(int cell, int digit, Technique technique) {
+		this.cell = cell;
+		this.digit = digit;
+		this.technique = technique;
+	}
+
+	public int getCell() {
+		return cell;
+	}
+
+	public int getDigit() {
+		return digit;
+	}
+
+	public Technique getTechnique() {
+		return technique;
+	}
+
+	/**
+	 * @return the hint as shown to users, for example "Row 3, column 5 is 7 (Hidden single)"
+	 */
+	@Override
+	public String toString() {
+		return "Row "+(cell/Board.SIZE+1)+", column "+(cell%Board.SIZE+1)+" is "+digit+" ("+technique.getLabel()+")";
+	}
+}
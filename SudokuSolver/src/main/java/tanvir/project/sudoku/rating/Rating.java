@@ -0,0 +1,80 @@
+package tanvir.project.sudoku.rating;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * The rating of a puzzle by {@link DifficultyRater}: the hardest technique it needs, its score and the number of times
+ * each technique was applied.
+ *
+ * The score is the weight of the hardest technique, plus a hundredth of the weights of all the steps beyond singles, so
+ * puzzles needing the same technique are ranked by how much work they take on top of it.
+ *
+ * @author Tanvir Kaykobad
+ *
+ */
+public final class Rating {
+	private final Technique hardest;
+	private final double score;
+	private final int[] steps;
+
+	Rating(int[] steps) {
+		this.steps = steps.clone();
+		Technique hardest = Technique.HIDDEN_SINGLE;
+		double extra = 0;
+		for(Technique technique:Technique.values()) {
+			int count = steps[technique.ordinal()];
+			if(count>0) {
+				hardest = technique;
+				if(technique.compareTo(Technique.NAKED_SINGLE)>0) {
+					extra += count*technique.getWeight()/100;
+				}
+			}
+		}
+		this.hardest = hardest;
+		this.score = hardest.getWeight()+extra;
+	}
+
+	/**
+	 * @return the hardest technique the puzzle needs
+	 */
+	public Technique getHardest() {
+		return hardest;
+	}
+
+	/**
+	 * @return the score of the puzzle, see the class comment
+	 */
+	public double getScore() {
+		return score;
+	}
+
+	/**
+	 * @param technique a technique
+	 * @return the number of times the technique was applied
+	 */
+	public int getSteps(Technique technique) {
+		return steps[technique.ordinal()];
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if(this==obj) {
+			return true;
+		}
+		if(!(obj instanceof Rating)) {
+			return false;
+		}
+		return Arrays.equals(steps, ((Rating) obj).steps);
+	}
+
+	@Override
+	public int hashCode() {
+		return Arrays.hashCode(steps);
+	}
+
+	@Override
+	public String toString() {
+		return hardest.getLabel()+" ("+String.format(Locale.ROOT, "%.2f", score)+")";
+	}
+}
@@ -0,0 +1,93 @@
+package tanvir.project.sudoku.rating;
+
+/**
+ * The techniques {@link DifficultyRater} solves with, from the easiest to the hardest. The rater always applies the
+ * easiest technique that makes progress, so the hardest technique of a rating is the one a puzzle cannot do without.
+ *
+ * @author Tanvir Kaykobad
+ *
+ */
+public enum Technique {
+	/**
+	 * A digit that fits only one cell of a row, column or box.
+	 */
+	HIDDEN_SINGLE("Hidden single", 1.0),
+
+	/**
+	 * A cell that only one digit fits.
+	 */
+	NAKED_SINGLE("Naked single", 1.2),
+
+	/**
+	 * Two cells of a unit that only fit the same two digits, which no other cell of the unit can then take.
+	 */
+	NAKED_PAIR("Naked pair", 2.0),
+
+	/**
+	 * Two digits that only fit the same two cells of a unit, which can then take no other digit.
+	 */
+	HIDDEN_PAIR("Hidden pair", 2.2),
+
+	/**
+	 * Three cells of a unit that only fit the same three digits.
+	 */
+	NAKED_TRIPLE("Naked triple", 2.4),
+
+	/**
+	 * Three digits that only fit the same three cells of a unit.
+	 */
+	HIDDEN_TRIPLE("Hidden triple", 2.6),
+
+	/**
+	 * A digit that fits only one row or column of a box, which no other box can then place in that line.
+	 */
+	POINTING("Pointing", 2.8),
+
+	/**
+	 * A digit that fits only one box in a row or column, which no other line of the box can then take.
+	 */
+	BOX_LINE_REDUCTION("Box/line reduction", 3.0),
+
+	/**
+	 * A digit that fits the same two columns in two rows, or the other way round.
+	 */
+	X_WING("X-Wing", 3.5),
+
+	/**
+	 * A digit that fits the same three columns in three rows, or the other way round.
+	 */
+	SWORDFISH("Swordfish", 4.0),
+
+	/**
+	 * A chain of cells linked by a digit that fits exactly two cells of a unit, coloured alternately: a colour seen twice
+	 * in a unit is false, and a cell seeing both colours cannot take the digit.
+	 */
+	CHAIN("Chain", 5.0),
+
+	/**
+	 * Trial and error, left to SudokuEngine once no other technique makes progress.
+	 */
+	GUESSING("Guessing", 8.0);
+
+	private final String label;
+	private final double weight;
+
+	private Technique(String label, double weight) {
+		this.label = label;
+		this.weight = weight;
+	}
+
+	/**
+	 * @return the name of the technique, as shown to users
+	 */
+	public String getLabel() {
+		return label;
+	}
+
+	/**
+	 * @return the difficulty of the technique, the score of a puzzle needing nothing harder
+	 */
+	public double getWeight() {
+		return weight;
+	}
+}
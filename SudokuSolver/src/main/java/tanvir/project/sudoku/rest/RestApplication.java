@@ -0,0 +1,14 @@
+package tanvir.project.sudoku.rest;
+
+import javax.ws.rs.ApplicationPath;
+import javax.ws.rs.core.Application;
+
+/**
+ * Publishes the REST resources of the webapplication under /api.
+ *
+ * @author Tanvir Kaykobad
+ *
+ */
+@ApplicationPath("api")
+public class RestApplication extends Application {
+}
@@ -0,0 +1,178 @@
+package tanvir.project.sudoku.rest;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+import javax.ws.rs.Consumes;
+import javax.ws.rs.GET;
+import javax.ws.rs.POST;
+import javax.ws.rs.Path;
+import javax.ws.rs.PathParam;
+import javax.ws.rs.Produces;
+import javax.ws.rs.container.AsyncResponse;
+import javax.ws.rs.container.Suspended;
+import javax.ws.rs.core.GenericEntity;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+
+import org.apache.log4j.LogManager;
+import org.apache.log4j.Logger;
+
+import tanvir.project.sudoku.SolveResult;
+import tanvir.project.sudoku.SolveService;
+import tanvir.project.sudoku.engine.SolveStatus;
+
+/**
+ * Solves puzzles over JSON, for other applications. Puzzles are written as 81 characters row by row, with '.' or '0'
+ * for the empty cells, and answered with a {@link SolveResult}:
+ * <ul>
+ * <li>POST /api/solve with the puzzle as text/plain, or GET /api/solve/{puzzle}, solves one puzzle. An invalid puzzle is
+ * answered with 400 Bad Request and the result explaining why.</li>
+ * <li>POST /api/solve/bulk with a JSON array of up to a tenth of the queue size puzzles answers an array of results in
+ * the same order. Invalid puzzles only fail their own result. The puzzles are queued all together or not at all.</li>
+ * </ul>
+ * The requests are suspended and the puzzles solved on the solve scheduler of the server, so a slow solve does not hold
+ * a request thread. Requests arriving while the queue of the scheduler is full, or not answered within the time limit of
+ * a solve, are answered with 503 Service Unavailable.
+ *
+ * @author Tanvir Kaykobad
+ *
+ */
+@Path("solve")
+@ApplicationScoped
+@Produces(MediaType.APPLICATION_JSON)
+public class SolveResource {
+	private static final Logger LOGGER = LogManager.getLogger(SolveResource.class);
+
+	/**
+	 * The time in milliseconds a request may take on top of the time limit of a solve, which already counts the time
+	 * waiting for a worker.
+	 */
+	private static final long GRACE_PERIOD = 1000;
+
+	@Inject
+	private SolveService service;
+
+	/**
+	 * Solves one puzzle, sent as the body.
+	 */
+	@POST
+	@Consumes(MediaType.TEXT_PLAIN)
+	public void solve(String puzzle, @Suspended AsyncResponse response) {
+		submit(puzzle==null ? null : puzzle.trim(), response);
+	}
+
+	/**
+	 * Solves one puzzle, sent in the path.
+	 */
+	@GET
+	@Path("{puzzle}")
+	public void get(@PathParam("puzzle") String puzzle, @Suspended AsyncResponse response) {
+		submit(puzzle, response);
+	}
+
+	/**
+	 * Solves the puzzles of a JSON array concurrently. Puzzles not solved when the request times out are answered as
+	 * TIMED_OUT, and the rest of the results are still returned.
+	 */
+	@POST
+	@Path("bulk")
+	@Consumes(MediaType.APPLICATION_JSON)
+	public void solveAll(List<String> puzzles, @Suspended AsyncResponse response) {
+		if(puzzles==null || puzzles.isEmpty() || puzzles.size()>service.getMaxBulk()) {
+			response.resume(Response.status(Response.Status.BAD_REQUEST)
+					.entity(error(null, SolveStatus.INVALID, "A bulk request must have between 1 and "+service.getMaxBulk()+" puzzles"))
+					.build());
+			return;
+		}
+
+		List<CompletableFuture<SolveResult>> futures;
+		try {
+			futures = service.solveAllAsync(puzzles);
+		} catch(RejectedExecutionException e) {
+			//nothing of the bulk was queued
+			response.resume(busy());
+			return;
+		}
+
+		response.setTimeout(getTimeout(), TimeUnit.MILLISECONDS);
+		response.setTimeoutHandler(timedOut -> {
+			futures.forEach(future -> future.cancel(false));
+			timedOut.resume(Response.ok(results(puzzles, futures)).build());
+		});
+		CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).whenComplete((done, error) -> {
+			if(error!=null && !(error.getCause() instanceof CancellationException)) {
+				LOGGER.error("Bulk solve failed", error);
+				response.resume(error);
+			} else {
+				response.resume(Response.ok(results(puzzles, futures)).build());
+			}
+		});
+	}
+
+	/**
+	 * Solves a puzzle on the scheduler and resumes the response with its result.
+	 */
+	private void submit(String puzzle, AsyncResponse response) {
+		response.setTimeout(getTimeout(), TimeUnit.MILLISECONDS);
+		response.setTimeoutHandler(timedOut -> timedOut.resume(busy()));
+		try {
+			service.solveAsync(puzzle).whenComplete((result, error) -> {
+				if(error!=null) {
+					LOGGER.error("Solve failed", error);
+					response.resume(error);
+				} else {
+					response.resume(Response.status(result.getStatus()==SolveStatus.INVALID ? Response.Status.BAD_REQUEST : Response.Status.OK)
+							.entity(result)
+							.build());
+				}
+			});
+		} catch(RejectedExecutionException e) {
+			response.resume(busy());
+		}
+	}
+
+	/**
+	 * Collects the results of a bulk request in the order of the puzzles. A puzzle whose solve has not finished is answered
+	 * as TIMED_OUT.
+	 */
+	private GenericEntity<List<SolveResult>> results(List<String> puzzles, List<CompletableFuture<SolveResult>> futures) {
+		List<SolveResult> results = new ArrayList<>(futures.size());
+		for(int i=0;i<futures.size();i++) {
+			CompletableFuture<SolveResult> future = futures.get(i);
+			if(future.isDone() && !future.isCompletedExceptionally()) {
+				results.add(future.join());
+			} else {
+				results.add(error(puzzles.get(i), SolveStatus.TIMED_OUT, "Not solved within "+getTimeout()+"ms"));
+			}
+		}
+		return new GenericEntity<List<SolveResult>>(results) {};
+	}
+
+	/**
+	 * The time a request may take: the time limit of a solve and a grace period for answering.
+	 */
+	private long getTimeout() {
+		return service.getTimeLimit()+GRACE_PERIOD;
+	}
+
+	private static Response busy() {
+		return Response.status(Response.Status.SERVICE_UNAVAILABLE)
+				.entity(error(null, SolveStatus.NOT_STARTED, "Server busy, try again later"))
+				.build();
+	}
+
+	private static SolveResult error(String puzzle, SolveStatus status, String message) {
+		SolveResult result = new SolveResult();
+		result.setPuzzle(puzzle);
+		result.setStatus(status);
+		result.setMessage(message);
+		return result;
+	}
+}
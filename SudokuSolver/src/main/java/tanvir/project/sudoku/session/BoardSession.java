@@ -0,0 +1,222 @@
+package tanvir.project.sudoku.session;
+
+import java.io.Serializable;
+
+import tanvir.project.sudoku.engine.Board;
+import tanvir.project.sudoku.rating.DifficultyRater;
+import tanvir.project.sudoku.rating.Hint;
+import tanvir.project.sudoku.rating.Technique;
+
+/**
+ * A board being edited by a user, cell by cell. The session keeps how often each digit is placed in each row, column
+ * and box, and the candidates of every cell: the digits no peer holds. Setting or clearing a cell only updates the
+ * counts of its three units and the candidates of the cell and its 20 peers, so an edit costs no engine and no scan
+ * of the board. The board may break the rules while it is edited; {@link #hasConflicts()} tells whether it does.
+ *
+ * {@link #nextHint()} finds the next digit a person could place. Hidden and naked singles are read from the candidates
+ * of the session, and only harder deductions are left to {@link DifficultyRater}, which stops at the first digit.
+ *
+ * A session is not thread safe.
+ *
+ * @author Tanvir Kaykobad
+ *
+ */
+public class BoardSession implements Serializable {
+	private static final long serialVersionUID = 1L;
+
+	private static final int SIZE = Board.SIZE, BOX_SIZE = 3, CELLS = Board.CELLS, UNITS = 3*SIZE;
+	private static final int ALL_DIGITS = (1 << SIZE) - 1;
+
+	/**
+	 * The cells of the 27 units, the rows 0-8, the columns 9-17 and the boxes 18-26, the units of each cell and its peers.
+	 */
+	private static final int[][] UNIT_CELLS = new int[UNITS][SIZE], CELL_UNITS = new int[CELLS][3], PEERS = new int[CELLS][];
+
+	static {
+		int[] filled = new int[UNITS];
+		for(int cell=0;cell<CELLS;cell++) {
+			int row = cell/SIZE, col = cell%SIZE, box = (row/BOX_SIZE)*BOX_SIZE + col/BOX_SIZE;
+			CELL_UNITS[cell] = new int[] {row, SIZE+col, 2*SIZE+box};
+			for(int unit:CELL_UNITS[cell]) {
+				UNIT_CELLS[unit][filled[unit]++] = cell;
+			}
+		}
+		for(int cell=0;cell<CELLS;cell++) {
+			int[] peers = new int[2*(SIZE-1) + (BOX_SIZE-1)*(BOX_SIZE-1)];
+			int count = 0;
+			for(int other=0;other<CELLS;other++) {
+				if(other!=cell && (CELL_UNITS[other][0]==CELL_UNITS[cell][0] || CELL_UNITS[other][1]==CELL_UNITS[cell][1]
+						|| CELL_UNITS[other][2]==CELL_UNITS[cell][2])) {
+					peers[count++] = other;
+				}
+			}
+			PEERS[cell] = peers;
+		}
+	}
+
+	private Board board;
+
+	/**
+	 * How often digit i+1 is placed in each unit, the digits placed in each unit as a mask, and the number of unit and
+	 * digit pairs placed more than once.
+	 */
+	private final int[][] counts = new int[UNITS][SIZE];
+	private final int[] used = new int[UNITS];
+	private int conflicts;
+
+	/**
+	 * The digits each empty cell can take, 0 for a filled cell.
+	 */
+	private final int[] candidates = new int[CELLS];
+
+	/**
+	 * Finds the hints that take more than singles, created on the first such hint.
+	 */
+	private transient DifficultyRater rater;
+
+	/**
+	 * Constructor
+	 * @param board the board to start from
+	 */
+	public BoardSession(Board board) {
+		load(board);
+	}
+
+	/**
+	 * Replaces the whole board, rebuilding the counts and candidates.
+	 * @param board the new board
+	 */
+	public void load(Board board) {
+		for(int unit=0;unit<UNITS;unit++) {
+			for(int i=0;i<SIZE;i++) {
+				counts[unit][i] = 0;
+			}
+			used[unit] = 0;
+		}
+		conflicts = 0;
+		this.board = Board.EMPTY;
+		for(int cell=0;cell<CELLS;cell++) {
+			candidates[cell] = ALL_DIGITS;
+		}
+		for(int cell=0;cell<CELLS;cell++) {
+			if(board.get(cell)!=0) {
+				set(cell, board.get(cell));
+			}
+		}
+	}
+
+	/**
+	 * Sets or clears a cell.
+	 * @param cell the index of the cell, row * 9 + column
+	 * @param digit a digit between 1 and 9, or 0 to clear the cell
+	 * @throws IllegalArgumentException If the digit is out of range
+	 */
+	public void set(int cell, int digit) throws IllegalArgumentException {
+		int previous = board.get(cell);
+		if(previous==digit) {
+			return;
+		}
+		board = board.with(cell, digit);
+		for(int unit:CELL_UNITS[cell]) {
+			if(previous!=0) {
+				int count = --counts[unit][previous-1];
+				if(count==1) {
+					conflicts--;
+				} else if(count==0) {
+					used[unit] &= ~(1 << (previous-1));
+				}
+			}
+			if(digit!=0) {
+				int count = ++counts[unit][digit-1];
+				if(count==2) {
+					conflicts++;
+				}
+				used[unit] |= 1 << (digit-1);
+			}
+		}
+		update(cell);
+		for(int peer:PEERS[cell]) {
+			update(peer);
+		}
+	}
+
+	private void update(int cell) {
+		int[] units = CELL_UNITS[cell];
+		candidates[cell] = board.get(cell)!=0 ? 0 : ~(used[units[0]] | used[units[1]] | used[units[2]]) & ALL_DIGITS;
+	}
+
+	/**
+	 * @param cell the index of the cell, row * 9 + column
+	 * @return the digit of the cell, 0 if it is empty
+	 */
+	public int get(int cell) {
+		return board.get(cell);
+	}
+
+	/**
+	 * @param cell the index of the cell, row * 9 + column
+	 * @return the digits the cell can take without breaking a rule, bit i for digit i+1, or 0 if the cell is filled
+	 */
+	public int getCandidates(int cell) {
+		return candidates[cell];
+	}
+
+	/**
+	 * @return true if a digit is placed twice in a row, column or box
+	 */
+	public boolean hasConflicts() {
+		return conflicts>0;
+	}
+
+	/**
+	 * @return the board
+	 */
+	public Board getBoard() {
+		return board;
+	}
+
+	/**
+	 * Finds the next digit that can be placed by logic alone, the easiest technique first.
+	 * @return the hint, or null if the board breaks a rule, has no solution or needs guessing next
+	 */
+	public Hint nextHint() {
+		if(conflicts>0) {
+			return null;
+		}
+		for(int unit=0;unit<UNITS;unit++) {
+			for(int i=0;i<SIZE;i++) {
+				int bit = 1 << i;
+				if((used[unit] & bit)!=0) {
+					continue;
+				}
+				int found = -1, count = 0;
+				for(int cell:UNIT_CELLS[unit]) {
+					if((candidates[cell] & bit)!=0) {
+						found = cell;
+						count++;
+					}
+				}
+				if(count==0) {
+					return null;
+				}
+				if(count==1) {
+					return new Hint(found, i+1, Technique.HIDDEN_SINGLE);
+				}
+			}
+		}
+		for(int cell=0;cell<CELLS;cell++) {
+			if(Integer.bitCount(candidates[cell])==1) {
+				return new Hint(cell, Integer.numberOfTrailingZeros(candidates[cell])+1, Technique.NAKED_SINGLE);
+			}
+		}
+		for(int cell=0;cell<CELLS;cell++) {
+			if(board.get(cell)==0 && candidates[cell]==0) {
+				return null;
+			}
+		}
+		if(rater==null) {
+			rater = new DifficultyRater();
+		}
+		return rater.hint(board);
+	}
+}
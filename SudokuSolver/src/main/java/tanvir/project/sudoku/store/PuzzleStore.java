@@ -0,0 +1,218 @@
+package tanvir.project.sudoku.store;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.annotation.PreDestroy;
+import javax.ejb.ConcurrencyManagement;
+import javax.ejb.ConcurrencyManagementType;
+import javax.ejb.Schedule;
+import javax.ejb.Singleton;
+import javax.ejb.TransactionAttribute;
+import javax.ejb.TransactionAttributeType;
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import javax.persistence.PersistenceException;
+
+import org.apache.log4j.LogManager;
+import org.apache.log4j.Logger;
+
+import tanvir.project.sudoku.engine.Board;
+
+/**
+ * The solved puzzles kept in the database of the SudokuSolver persistence unit, java:global/tanvirDataSource.
+ * Solves are queued by {@link #save(SolvedPuzzle)} and written in batches by a timer, so the request that solved a
+ * puzzle never waits for the database. Lookups go to the database directly, and a puzzle still in the queue is not
+ * found until it has been written.
+ *
+ * The store only saves work, so its failures are logged and otherwise ignored: a failed lookup is a miss, and the solves
+ * of a failed write are queued again for the next run of the timer. Nodes sharing the database may write the same
+ * puzzle at once; the unique PUZZLE column keeps the first, and the other node finds it stored on its next run.
+ *
+ * @author Tanvir Kaykobad
+ *
+ */
+@Singleton
+@ConcurrencyManagement(ConcurrencyManagementType.BEAN)
+@TransactionAttribute(TransactionAttributeType.SUPPORTS)
+public class PuzzleStore {
+	private static final Logger LOGGER = LogManager.getLogger(PuzzleStore.class);
+
+	/**
+	 * The number of inserts sent to the database at once, which matches hibernate.jdbc.batch_size in persistence.xml.
+	 */
+	static final int BATCH_SIZE = 50;
+
+	/**
+	 * The most puzzles written by one run of the timer, and the most puzzles waiting in the queue. Solves arriving while
+	 * the queue is full are not stored, which bounds the memory held when the database cannot keep up.
+	 */
+	static final int MAX_FLUSH = 1000, MAX_PENDING = 10000;
+
+	@PersistenceContext(unitName = "SudokuSolver")
+	private EntityManager entityManager;
+
+	private final ConcurrentLinkedQueue<SolvedPuzzle> pending = new ConcurrentLinkedQueue<>();
+	private final AtomicInteger pendingCount = new AtomicInteger();
+
+	/**
+	 * @param puzzle the puzzle
+	 * @return the stored solve of the puzzle, or null if it has not been stored
+	 */
+	public SolvedPuzzle find(Board puzzle) {
+		byte[] packed = puzzle.toBytes();
+		try {
+			List<SolvedPuzzle> found = entityManager.createNamedQuery(SolvedPuzzle.FIND_BY_HASH, SolvedPuzzle.class)
+					.setParameter("hash", SolvedPuzzle.hash(packed))
+					.getResultList();
+			for(SolvedPuzzle solved:found) {
+				if(Arrays.equals(solved.getPackedPuzzle(), packed)) {
+					return solved;
+				}
+			}
+		} catch(PersistenceException e) {
+			LOGGER.error("Looking up a puzzle failed: "+e.getMessage());
+		}
+		return null;
+	}
+
+	/**
+	 * Queues a solve to be written by the next batch.
+	 * @param solved the solve
+	 */
+	public void save(SolvedPuzzle solved) {
+		if(!offer(solved)) {
+			LOGGER.warn("Puzzle store queue is full, a solve is not stored");
+		}
+	}
+
+	/**
+	 * @return the number of solves waiting to be written
+	 */
+	public int getPendingCount() {
+		return pendingCount.get();
+	}
+
+	/**
+	 * Writes the queued solves, skipping the puzzles already stored by this or another node.
+	 */
+	@Schedule(hour = "*", minute = "*", second = "*", persistent = false)
+	@TransactionAttribute(TransactionAttributeType.REQUIRES_NEW)
+	public void flush() {
+		write(MAX_FLUSH);
+	}
+
+	/**
+	 * Writes the solves still queued when the application stops.
+	 */
+	@PreDestroy
+	@TransactionAttribute(TransactionAttributeType.REQUIRES_NEW)
+	void shutdown() {
+		write(MAX_PENDING);
+	}
+
+	/**
+	 * Writes up to a number of queued solves in the transaction of the caller. If the write fails, the transaction is
+	 * rolled back and the solves are queued again.
+	 */
+	private void write(int limit) {
+		List<SolvedPuzzle> polled = new ArrayList<>();
+		Map<Long, List<SolvedPuzzle>> batch = new HashMap<>();
+		for(SolvedPuzzle solved=pending.poll();solved!=null;solved=pending.poll()) {
+			pendingCount.decrementAndGet();
+			polled.add(solved);
+			if(!contains(batch.get(solved.getHash()), solved)) {
+				batch.computeIfAbsent(solved.getHash(), hash -> new ArrayList<>()).add(solved);
+			}
+			if(polled.size()==limit) {
+				break;
+			}
+		}
+		if(batch.isEmpty()) {
+			return;
+		}
+
+		int written = 0;
+		try {
+			List<SolvedPuzzle> stored = entityManager.createNamedQuery(SolvedPuzzle.FIND_BY_HASHES, SolvedPuzzle.class)
+					.setParameter("hashes", batch.keySet())
+					.getResultList();
+			for(List<SolvedPuzzle> solves:batch.values()) {
+				for(SolvedPuzzle solved:solves) {
+					if(contains(stored, solved)) {
+						continue;
+					}
+					entityManager.persist(solved);
+					if(++written%BATCH_SIZE==0) {
+						entityManager.flush();
+						entityManager.clear();
+					}
+				}
+			}
+			//sends the rest of the inserts here, so that a failure is caught rather than thrown when committing
+			entityManager.flush();
+		} catch(PersistenceException e) {
+			if(isConstraintViolation(e)) {
+				//another node stored one of the puzzles after the lookup, which the next run finds and skips
+				LOGGER.debug("A puzzle was stored meanwhile, writing "+polled.size()+" solved puzzles again");
+			} else {
+				LOGGER.error("Storing "+polled.size()+" solved puzzles failed: "+e.getMessage());
+			}
+			int dropped = 0;
+			for(SolvedPuzzle solved:polled) {
+				solved.resetId();
+				if(!offer(solved)) {
+					dropped++;
+				}
+			}
+			if(dropped!=0) {
+				LOGGER.warn("Puzzle store queue is full, "+dropped+" solves are not stored");
+			}
+			return;
+		}
+		LOGGER.debug("Stored "+written+" of "+polled.size()+" solved puzzles");
+	}
+
+	/**
+	 * Queues a solve unless MAX_PENDING solves are waiting already.
+	 * @return true if the solve was queued
+	 */
+	private boolean offer(SolvedPuzzle solved) {
+		if(pendingCount.incrementAndGet()>MAX_PENDING) {
+			pendingCount.decrementAndGet();
+			return false;
+		}
+		pending.add(solved);
+		return true;
+	}
+
+	/**
+	 * @return true if the exception was caused by a unique or other integrity constraint of the database, SQL state class 23
+	 */
+	private static boolean isConstraintViolation(Throwable e) {
+		for(Throwable cause=e;cause!=null;cause=cause.getCause()) {
+			if(cause instanceof SQLException && ((SQLException)cause).getSQLState()!=null
+					&& ((SQLException)cause).getSQLState().startsWith("23")) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static boolean contains(List<SolvedPuzzle> solves, SolvedPuzzle solved) {
+		if(solves!=null) {
+			for(SolvedPuzzle other:solves) {
+				if(Arrays.equals(other.getPackedPuzzle(), solved.getPackedPuzzle())) {
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+}
@@ -0,0 +1,196 @@
+package tanvir.project.sudoku.store;
+
+import java.io.Serializable;
+import java.time.LocalDateTime;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
+import javax.persistence.Id;
+import javax.persistence.Index;
+import javax.persistence.NamedQueries;
+import javax.persistence.NamedQuery;
+import javax.persistence.SequenceGenerator;
+import javax.persistence.Table;
+import javax.persistence.UniqueConstraint;
+
+import tanvir.project.sudoku.engine.Board;
+
+/**
+ * A solved 9x9 puzzle as stored in the database: the puzzle, its solution and the statistics of the solve. Boards are
+ * packed 4 bits per cell into 41 bytes, and looked up by a 64 bit hash of the packed puzzle, which is indexed. The
+ * packed puzzle is unique, so a puzzle is stored once even when several nodes write it at the same time. Puzzles
+ * without a solution are stored with a null solution.
+ *
+ * @author Tanvir Kaykobad
+ *
+ */
+@Entity
+@Table(name = "SOLVED_PUZZLE", indexes = @Index(name = "SOLVED_PUZZLE_HASH", columnList = "HASH"),
+		uniqueConstraints = @UniqueConstraint(name = "SOLVED_PUZZLE_PUZZLE", columnNames = "PUZZLE"))
+@NamedQueries({
+	@NamedQuery(name = SolvedPuzzle.FIND_BY_HASH, query = "SELECT p FROM SolvedPuzzle p WHERE p.hash = :hash"),
+	@NamedQuery(name = SolvedPuzzle.FIND_BY_HASHES, query = "SELECT p FROM SolvedPuzzle p WHERE p.hash IN :hashes")
+})
+public class SolvedPuzzle implements Serializable {
+	private static final long serialVersionUID = 1L;
+
+	static final String FIND_BY_HASH = "SolvedPuzzle.findByHash";
+	static final String FIND_BY_HASHES = "SolvedPuzzle.findByHashes";
+
+	/**
+	 * The length of a packed board, see {@link Board#toBytes()}.
+	 */
+	static final int PACKED_LENGTH = Board.PACKED_LENGTH;
+
+	/**
+	 * Ids come from a sequence handing out blocks of ids, so that the inserts of a batch need no round trip for their ids
+	 * and can be sent as one JDBC batch.
+	 */
+	@Id
+	@SequenceGenerator(name = "SOLVED_PUZZLE_SEQ", sequenceName = "SOLVED_PUZZLE_SEQ", allocationSize = 50)
+	@GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "SOLVED_PUZZLE_SEQ")
+	private Long id;
+
+	@Column(name = "HASH", nullable = false)
+	private long hash;
+
+	@Column(name = "PUZZLE", nullable = false, length = PACKED_LENGTH)
+	private byte[] puzzle;
+
+	@Column(name = "SOLUTION", length = PACKED_LENGTH)
+	private byte[] solution;
+
+	@Column(name = "ATTEMPTS", nullable = false)
+	private long attempts;
+
+	@Column(name = "PROPAGATIONS", nullable = false)
+	private long propagations;
+
+	/**
+	 * The time taken by the engine, in microseconds.
+	 */
+	@Column(name = "SOLVE_TIME", nullable = false)
+	private long solveTime;
+
+	@Column(name = "DIFFICULTY", nullable = false)
+	private int difficulty;
+
+	@Column(name = "ENGINE", length = 32)
+	private String engine;
+
+	@Column(name = "SOLVED_AT", nullable = false)
+	private LocalDateTime solvedAt;
+
+	/**
+	 * Constructor used by JPA
+	 */
+	protected SolvedPuzzle() {
+	}
+
+	/**
+	 * Constructor
+	 * @param puzzle the puzzle
+	 * @param solution the solution of the puzzle, or null if it has none
+	 * @param attempts the number of attempts the engine took
+	 * @param propagations the number of cells the engine filled by propagation
+	 * @param solveTime the time taken by the engine, in microseconds
+	 * @param engine the name of the engine
+	 */
+	public SolvedPuzzle(Board puzzle, Board solution, long attempts, long propagations, long solveTime, String engine) {
+		this.puzzle = puzzle.toBytes();
+		this.hash = hash(this.puzzle);
+		this.solution = solution==null ? null : solution.toBytes();
+		this.attempts = attempts;
+		this.propagations = propagations;
+		this.solveTime = solveTime;
+		this.difficulty = getDifficulty(attempts);
+		this.engine = engine;
+		this.solvedAt = LocalDateTime.now();
+	}
+
+	/**
+	 * A coarse difficulty from the number of guesses the engine needed: 0 if the puzzle was solved by propagation alone,
+	 * otherwise the number of decimal digits of the attempts, so 1 for fewer than 10 guesses, 2 for fewer than 100 and so on.
+	 */
+	static int getDifficulty(long attempts) {
+		int difficulty = 0;
+		for(long rest=attempts;rest>0;rest/=10) {
+			difficulty++;
+		}
+		return difficulty;
+	}
+
+	/**
+	 * The 64 bit FNV-1a hash of a packed board.
+	 */
+	static long hash(byte[] packed) {
+		long hash = 0xcbf29ce484222325L;
+		for(byte b:packed) {
+			hash ^= b & 0xFF;
+			hash *= 0x100000001b3L;
+		}
+		return hash;
+	}
+
+	public Long getId() {
+		return id;
+	}
+
+	/**
+	 * Forgets the id given by a write that was rolled back, so that the solve can be written again.
+	 */
+	void resetId() {
+		id = null;
+	}
+
+	public long getHash() {
+		return hash;
+	}
+
+	/**
+	 * @return the packed puzzle
+	 */
+	byte[] getPackedPuzzle() {
+		return puzzle;
+	}
+
+	/**
+	 * @return the puzzle
+	 */
+	public Board getPuzzle() {
+		return Board.fromBytes(puzzle);
+	}
+
+	/**
+	 * @return the solution, or null if the puzzle has no solution
+	 */
+	public Board getSolution() {
+		return solution==null ? null : Board.fromBytes(solution);
+	}
+
+	public long getAttempts() {
+		return attempts;
+	}
+
+	public long getPropagations() {
+		return propagations;
+	}
+
+	public long getSolveTime() {
+		return solveTime;
+	}
+
+	public int getDifficulty() {
+		return difficulty;
+	}
+
+	public String getEngine() {
+		return engine;
+	}
+
+	public LocalDateTime getSolvedAt() {
+		return solvedAt;
+	}
+}
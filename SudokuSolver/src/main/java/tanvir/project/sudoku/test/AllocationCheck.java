@@ -0,0 +1,70 @@
+package tanvir.project.sudoku.test;
+
+import java.lang.management.ManagementFactory;
+
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+
+import tanvir.project.sudoku.engine.CellSelection;
+import tanvir.project.sudoku.engine.SudokuEngine;
+
+/**
+ * This class checks that the search of SudokuEngine does not allocate memory per search node, without having to run the
+ * entire webapplication. The bytes allocated by the current thread are counted around SudokuEngine.solve() and must be zero.
+ * @author Tanvir Kaykobad
+ *
+ */
+public class AllocationCheck {
+
+	/**
+	 * Puzzles that need many search nodes, so that any per node allocation would show up.
+	 */
+	private static final String[] PUZZLES = {
+			"8..........36......7..9.2...5...7.......457.....1...3...1....68..85...1..9....4..",
+			"1....7.9..3..2...8..96..5....53..9...1..8...26....4...3......1..4......7..7...3..",
+			"1.8..692..2.49.1...6.....45..3.7.....9....2.3.....5..99......8..5.1...64..1.5....",
+			//has no solution, so the whole search tree is visited
+			"82.........36......7..9.2...5...7.......457.....1...3...1....68..85...1..9....4..",
+	};
+
+	/**
+	 * This method is used for checking the allocations of the SudokuEngine class
+	 * @param args
+	 */
+	public static void main(String args[]) {
+		//the periodic board dump of the engine is only written on debug level
+		Logger.getRootLogger().setLevel(Level.INFO);
+
+		com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+		long threadId = Thread.currentThread().getId();
+		SudokuMap reader = new SudokuMap();
+
+		boolean failed = false;
+		//the first rounds warm up the JIT compiler, the last one is checked
+		for(int round=0;round<5;round++) {
+			for(CellSelection cellSelection:CellSelection.values()) {
+				for(boolean propagation:new boolean[] {false, true}) {
+					for(String input:PUZZLES) {
+						SudokuEngine engine = new SudokuEngine(reader.readMap(input), cellSelection);
+						engine.setPropagationEnabled(propagation);
+
+						long before = threads.getThreadAllocatedBytes(threadId);
+						boolean solved = engine.solve();
+						long allocated = threads.getThreadAllocatedBytes(threadId) - before;
+
+						if(round==4) {
+							System.out.println(cellSelection+(propagation ? " with propagation" : "")+" Solved: "+solved
+									+", Attempts: "+engine.getNumberOfAttempts()+", Propagations: "+engine.getNumberOfPropagations()
+									+", Allocated bytes: "+allocated);
+							failed |= allocated!=0;
+						}
+					}
+				}
+			}
+		}
+		if(failed) {
+			System.out.println("SudokuEngine allocated memory during the search");
+			System.exit(1);
+		}
+	}
+}
@@ -0,0 +1,122 @@
+package tanvir.project.sudoku.test;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+
+import tanvir.project.sudoku.engine.Board;
+import tanvir.project.sudoku.engine.CellSelection;
+import tanvir.project.sudoku.engine.SearchCheckpoint;
+import tanvir.project.sudoku.engine.SudokuEngine;
+
+/**
+ * This class checks that a search of SudokuEngine can be checkpointed, moved and resumed without losing or repeating
+ * any work, without having to run the entire webapplication. Every puzzle of the collections is counted once without a
+ * limit and once in slices of a few attempts: each slice is saved by SudokuEngine.checkpoint(), packed with toBytes(),
+ * read back with fromBytes() and resumed by a new engine. The slices must find the same solutions with the same
+ * attempts, backtracks and propagations. The first checkpoint is also split, and the counts of its parts must add up to the same count. The
+ * attempts of the parts are not compared, as a part replays the guesses above it without counting them.
+ * @author Tanvir Kaykobad
+ *
+ */
+public class CheckpointCheck {
+
+	/**
+	 * The collections counted, and those also counted in row major order, which takes minutes on 17-clue puzzles.
+	 */
+	private static final String[] CORPORA = {"hard", "multiple", "unsolvable", "seventeen"};
+	private static final String[] ROW_MAJOR_CORPORA = {"hard", "multiple", "unsolvable"};
+
+	private static final long SOLUTION_LIMIT = 100000;
+
+	/**
+	 * The attempts of a slice, shorter with propagation, which solves most puzzles in fewer attempts.
+	 */
+	private static final long SLICE = 200, PROPAGATION_SLICE = 5;
+
+	/**
+	 * This method is used for checking the checkpoints of the SudokuEngine class
+	 * @param args the folder of the puzzle collections, by default the one of the SudokuBenchmark module
+	 */
+	public static void main(String args[]) throws IOException {
+		Logger.getRootLogger().setLevel(Level.INFO);
+		Path folder = Corpora.folder(args);
+
+		boolean failed = false;
+		for(CellSelection cellSelection:CellSelection.values()) {
+			for(boolean propagation:new boolean[] {false, true}) {
+				String[] corpora = cellSelection==CellSelection.ROW_MAJOR ? ROW_MAJOR_CORPORA : CORPORA;
+				long slice = propagation ? PROPAGATION_SLICE : SLICE;
+				for(String corpus:corpora) {
+					long checkpoints = 0, parts = 0, mismatches = 0;
+					for(String puzzle:Corpora.read(folder, corpus)) {
+						SudokuEngine reference = newEngine(cellSelection, propagation);
+						setBoard(reference, puzzle);
+						long count = reference.countSolutions(SOLUTION_LIMIT);
+
+						SudokuEngine engine = newEngine(cellSelection, propagation);
+						engine.setAttemptLimit(slice);
+						setBoard(engine, puzzle);
+						engine.countSolutions(SOLUTION_LIMIT);
+						SearchCheckpoint first = null;
+						while(engine.isSuspended()) {
+							SearchCheckpoint checkpoint = SearchCheckpoint.fromBytes(engine.checkpoint().toBytes());
+							if(first==null) {
+								first = checkpoint;
+							}
+							engine = newEngine(cellSelection, propagation);
+							engine.setAttemptLimit(slice);
+							engine.restore(checkpoint);
+							engine.resume();
+							checkpoints++;
+						}
+						boolean same = engine.getSolutionCount()==count && engine.getNumberOfAttempts()==reference.getNumberOfAttempts()
+								&& engine.getNumberOfBacktracks()==reference.getNumberOfBacktracks()
+								&& engine.getNumberOfPropagations()==reference.getNumberOfPropagations();
+
+						if(first!=null) {
+							long total = 0;
+							for(SearchCheckpoint part:first.split()) {
+								SudokuEngine partEngine = newEngine(cellSelection, propagation);
+								partEngine.restore(part);
+								partEngine.resume();
+								total += partEngine.getSolutionCount();
+								parts++;
+							}
+							same &= total==count;
+						}
+						if(!same) {
+							System.out.println("Mismatch: "+puzzle);
+							mismatches++;
+						}
+					}
+					System.out.println(cellSelection+(propagation ? " with propagation" : "")+" "+corpus+" Checkpoints: "+checkpoints
+							+", Parts: "+parts+", Mismatches: "+mismatches);
+					failed |= mismatches!=0;
+				}
+			}
+		}
+		if(failed) {
+			System.out.println("A resumed search of SudokuEngine did not match the uninterrupted one");
+			System.exit(1);
+		}
+	}
+
+	/**
+	 * @return an engine for an empty 9x9 board
+	 */
+	private static SudokuEngine newEngine(CellSelection cellSelection, boolean propagation) {
+		SudokuEngine engine = new SudokuEngine(Board.SIZE, cellSelection);
+		engine.setPropagationEnabled(propagation);
+		return engine;
+	}
+
+	private static void setBoard(SudokuEngine engine, String puzzle) {
+		Board board = Board.parse(puzzle);
+		for(int cell=0;cell<Board.CELLS;cell++) {
+			engine.setCell(cell, board.get(cell));
+		}
+	}
+}
@@ -0,0 +1,83 @@
+package tanvir.project.sudoku.test;
+
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * This class reads the puzzle collections of the SudokuBenchmark module for the checks of this package, so that the
+ * checks run on the same puzzles as the benchmarks. Each collection is a file with one puzzle per line, written as 81
+ * characters with '.' for the empty cells.
+ * @author Tanvir Kaykobad
+ *
+ */
+final class Corpora {
+
+	/**
+	 * The folder of the collections within the repository.
+	 */
+	private static final Path COLLECTIONS = Paths.get("SudokuBenchmark", "src", "main", "resources", "corpora");
+
+	private Corpora() {
+	}
+
+	/**
+	 * Finds the folder of the collections: the first argument if given, otherwise the folder of the SudokuBenchmark
+	 * module next to the working directory or to the classes of the checks, whichever the check is run from. If there is
+	 * no such folder the usage is printed and the check exits with status 2.
+	 * @param args the arguments of a check, whose first one is the folder of the collections if given
+	 * @return the folder of the collections
+	 */
+	static Path folder(String args[]) {
+		Path folder = null;
+		if(args.length>0) {
+			folder = Paths.get(args[0]);
+		} else {
+			folder = find(Paths.get("").toAbsolutePath());
+			if(folder==null) {
+				try {
+					folder = find(Paths.get(Corpora.class.getProtectionDomain().getCodeSource().getLocation().toURI()));
+				} catch (URISyntaxException | SecurityException | NullPointerException e) {
+					folder = null;
+				}
+			}
+		}
+		if(folder==null || !Files.isDirectory(folder)) {
+			System.out.println("Usage: java -cp <classpath> tanvir.project.sudoku.test.<Check> [folder of the puzzle collections]");
+			System.out.println("The collections are in "+COLLECTIONS+" of the repository");
+			System.exit(2);
+		}
+		return folder;
+	}
+
+	/**
+	 * @return the folder of the collections in the directory or the closest of its parents holding it, null if none does
+	 */
+	private static Path find(Path directory) {
+		for(Path parent=directory;parent!=null;parent=parent.getParent()) {
+			Path folder = parent.resolve(COLLECTIONS);
+			if(Files.isDirectory(folder)) {
+				return folder;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Reads a collection.
+	 * @param folder the folder of the collections
+	 * @param name the name of the collection, such as hard or seventeen
+	 * @return the puzzles of the collection, in the order of the file
+	 * @throws IOException If the collection cannot be read
+	 */
+	static List<String> read(Path folder, String name) throws IOException {
+		return Files.readAllLines(folder.resolve(name+".txt")).stream()
+				.map(String::trim)
+				.filter(line -> !line.isEmpty())
+				.collect(Collectors.toList());
+	}
+}
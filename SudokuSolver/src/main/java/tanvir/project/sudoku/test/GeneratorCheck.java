@@ -0,0 +1,97 @@
+package tanvir.project.sudoku.test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+
+import tanvir.project.sudoku.engine.Board;
+import tanvir.project.sudoku.engine.CellSelection;
+import tanvir.project.sudoku.engine.SudokuEngine;
+import tanvir.project.sudoku.generator.PuzzleGenerator;
+import tanvir.project.sudoku.rating.DifficultyRater;
+import tanvir.project.sudoku.rating.Technique;
+
+/**
+ * This class checks the puzzles of PuzzleGenerator, without having to run the entire webapplication. Puzzles are
+ * generated on several threads with a few settings of clues and difficulty, and each must have exactly one solution
+ * by SudokuEngine.countSolutions(2), the target number of clues and a hardest technique within the band. The first
+ * puzzles of each run must also be the ones generate() gives for the same numbers, whatever the number of threads.
+ * @author Tanvir Kaykobad
+ *
+ */
+public class GeneratorCheck {
+
+	private static final long SEED = 1;
+	private static final int PUZZLES = 300, THREADS = 3, COMPARED = 20;
+
+	/**
+	 * The settings checked: the number of clues, 0 for as few as possible, and the difficulty band.
+	 */
+	private static final int[] CLUES = {0, 30, 0, 0};
+	private static final Technique[][] BANDS = {
+			{Technique.HIDDEN_SINGLE, Technique.GUESSING},
+			{Technique.HIDDEN_SINGLE, Technique.GUESSING},
+			{Technique.HIDDEN_SINGLE, Technique.NAKED_SINGLE},
+			{Technique.NAKED_PAIR, Technique.CHAIN},
+	};
+
+	/**
+	 * This method is used for checking the PuzzleGenerator class
+	 * @param args
+	 */
+	public static void main(String args[]) throws IOException, InterruptedException {
+		Logger.getRootLogger().setLevel(Level.INFO);
+		SudokuEngine engine = new SudokuEngine(Board.SIZE, CellSelection.MINIMUM_REMAINING_VALUES);
+		engine.setPropagationEnabled(true);
+		DifficultyRater rater = new DifficultyRater();
+
+		boolean failed = false;
+		for(int setting=0;setting<CLUES.length;setting++) {
+			Technique easiest = BANDS[setting][0], hardest = BANDS[setting][1];
+			PuzzleGenerator generator = new PuzzleGenerator(SEED);
+			generator.setClues(CLUES[setting]);
+			generator.setDifficulty(easiest, hardest);
+
+			Path output = Files.createTempFile("puzzles", ".txt");
+			List<String> puzzles;
+			try {
+				generator.run(output, PUZZLES, THREADS);
+				puzzles = Files.readAllLines(output);
+			} finally {
+				Files.delete(output);
+			}
+
+			long mismatches = 0, clues = 0;
+			for(int p=0;p<puzzles.size();p++) {
+				Board puzzle = Board.parse(puzzles.get(p));
+				for(int cell=0;cell<Board.CELLS;cell++) {
+					engine.setCell(cell, puzzle.get(cell));
+				}
+				Technique needed = rater.rate(puzzle).getHardest();
+				boolean same = engine.countSolutions(2)==1
+						&& (CLUES[setting]==0 || puzzle.getGivens()==CLUES[setting])
+						&& needed.compareTo(easiest)>=0 && needed.compareTo(hardest)<=0;
+				if(p<COMPARED) {
+					same &= puzzle.equals(generator.generate(p));
+				}
+				if(!same) {
+					System.out.println("Mismatch: "+puzzles.get(p));
+					mismatches++;
+				}
+				clues += puzzle.getGivens();
+			}
+			System.out.println("Clues: "+CLUES[setting]+", Band: "+easiest+"-"+hardest+" Puzzles: "+puzzles.size()
+					+", Average clues: "+(double) clues/Math.max(1, puzzles.size())+", Mismatches: "+mismatches);
+			failed |= mismatches!=0 || puzzles.size()!=PUZZLES;
+		}
+
+		if(failed) {
+			System.out.println("A puzzle of PuzzleGenerator did not have a single solution within its settings");
+			System.exit(1);
+		}
+	}
+}
@@ -0,0 +1,121 @@
+package tanvir.project.sudoku.test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+
+import tanvir.project.sudoku.batch.GridValidator;
+import tanvir.project.sudoku.engine.Board;
+import tanvir.project.sudoku.engine.CellSelection;
+import tanvir.project.sudoku.engine.Conflicts;
+import tanvir.project.sudoku.engine.SudokuEngine;
+
+/**
+ * This class checks GridValidator.isSolution against SudokuEngine.validate(), without having to run the entire
+ * webapplication. Every completed grid of the solved collection must pass, and must fail once any one of its cells is
+ * changed to another digit or to a character that is not a digit. The puzzles of the other collections are not complete
+ * and must fail as well, and Conflicts.of(Board) must find the same broken rules in them as SudokuEngine.validate().
+ * @author Tanvir Kaykobad
+ *
+ */
+public class GridCheck {
+
+	/**
+	 * The collections of grids with empty cells.
+	 */
+	private static final String[] INCOMPLETE_CORPORA = {"easy", "hard", "seventeen", "invalid"};
+
+	/**
+	 * The characters written into a cell besides the digits, each of which makes any grid fail.
+	 */
+	private static final byte[] NOT_DIGITS = {'.', '0', ':', 'A', ' '};
+
+	/**
+	 * This method is used for checking the GridValidator class
+	 * @param args the folder of the puzzle collections, by default the one of the SudokuBenchmark module
+	 */
+	public static void main(String args[]) throws IOException {
+		Logger.getRootLogger().setLevel(Level.INFO);
+		Path folder = Corpora.folder(args);
+		SudokuEngine engine = new SudokuEngine(Board.SIZE, CellSelection.ROW_MAJOR);
+
+		long grids = 0, altered = 0, mismatches = 0;
+		for(String solved:Corpora.read(folder, "solved")) {
+			ByteBuffer grid = ByteBuffer.wrap(solved.getBytes(StandardCharsets.US_ASCII));
+			if(!GridValidator.isSolution(grid, 0) || !isValid(engine, grid)) {
+				System.out.println("Rejected: "+solved);
+				mismatches++;
+			}
+			grids++;
+			for(int cell=0;cell<Board.CELLS;cell++) {
+				byte original = grid.get(cell);
+				for(int digit=1;digit<=Board.SIZE;digit++) {
+					if(digit==original-'0') {
+						continue;
+					}
+					grid.put(cell, (byte) ('0'+digit));
+					if(GridValidator.isSolution(grid, 0) || isValid(engine, grid)) {
+						System.out.println("Not rejected: "+solved+" with "+digit+" in cell "+cell);
+						mismatches++;
+					}
+					altered++;
+				}
+				for(byte symbol:NOT_DIGITS) {
+					grid.put(cell, symbol);
+					if(GridValidator.isSolution(grid, 0)) {
+						System.out.println("Not rejected: "+solved+" with '"+(char) symbol+"' in cell "+cell);
+						mismatches++;
+					}
+					altered++;
+				}
+				grid.put(cell, original);
+			}
+		}
+		System.out.println("solved Grids: "+grids+", Altered: "+altered+", Mismatches: "+mismatches);
+
+		for(String corpus:INCOMPLETE_CORPORA) {
+			long rejected = 0;
+			long conflicting = 0;
+			for(String puzzle:Corpora.read(folder, corpus)) {
+				if(GridValidator.isSolution(ByteBuffer.wrap(puzzle.getBytes(StandardCharsets.US_ASCII)), 0)) {
+					System.out.println("Not rejected: "+puzzle);
+					mismatches++;
+				} else {
+					rejected++;
+				}
+				Board board = Board.parse(puzzle);
+				for(int cell=0;cell<Board.CELLS;cell++) {
+					engine.setCell(cell, board.get(cell));
+				}
+				Conflicts conflicts = Conflicts.of(board);
+				if(!conflicts.getMessage().equals(engine.validate().getMessage())) {
+					System.out.println("Other conflicts: "+puzzle+" "+conflicts);
+					mismatches++;
+				}
+				if(!conflicts.isEmpty()) {
+					conflicting++;
+				}
+			}
+			System.out.println(corpus+" Rejected: "+rejected+", Breaking a rule: "+conflicting);
+		}
+
+		if(mismatches!=0) {
+			System.out.println("GridValidator did not tell the completed grids from the others");
+			System.exit(1);
+		}
+	}
+
+	/**
+	 * @return true if SudokuEngine finds no broken rule in the grid of digits
+	 */
+	private static boolean isValid(SudokuEngine engine, ByteBuffer grid) {
+		for(int cell=0;cell<Board.CELLS;cell++) {
+			engine.setCell(cell, grid.get(cell)-'0');
+		}
+		return engine.validate().isEmpty();
+	}
+}
@@ -0,0 +1,112 @@
+package tanvir.project.sudoku.test;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Random;
+
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+
+import tanvir.project.sudoku.engine.Board;
+import tanvir.project.sudoku.engine.CellSelection;
+import tanvir.project.sudoku.engine.SudokuEngine;
+import tanvir.project.sudoku.rating.Hint;
+import tanvir.project.sudoku.session.BoardSession;
+
+/**
+ * This class checks the hints and candidates of BoardSession, without having to run the entire webapplication. Every
+ * puzzle of the collections is played by placing the hints of BoardSession.nextHint() until it gives none, and each
+ * hint must place the digit of the single solution SudokuEngine finds. The puzzle is then edited with random digits,
+ * conflicting ones included, and cleared again. After every step the session, which only updates the units and peers
+ * of the changed cell, must have the same candidates, conflicts and next hint as a session rebuilt from its board.
+ * @author Tanvir Kaykobad
+ *
+ */
+public class HintCheck {
+
+	/**
+	 * The collections of puzzles with a single solution.
+	 */
+	private static final String[] CORPORA = {"easy", "hard", "seventeen"};
+
+	/**
+	 * The random edits made to each puzzle after its hints.
+	 */
+	private static final int EDITS = 40;
+
+	/**
+	 * This method is used for checking the BoardSession class
+	 * @param args the folder of the puzzle collections, by default the one of the SudokuBenchmark module
+	 */
+	public static void main(String args[]) throws IOException {
+		Logger.getRootLogger().setLevel(Level.INFO);
+		Path folder = Corpora.folder(args);
+		Random random = new Random(1);
+
+		boolean failed = false;
+		for(String corpus:CORPORA) {
+			long hints = 0, solved = 0, mismatches = 0;
+			for(String puzzle:Corpora.read(folder, corpus)) {
+				Board board = Board.parse(puzzle);
+				Board solution = new SudokuEngine(board, CellSelection.MINIMUM_REMAINING_VALUES).getSolutionBoard();
+				BoardSession session = new BoardSession(board);
+				boolean same = true;
+
+				Hint hint = session.nextHint();
+				while(hint!=null && same) {
+					same = session.get(hint.getCell())==0 && hint.getDigit()==solution.get(hint.getCell());
+					session.set(hint.getCell(), hint.getDigit());
+					same &= isRebuilt(session);
+					hint = session.nextHint();
+					hints++;
+				}
+				if(session.getBoard().equals(solution)) {
+					solved++;
+				}
+
+				for(int edit=0;edit<EDITS && same;edit++) {
+					int cell = random.nextInt(Board.CELLS);
+					session.set(cell, random.nextInt(Board.SIZE+1));
+					same = isRebuilt(session);
+				}
+				for(int cell=0;cell<Board.CELLS && same;cell++) {
+					session.set(cell, 0);
+					same = isRebuilt(session);
+				}
+
+				if(!same) {
+					System.out.println("Mismatch: "+puzzle);
+					mismatches++;
+				}
+			}
+			System.out.println(corpus+" Hints: "+hints+", Solved by hints: "+solved+", Mismatches: "+mismatches);
+			failed |= mismatches!=0;
+		}
+
+		if(failed) {
+			System.out.println("A hint or an edit of BoardSession did not match the solution or a rebuilt session");
+			System.exit(1);
+		}
+	}
+
+	/**
+	 * @return true if a session rebuilt from the board of the session has the same candidates, conflicts and next hint
+	 */
+	private static boolean isRebuilt(BoardSession session) {
+		BoardSession rebuilt = new BoardSession(session.getBoard());
+		if(rebuilt.hasConflicts()!=session.hasConflicts()) {
+			return false;
+		}
+		for(int cell=0;cell<Board.CELLS;cell++) {
+			if(rebuilt.getCandidates(cell)!=session.getCandidates(cell)) {
+				return false;
+			}
+		}
+		Hint hint = session.nextHint(), expected = rebuilt.nextHint();
+		if(hint==null || expected==null) {
+			return hint==expected;
+		}
+		return hint.getCell()==expected.getCell() && hint.getDigit()==expected.getDigit()
+				&& hint.getTechnique()==expected.getTechnique();
+	}
+}
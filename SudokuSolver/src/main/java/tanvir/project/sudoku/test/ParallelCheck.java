@@ -0,0 +1,155 @@
+package tanvir.project.sudoku.test;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+
+import tanvir.project.sudoku.engine.Board;
+import tanvir.project.sudoku.engine.CancellationToken;
+import tanvir.project.sudoku.engine.CellSelection;
+import tanvir.project.sudoku.engine.SolveStatus;
+import tanvir.project.sudoku.engine.SudokuEngine;
+import tanvir.project.sudoku.thread.ParallelSudokuEngine;
+
+/**
+ * This class checks ParallelSudokuEngine against SudokuEngine, without having to run the entire webapplication. Every
+ * puzzle of the collections must be solved, or found to have no solution, as SudokuEngine does, and must have the same
+ * number of solutions up to a limit. A puzzle with a single solution must have the solution of SudokuEngine, and one
+ * with several solutions one of them. The empty board, whose solutions cannot be counted, must then stop every thread
+ * at the time limit of the search and once its cancellation token is cancelled.
+ * @author Tanvir Kaykobad
+ *
+ */
+public class ParallelCheck {
+
+	private static final String[] CORPORA = {"hard", "unsolvable", "multiple", "seventeen"};
+
+	/**
+	 * The number of solutions after which counting stops.
+	 */
+	private static final long LIMIT = 1000;
+
+	/**
+	 * The time limit of the stopped searches, and the time after it within which every thread must have stopped, in
+	 * milliseconds.
+	 */
+	private static final long TIME_LIMIT = 200, STOP_TIME = 1000;
+
+	private static final int THREADS = 4;
+
+	/**
+	 * This method is used for checking the ParallelSudokuEngine class
+	 * @param args the folder of the puzzle collections, by default the one of the SudokuBenchmark module
+	 */
+	public static void main(String args[]) throws IOException, InterruptedException {
+		Logger.getRootLogger().setLevel(Level.INFO);
+		Path folder = Corpora.folder(args);
+		ForkJoinPool pool = new ForkJoinPool(THREADS);
+
+		long mismatches = 0;
+		for(String corpus:CORPORA) {
+			long solved = 0, counted = 0;
+			for(String puzzle:Corpora.read(folder, corpus)) {
+				Board board = Board.parse(puzzle);
+				SudokuEngine engine = new SudokuEngine(board, CellSelection.MINIMUM_REMAINING_VALUES);
+				engine.setPropagationEnabled(true);
+				long count = engine.countSolutions(LIMIT);
+				Board solution = count==1 ? engine.getSolutionBoard() : null;
+
+				ParallelSudokuEngine parallel = new ParallelSudokuEngine(board, pool);
+				boolean same = parallel.solve()==(count>0) && parallel.getStatus()==(count>0 ? SolveStatus.SOLVED : SolveStatus.NO_SOLUTION);
+				if(same && count>0) {
+					Board found = parallel.getSolutionBoard();
+					same = solution==null ? isSolutionOf(found, board) : found.equals(solution);
+					solved++;
+				}
+				long parallelCount = new ParallelSudokuEngine(board, pool).countSolutions(LIMIT);
+				same &= parallelCount==count;
+				counted += parallelCount;
+
+				if(!same) {
+					System.out.println("Mismatch: "+puzzle+" "+count+" solutions, "+parallelCount+" counted in parallel");
+					mismatches++;
+				}
+			}
+			System.out.println(corpus+" Solved: "+solved+", Solutions counted: "+counted);
+		}
+
+		ParallelSudokuEngine timed = new ParallelSudokuEngine(Board.EMPTY, pool);
+		timed.setTimeLimit(TIME_LIMIT, TimeUnit.MILLISECONDS);
+		long start = System.nanoTime();
+		long timedCount = timed.countSolutions(Long.MAX_VALUE);
+		if(!isStopped(pool, timed, SolveStatus.TIMED_OUT, start, TIME_LIMIT) || timedCount==0) {
+			System.out.println("Time limit not kept: "+timed.getStatus()+", "+timedCount+" solutions");
+			mismatches++;
+		}
+
+		ParallelSudokuEngine cancelled = new ParallelSudokuEngine(Board.EMPTY, pool);
+		CancellationToken token = new CancellationToken();
+		cancelled.setCancellationToken(token);
+		Thread canceller = new Thread(() -> {
+			try {
+				Thread.sleep(TIME_LIMIT);
+			} catch(InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			token.cancel();
+		});
+		start = System.nanoTime();
+		canceller.start();
+		cancelled.countSolutions(Long.MAX_VALUE);
+		canceller.join();
+		if(!isStopped(pool, cancelled, SolveStatus.CANCELLED, start, TIME_LIMIT)) {
+			System.out.println("Cancellation not kept: "+cancelled.getStatus());
+			mismatches++;
+		}
+		try {
+			cancelled.getSolutionBoard();
+			System.out.println("getSolutionBoard() was not cancelled");
+			mismatches++;
+		} catch(CancellationException e) {
+			System.out.println("Cancelled: "+e.getMessage());
+		}
+		pool.shutdown();
+
+		if(mismatches!=0) {
+			System.out.println("ParallelSudokuEngine did not match SudokuEngine or did not stop");
+			System.exit(1);
+		}
+	}
+
+	/**
+	 * @return true if the search ended with the status within STOP_TIME of the time it was stopped, and left no thread of
+	 * the pool running
+	 */
+	private static boolean isStopped(ForkJoinPool pool, ParallelSudokuEngine engine, SolveStatus status, long start, long stoppedAfter) {
+		boolean quiescent = pool.awaitQuiescence(STOP_TIME, TimeUnit.MILLISECONDS);
+		long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime()-start);
+		System.out.println(status+" after "+elapsed+"ms, "+engine.getNumberOfAttempts()+" attempts, "+engine.getNumberOfTasks()+" tasks");
+		return engine.getStatus()==status && quiescent && elapsed<stoppedAfter+STOP_TIME;
+	}
+
+	/**
+	 * @return true if the solution is complete, keeps the clues of the puzzle and breaks no rule
+	 */
+	private static boolean isSolutionOf(Board solution, Board puzzle) {
+		if(solution==null || !solution.isComplete()) {
+			return false;
+		}
+		for(int cell=0;cell<Board.CELLS;cell++) {
+			if(puzzle.get(cell)!=0 && puzzle.get(cell)!=solution.get(cell)) {
+				return false;
+			}
+		}
+		try {
+			return new SudokuEngine(solution, CellSelection.ROW_MAJOR).isValid();
+		} catch (IllegalArgumentException e) {
+			return false;
+		}
+	}
+}
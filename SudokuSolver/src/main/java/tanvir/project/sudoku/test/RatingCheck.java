@@ -0,0 +1,108 @@
+package tanvir.project.sudoku.test;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+
+import tanvir.project.sudoku.engine.Board;
+import tanvir.project.sudoku.engine.CellSelection;
+import tanvir.project.sudoku.engine.SudokuEngine;
+import tanvir.project.sudoku.rating.DifficultyRater;
+import tanvir.project.sudoku.rating.Rating;
+import tanvir.project.sudoku.rating.Technique;
+
+/**
+ * This class checks the ratings of DifficultyRater against SudokuEngine, without having to run the entire
+ * webapplication. The solution a rating ends with must be the one SudokuEngine finds for every puzzle with a single
+ * solution, and the rating must not depend on the puzzles the rater rated before. A puzzle with several solutions must
+ * be rated as guessing and end with one of its solutions, and a puzzle without a solution must be rejected.
+ * @author Tanvir Kaykobad
+ *
+ */
+public class RatingCheck {
+
+	/**
+	 * The collections of puzzles with a single solution.
+	 */
+	private static final String[] UNIQUE_CORPORA = {"easy", "hard", "seventeen"};
+
+	/**
+	 * This method is used for checking the DifficultyRater class
+	 * @param args the folder of the puzzle collections, by default the one of the SudokuBenchmark module
+	 */
+	public static void main(String args[]) throws IOException {
+		Logger.getRootLogger().setLevel(Level.INFO);
+		Path folder = Corpora.folder(args);
+		DifficultyRater rater = new DifficultyRater();
+
+		long mismatches = 0;
+		for(String corpus:UNIQUE_CORPORA) {
+			long rated = 0, guessing = 0;
+			for(String puzzle:Corpora.read(folder, corpus)) {
+				Board board = Board.parse(puzzle);
+				Rating rating = rater.rate(board);
+				Board solution = rater.getSolution();
+				SudokuEngine engine = new SudokuEngine(board, CellSelection.MINIMUM_REMAINING_VALUES);
+				if(!solution.equals(engine.getSolutionBoard()) || !rating.equals(new DifficultyRater().rate(board))) {
+					System.out.println("Mismatch: "+puzzle);
+					mismatches++;
+				}
+				rated++;
+				if(rating.getHardest()==Technique.GUESSING) {
+					guessing++;
+				}
+			}
+			System.out.println(corpus+" Rated: "+rated+", Guessing: "+guessing);
+		}
+
+		long multiple = 0;
+		for(String puzzle:Corpora.read(folder, "multiple")) {
+			Board board = Board.parse(puzzle);
+			Rating rating = rater.rate(board);
+			if(rating.getHardest()!=Technique.GUESSING || !isSolutionOf(rater.getSolution(), board)) {
+				System.out.println("Mismatch: "+puzzle);
+				mismatches++;
+			}
+			multiple++;
+		}
+		System.out.println("multiple Rated: "+multiple);
+
+		long rejected = 0;
+		for(String puzzle:Corpora.read(folder, "unsolvable")) {
+			try {
+				rater.rate(Board.parse(puzzle));
+				System.out.println("Not rejected: "+puzzle);
+				mismatches++;
+			} catch (IllegalArgumentException e) {
+				rejected++;
+			}
+		}
+		System.out.println("unsolvable Rejected: "+rejected+", Mismatches: "+mismatches);
+
+		if(mismatches!=0) {
+			System.out.println("A rating of DifficultyRater did not match SudokuEngine");
+			System.exit(1);
+		}
+	}
+
+	/**
+	 * @return true if the solution is complete, keeps the clues of the puzzle and breaks no rule
+	 */
+	private static boolean isSolutionOf(Board solution, Board puzzle) {
+		if(!solution.isComplete()) {
+			return false;
+		}
+		for(int cell=0;cell<Board.CELLS;cell++) {
+			if(puzzle.get(cell)!=0 && puzzle.get(cell)!=solution.get(cell)) {
+				return false;
+			}
+		}
+		try {
+			return new SudokuEngine(solution, CellSelection.ROW_MAJOR).isValid();
+		} catch (IllegalArgumentException e) {
+			return false;
+		}
+	}
+}
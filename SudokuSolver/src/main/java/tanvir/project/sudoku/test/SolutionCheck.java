@@ -0,0 +1,124 @@
+package tanvir.project.sudoku.test;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+
+import tanvir.project.sudoku.engine.Board;
+import tanvir.project.sudoku.engine.CancellationToken;
+import tanvir.project.sudoku.engine.CellSelection;
+import tanvir.project.sudoku.engine.SudokuEngine;
+
+/**
+ * This class checks the solutions enumerated by SudokuEngine.solutions() against SudokuEngine.countSolutions, without
+ * having to run the entire webapplication. For every puzzle of the collection with several solutions, the sequential and
+ * the parallel stream must count as many solutions as countSolutions, the sequential stream must give the solutions in
+ * the order countSolutions finds them, and the parallel stream must give the same solutions. Streams taking limit(n) or
+ * findAny() must stop the search once they have their solutions: no more solutions are searched for than they take, and
+ * the search makes far fewer attempts than the whole enumeration, as told by the checks of its cancellation token.
+ * @author Tanvir Kaykobad
+ *
+ */
+public class SolutionCheck {
+
+	/**
+	 * The number of solutions after which counting stops, more than any puzzle of the collection has.
+	 */
+	private static final long LIMIT = 1000000;
+
+	/**
+	 * The solutions taken by limit(n).
+	 */
+	private static final int TAKEN = 3;
+
+	/**
+	 * This method is used for checking the SolutionSpliterator class
+	 * @param args the folder of the puzzle collections, by default the one of the SudokuBenchmark module
+	 */
+	public static void main(String args[]) throws IOException {
+		Logger.getRootLogger().setLevel(Level.INFO);
+		Path folder = Corpora.folder(args);
+
+		long puzzles = 0, solutions = 0, mismatches = 0;
+		long enumerationChecks = 0, limitChecks = 0, findAnyChecks = 0;
+		for(String puzzle:Corpora.read(folder, "multiple")) {
+			Board board = Board.parse(puzzle);
+			//countSolutions hands the solutions to onSolution in the order it finds them
+			List<Board> found = new ArrayList<>();
+			SudokuEngine counter = new SudokuEngine(board, CellSelection.MINIMUM_REMAINING_VALUES) {
+				@Override
+				protected void onSolution() {
+					found.add(toBoard());
+				}
+			};
+			counter.setPropagationEnabled(true);
+			long count = counter.countSolutions(LIMIT);
+
+			SudokuEngine engine = new SudokuEngine(board, CellSelection.MINIMUM_REMAINING_VALUES);
+			engine.setPropagationEnabled(true);
+			AtomicLong checks = new AtomicLong();
+			engine.setCancellationToken(new CancellationToken() {
+				@Override
+				public boolean isCancelled() {
+					checks.incrementAndGet();
+					return super.isCancelled();
+				}
+			});
+
+			List<Board> sequential = engine.solutions().map(SolutionCheck::toBoard).collect(Collectors.toList());
+			long enumerated = checks.getAndSet(0);
+			Set<Board> parallel = engine.solutions().parallel().map(SolutionCheck::toBoard).collect(Collectors.toSet());
+			boolean same = sequential.equals(found) && sequential.size()==count && parallel.equals(new HashSet<>(found))
+					&& engine.solutions().count()==count && engine.solutions().parallel().count()==count;
+
+			AtomicLong searched = new AtomicLong();
+			checks.set(0);
+			same &= engine.solutions().peek(solution -> searched.incrementAndGet()).limit(TAKEN).count()==Math.min(TAKEN, count)
+					&& searched.get()==Math.min(TAKEN, count) && checks.get()<=enumerated;
+			limitChecks += checks.getAndSet(0);
+			searched.set(0);
+			same &= engine.solutions().peek(solution -> searched.incrementAndGet()).findAny().isPresent()
+					&& searched.get()==1 && checks.get()<=enumerated;
+			findAnyChecks += checks.get();
+			enumerationChecks += enumerated;
+
+			if(!same) {
+				System.out.println("Mismatch: "+puzzle+" "+count+" solutions, "+sequential.size()+" enumerated, "+parallel.size()+" in parallel");
+				mismatches++;
+			}
+			puzzles++;
+			solutions += count;
+		}
+		System.out.println("multiple Puzzles: "+puzzles+", Solutions: "+solutions+", Token checks of the enumerations: "
+				+enumerationChecks+", of limit("+TAKEN+"): "+limitChecks+", of findAny(): "+findAnyChecks+", Mismatches: "+mismatches);
+		//the collection has puzzles with thousands of solutions, whose enumeration checks the token many times
+		if(limitChecks*10>enumerationChecks || findAnyChecks*10>enumerationChecks) {
+			System.out.println("limit(n) or findAny() did not stop the search");
+			mismatches++;
+		}
+
+		if(mismatches!=0) {
+			System.out.println("SudokuEngine.solutions() did not enumerate the solutions of countSolutions");
+			System.exit(1);
+		}
+	}
+
+	/**
+	 * @return the board of a solution flattened row by row
+	 */
+	private static Board toBoard(int[] solution) {
+		StringBuilder digits = new StringBuilder(Board.CELLS);
+		for(int digit:solution) {
+			digits.append(digit);
+		}
+		return Board.parse(digits);
+	}
+}
@@ -3,6 +3,7 @@ package tanvir.project.sudoku.test;
 import java.security.InvalidParameterException;
 import java.text.StringCharacterIterator;
 
+import tanvir.project.sudoku.engine.InvalidBoardException;
 import tanvir.project.sudoku.engine.SudokuEngine;
 
 /**
@@ -164,7 +165,13 @@ public class SudokuMap {
 		int map[][] = s.readMap(input);
 		
 		SudokuEngine.outputMap(map);
-		SudokuEngine engine = new SudokuEngine(map);
+		SudokuEngine engine;
+		try {
+			engine = new SudokuEngine(map);
+		} catch (InvalidBoardException e) {
+			System.out.println("\nInvalid board: "+e.getMessage());
+			return;
+		}
 		int[][] solution = engine.solveRecursively();
 		if(solution!=null) {
 			System.out.println("\nObtained Solution:");
@@ -0,0 +1,156 @@
+package tanvir.project.sudoku.test;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+
+import tanvir.project.sudoku.cache.SolutionCache;
+import tanvir.project.sudoku.cache.SymmetryTransform;
+import tanvir.project.sudoku.engine.Board;
+import tanvir.project.sudoku.engine.CellSelection;
+import tanvir.project.sudoku.engine.SudokuEngine;
+
+/**
+ * This class checks that SymmetryTransform.canonicalize gives every copy of a puzzle the same representative, without
+ * having to run the entire webapplication. Every puzzle of the collections is transposed, has its bands, stacks, rows
+ * and columns permuted and its digits relabelled at random a number of times, and each copy must have the representative
+ * of the original. Reverting the solution of the representative must also give the solution of each copy, and a
+ * SolutionCache holding the original must answer each copy with that solution without solving it.
+ * @author Tanvir Kaykobad
+ *
+ */
+public class SymmetryCheck {
+
+	private static final String[] CORPORA = {"easy", "hard", "seventeen", "multiple"};
+
+	/**
+	 * The random copies made of each puzzle.
+	 */
+	private static final int COPIES = 10;
+
+	private static final int BOX_SIZE = 3;
+
+	/**
+	 * This method is used for checking the SymmetryTransform class
+	 * @param args the folder of the puzzle collections, by default the one of the SudokuBenchmark module
+	 */
+	public static void main(String args[]) throws IOException {
+		Logger.getRootLogger().setLevel(Level.INFO);
+		Path folder = Corpora.folder(args);
+		Random random = new Random(1);
+		SolutionCache cache = new SolutionCache(Integer.MAX_VALUE);
+
+		boolean failed = false;
+		for(String corpus:CORPORA) {
+			long copies = 0, skipped = 0, mismatches = 0;
+			for(String puzzle:Corpora.read(folder, corpus)) {
+				int[][] map = Board.parse(puzzle).toArray();
+				SymmetryTransform transform = SymmetryTransform.canonicalize(map);
+				int[][] representative = transform==null ? null : transform.apply(map);
+				Board solution = transform==null ? null : solve(representative);
+				boolean same = transform==null || Arrays.deepEquals(transform.revert(representative), map);
+				if(transform!=null) {
+					cache.getSolution(Board.of(map), true, (board, boardTransform) -> solve(board.toArray()));
+				}
+
+				for(int copy=0;copy<COPIES && same;copy++) {
+					int[][] shuffled = shuffle(map, random);
+					SymmetryTransform copyTransform = SymmetryTransform.canonicalize(shuffled);
+					if(transform==null || copyTransform==null) {
+						same = transform==copyTransform;
+						continue;
+					}
+					same = Arrays.deepEquals(copyTransform.apply(shuffled), representative);
+					if(same && solution!=null) {
+						Board copySolution = solve(shuffled);
+						same = Board.of(copyTransform.revert(solution.toArray())).equals(copySolution)
+								&& copySolution.equals(cache.getSolution(Board.of(shuffled), true, (board, boardTransform) -> {
+									throw new IllegalStateException("Copy missing from the cache");
+								}));
+					}
+					copies++;
+				}
+				if(transform==null) {
+					skipped++;
+				}
+				if(!same) {
+					System.out.println("Mismatch: "+puzzle);
+					mismatches++;
+				}
+			}
+			System.out.println(corpus+" Copies: "+copies+", Not canonicalized: "+skipped+", Mismatches: "+mismatches);
+			failed |= mismatches!=0;
+		}
+
+		if(failed) {
+			System.out.println("A copy of a puzzle did not have the representative of the puzzle");
+			System.exit(1);
+		}
+	}
+
+	/**
+	 * @return the solution of a puzzle with a single solution, null otherwise
+	 */
+	private static Board solve(int[][] map) {
+		SudokuEngine engine = new SudokuEngine(map, CellSelection.MINIMUM_REMAINING_VALUES);
+		engine.setPropagationEnabled(true);
+		if(engine.countSolutions(2)!=1) {
+			return null;
+		}
+		return engine.getSolutionBoard();
+	}
+
+	/**
+	 * @return a copy of the board, transposed or not, with its bands, stacks, rows within the bands, columns within the
+	 * stacks and digits permuted at random
+	 */
+	private static int[][] shuffle(int[][] map, Random random) {
+		int[] rows = lineOrder(random), cols = lineOrder(random), digits = new int[Board.SIZE+1];
+		for(int digit=1;digit<=Board.SIZE;digit++) {
+			digits[digit] = digit;
+		}
+		for(int i=Board.SIZE;i>1;i--) {
+			int j = 1+random.nextInt(i);
+			int swap = digits[i];
+			digits[i] = digits[j];
+			digits[j] = swap;
+		}
+		boolean transposed = random.nextBoolean();
+		int[][] shuffled = new int[Board.SIZE][Board.SIZE];
+		for(int i=0;i<Board.SIZE;i++) {
+			for(int j=0;j<Board.SIZE;j++) {
+				shuffled[i][j] = digits[transposed ? map[cols[j]][rows[i]] : map[rows[i]][cols[j]]];
+			}
+		}
+		return shuffled;
+	}
+
+	/**
+	 * @return a random order of the 9 lines that keeps the bands together
+	 */
+	private static int[] lineOrder(Random random) {
+		int[] bands = permutation(random), order = new int[Board.SIZE];
+		for(int band=0;band<BOX_SIZE;band++) {
+			int[] within = permutation(random);
+			for(int i=0;i<BOX_SIZE;i++) {
+				order[band*BOX_SIZE+i] = bands[band]*BOX_SIZE+within[i];
+			}
+		}
+		return order;
+	}
+
+	private static int[] permutation(Random random) {
+		int[] permutation = {0, 1, 2};
+		for(int i=BOX_SIZE-1;i>0;i--) {
+			int j = random.nextInt(i+1);
+			int swap = permutation[i];
+			permutation[i] = permutation[j];
+			permutation[j] = swap;
+		}
+		return permutation;
+	}
+}
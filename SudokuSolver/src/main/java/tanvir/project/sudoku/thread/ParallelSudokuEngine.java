@@ -0,0 +1,468 @@
+package tanvir.project.sudoku.thread;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.log4j.LogManager;
+import org.apache.log4j.Logger;
+
+import tanvir.project.sudoku.engine.Board;
+import tanvir.project.sudoku.engine.CancellationToken;
+import tanvir.project.sudoku.engine.CellSelection;
+import tanvir.project.sudoku.engine.Conflicts;
+import tanvir.project.sudoku.engine.InvalidBoardException;
+import tanvir.project.sudoku.engine.ProgressListener;
+import tanvir.project.sudoku.engine.SolveStatus;
+import tanvir.project.sudoku.engine.SolveTimeoutException;
+import tanvir.project.sudoku.engine.Solver;
+import tanvir.project.sudoku.engine.SudokuEngine;
+
+/**
+ * This class solves a sudoku puzzle on several threads of a ForkJoinPool.
+ *
+ * Each task runs the search of a SudokuEngine, with minimum remaining values and propagation, on its own copy of the
+ * board. Whenever the search branches while the worker has no queued tasks left for idle workers to steal, the digits
+ * after the first one are forked as new tasks, each on a copy of the board with the digit filled in. The search is
+ * therefore split where and when there is work to share, and never more than needed. The first task to solve its board
+ * publishes the solution and every other search abandons its branches. Solutions are counted the same way, with all
+ * searches adding to one count. A search reaching the time or attempt limit
+ * stops the other searches as well.
+ *
+ * @author Tanvir Kaykobad
+ *
+ */
+public class ParallelSudokuEngine implements Solver {
+	private static final Logger LOGGER = LogManager.getLogger(ParallelSudokuEngine.class);
+
+	/**
+	 * A branch is forked only while the worker has at most this many tasks queued that no other worker has taken.
+	 */
+	private static final int SURPLUS_TASKS = 2;
+
+	private final ForkJoinPool pool;
+	private final int size;
+
+	/**
+	 * The board flattened row by row. 0 marks an empty cell.
+	 */
+	private final int[] board;
+
+	/**
+	 * The engine that solved its board, set once by the first task to find a solution.
+	 */
+	private final AtomicReference<SudokuEngine> solved = new AtomicReference<>();
+
+	/**
+	 * The cancellation token given by the caller, and the limits of the whole solve.
+	 */
+	private CancellationToken token;
+	private long timeLimit = Long.MAX_VALUE, attemptLimit = Long.MAX_VALUE;
+
+	/**
+	 * The listener given by the caller, which receives the attempts of all threads together.
+	 */
+	private ProgressListener listener;
+
+	/**
+	 * The token shared by the searches of a solve. It is cancelled when a solution is found or a search times out, and
+	 * when the token of the caller is cancelled.
+	 */
+	private CancellationToken stop;
+	private long startTime, deadline;
+	private volatile boolean timedOut;
+
+	/**
+	 * When counting, the number of solutions after which all threads stop and the number found by all threads so far.
+	 * The limit is 0 when solving.
+	 */
+	private long solutionLimit;
+	private final AtomicLong solutionCount = new AtomicLong();
+
+	/**
+	 * The outcome of the last solve.
+	 */
+	private SolveStatus status = SolveStatus.NOT_STARTED;
+
+	private final LongAdder attempt = new LongAdder(), propagation = new LongAdder(), backtrack = new LongAdder(), tasks = new LongAdder();
+
+	/**
+	 * Constructor solving on the common pool
+	 * @param map a 2d Character map where each cell is a digit between '1' and '9', continued by 'A' to 'P' for larger boards. If the cell contains ' ', it means the cell has not yet been filled.
+	 * @throws IllegalArgumentException If the map is not 4x4, 9x9, 16x16 or 25x25, or if it already breaks one of the row, column or sub-matrix rules.
+	 */
+	public ParallelSudokuEngine(final Character[][] map) throws IllegalArgumentException {
+		this(map, ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * Constructor
+	 * @param map a 2d Character map where each cell is a digit between '1' and '9', continued by 'A' to 'P' for larger boards. If the cell contains ' ', it means the cell has not yet been filled.
+	 * @param pool the pool whose threads solve the puzzle
+	 * @throws IllegalArgumentException If the map is not 4x4, 9x9, 16x16 or 25x25, or if it already breaks one of the row, column or sub-matrix rules.
+	 */
+	public ParallelSudokuEngine(final Character[][] map, ForkJoinPool pool) throws IllegalArgumentException {
+		//SudokuEngine validates the board and converts it
+		this(new SudokuEngine(map), pool);
+	}
+
+	/**
+	 * Constructor
+	 * @param board the board
+	 * @param pool the pool whose threads solve the puzzle
+	 * @throws IllegalArgumentException If the board already breaks one of the row, column or sub-matrix rules.
+	 */
+	public ParallelSudokuEngine(Board board, ForkJoinPool pool) throws IllegalArgumentException {
+		this(Board.SIZE, pool);
+		Conflicts conflicts = Conflicts.of(board);
+		if(!conflicts.isEmpty()) {
+			throw new InvalidBoardException(conflicts);
+		}
+		for(int cell=0;cell<Board.CELLS;cell++) {
+			this.board[cell] = board.get(cell);
+		}
+	}
+
+	/**
+	 * Constructor used for testing
+	 * @param map a 2d integer map where each cell is a digit between 1 and 9, or up to 25 for larger boards. If the cell contains 0, it means the cell has not yet been filled.
+	 * @param pool the pool whose threads solve the puzzle
+	 * @throws IllegalArgumentException If the map is not 4x4, 9x9, 16x16 or 25x25, or if it already breaks one of the row, column or sub-matrix rules.
+	 */
+	public ParallelSudokuEngine(int[][] map, ForkJoinPool pool) throws IllegalArgumentException {
+		this(new SudokuEngine(map), pool);
+	}
+
+	private ParallelSudokuEngine(SudokuEngine engine, ForkJoinPool pool) {
+		this(engine.getSize(), pool);
+		for(int cell=0;cell<board.length;cell++) {
+			board[cell] = engine.getCell(cell);
+		}
+	}
+
+	private ParallelSudokuEngine(int size, ForkJoinPool pool) {
+		this.pool = pool;
+		this.size = size;
+		this.board = new int[size*size];
+	}
+
+	/**
+	 * Solves the board on the pool.
+	 * @return true if the board was solved, false if it has no solution or the search gave up, see {@link #getStatus()}
+	 */
+	public boolean solve() {
+		if(solved.get()==null) {
+			solutionLimit = 0;
+			search();
+		}
+
+		if(solved.get()!=null) {
+			status = SolveStatus.SOLVED;
+		} else {
+			status = getStopStatus(SolveStatus.NO_SOLUTION);
+		}
+		return status==SolveStatus.SOLVED;
+	}
+
+	/**
+	 * Counts the solutions of the board on the pool, stopping all threads once limit solutions have been found.
+	 * The guesses made while counting are added to the attempt counter.
+	 * @param limit the number of solutions after which counting stops
+	 * @return the number of solutions, at most limit. If the search gave up, see {@link #getStatus()}, this is the number found until then.
+	 * @throws IllegalArgumentException If the limit is not positive
+	 */
+	public long countSolutions(long limit) throws IllegalArgumentException {
+		if(limit<=0) {
+			throw new IllegalArgumentException("Solution limit must be positive");
+		}
+		solutionLimit = limit;
+		solutionCount.set(0);
+		search();
+
+		long count = Math.min(solutionCount.get(), limit);
+		if(count==limit) {
+			status = SolveStatus.SOLVED;
+		} else {
+			status = getStopStatus(count>0 ? SolveStatus.SOLVED : SolveStatus.NO_SOLUTION);
+		}
+		return count;
+	}
+
+	/**
+	 * Checks that the puzzle has exactly one solution. All threads stop as soon as a second solution is found.
+	 * @return true if the board has exactly one solution
+	 * @throws SolveTimeoutException If the search reached its time limit or attempt limit
+	 * @throws CancellationException If the cancellation token of the search was cancelled
+	 */
+	public boolean isUnique() throws SolveTimeoutException {
+		long count = countSolutions(2);
+		throwIfStopped();
+		return count==1;
+	}
+
+	/**
+	 * Runs the search tasks on the pool until they are all done.
+	 */
+	private void search() {
+		CancellationToken caller = token;
+		stop = new CancellationToken() {
+			@Override
+			public boolean isCancelled() {
+				return super.isCancelled() || (caller!=null && caller.isCancelled());
+			}
+		};
+		startTime = System.nanoTime();
+		deadline = timeLimit==Long.MAX_VALUE ? Long.MAX_VALUE : startTime + timeLimit;
+		timedOut = false;
+		pool.invoke(new SearchTask(board));
+	}
+
+	/**
+	 * @param completed the status of a search that was not stopped
+	 * @return CANCELLED or TIMED_OUT if the search was stopped, completed otherwise
+	 */
+	private SolveStatus getStopStatus(SolveStatus completed) {
+		if(token!=null && token.isCancelled()) {
+			return SolveStatus.CANCELLED;
+		}
+		return timedOut ? SolveStatus.TIMED_OUT : completed;
+	}
+
+	private void throwIfStopped() throws SolveTimeoutException, CancellationException {
+		if(status==SolveStatus.TIMED_OUT) {
+			throw new SolveTimeoutException("Solving timed out after "+attempt.sum()+" attempts");
+		}
+		if(status==SolveStatus.CANCELLED) {
+			throw new CancellationException("Solving was cancelled after "+attempt.sum()+" attempts");
+		}
+	}
+
+	/**
+	 * This method returns the solution of the sudoku problem
+	 * @return The solution of the sudoku puzzle, or null if none exists
+	 * @throws SolveTimeoutException If the search reached its time limit or attempt limit
+	 * @throws CancellationException If the cancellation token of the search was cancelled
+	 */
+	@Override
+	public Character[][] getSolution() throws SolveTimeoutException {
+		return solveOrThrow() ? solved.get().getBoard() : null;
+	}
+
+	/**
+	 * Like {@link #getSolution()}, but the solution is packed straight from the cells of the engine that found it.
+	 * @throws IllegalArgumentException If the board is not 9x9
+	 */
+	@Override
+	public Board getSolutionBoard() throws SolveTimeoutException, IllegalArgumentException {
+		return solveOrThrow() ? solved.get().toBoard() : null;
+	}
+
+	/**
+	 * Solves the board, turning a search that gave up into an exception.
+	 * @return true if the board was solved, false if it has no solution
+	 */
+	private boolean solveOrThrow() throws SolveTimeoutException {
+		boolean found = solve();
+		if(LOGGER.isDebugEnabled()) {
+			LOGGER.debug("Number of attempts: "+attempt.sum()+", propagations: "+propagation.sum()+", tasks: "+tasks.sum());
+		}
+		throwIfStopped();
+		return found;
+	}
+
+	@Override
+	public SolveStatus getStatus() {
+		return status;
+	}
+
+	/**
+	 * @param token a token that stops all threads once it is cancelled, or null
+	 */
+	@Override
+	public void setCancellationToken(CancellationToken token) {
+		this.token = token;
+	}
+
+	/**
+	 * @param listener a listener receiving the attempts of all threads together and the depth of the reporting thread, or
+	 * null. It is called by every thread of the pool, possibly at the same time.
+	 */
+	@Override
+	public void setProgressListener(ProgressListener listener) {
+		this.listener = listener;
+	}
+
+	/**
+	 * Limits the wall-clock time of each solve, for all threads together.
+	 */
+	@Override
+	public void setTimeLimit(long timeout, TimeUnit unit) throws IllegalArgumentException {
+		if(timeout<=0) {
+			throw new IllegalArgumentException("Time limit must be positive");
+		}
+		timeLimit = unit.toNanos(timeout);
+	}
+
+	/**
+	 * Limits the number of attempts of each solve, for all threads together. The attempts of a task are added to the
+	 * total when it ends, and a task starts with the attempts left, so running tasks may together go past the limit.
+	 */
+	@Override
+	public void setAttemptLimit(long attempts) throws IllegalArgumentException {
+		if(attempts<=0) {
+			throw new IllegalArgumentException("Attempt limit must be positive");
+		}
+		attemptLimit = attempts;
+	}
+
+	/**
+	 * @return the number of attempts all threads took for the puzzle, which is the number of times a cell in the matrix was filled by guessing.
+	 */
+	@Override
+	public long getNumberOfAttempts() {
+		return attempt.sum();
+	}
+
+	@Override
+	public long getNumberOfPropagations() {
+		return propagation.sum();
+	}
+
+	@Override
+	public long getNumberOfBacktracks() {
+		return backtrack.sum();
+	}
+
+	/**
+	 * @return the number of tasks the search was split into
+	 */
+	public long getNumberOfTasks() {
+		return tasks.sum();
+	}
+
+	/**
+	 * Searches the subtree below one board. Forked subtrees are joined once the own search is over, so that a worker
+	 * waiting for them helps running them or steals other tasks meanwhile.
+	 */
+	private class SearchTask extends RecursiveTask<Void> {
+		private static final long serialVersionUID = 1L;
+
+		private final int[] start;
+
+		SearchTask(int[] start) {
+			this.start = start;
+		}
+
+		@Override
+		protected Void compute() {
+			if(stop.isCancelled()) {
+				return null;
+			}
+			long timeLeft = deadline==Long.MAX_VALUE ? Long.MAX_VALUE : deadline - System.nanoTime();
+			long attemptsLeft = attemptLimit==Long.MAX_VALUE ? Long.MAX_VALUE : attemptLimit - attempt.sum();
+			if(timeLeft<=0 || attemptsLeft<=0) {
+				timedOut = true;
+				stop.cancel();
+				return null;
+			}
+			tasks.increment();
+
+			SplittingEngine engine = new SplittingEngine();
+			for(int cell=0;cell<start.length;cell++) {
+				engine.setCell(cell, start[cell]);
+			}
+			engine.setCancellationToken(stop);
+			if(timeLeft!=Long.MAX_VALUE) {
+				engine.setTimeLimit(timeLeft, TimeUnit.NANOSECONDS);
+			}
+			if(attemptsLeft!=Long.MAX_VALUE) {
+				engine.setAttemptLimit(attemptsLeft);
+			}
+			TaskProgress progress = listener==null ? null : new TaskProgress();
+			engine.setProgressListener(progress);
+			if(solutionLimit>0) {
+				engine.countSolutions(solutionLimit);
+			} else if(engine.solve() && solved.compareAndSet(null, engine)) {
+				stop.cancel();
+			}
+			if(engine.getStatus()==SolveStatus.TIMED_OUT) {
+				timedOut = true;
+				stop.cancel();
+			}
+			attempt.add(engine.getNumberOfAttempts() - (progress==null ? 0 : progress.reported));
+			propagation.add(engine.getNumberOfPropagations());
+			backtrack.add(engine.getNumberOfBacktracks());
+
+			for(int i=engine.forked.size()-1;i>=0;i--) {
+				engine.forked.get(i).join();
+			}
+			return null;
+		}
+	}
+
+	/**
+	 * Adds the attempts of a running task to the total as they are reported, so that the listener of the caller sees the
+	 * attempts of all threads together.
+	 */
+	private class TaskProgress implements ProgressListener {
+		private long reported;
+
+		@Override
+		public void onProgress(long attempts, int depth, long elapsed) {
+			attempt.add(attempts-reported);
+			reported = attempts;
+			listener.onProgress(attempt.sum(), depth, System.nanoTime()-startTime);
+		}
+	}
+
+	/**
+	 * A SudokuEngine handing branches to idle workers and abandoning the search once a solution, or enough solutions
+	 * when counting, have been found.
+	 */
+	private class SplittingEngine extends SudokuEngine {
+		private final List<SearchTask> forked = new ArrayList<>();
+
+		SplittingEngine() {
+			super(size, CellSelection.MINIMUM_REMAINING_VALUES);
+			setPropagationEnabled(true);
+		}
+
+		@Override
+		protected void onSolution() {
+			if(solutionCount.incrementAndGet()>=solutionLimit) {
+				stop.cancel();
+			}
+		}
+
+		@Override
+		protected int branch(int cell, int candidates) {
+			if(stop.isCancelled()) {
+				return 0;
+			}
+			//small subtrees are cheaper to search than to hand over
+			if(getEmptyCount()<size*size/4 || ForkJoinTask.getSurplusQueuedTaskCount()>SURPLUS_TASKS) {
+				return candidates;
+			}
+
+			int keep = candidates & -candidates;
+			for(int rest=candidates^keep;rest!=0;rest&=rest-1) {
+				int[] next = new int[size*size];
+				for(int c=0;c<next.length;c++) {
+					next[c] = getCell(c);
+				}
+				next[cell] = Integer.numberOfTrailingZeros(rest)+1;
+				SearchTask task = new SearchTask(next);
+				task.fork();
+				forked.add(task);
+			}
+			return keep;
+		}
+	}
+}
@@ -0,0 +1,355 @@
+package tanvir.project.sudoku.thread;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.apache.log4j.LogManager;
+import org.apache.log4j.Logger;
+
+import tanvir.project.sudoku.engine.SolveTimeoutException;
+
+/**
+ * The solves of the whole server share this scheduler: a fixed number of workers, sized to the processors, taking
+ * solves from a bounded queue. A solve submitted while the queue is full is rejected right away, so a burst of
+ * puzzles is answered with "server busy" rather than piling up.
+ *
+ * Every solve starts in the express lane with a budget of attempts. Most puzzles are solved within it. A solve that
+ * outgrows its budget is moved to the back of the expensive lane and its task is run again without one, so it costs
+ * the express lane at most its budget. A task may keep what it did in the express lane to go on from there. Tasks that
+ * are not bounded by attempts, such as rating or generating a puzzle, are queued in the expensive lane straight away.
+ * One worker only serves the express lane, so cheap puzzles keep being answered while every
+ * other worker is busy with expensive ones. The other workers take the solve that has waited longest in either lane,
+ * so neither lane starves. With a single worker both lanes share it.
+ *
+ * Each solve carries the deadline it was submitted with, which includes the time spent waiting in the queue. A solve
+ * is run even once its deadline has passed, so it can answer from a cache or report the timeout itself.
+ *
+ * @author Tanvir Kaykobad
+ *
+ */
+public final class SolveScheduler {
+	private static final Logger LOGGER = LogManager.getLogger(SolveScheduler.class);
+
+	/**
+	 * A solve run by the scheduler.
+	 */
+	@FunctionalInterface
+	public interface Task<T> {
+
+		/**
+		 * @param attemptLimit the attempts the solve may take in the express lane, or 0 in the expensive lane
+		 * @param deadline the {@link System#nanoTime()} by which the solve has to be done
+		 * @return the result, or null if the solve reached the attempt limit and has to run again in the expensive lane
+		 */
+		T run(long attemptLimit, long deadline);
+	}
+
+	/**
+	 * A submitted solve and the future completed with its result.
+	 */
+	private static final class Entry<T> {
+		final Task<T> task;
+		final CompletableFuture<T> future = new CompletableFuture<>();
+		final long deadline;
+		long queuedAt;
+		boolean expensive;
+
+		Entry(Task<T> task, long deadline) {
+			this.task = task;
+			this.deadline = deadline;
+		}
+	}
+
+	private final int workers, queueSize;
+	private final long expressAttempts;
+
+	private final ReentrantLock lock = new ReentrantLock();
+	private final Condition available = lock.newCondition();
+	private final ArrayDeque<Entry<?>> express = new ArrayDeque<>(), expensive = new ArrayDeque<>();
+	private int active;
+	private boolean shutdown;
+
+	private final LongAdder rejected = new LongAdder(), demoted = new LongAdder();
+
+	/**
+	 * Constructor. The workers are started right away.
+	 * @param workers the number of workers
+	 * @param queueSize the number of solves waiting for a worker beyond which new solves are rejected
+	 * @param expressAttempts the attempts a solve may take in the express lane
+	 * @param threadFactory creates the threads of the workers
+	 * @throws IllegalArgumentException If a number is not positive
+	 */
+	public SolveScheduler(int workers, int queueSize, long expressAttempts, ThreadFactory threadFactory) throws IllegalArgumentException {
+		if(workers<=0 || queueSize<=0 || expressAttempts<=0) {
+			throw new IllegalArgumentException("Workers, queue size and express attempts must be positive");
+		}
+		this.workers = workers;
+		this.queueSize = queueSize;
+		this.expressAttempts = expressAttempts;
+		List<Thread> threads = new ArrayList<>();
+		for(int w=0;w<workers;w++) {
+			//with several workers the first one is kept for the express lane
+			boolean expressOnly = w==0 && workers>1;
+			Thread thread = threadFactory.newThread(() -> work(expressOnly));
+			thread.setName("sudoku-solver-"+w);
+			threads.add(thread);
+		}
+		threads.forEach(Thread::start);
+	}
+
+	/**
+	 * Queues a solve in the express lane.
+	 * @param task the solve
+	 * @param deadline the {@link System#nanoTime()} by which the solve has to be done
+	 * @return the result of the solve. Cancelling the future takes a solve that has not started out of the queue.
+	 * @throws RejectedExecutionException If the queue is full or the scheduler is shut down
+	 */
+	public <T> CompletableFuture<T> submit(Task<T> task, long deadline) throws RejectedExecutionException {
+		return submit(task, deadline, false);
+	}
+
+	/**
+	 * Queues a solve.
+	 * @param task the solve
+	 * @param deadline the {@link System#nanoTime()} by which the solve has to be done
+	 * @param expensiveLane true to queue the solve in the expensive lane, where it is run once without an attempt limit
+	 * @return the result of the solve. Cancelling the future takes a solve that has not started out of the queue.
+	 * @throws RejectedExecutionException If the queue is full or the scheduler is shut down
+	 */
+	public <T> CompletableFuture<T> submit(Task<T> task, long deadline, boolean expensiveLane) throws RejectedExecutionException {
+		Entry<T> entry = new Entry<>(task, deadline);
+		entry.expensive = expensiveLane;
+		queue(Collections.singletonList(entry));
+		return watch(entry);
+	}
+
+	/**
+	 * Queues several solves in the express lane, all or none of them. The solves are rejected together unless the queue
+	 * has room for every one of them, so a rejected batch leaves nothing behind in the queue.
+	 * @param tasks the solves
+	 * @param deadline the {@link System#nanoTime()} by which the solves have to be done
+	 * @return the results of the solves, in the order of the tasks
+	 * @throws RejectedExecutionException If the queue has no room for all the solves or the scheduler is shut down
+	 */
+	public <T> List<CompletableFuture<T>> submitAll(List<Task<T>> tasks, long deadline) throws RejectedExecutionException {
+		List<Entry<T>> entries = new ArrayList<>(tasks.size());
+		for(Task<T> task:tasks) {
+			entries.add(new Entry<>(task, deadline));
+		}
+		queue(entries);
+		List<CompletableFuture<T>> futures = new ArrayList<>(entries.size());
+		for(Entry<T> entry:entries) {
+			futures.add(watch(entry));
+		}
+		return futures;
+	}
+
+	/**
+	 * Adds the entries to their lanes if the queue has room for all of them.
+	 * @throws RejectedExecutionException If it has not or the scheduler is shut down
+	 */
+	private void queue(List<? extends Entry<?>> entries) throws RejectedExecutionException {
+		lock.lock();
+		try {
+			if(shutdown || express.size()+expensive.size()+entries.size()>queueSize) {
+				rejected.add(entries.size());
+				throw new RejectedExecutionException("Server busy");
+			}
+			long now = System.nanoTime();
+			for(Entry<?> entry:entries) {
+				entry.queuedAt = now;
+				(entry.expensive ? expensive : express).add(entry);
+			}
+			available.signalAll();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * @return the future of a queued entry, which takes the entry out of the queue once it is cancelled
+	 */
+	private <T> CompletableFuture<T> watch(Entry<T> entry) {
+		entry.future.whenComplete((result, error) -> {
+			if(entry.future.isCancelled()) {
+				remove(entry);
+			}
+		});
+		return entry.future;
+	}
+
+	/**
+	 * Stops the workers once their running solves are done. The solves still queued are cancelled.
+	 */
+	public void shutdown() {
+		List<Entry<?>> queued = new ArrayList<>();
+		lock.lock();
+		try {
+			shutdown = true;
+			queued.addAll(express);
+			queued.addAll(expensive);
+			express.clear();
+			expensive.clear();
+			available.signalAll();
+		} finally {
+			lock.unlock();
+		}
+		queued.forEach(entry -> entry.future.cancel(false));
+	}
+
+	/**
+	 * @return the number of workers
+	 */
+	public int getWorkers() {
+		return workers;
+	}
+
+	/**
+	 * @return the number of solves that may wait for a worker
+	 */
+	public int getQueueSize() {
+		return queueSize;
+	}
+
+	/**
+	 * @return the number of solves waiting for a worker, in both lanes
+	 */
+	public int getQueued() {
+		lock.lock();
+		try {
+			return express.size()+expensive.size();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * @return the number of solves running
+	 */
+	public int getActive() {
+		lock.lock();
+		try {
+			return active;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * @return the number of solves rejected because the queue was full
+	 */
+	public long getRejected() {
+		return rejected.sum();
+	}
+
+	/**
+	 * @return the number of solves moved to the expensive lane
+	 */
+	public long getDemoted() {
+		return demoted.sum();
+	}
+
+	private void remove(Entry<?> entry) {
+		lock.lock();
+		try {
+			if(!express.remove(entry)) {
+				expensive.remove(entry);
+			}
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * The loop of a worker: takes the next solve, runs it and completes its future, until the scheduler is shut down.
+	 */
+	private void work(boolean expressOnly) {
+		while(true) {
+			Entry<?> entry = null;
+			lock.lock();
+			try {
+				while(!shutdown && (entry = next(expressOnly))==null) {
+					available.awaitUninterruptibly();
+				}
+				if(shutdown) {
+					return;
+				}
+				active++;
+			} finally {
+				lock.unlock();
+			}
+			try {
+				run(entry);
+			} finally {
+				lock.lock();
+				try {
+					active--;
+				} finally {
+					lock.unlock();
+				}
+			}
+		}
+	}
+
+	/**
+	 * @return the solve a worker takes next, or null if there is none for it. Called holding the lock.
+	 */
+	private Entry<?> next(boolean expressOnly) {
+		if(expressOnly || expensive.isEmpty()) {
+			return express.poll();
+		}
+		if(express.isEmpty() || expensive.peek().queuedAt-express.peek().queuedAt<0) {
+			return expensive.poll();
+		}
+		return express.poll();
+	}
+
+	private <T> void run(Entry<T> entry) {
+		if(entry.future.isDone()) {
+			return;
+		}
+		T result;
+		try {
+			result = entry.task.run(entry.expensive ? 0 : expressAttempts, entry.deadline);
+		} catch(IllegalArgumentException | SolveTimeoutException | CancellationException e) {
+			//an invalid or unsolvable board, or a task that gave up, which the caller reports
+			if(LOGGER.isDebugEnabled()) {
+				LOGGER.debug("Solve rejected its board or gave up: "+e.getLocalizedMessage());
+			}
+			entry.future.completeExceptionally(e);
+			return;
+		} catch(RuntimeException | Error e) {
+			LOGGER.error("Solve failed", e);
+			entry.future.completeExceptionally(e);
+			return;
+		}
+		if(result!=null || entry.expensive) {
+			entry.future.complete(result);
+			return;
+		}
+		//the solve outgrew the express lane and waits for its turn in the expensive lane, even if the queue is full
+		lock.lock();
+		try {
+			if(!shutdown) {
+				entry.expensive = true;
+				entry.queuedAt = System.nanoTime();
+				expensive.add(entry);
+				demoted.increment();
+				available.signalAll();
+				return;
+			}
+		} finally {
+			lock.unlock();
+		}
+		entry.future.cancel(false);
+	}
+}
@@ -0,0 +1,272 @@
+package tanvir.project.sudoku.trace;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+
+import tanvir.project.sudoku.engine.CellSelection;
+import tanvir.project.sudoku.engine.SearchTrace;
+import tanvir.project.sudoku.engine.SudokuEngine;
+
+/**
+ * This class records the search of a slow puzzle to a file and analyzes such files offline, to find out where the
+ * search spends its guesses. The report has three parts:
+ *
+ * - the branching factor per decision depth: how many digits the cells branched on had, where the depth is the number
+ *   of guesses on the path to the cell,
+ * - the hottest cells: the cells guessed and backtracked on most often,
+ * - the wasted subtrees: the guesses that led off the path to the solution, with the number of guesses made below
+ *   them before they were taken back.
+ *
+ * A trace that overflowed its buffer only holds the end of the search, so its depths count from the oldest guess kept.
+ *
+ * Usage: java tanvir.project.sudoku.trace.TraceAnalyzer record puzzle file [capacity]
+ *        java tanvir.project.sudoku.trace.TraceAnalyzer file
+ *
+ * @author Tanvir Kaykobad
+ *
+ */
+public class TraceAnalyzer {
+
+	private static final int SIZE = 9, CELLS = SIZE*SIZE;
+
+	/**
+	 * The number of events a recording keeps by default: 4MB of trace.
+	 */
+	private static final int DEFAULT_CAPACITY = 1 << 20;
+
+	/**
+	 * The number of cells and subtrees listed in the report.
+	 */
+	private static final int TOP = 10;
+
+	private final SearchTrace trace;
+
+	/**
+	 * The sum of the digits available and the number of cells branched on, per decision depth.
+	 */
+	private final long[] branchDigits, branchCells;
+	private int maxDepth;
+
+	private final long[] places, backtracks;
+	private long totalPlaces, totalBacktracks, totalPropagations;
+
+	/**
+	 * The wasted subtrees that hang off the path to the solution, or off the start of the trace.
+	 */
+	private final List<Subtree> wasted = new ArrayList<>();
+
+	/**
+	 * A guess that was taken back, with the number of guesses made below it including itself.
+	 */
+	private static class Subtree {
+		final int cell, digit, depth;
+		final long parent;
+		long nodes;
+
+		Subtree(int cell, int digit, int depth, long parent) {
+			this.cell = cell;
+			this.digit = digit;
+			this.depth = depth;
+			this.parent = parent;
+		}
+	}
+
+	/**
+	 * Constructor
+	 * @param trace the trace to analyze
+	 */
+	public TraceAnalyzer(SearchTrace trace) {
+		this.trace = trace;
+		int cells = trace.getSize()*trace.getSize();
+		places = new long[cells];
+		backtracks = new long[cells];
+		branchDigits = new long[cells+1];
+		branchCells = new long[cells+1];
+		analyze();
+	}
+
+	/**
+	 * Rebuilds the search tree from the order of the events. A guess stays on the stack of guesses until it is taken
+	 * back, or until a guess on the same or a lower level shows that the search went elsewhere. The levels grow along
+	 * a path, so the levels on both stacks are strictly increasing.
+	 */
+	private void analyze() {
+		int count = trace.getEventCount();
+		int[] branchLevels = new int[count];
+		int branchDepth = 0;
+
+		int[] guessLevels = new int[count];
+		long[] guessEvents = new long[count], guessPlaces = new long[count];
+		int guessDepth = 0;
+		List<Subtree> undone = new ArrayList<>();
+
+		for(int i=0;i<count;i++) {
+			int event = trace.getEvent(i);
+			int cell = SearchTrace.cell(event), value = SearchTrace.value(event), level = SearchTrace.level(event);
+			switch(SearchTrace.type(event)) {
+			case SearchTrace.BRANCH:
+				while(branchDepth>0 && branchLevels[branchDepth-1]>=level) {
+					branchDepth--;
+				}
+				branchLevels[branchDepth++] = level;
+				branchDigits[branchDepth] += value;
+				branchCells[branchDepth]++;
+				maxDepth = Math.max(maxDepth, branchDepth);
+				break;
+			case SearchTrace.PLACE:
+				while(guessDepth>0 && guessLevels[guessDepth-1]>=level) {
+					guessDepth--;
+				}
+				guessLevels[guessDepth] = level;
+				guessEvents[guessDepth] = i;
+				guessPlaces[guessDepth] = totalPlaces;
+				guessDepth++;
+				places[cell]++;
+				totalPlaces++;
+				break;
+			case SearchTrace.BACKTRACK:
+				while(guessDepth>0 && guessLevels[guessDepth-1]>level) {
+					guessDepth--;
+				}
+				backtracks[cell]++;
+				totalBacktracks++;
+				if(guessDepth>0 && guessLevels[guessDepth-1]==level) {
+					guessDepth--;
+					Subtree subtree = new Subtree(cell, value, guessDepth+1, guessDepth>0 ? guessEvents[guessDepth-1] : -1);
+					subtree.nodes = totalPlaces-guessPlaces[guessDepth];
+					undone.add(subtree);
+				}
+				break;
+			default:
+				totalPropagations++;
+			}
+		}
+
+		//the guesses left on the stack are the path to the solution, or to where the search stopped
+		long[] path = new long[guessDepth];
+		System.arraycopy(guessEvents, 0, path, 0, guessDepth);
+		for(Subtree subtree:undone) {
+			if(subtree.parent<0 || Arrays.binarySearch(path, subtree.parent)>=0) {
+				wasted.add(subtree);
+			}
+		}
+		wasted.sort(Comparator.comparingLong((Subtree subtree) -> subtree.nodes).reversed());
+	}
+
+	/**
+	 * Prints the report.
+	 * @param out the stream to print to
+	 */
+	public void report(PrintStream out) {
+		int[] puzzle = trace.getPuzzle();
+		StringBuilder sb = new StringBuilder();
+		for(int digit:puzzle) {
+			sb.append(digit==0 ? '.' : symbol(digit));
+		}
+		out.println("Puzzle: "+sb);
+		out.println("Events: "+trace.getRecorded()+" recorded, "+trace.getEventCount()+" kept"
+				+(trace.getRecorded()>trace.getEventCount() ? " (only the end of the search)" : ""));
+		out.println("Guesses: "+totalPlaces+", Backtracks: "+totalBacktracks+", Propagations: "+totalPropagations
+				+", Wasted: "+percent(totalBacktracks, totalPlaces));
+
+		out.println();
+		out.println("Branching factor per depth");
+		out.println("depth    cells  digits/cell");
+		for(int depth=1;depth<=maxDepth;depth++) {
+			out.println(String.format("%5d %8d %12.2f", depth, branchCells[depth], (double)branchDigits[depth]/branchCells[depth]));
+		}
+
+		out.println();
+		out.println("Hottest cells");
+		out.println(" cell  guesses  backtracks");
+		Integer[] cells = new Integer[places.length];
+		for(int cell=0;cell<cells.length;cell++) {
+			cells[cell] = cell;
+		}
+		Arrays.sort(cells, Comparator.comparingLong((Integer cell) -> places[cell]).reversed());
+		for(int i=0;i<Math.min(TOP, cells.length) && places[cells[i]]>0;i++) {
+			out.println(String.format("%5s %8d %11d", name(cells[i]), places[cells[i]], backtracks[cells[i]]));
+		}
+
+		out.println();
+		out.println("Wasted subtrees off the solution path");
+		out.println(" cell  digit  depth  guesses  share");
+		for(int i=0;i<Math.min(TOP, wasted.size());i++) {
+			Subtree subtree = wasted.get(i);
+			out.println(String.format("%5s %6s %6d %8d %6s", name(subtree.cell), symbol(subtree.digit), subtree.depth,
+					subtree.nodes, percent(subtree.nodes, totalPlaces)));
+		}
+	}
+
+	/**
+	 * @return the cell as r1c1 to r9c9
+	 */
+	private String name(int cell) {
+		return "r"+(cell/trace.getSize()+1)+"c"+(cell%trace.getSize()+1);
+	}
+
+	/**
+	 * @return the symbol of a digit, as shown by the webapplication: 1 to 9, then A to P
+	 */
+	private static char symbol(int digit) {
+		return Character.toUpperCase(Character.forDigit(digit, Character.MAX_RADIX));
+	}
+
+	private static String percent(long part, long whole) {
+		return whole==0 ? "0%" : Math.round(100.0*part/whole)+"%";
+	}
+
+	/**
+	 * Solves a puzzle with the minimum remaining values heuristic and propagation, recording its search.
+	 * @param puzzle the puzzle as 81 characters, with '.' or '0' for the empty cells
+	 * @param capacity the number of events kept
+	 * @return the trace of the search
+	 * @throws IllegalArgumentException If the puzzle cannot be read
+	 */
+	public static SearchTrace record(String puzzle, int capacity) throws IllegalArgumentException {
+		if(puzzle.length()!=CELLS) {
+			throw new IllegalArgumentException("Puzzle must have "+CELLS+" characters");
+		}
+		SudokuEngine engine = new SudokuEngine(SIZE, CellSelection.MINIMUM_REMAINING_VALUES);
+		for(int cell=0;cell<CELLS;cell++) {
+			char symbol = puzzle.charAt(cell);
+			engine.setCell(cell, symbol=='.' ? 0 : symbol-'0');
+		}
+		engine.setPropagationEnabled(true);
+		SearchTrace trace = new SearchTrace(capacity);
+		engine.setTrace(trace);
+		engine.solve();
+		return trace;
+	}
+
+	/**
+	 * This method records a trace or reports on one, see the class comment.
+	 * @param args record, the puzzle, the trace file and optionally the capacity; or the trace file alone
+	 */
+	public static void main(String args[]) throws IOException {
+		if(args.length==0 || "record".equals(args[0]) && args.length<3) {
+			System.out.println("Usage: java "+TraceAnalyzer.class.getName()+" record puzzle file [capacity]");
+			System.out.println("       java "+TraceAnalyzer.class.getName()+" file");
+			System.exit(2);
+		}
+		Logger.getRootLogger().setLevel(Level.OFF);
+
+		if("record".equals(args[0])) {
+			Path file = Paths.get(args[2]);
+			SearchTrace trace = record(args[1], args.length>3 ? Integer.parseInt(args[3]) : DEFAULT_CAPACITY);
+			trace.write(file);
+			System.out.println("Recorded "+trace.getRecorded()+" events to "+file);
+		} else {
+			new TraceAnalyzer(SearchTrace.read(Paths.get(args[0]))).report(System.out);
+		}
+	}
+}